@@ -10,44 +10,71 @@
 package org.openmrs.module.kenyaemr;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.openmrs.Patient;
 import org.openmrs.Visit;
+import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.DaemonTokenAware;
 import org.openmrs.module.ModuleActivator;
 import org.openmrs.module.kenyacore.CoreContext;
+import org.openmrs.module.kenyaemr.advice.EncounterEventDispatcher;
 import org.openmrs.module.reporting.report.service.ReportService;
 import org.openmrs.util.OpenmrsUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
 /**
  * This class contains the logic that is run every time this module is either started or stopped.
  */
-public class EmrActivator implements ModuleActivator {
+public class EmrActivator implements ModuleActivator, DaemonTokenAware {
 
 	protected static final Log log = LogFactory.getLog(EmrActivator.class);
 
+	private static DaemonToken daemonToken;
+
 	static {
 		// Possibly bad practice but we really want to see these startup log messages
 		LogManager.getLogger("org.openmrs.module.kenyacore").setLevel(Level.INFO);
 		LogManager.getLogger("org.openmrs.module.kenyaemr").setLevel(Level.INFO);
 	}
 
+	/**
+	 * @see DaemonTokenAware#setDaemonToken(org.openmrs.module.DaemonToken)
+	 */
+	@Override
+	public void setDaemonToken(DaemonToken token) {
+		daemonToken = token;
+	}
+
+	/**
+	 * Gets the token used to run background work as the daemon user
+	 * @return the token or null if not yet provided
+	 */
+	public static DaemonToken getDaemonToken() {
+		return daemonToken;
+	}
+
 	/**
 	 * @see ModuleActivator#willRefreshContext()
 	 */
 	public void willRefreshContext() {
 
 		log.info("KenyaEMR context refreshing...");
-		//TODO: Investigate what causes reports page to load slowly. This behavior started with platform 2.x upgrade
-		Context.getAdministrationService().executeSQL("delete from reporting_report_request", false);
+
+		long start = System.currentTimeMillis();
+		cleanUpReportRequests();
+		logPhase("report request clean up", start);
 	}
 
 	/**
@@ -61,10 +88,14 @@ public class EmrActivator implements ModuleActivator {
 	 * @see ModuleActivator#contextRefreshed()
 	 */
 	public void contextRefreshed() {
+		long start = System.currentTimeMillis();
 		Configuration.configure();
+		logPhase("configuration", start);
 
 		try {
+			start = System.currentTimeMillis();
 			CoreContext.getInstance().refresh();
+			logPhase("core context refresh", start);
 		}
 		catch (Exception ex) {
 			// If an error occurs during core refresh, we need KenyaEMR to still start so that the error can be
@@ -81,9 +112,12 @@ public class EmrActivator implements ModuleActivator {
 	 */
 	public void started() {
 		// Context.getService(ReportService.class).deleteOldReportRequests();
-		log.info("KenyaEMR started");
-		Context.getAdministrationService().executeSQL("UPDATE form SET published = 1 where retired = 0", false);
+		long start = System.currentTimeMillis();
+		Context.getAdministrationService().executeSQL("UPDATE form SET published = 1 where retired = 0 and published = 0", false);
+		logPhase("form publishing", start);
 
+		EncounterEventDispatcher.getInstance().start();
+		log.info("KenyaEMR started");
 	}
 
 	/**
@@ -91,6 +125,8 @@ public class EmrActivator implements ModuleActivator {
 	 */
 	public void willStop() {
 		log.info("KenyaEMR stopping...");
+
+		EncounterEventDispatcher.getInstance().stop();
 	}
 
 	/**
@@ -99,4 +135,40 @@ public class EmrActivator implements ModuleActivator {
 	public void stopped() {
 		log.info("KenyaEMR stopped");
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Clears out report requests which slow down the reports pages. Requests left processing by a shutdown are
+	 * failed as they will never complete, and finished requests older than the retention period are deleted.
+	 * Saved and queued requests are kept.
+	 */
+	protected void cleanUpReportRequests() {
+		AdministrationService administrationService = Context.getAdministrationService();
+
+		int retentionDays = EmrConstants.DEFAULT_REPORT_REQUEST_RETENTION_DAYS;
+		String configured = administrationService.getGlobalProperty(EmrConstants.GP_REPORT_REQUEST_RETENTION_DAYS);
+		if (StringUtils.isNotBlank(configured)) {
+			try {
+				retentionDays = Integer.parseInt(configured.trim());
+			}
+			catch (NumberFormatException ex) {
+				log.warn("Invalid value for " + EmrConstants.GP_REPORT_REQUEST_RETENTION_DAYS + ": " + configured);
+			}
+		}
+
+		Calendar cutoff = Calendar.getInstance();
+		cutoff.add(Calendar.DATE, -retentionDays);
+		String cutoffDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(cutoff.getTime());
+
+		administrationService.executeSQL("update reporting_report_request set status = 'FAILED' where status = 'PROCESSING'", false);
+		administrationService.executeSQL("delete from reporting_report_request where status in ('COMPLETED', 'FAILED', 'SCHEDULE_COMPLETED') and request_datetime < '" + cutoffDate + "'", false);
+	}
+
+	/**
+	 * Logs the time taken by a startup phase
+	 * @param phase the phase name
+	 * @param start the start time in milliseconds
+	 */
+	protected static void logPhase(String phase, long start) {
+		log.info("KenyaEMR " + phase + " took " + (System.currentTimeMillis() - start) + "ms");
+	}
+}
@@ -60,6 +60,8 @@ public class EmrConstants {
 	public static final String GP_DHIS2_DATASET_MAPPING = MODULE_ID + ".adxDatasetMapping";
 	public static final String GP_3PM_DATASET_MAPPING = KP_MODULE_ID + ".adx3pmDatasetMapping";
 	public static final String GP_DATA_TOOL_URL = "kenyaemr.web.datatool.url";
+	public static final String GP_REPORT_REQUEST_RETENTION_DAYS = MODULE_ID + ".reportRequestRetentionDays";
+	public static final String GP_REPORT_PROFILER_ENABLED = MODULE_ID + ".reportProfiler.enabled";
 
 	/**
 	 * Default global property values
@@ -67,6 +69,7 @@ public class EmrConstants {
 	public static final String DEFAULT_SUPPORT_PHONE_NUMBER = "0800 722 440";
 	public static final String DEFAULT_SUPPORT_EMAIL_ADDRESS = "help@palladiumgroup.on.spiceworks.com";
 	public static final String DEFAULT_EXTERNAL_HELP_URL = "/help";
+	public static final int DEFAULT_REPORT_REQUEST_RETENTION_DAYS = 7;
 
 	public static final String GP_CONFIGURE_FACILITY_LIST_REFRESH_ON_STARTUP = "kenyaemr.refresh.facility.metadata";
 }
@@ -0,0 +1,208 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.advice;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Encounter;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.kenyaemr.EmrActivator;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.model.EncounterEvent;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs queued encounter events on a small bounded worker pool. Events are submitted once the transaction that
+ * queued them has committed. If the pool is saturated, or the module is not yet fully started, the event simply
+ * stays in the queue and is picked up by {@link org.openmrs.module.kenyaemr.task.ProcessEncounterEventsTask}
+ */
+public class EncounterEventDispatcher {
+
+	protected static final Log log = LogFactory.getLog(EncounterEventDispatcher.class);
+
+	public static final int WORKER_THREADS = 2;
+
+	public static final int QUEUE_CAPACITY = 1000;
+
+	public static final int MAX_ATTEMPTS = 5;
+
+	/**
+	 * Events still marked as processing after this long are assumed to have been abandoned (e.g. by a restart)
+	 */
+	public static final int STALE_AFTER_MINUTES = 30;
+
+	private static final int MAX_ERROR_LENGTH = 4000;
+
+	private static final EncounterEventDispatcher instance = new EncounterEventDispatcher();
+
+	private List<EncounterEventProcessor> processors;
+
+	private ThreadPoolExecutor executor;
+
+	private EncounterEventDispatcher() {
+	}
+
+	/**
+	 * Gets the singleton instance
+	 * @return the instance
+	 */
+	public static EncounterEventDispatcher getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Gets the registered processors. These instances are only used to decide which events to queue, each event is
+	 * processed by a new instance as some processors keep state between method calls
+	 * @return the processors
+	 */
+	public synchronized List<EncounterEventProcessor> getProcessors() {
+		if (processors == null) {
+			processors = Collections.unmodifiableList(Arrays.<EncounterEventProcessor>asList(
+					new MCHMSDeliveryFormProcessor(),
+					new SyncHFEAppointmentsWithBahmniModule(),
+					new OutpatientToInpatientCheckinOnAdmissionRequest()
+			));
+		}
+		return processors;
+	}
+
+	/**
+	 * Starts the worker pool
+	 */
+	public synchronized void start() {
+		if (executor == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+			executor = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "kenyaemr-encounter-events-" + threadCount.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					},
+					new ThreadPoolExecutor.DiscardPolicy());
+			executor.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	/**
+	 * Stops the worker pool. Events which haven't run remain queued in the database
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Submits an event to the worker pool once the current transaction commits, or immediately if there is none
+	 * @param eventId the event id
+	 */
+	public void dispatchAfterCommit(final Integer eventId) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					dispatch(eventId);
+				}
+			});
+		} else {
+			dispatch(eventId);
+		}
+	}
+
+	/**
+	 * Submits an event to the worker pool
+	 * @param eventId the event id
+	 */
+	protected synchronized void dispatch(final Integer eventId) {
+		final DaemonToken token = EmrActivator.getDaemonToken();
+		if (executor == null || token == null) {
+			log.debug("Encounter event dispatcher not started. Event #" + eventId + " left for scheduled processing");
+			return;
+		}
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				Daemon.runInDaemonThreadAndWait(new Runnable() {
+					@Override
+					public void run() {
+						process(eventId);
+					}
+				}, token);
+			}
+		});
+	}
+
+	/**
+	 * Processes a single queued event in the current thread. The caller must already have an authenticated session
+	 * @param eventId the event id
+	 * @return true if the event was processed successfully
+	 */
+	public boolean process(Integer eventId) {
+		KenyaEmrService service = Context.getService(KenyaEmrService.class);
+
+		if (!service.claimEncounterEvent(eventId, getStaleBefore())) {
+			return false; // completed, exhausted or being run by another worker
+		}
+
+		EncounterEvent event = service.getEncounterEvent(eventId);
+		event.setAttempts(event.getAttempts() + 1);
+		try {
+			Encounter encounter = Context.getEncounterService().getEncounterByUuid(event.getEncounterUuid());
+			if (encounter != null) {
+				EncounterEventProcessor processor = (EncounterEventProcessor) Context.loadClass(event.getProcessor()).newInstance();
+				processor.process(encounter);
+			}
+
+			event.setStatus(EncounterEvent.STATUS_COMPLETED);
+			event.setLastError(null);
+		}
+		catch (Throwable ex) {
+			log.error("Unable to process encounter event #" + eventId + " (" + event.getProcessor() + ")", ex);
+
+			event.setStatus(EncounterEvent.STATUS_FAILED);
+			event.setLastError(StringUtils.abbreviate(ExceptionUtils.getStackTrace(ex), MAX_ERROR_LENGTH));
+		}
+		finally {
+			event.setDateProcessed(new Date());
+			service.updateEncounterEvent(event);
+		}
+
+		return EncounterEvent.STATUS_COMPLETED.equals(event.getStatus());
+	}
+
+	/**
+	 * Gets the date before which events still marked as processing are considered abandoned
+	 * @return the date
+	 */
+	public static Date getStaleBefore() {
+		return new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(STALE_AFTER_MINUTES));
+	}
+}
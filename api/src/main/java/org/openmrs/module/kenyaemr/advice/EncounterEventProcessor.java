@@ -0,0 +1,35 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.advice;
+
+import org.openmrs.Encounter;
+
+/**
+ * Post-save work that runs against an encounter once it has been committed. Processors are queued by
+ * {@link EncounterEventPublisher} and run by {@link EncounterEventDispatcher} outside of the form submission, so
+ * implementations must be safe to run on a worker thread and must tolerate being retried.
+ */
+public interface EncounterEventProcessor {
+
+	/**
+	 * Checks whether this processor is interested in the given encounter. Called synchronously on save so should
+	 * only inspect the encounter itself and never query the database
+	 * @param encounter the saved encounter
+	 * @return true if an event should be queued for this processor
+	 */
+	boolean accepts(Encounter encounter);
+
+	/**
+	 * Processes the encounter. Any exception marks the event as failed so it can be retried
+	 * @param encounter the encounter, re-loaded in the worker's session
+	 * @throws Exception if processing fails
+	 */
+	void process(Encounter encounter) throws Exception;
+}
@@ -0,0 +1,76 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.advice;
+
+import org.openmrs.Encounter;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.form.FormAvailabilityEvaluator;
+import org.springframework.aop.AfterReturningAdvice;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+
+/**
+ * Queues post-save encounter processing instead of running it inside the save. For every processor interested in
+ * the saved encounter, an event is written to the database in the same transaction and handed to
+ * {@link EncounterEventDispatcher} once committed.
+ */
+public class EncounterEventPublisher implements AfterReturningAdvice {
+
+	/**
+	 * @see AfterReturningAdvice#afterReturning(Object, java.lang.reflect.Method, Object[], Object)
+	 */
+	@Override
+	public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
+		if (method.getName().equals("saveEncounter")) {
+			Encounter encounter = (Encounter) args[0];
+			if (encounter != null && encounter.getEncounterId() != null) {
+				publish(encounter);
+			}
+			if (encounter != null && encounter.getPatient() != null) {
+				// The encounter may change which forms the patient can have
+				FormAvailabilityEvaluator.getInstance().invalidateAfterCommit(encounter.getPatient().getPatientId());
+			}
+		}
+	}
+
+	/**
+	 * Queues events for the given encounter
+	 * @param encounter the saved encounter
+	 */
+	protected void publish(Encounter encounter) {
+		EncounterEventDispatcher dispatcher = EncounterEventDispatcher.getInstance();
+		KenyaEmrService service = Context.getService(KenyaEmrService.class);
+
+		for (EncounterEventProcessor processor : dispatcher.getProcessors()) {
+			if (processor.accepts(encounter)) {
+				String processorName = processor.getClass().getName();
+				Integer eventId = service.enqueueEncounterEvent(idempotencyKey(processorName, encounter), processorName, encounter.getUuid());
+				if (eventId != null) {
+					dispatcher.dispatchAfterCommit(eventId);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds the idempotency key for a processor and a particular version of an encounter, so re-saving without
+	 * changes doesn't queue the same work again but edits and voids do
+	 * @param processorName the processor class name
+	 * @param encounter the encounter
+	 * @return the key
+	 */
+	protected static String idempotencyKey(String processorName, Encounter encounter) {
+		Date version = encounter.getDateChanged() != null ? encounter.getDateChanged() : encounter.getDateCreated();
+		return processorName.substring(processorName.lastIndexOf('.') + 1) + ":" + encounter.getUuid() + ":"
+				+ (version != null ? version.getTime() : 0) + (encounter.getVoided() ? ":voided" : "");
+	}
+}
@@ -10,6 +10,7 @@
 package org.openmrs.module.kenyaemr.advice;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.DateUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Concept;
@@ -25,16 +26,13 @@ import org.openmrs.PersonName;
 import org.openmrs.Relationship;
 import org.openmrs.RelationshipType;
 import org.openmrs.api.ConceptService;
-import org.openmrs.api.EncounterService;
 import org.openmrs.api.ObsService;
 import org.openmrs.api.PersonService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.idgen.service.IdentifierSourceService;
 import org.openmrs.module.metadatadeploy.MetadataUtils;
 import org.openmrs.util.PrivilegeConstants;
-import org.springframework.aop.AfterReturningAdvice;
 
-import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -42,72 +40,77 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class MCHMSDeliveryFormProcessor implements AfterReturningAdvice {
+/**
+ * Registers the babies recorded on a delivery form as patients related to the mother
+ */
+public class MCHMSDeliveryFormProcessor implements EncounterEventProcessor {
 
     private Log log = LogFactory.getLog(this.getClass());
     public static final String DELIVERY_FORMUUID = "496c7cc3-0eea-4e84-a04c-2292949e2f7f";
     public static final String OPENMRS_ID = "dfacd928-0370-4315-99d7-6ec1c9f7ae76";
+    private static final String PARENT_CHILD_RELATIONSHIP = "8d91a210-c2cc-11de-8d13-0010c6dffd0f";
+
+    @Override
+    public boolean accepts(Encounter enc) {
+        return enc.getForm() != null && enc.getForm().getUuid().equals(DELIVERY_FORMUUID);
+    }
+
     @Override
-    public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
+    public void process(Encounter enc) throws Exception {
 
         String deliveryOutcomeGroupingConcept = "162588AAAAAAAAAAAAAAAAAAAAAAAAAAAAAA";
-        EncounterService encounterService = Context.getEncounterService();
         ObsService obsService = Context.getObsService();
         ConceptService conceptService = Context.getConceptService();
         PersonService personService = Context.getPersonService();
-        if (method.getName().equals("saveEncounter")) {
-            Encounter enc = (Encounter) args[0];
-
-            if(enc != null && enc.getForm() != null && enc.getForm().getUuid().equals(DELIVERY_FORMUUID)) {      //EncounterType 15 MCH
-                boolean errorOccured = false;
-                Person parent = personService.getPerson(enc.getPatient().getPersonId());
-                // construct object for each baby and process
-                List<Obs> obs = obsService.getObservations(
-                        Arrays.asList(personService.getPerson(enc.getPatient().getPersonId())),
-                        Arrays.asList(enc),
-                        Arrays.asList(conceptService.getConceptByUuid(deliveryOutcomeGroupingConcept)),
-                        null,
-                        null,
-                        null,
-                        Arrays.asList("obsId"),
-                        null,
-                        null,
-                        null,
-                        null,
-                        false
-                );
-                for(Obs o: obs) {
-                    Patient baby = extractBabyRegistrationDetails(o.getGroupMembers());
-                    if (baby != null) {
-
-                        baby.setBirthdate(o.getObsDatetime());
-                        // Make sure everyone gets an OpenMRS ID
-                        PatientIdentifierType openmrsIdType = MetadataUtils.existing(PatientIdentifierType.class, OPENMRS_ID);
-                        PatientIdentifier openmrsId = baby.getPatientIdentifier(openmrsIdType);
-
-                        if (openmrsId == null) {
-                            String generated = Context.getService(IdentifierSourceService.class).generateIdentifier(openmrsIdType, "Registration");
-                            openmrsId = new PatientIdentifier(generated, openmrsIdType, getDefaultLocation());
-                            baby.addIdentifier(openmrsId);
-
-                            if (!baby.getPatientIdentifier().isPreferred()) {
-                                openmrsId.setPreferred(true);
-                            }
-                        }
-                        try {
 
-                           baby = Context.getPatientService().savePatient(baby);
-                           addRelationship(parent, baby);
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            errorOccured = true;
+        if(enc != null && enc.getForm() != null && enc.getForm().getUuid().equals(DELIVERY_FORMUUID)) {      //EncounterType 15 MCH
+            Person parent = personService.getPerson(enc.getPatient().getPersonId());
+            // construct object for each baby and process
+            List<Obs> obs = obsService.getObservations(
+                    Arrays.asList(parent),
+                    Arrays.asList(enc),
+                    Arrays.asList(conceptService.getConceptByUuid(deliveryOutcomeGroupingConcept)),
+                    null,
+                    null,
+                    null,
+                    Arrays.asList("obsId"),
+                    null,
+                    null,
+                    null,
+                    null,
+                    false
+            );
+            for(Obs o: obs) {
+                Patient baby = extractBabyRegistrationDetails(o.getGroupMembers());
+                if (baby != null) {
+
+                    baby.setBirthdate(o.getObsDatetime());
+
+                    // A retried event may have registered some of the babies already
+                    if (isRegisteredChild(parent, baby)) {
+                        continue;
+                    }
+
+                    // Make sure everyone gets an OpenMRS ID
+                    PatientIdentifierType openmrsIdType = MetadataUtils.existing(PatientIdentifierType.class, OPENMRS_ID);
+                    PatientIdentifier openmrsId = baby.getPatientIdentifier(openmrsIdType);
+
+                    if (openmrsId == null) {
+                        String generated = Context.getService(IdentifierSourceService.class).generateIdentifier(openmrsIdType, "Registration");
+                        openmrsId = new PatientIdentifier(generated, openmrsIdType, getDefaultLocation());
+                        baby.addIdentifier(openmrsId);
+
+                        if (!baby.getPatientIdentifier().isPreferred()) {
+                            openmrsId.setPreferred(true);
                         }
                     }
-                }
 
+                    // Failures propagate so that the event is marked as failed and retried
+                    baby = Context.getPatientService().savePatient(baby);
+                    addRelationship(parent, baby);
+                }
             }
         }
-
    }
 
 
@@ -172,6 +175,33 @@ public class MCHMSDeliveryFormProcessor implements AfterReturningAdvice {
         }
 
 
+    /**
+     * Checks whether the parent already has a child with the same name and birth date as the given baby
+     * @param parent the parent
+     * @param baby the baby
+     * @return true if the baby is already registered
+     */
+    private boolean isRegisteredChild(Person parent, Patient baby) {
+        PersonService personService = Context.getPersonService();
+        RelationshipType rType = personService.getRelationshipTypeByUuid(PARENT_CHILD_RELATIONSHIP);
+        PersonName babyName = baby.getPersonName();
+        if (babyName == null) {
+            return false;
+        }
+
+        for (Relationship rel : personService.getRelationships(parent, null, rType)) {
+            Person child = rel.getPersonB();
+            PersonName childName = child.getPersonName();
+            // Birth dates are compared by day as the baby's is taken from the obs time but is stored as a date
+            if (child.getBirthdate() != null && DateUtils.isSameDay(child.getBirthdate(), baby.getBirthdate())
+                    && childName != null && StringUtils.equals(childName.getGivenName(), babyName.getGivenName())
+                    && StringUtils.equals(childName.getFamilyName(), babyName.getFamilyName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void addRelationship(Person parent, Person child) {
 
 
@@ -190,7 +220,7 @@ public class MCHMSDeliveryFormProcessor implements AfterReturningAdvice {
 +----------------------+--------------------------------------+------------+--------------+
 */
         PersonService personService = Context.getPersonService();
-        RelationshipType rType = personService.getRelationshipTypeByUuid("8d91a210-c2cc-11de-8d13-0010c6dffd0f");
+        RelationshipType rType = personService.getRelationshipTypeByUuid(PARENT_CHILD_RELATIONSHIP);
 
         Relationship rel = new Relationship();
         rel.setRelationshipType(rType);
@@ -17,15 +17,13 @@ import org.openmrs.Visit;
 import org.openmrs.api.VisitService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
-import org.springframework.aop.AfterReturningAdvice;
 
-import java.lang.reflect.Method;
 import java.util.Date;
 
 /**
  * Automates the process of checking out a patient from OPD and starting an inpatient visit
  */
-public class OutpatientToInpatientCheckinOnAdmissionRequest implements AfterReturningAdvice {
+public class OutpatientToInpatientCheckinOnAdmissionRequest implements EncounterEventProcessor {
 
     private Log log = LogFactory.getLog(this.getClass());
 
@@ -33,28 +31,29 @@ public class OutpatientToInpatientCheckinOnAdmissionRequest implements AfterRetu
     public static final String INPATIENT_ADMISSION_ANSWER_CONCEPT = "1654AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA";
 
     @Override
-    public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
-
-        if (method.getName().equals("saveEncounter")) {
-            Encounter enc = (Encounter) args[0];
-            VisitService visitService = Context.getVisitService();
-            if (enc != null && enc.getVisit() != null && enc.getVisit().getVisitType().getUuid().equals(CommonMetadata._VisitType.OUTPATIENT) && enc.getForm() != null && CommonMetadata._Form.CLINICAL_ENCOUNTER.equalsIgnoreCase(enc.getForm().getUuid())) {
-                for (Obs o : enc.getAllObs()) {
-                    if (o.getConcept().getUuid().equals(INPATIENT_ADMISSION_REQUEST_QUESTION_CONCEPT) && o.getValueCoded().getUuid().equals(INPATIENT_ADMISSION_ANSWER_CONCEPT)) {
-                        // end the OPD visit
-                        Visit opdVisit = enc.getVisit();
-                        opdVisit.setStopDatetime(new Date());
-                        visitService.saveVisit(opdVisit);
+    public boolean accepts(Encounter enc) {
+        return enc.getVisit() != null && enc.getVisit().getVisitType().getUuid().equals(CommonMetadata._VisitType.OUTPATIENT) && enc.getForm() != null && CommonMetadata._Form.CLINICAL_ENCOUNTER.equalsIgnoreCase(enc.getForm().getUuid());
+    }
 
-                        Visit visit = new Visit();
-                        visit.setStartDatetime(new Date());
-                        visit.setLocation(enc.getLocation());
-                        visit.setPatient(enc.getPatient());
-                        visit.setVisitType(visitService.getVisitTypeByUuid(CommonMetadata._VisitType.INPATIENT));
-                        Context.getVisitService().saveVisit(visit);
-                        System.out.println("Started a new inpatient visit......");
-                        break;
-                    }
+    @Override
+    public void process(Encounter enc) throws Exception {
+        VisitService visitService = Context.getVisitService();
+        if (enc != null && enc.getVisit() != null && enc.getVisit().getStopDatetime() == null && accepts(enc)) {
+            for (Obs o : enc.getAllObs()) {
+                if (o.getConcept().getUuid().equals(INPATIENT_ADMISSION_REQUEST_QUESTION_CONCEPT) && o.getValueCoded().getUuid().equals(INPATIENT_ADMISSION_ANSWER_CONCEPT)) {
+                    // end the OPD visit
+                    Visit opdVisit = enc.getVisit();
+                    opdVisit.setStopDatetime(new Date());
+                    visitService.saveVisit(opdVisit);
+
+                    Visit visit = new Visit();
+                    visit.setStartDatetime(new Date());
+                    visit.setLocation(enc.getLocation());
+                    visit.setPatient(enc.getPatient());
+                    visit.setVisitType(visitService.getVisitTypeByUuid(CommonMetadata._VisitType.INPATIENT));
+                    Context.getVisitService().saveVisit(visit);
+                    log.info("Started a new inpatient visit......");
+                    break;
                 }
             }
         }
@@ -0,0 +1,329 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.advice;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyaemr.EmrConstants;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.model.ReportProfileEntry;
+import org.openmrs.module.reporting.cohort.EvaluatedCohort;
+import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
+import org.openmrs.module.reporting.cohort.definition.SqlCohortDefinition;
+import org.openmrs.module.reporting.data.patient.EvaluatedPatientData;
+import org.openmrs.module.reporting.data.patient.definition.PatientDataDefinition;
+import org.openmrs.module.reporting.data.person.EvaluatedPersonData;
+import org.openmrs.module.reporting.data.person.definition.PersonDataDefinition;
+import org.openmrs.module.reporting.dataset.DataSet;
+import org.openmrs.module.reporting.dataset.DataSetRow;
+import org.openmrs.module.reporting.dataset.definition.DataSetDefinition;
+import org.openmrs.module.reporting.dataset.definition.SqlDataSetDefinition;
+import org.openmrs.module.reporting.evaluation.Definition;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+import org.openmrs.module.reporting.evaluation.parameter.Mapped;
+import org.openmrs.module.reporting.indicator.Indicator;
+import org.openmrs.module.reporting.report.definition.ReportDefinition;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Opt-in profiler for report evaluation. Wraps the evaluate methods of the reporting definition services and, while
+ * a report definition is being evaluated with {@link EmrConstants#GP_REPORT_PROFILER_ENABLED} set, records the wall
+ * time, row count, SQL and cache hits of every nested definition. Timings are saved once the report evaluation
+ * finishes. Evaluations outside of a profiled report are passed straight through.
+ */
+public class ReportEvaluationProfiler implements MethodInterceptor {
+
+	protected static final Log log = LogFactory.getLog(ReportEvaluationProfiler.class);
+
+	/**
+	 * Guards against unbounded memory use by pathological reports
+	 */
+	private static final int MAX_ENTRIES = 20000;
+
+	private static final int MAX_NAME_LENGTH = 255;
+
+	private static final ThreadLocal<ProfiledRun> currentRun = new ThreadLocal<ProfiledRun>();
+
+	/**
+	 * @see MethodInterceptor#invoke(org.aopalliance.intercept.MethodInvocation)
+	 */
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		Object[] args = invocation.getArguments();
+		if (!"evaluate".equals(invocation.getMethod().getName()) || args.length != 2 || !(args[1] instanceof EvaluationContext)) {
+			return invocation.proceed();
+		}
+
+		Definition definition = getDefinition(args[0]);
+		if (definition == null) {
+			return invocation.proceed();
+		}
+
+		ProfiledRun run = currentRun.get();
+		if (run != null) {
+			return run.profile(invocation, definition, (EvaluationContext) args[1]);
+		}
+
+		// Only whole report evaluations start a run
+		if (!(definition instanceof ReportDefinition) || !isEnabled()) {
+			return invocation.proceed();
+		}
+
+		run = new ProfiledRun((ReportDefinition) definition);
+		currentRun.set(run);
+		try {
+			return run.profile(invocation, definition, (EvaluationContext) args[1]);
+		}
+		finally {
+			currentRun.remove();
+			save(run);
+		}
+	}
+
+	/**
+	 * Checks whether profiling is enabled. Only called when a report evaluation starts
+	 * @return true if enabled
+	 */
+	protected boolean isEnabled() {
+		String value = Context.getAdministrationService().getGlobalProperty(EmrConstants.GP_REPORT_PROFILER_ENABLED);
+		return "true".equalsIgnoreCase(StringUtils.trim(value));
+	}
+
+	/**
+	 * Saves the entries of a finished run and deletes those older than the report request retention period. Failures
+	 * are logged so that they never affect the report itself
+	 * @param run the run
+	 */
+	protected void save(ProfiledRun run) {
+		try {
+			KenyaEmrService service = Context.getService(KenyaEmrService.class);
+			service.saveReportProfileEntries(run.entries);
+
+			Calendar cutoff = Calendar.getInstance();
+			cutoff.add(Calendar.DATE, -getRetentionDays());
+			service.purgeReportProfileEntries(cutoff.getTime());
+		}
+		catch (Exception ex) {
+			log.warn("Unable to save report evaluation profile for " + run.reportName, ex);
+		}
+	}
+
+	/**
+	 * Profiles are kept for as long as report requests
+	 * @return the number of days
+	 */
+	protected int getRetentionDays() {
+		String value = Context.getAdministrationService().getGlobalProperty(EmrConstants.GP_REPORT_REQUEST_RETENTION_DAYS);
+		try {
+			return StringUtils.isNotBlank(value) ? Integer.parseInt(value.trim()) : EmrConstants.DEFAULT_REPORT_REQUEST_RETENTION_DAYS;
+		}
+		catch (NumberFormatException ex) {
+			return EmrConstants.DEFAULT_REPORT_REQUEST_RETENTION_DAYS;
+		}
+	}
+
+	/**
+	 * Gets the definition being evaluated from the first argument of an evaluate method
+	 * @param arg the argument
+	 * @return the definition or null
+	 */
+	protected static Definition getDefinition(Object arg) {
+		if (arg instanceof Mapped) {
+			arg = ((Mapped) arg).getParameterizable();
+		}
+		return arg instanceof Definition ? (Definition) arg : null;
+	}
+
+	/**
+	 * Gets the short type name of a definition
+	 * @param definition the definition
+	 * @return the type
+	 */
+	protected static String getDefinitionType(Definition definition) {
+		if (definition instanceof ReportDefinition) {
+			return "report";
+		} else if (definition instanceof DataSetDefinition) {
+			return "dataSet";
+		} else if (definition instanceof Indicator) {
+			return "indicator";
+		} else if (definition instanceof CohortDefinition) {
+			return "cohort";
+		} else if (definition instanceof PersonDataDefinition) {
+			return "personData";
+		} else if (definition instanceof PatientDataDefinition) {
+			return "patientData";
+		}
+		return "other";
+	}
+
+	/**
+	 * Gets the SQL of definitions which carry their query
+	 * @param definition the definition
+	 * @return the SQL or null
+	 */
+	protected static String getSql(Definition definition) {
+		if (definition instanceof SqlCohortDefinition) {
+			return ((SqlCohortDefinition) definition).getQuery();
+		} else if (definition instanceof SqlDataSetDefinition) {
+			return ((SqlDataSetDefinition) definition).getSqlQuery();
+		}
+		return null;
+	}
+
+	/**
+	 * Counts the rows of an evaluation result
+	 * @param result the result
+	 * @return the row count or null if the result has no rows
+	 */
+	protected static Integer getRowCount(Object result) {
+		if (result instanceof EvaluatedCohort) {
+			return ((EvaluatedCohort) result).size();
+		} else if (result instanceof EvaluatedPersonData) {
+			return ((EvaluatedPersonData) result).getData().size();
+		} else if (result instanceof EvaluatedPatientData) {
+			return ((EvaluatedPatientData) result).getData().size();
+		} else if (result instanceof DataSet) {
+			int rows = 0;
+			for (DataSetRow row : (DataSet) result) {
+				rows++;
+			}
+			return rows;
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether a result came from the evaluation context cache. A hit leaves the cache unchanged and returns
+	 * an object which is already cached.
+	 * @param cache the cache
+	 * @param sizeBefore the size of the cache before evaluation
+	 * @param result the result
+	 * @return true if the result was a cache hit
+	 */
+	protected static boolean isCacheHit(Map<String, Object> cache, int sizeBefore, Object result) {
+		if (cache == null || result == null || cache.size() != sizeBefore) {
+			return false;
+		}
+		for (Object cached : cache.values()) {
+			if (cached == result) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The state of a single profiled report evaluation
+	 */
+	protected static class ProfiledRun {
+
+		private final String runUuid = UUID.randomUUID().toString();
+
+		private final String reportUuid;
+
+		private final String reportName;
+
+		private final List<ReportProfileEntry> entries = new ArrayList<ReportProfileEntry>();
+
+		private final Deque<Frame> stack = new ArrayDeque<Frame>();
+
+		private boolean truncated = false;
+
+		public ProfiledRun(ReportDefinition report) {
+			this.reportUuid = report.getUuid();
+			this.reportName = StringUtils.abbreviate(report.getName(), MAX_NAME_LENGTH);
+		}
+
+		/**
+		 * Evaluates a definition, recording its timing
+		 * @param invocation the evaluate invocation
+		 * @param definition the definition
+		 * @param context the evaluation context
+		 * @return the result
+		 * @throws Throwable if evaluation fails
+		 */
+		public Object profile(MethodInvocation invocation, Definition definition, EvaluationContext context) throws Throwable {
+			// A mapped evaluation delegates to the unmapped one, which is the same definition so only record it once
+			Frame parent = stack.peek();
+			if (parent != null && parent.definition == definition) {
+				return invocation.proceed();
+			}
+
+			Frame frame = new Frame(definition);
+			stack.push(frame);
+
+			Map<String, Object> cache = context.getCache();
+			int cacheSizeBefore = cache != null ? cache.size() : 0;
+			Object result = null;
+			long start = System.nanoTime();
+			try {
+				result = invocation.proceed();
+				return result;
+			}
+			finally {
+				long elapsed = System.nanoTime() - start;
+				stack.pop();
+				if (parent != null) {
+					parent.childNanos += elapsed;
+				}
+
+				// The report itself finishes last so is always recorded
+				if (entries.size() < MAX_ENTRIES || stack.isEmpty()) {
+					ReportProfileEntry entry = new ReportProfileEntry();
+					entry.setRunUuid(runUuid);
+					entry.setReportUuid(reportUuid);
+					entry.setReportName(reportName);
+					entry.setDepth(stack.size());
+					entry.setDefinitionType(getDefinitionType(definition));
+					entry.setDefinitionUuid(definition.getUuid());
+					entry.setDefinitionName(StringUtils.abbreviate(definition.getName(), MAX_NAME_LENGTH));
+					entry.setDefinitionClass(definition.getClass().getName());
+					entry.setElapsedMs(elapsed / 1000000);
+					entry.setSelfMs((elapsed - frame.childNanos) / 1000000);
+					entry.setRowCount(getRowCount(result));
+					entry.setSqlText(getSql(definition));
+					entry.setCacheHit(isCacheHit(cache, cacheSizeBefore, result));
+					entry.setDateCreated(new Date());
+					entries.add(entry);
+				}
+				else if (!truncated) {
+					truncated = true;
+					log.warn("Report evaluation profile for " + reportName + " exceeded " + MAX_ENTRIES + " entries, further entries are not recorded");
+				}
+			}
+		}
+	}
+
+	/**
+	 * A definition being evaluated
+	 */
+	protected static class Frame {
+
+		private final Definition definition;
+
+		private long childNanos = 0;
+
+		public Frame(Definition definition) {
+			this.definition = definition;
+		}
+	}
+}
@@ -24,7 +24,6 @@ import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
 import org.openmrs.module.appointments.service.AppointmentsService;
 import org.openmrs.module.appointments.util.DateUtil;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
-import org.springframework.aop.AfterReturningAdvice;
 import org.openmrs.module.appointments.service.AppointmentServiceDefinitionService;
 import org.openmrs.module.kenyaemr.util.EmrUtils;
 import org.openmrs.module.kenyaemr.metadata.MchMetadata;
@@ -32,7 +31,6 @@ import org.openmrs.module.kenyaemr.metadata.TbMetadata;
 import org.openmrs.api.PatientService;
 import org.openmrs.Patient;
 
-import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
@@ -42,9 +40,9 @@ import java.util.Map;
 
 /**
  * Synchronizes appointments documented in HTML forms with Bahmni appointments module
- * Invoked after saving HFE forms
+ * Queued after saving HFE forms and processed by {@link EncounterEventDispatcher}
  */
-public class SyncHFEAppointmentsWithBahmniModule implements AfterReturningAdvice {
+public class SyncHFEAppointmentsWithBahmniModule implements EncounterEventProcessor {
 
     private Log log = LogFactory.getLog(this.getClass());
 
@@ -92,13 +90,16 @@ public class SyncHFEAppointmentsWithBahmniModule implements AfterReturningAdvice
     Date refillApptDate = null;
     Integer appointmentReason = null;
 
+    public static final List<String> APPOINTMENT_FORMS = Arrays.asList(HivMetadata._Form.MOH_257_VISIT_SUMMARY, HivMetadata._Form.HIV_GREEN_CARD, MchMetadata._Form.MCHMS_ANTENATAL_VISIT, MchMetadata._Form.MCHCS_FOLLOW_UP, MchMetadata._Form.MCHMS_POSTNATAL_VISIT,  PREP_FOLLOWUP_FORM, PREP_INITIAL_FORM, PREP_MONTHLY_REFILL_FORM, KP_CLINICAL_VISIT_FORM, TbMetadata._Form.TB_FOLLOW_UP, HivMetadata._Form.FAST_TRACK );
+
     @Override
-    public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
-        if (method.getName().equals("saveEncounter")) { // handles both create and edit
-            Encounter enc = (Encounter) args[0];
-            List<String> appointmentForms = Arrays.asList(HivMetadata._Form.MOH_257_VISIT_SUMMARY, HivMetadata._Form.HIV_GREEN_CARD, MchMetadata._Form.MCHMS_ANTENATAL_VISIT, MchMetadata._Form.MCHCS_FOLLOW_UP, MchMetadata._Form.MCHMS_POSTNATAL_VISIT,  PREP_FOLLOWUP_FORM, PREP_INITIAL_FORM, PREP_MONTHLY_REFILL_FORM, KP_CLINICAL_VISIT_FORM, TbMetadata._Form.TB_FOLLOW_UP, HivMetadata._Form.FAST_TRACK );
+    public boolean accepts(Encounter enc) {
+        return enc.getForm() != null && APPOINTMENT_FORMS.contains(enc.getForm().getUuid());
+    }
 
-            if (enc != null && enc.getForm() != null && appointmentForms.contains(enc.getForm().getUuid())) {
+    @Override
+    public void process(Encounter enc) throws Exception { // handles both create and edit
+            if (enc != null && accepts(enc)) {
                 Appointment editAppointment = appointmentsService.getAppointmentByUuid(enc.getUuid());
 
                 if(enc.getVoided() == true && editAppointment != null && enc.getForm() != null){
@@ -152,14 +153,13 @@ public class SyncHFEAppointmentsWithBahmniModule implements AfterReturningAdvice
                     processMCHEncounter(enc);
                 }
             }
-        }
 
     }
 
     /**
      * Edit HIV appointments ie HIV consultation, Drug refill and lab
      */
-    private void processEditHivFollowupEncounter(Encounter enc) throws Throwable {
+    private void processEditHivFollowupEncounter(Encounter enc) throws Exception {
         // Get appointment obs
         Appointment hivFollowUpAppointment = appointmentsService.getAppointmentByUuid(enc.getUuid());
         Appointment drugRefillAppointment = hivFollowUpAppointment.getRelatedAppointment();
@@ -266,7 +266,7 @@ public class SyncHFEAppointmentsWithBahmniModule implements AfterReturningAdvice
     /**
      * Create HIV appointments ie HIV consultation, Drug refill and lab
      */
-    private void processCreateHivFollowupEncounter(Encounter enc) throws Throwable {
+    private void processCreateHivFollowupEncounter(Encounter enc) throws Exception {
         Appointment nextAppointment = new Appointment();
 
         // Get appointment obs
@@ -373,7 +373,7 @@ public class SyncHFEAppointmentsWithBahmniModule implements AfterReturningAdvice
      * Create and edit PREP or TB or KP appointments
      * Create MCH appointments
      */
-    private void processProgramAppointments(Encounter enc) throws Throwable {
+    private void processProgramAppointments(Encounter enc) throws Exception {
         // MCH or PREP or TB or KP appointment
         List<Obs> obs = obsService.getObservations(
                 Arrays.asList(personService.getPerson(enc.getPatient().getPersonId())),
@@ -445,7 +445,7 @@ public class SyncHFEAppointmentsWithBahmniModule implements AfterReturningAdvice
     /**
      * Edit the mother and baby appointments which are related
      */
-    private void processMCHEncounter(Encounter enc) throws Throwable {
+    private void processMCHEncounter(Encounter enc) throws Exception {
         //MCH appointments
         List<Obs> obs = obsService.getObservations(
                 Arrays.asList(personService.getPerson(enc.getPatient().getPersonId())),
@@ -9,14 +9,34 @@
  */
 package org.openmrs.module.kenyaemr.api;
 
+import org.openmrs.CareSetting;
+import org.openmrs.Concept;
+import org.openmrs.DrugOrder;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
 import org.openmrs.Location;
+import org.openmrs.Obs;
 import org.openmrs.Patient;
+import org.openmrs.PersonAttributeType;
+import org.openmrs.Program;
 import org.openmrs.Visit;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.OpenmrsService;
+import org.openmrs.module.kenyaemr.model.AppointmentHistoryEntry;
+import org.openmrs.module.kenyaemr.model.DataQueue;
+import org.openmrs.module.kenyaemr.model.DataQueueErrorMessage;
+import org.openmrs.module.kenyaemr.model.DataQueueSummary;
+import org.openmrs.module.kenyaemr.model.EncounterEvent;
+import org.openmrs.module.kenyaemr.model.EncounterSummary;
+import org.openmrs.module.kenyaemr.model.HivTestStatus;
+import org.openmrs.module.kenyaemr.model.PatientValidationIssue;
+import org.openmrs.module.kenyaemr.model.ReportProfileEntry;
+import org.openmrs.module.kenyaemr.model.VisitSummary;
 import org.openmrs.module.webservices.rest.SimpleObject;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -83,6 +103,137 @@ public interface KenyaEmrService extends OpenmrsService {
 	@Transactional(readOnly = true)
 	List<Visit> getVisitsByPatientAndDay(Patient patient, Date date);
 
+	/**
+	 * Gets the patients who had a visit which started in the given period
+	 * @param fromDate the start of the period
+	 * @param toDate the end of the period
+	 * @return the patient ids
+	 */
+	@Transactional(readOnly = true)
+	List<Integer> getPatientsWithVisitsStarted(Date fromDate, Date toDate);
+
+	/**
+	 * Gets the patients who have a return visit date in the given period
+	 * @param fromDate the start of the period
+	 * @param toDate the end of the period
+	 * @return the patient ids
+	 */
+	@Transactional(readOnly = true)
+	List<Integer> getPatientsScheduled(Date fromDate, Date toDate);
+
+	/**
+	 * Sorts patients by their preferred names, without loading the patients
+	 * @param patientIds the patient ids
+	 * @return the patient ids, ordered by family, given and middle name. Patients without a name come last
+	 */
+	@Transactional(readOnly = true)
+	List<Integer> sortPatientsByName(Collection<Integer> patientIds);
+
+	/**
+	 * Gets the visits of the given patients in the given period, grouped by patient
+	 * @param patientIds the patient ids
+	 * @param fromDate the start of the period, which is required
+	 * @param toDate the end of the period, which is required
+	 * @param startedInPeriod whether to only include visits which started in the period, rather than all visits which were
+	 *                        active at some time during it
+	 * @return the visits by patient id, ordered by start date. Patients without visits are not included
+	 */
+	@Transactional(readOnly = true)
+	Map<Integer, List<Visit>> getVisitsByPatient(Collection<Integer> patientIds, Date fromDate, Date toDate, boolean startedInPeriod);
+
+	/**
+	 * Gets the ids and dates of the visits of the given patients, grouped by patient. Unlike
+	 * {@link #getVisitsByPatient(java.util.Collection, java.util.Date, java.util.Date, boolean)} visits aren't loaded,
+	 * so this is suitable for large cohorts
+	 * @param patientIds the patient ids
+	 * @param fromDate the start of the period, or null for no lower limit
+	 * @param toDate the end of the period, or null for no upper limit
+	 * @param startedInPeriod whether to only include visits which started in the period, rather than all visits which were
+	 *                        active at some time during it
+	 * @return the visits by patient id, ordered by start date. Patients without visits are not included
+	 */
+	@Transactional(readOnly = true)
+	Map<Integer, List<VisitSummary>> getVisitSummariesByPatient(Collection<Integer> patientIds, Date fromDate, Date toDate, boolean startedInPeriod);
+
+	/**
+	 * Gets the latest HIV tests and linkage of the given patients, from the HTS and MCH forms
+	 * @param patientIds the patient ids
+	 * @return the test statuses by patient id. Patients who have never been tested or linked are not included
+	 */
+	@Transactional(readOnly = true)
+	Map<Integer, HivTestStatus> getHivTestStatuses(Collection<Integer> patientIds);
+
+	/**
+	 * Gets the last encounter of the given type and forms for each of the given patients
+	 * @param patientIds the patient ids
+	 * @param type the encounter type
+	 * @param forms the forms, or null for encounters of any form
+	 * @return the last encounters by patient id. Patients without such an encounter are not included
+	 */
+	@Transactional(readOnly = true)
+	Map<Integer, EncounterSummary> getLastEncounterSummaries(Collection<Integer> patientIds, EncounterType type, Collection<Form> forms);
+
+	/**
+	 * Gets the obs for the given questions recorded in the given encounters
+	 * @param encounterIds the encounter ids
+	 * @param questions the questions
+	 * @return the obs by encounter id. Encounters without such obs are not included
+	 */
+	@Transactional(readOnly = true)
+	Map<Integer, List<Obs>> getObsByEncounter(Collection<Integer> encounterIds, Collection<Concept> questions);
+
+	/**
+	 * Gets the non-voided drug orders of the given patients, grouped by patient
+	 * @param patientIds the patient ids
+	 * @param careSetting the care setting, or null for orders in any care setting. Discontinuation orders are only
+	 *                    included when this is null
+	 * @param activeOnly whether to only include orders which are active now. Discontinuation orders are never active
+	 * @return the drug orders by patient id, most recently activated first. Patients without drug orders are not included
+	 */
+	@Transactional(readOnly = true)
+	Map<Integer, List<DrugOrder>> getDrugOrdersByPatient(Collection<Integer> patientIds, CareSetting careSetting, boolean activeOnly);
+
+	/**
+	 * Gets a patient's latest appointments, i.e. the return visit dates recorded on their most recent encounters of a
+	 * form, and whether each was honoured by another encounter of that form on the appointment date
+	 * @param patient the patient
+	 * @param form the form, e.g. the HIV green card
+	 * @param limit the maximum number of appointments
+	 * @return the appointments, most recent encounter first
+	 */
+	@Transactional(readOnly = true)
+	List<AppointmentHistoryEntry> getAppointmentHistory(Patient patient, Form form, int limit);
+
+	/**
+	 * Counts the patients with each value of a person attribute, e.g. each NUPI verification status
+	 * @param attributeType the attribute type
+	 * @param program if not null, only patients enrolled in this program are counted
+	 * @return the number of patients by value, trimmed and in lower case
+	 */
+	@Transactional(readOnly = true)
+	Map<String, Integer> getPatientCountsByAttributeValue(PersonAttributeType attributeType, Program program);
+
+	/**
+	 * Gets a page of the patients with a person attribute set to any of the given values, ignoring case
+	 * @param attributeType the attribute type
+	 * @param values the values
+	 * @param startIndex the index of the first patient or null
+	 * @param length the maximum number of patients or null for all
+	 * @return the patient ids, ordered by id
+	 */
+	@Transactional(readOnly = true)
+	List<Integer> getPatientsByAttributeValues(PersonAttributeType attributeType, Collection<String> values, Integer startIndex, Integer length);
+
+	/**
+	 * Sets the value of the attributes of the given type on the given patients. Patients without the attribute have
+	 * one added, unless the value is blank.
+	 * @param attributeType the attribute type
+	 * @param patientIds the patient ids
+	 * @param value the new value
+	 * @return the number of attributes updated or added
+	 */
+	int updatePersonAttributeValues(PersonAttributeType attributeType, Collection<Integer> patientIds, String value);
+
 	/**
 	 * Setup the medical record number identifier source
 	 * @param startFrom the base identifier to start from
@@ -107,4 +258,157 @@ public interface KenyaEmrService extends OpenmrsService {
 	 */
 	@Authorized
 	public List<SimpleObject> search(String sqlQuery, Map<String, String[]> params);
-}
\ No newline at end of file
+
+	/**
+	 * Queues post-save work for an encounter. Runs in the caller's transaction if there is one so the event is only
+	 * visible once the encounter itself is committed
+	 * @param idempotencyKey the key identifying this unit of work
+	 * @param processor the processor class name
+	 * @param encounterUuid the encounter uuid
+	 * @return the id of the queued event or null if an event with the same key already exists
+	 */
+	Integer enqueueEncounterEvent(String idempotencyKey, String processor, String encounterUuid);
+
+	/**
+	 * Gets a queued encounter event
+	 * @param id the event id
+	 * @return the event
+	 */
+	@Transactional(readOnly = true)
+	EncounterEvent getEncounterEvent(Integer id);
+
+	/**
+	 * Gets the encounter events which are pending, failed with retries remaining, or abandoned mid-processing
+	 * @param maxAttempts the maximum number of attempts per event
+	 * @param staleBefore processing events last touched before this date are considered abandoned
+	 * @param limit the maximum number of events to return
+	 * @return the events, oldest first
+	 */
+	@Transactional(readOnly = true)
+	List<EncounterEvent> getQueuedEncounterEvents(int maxAttempts, Date staleBefore, int limit);
+
+	/**
+	 * Marks an encounter event as being processed
+	 * @param id the event id
+	 * @param staleBefore processing events last touched before this date can be re-claimed
+	 * @return true if the caller now owns the event
+	 */
+	boolean claimEncounterEvent(Integer id, Date staleBefore);
+
+	/**
+	 * Records the outcome of processing an encounter event
+	 * @param event the event
+	 */
+	void updateEncounterEvent(EncounterEvent event);
+
+	/**
+	 * Saves the timings of a profiled report run. Uses its own transaction so that timings are kept even if the
+	 * report evaluation fails
+	 * @param entries the entries
+	 */
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	void saveReportProfileEntries(List<ReportProfileEntry> entries);
+
+	/**
+	 * Gets the profiled runs of a report, i.e. the top level entry of each run
+	 * @param reportUuid the report definition uuid
+	 * @param limit the maximum number of runs to return
+	 * @return the runs, most recent first
+	 */
+	@Transactional(readOnly = true)
+	List<ReportProfileEntry> getReportProfileRuns(String reportUuid, int limit);
+
+	/**
+	 * Gets all entries of a profiled report run
+	 * @param runUuid the run uuid
+	 * @return the entries in the order their evaluations finished
+	 */
+	@Transactional(readOnly = true)
+	List<ReportProfileEntry> getReportProfileEntries(String runUuid);
+
+	/**
+	 * Deletes the timings of report runs profiled before the given date
+	 * @param before the date
+	 * @return the number of entries deleted
+	 */
+	int purgeReportProfileEntries(Date before);
+
+	/**
+	 * Gets the next chunk of non-voided patient ids, so that all patients can be processed without loading them at once
+	 * @param afterId only ids greater than this are returned, or null to start from the first patient
+	 * @param limit the maximum number of ids to return
+	 * @return the ids in ascending order
+	 */
+	@Transactional(readOnly = true)
+	List<Integer> getPatientIds(Integer afterId, int limit);
+
+	/**
+	 * Gets the number of non-voided patients
+	 * @return the number of patients
+	 */
+	@Transactional(readOnly = true)
+	long getPatientCount();
+
+	/**
+	 * Saves the issues found by a patient validation run
+	 * @param issues the issues
+	 */
+	void savePatientValidationIssues(List<PatientValidationIssue> issues);
+
+	/**
+	 * Gets a page of the issues found by a patient validation run
+	 * @param runUuid the run uuid
+	 * @param startIndex the index of the first issue
+	 * @param length the maximum number of issues to return
+	 * @return the issues, ordered by patient
+	 */
+	@Transactional(readOnly = true)
+	List<PatientValidationIssue> getPatientValidationIssues(String runUuid, int startIndex, int length);
+
+	/**
+	 * Gets the number of issues found by a patient validation run
+	 * @param runUuid the run uuid
+	 * @return the number of issues
+	 */
+	@Transactional(readOnly = true)
+	long getPatientValidationIssueCount(String runUuid);
+
+	/**
+	 * Gets the latest patient validation run which found issues, e.g. to show its results after a restart
+	 * @return the run uuid or null if there are no saved issues
+	 */
+	@Transactional(readOnly = true)
+	String getLatestPatientValidationRunUuid();
+
+	/**
+	 * Deletes the issues of all patient validation runs except the given one
+	 * @param keepRunUuid the run to keep
+	 * @return the number of issues deleted
+	 */
+	int purgePatientValidationIssues(String keepRunUuid);
+
+	/**
+	 * Deletes the issues of a patient validation run, e.g. one which was cancelled before it completed
+	 * @param runUuid the run uuid
+	 * @return the number of issues deleted
+	 */
+	int deletePatientValidationRun(String runUuid);
+
+	/**
+	 * Gets the record counts of a data queue
+	 * @param queue the queue
+	 * @return the counts
+	 */
+	@Transactional(readOnly = true)
+	DataQueueSummary getDataQueueSummary(DataQueue queue);
+
+	/**
+	 * Gets a page of the error messages of a data queue, newest first
+	 * @param queue the queue
+	 * @param beforeId only messages with an id less than this are returned, or null to start from the newest message
+	 * @param limit the maximum number of messages
+	 * @return the messages
+	 */
+	@Transactional(readOnly = true)
+	List<DataQueueErrorMessage> getDataQueueErrorMessages(DataQueue queue, Integer beforeId, int limit);
+}
@@ -9,6 +9,26 @@
  */
 package org.openmrs.module.kenyaemr.api.db;
 
+import org.openmrs.CareSetting;
+import org.openmrs.Concept;
+import org.openmrs.DrugOrder;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.PersonAttributeType;
+import org.openmrs.Program;
+import org.openmrs.Visit;
+import org.openmrs.module.kenyaemr.model.DataQueue;
+import org.openmrs.module.kenyaemr.model.DataQueueErrorMessage;
+import org.openmrs.module.kenyaemr.model.DataQueueSummary;
+import org.openmrs.module.kenyaemr.model.EncounterEvent;
+import org.openmrs.module.kenyaemr.model.PatientValidationIssue;
+import org.openmrs.module.kenyaemr.model.ReportProfileEntry;
+import org.openmrs.module.kenyaemr.model.VisitSummary;
+
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -18,4 +38,221 @@ import java.util.Map;
 public interface KenyaEmrDAO {
 	public List<Object> executeSqlQuery(String query, Map<String, Object> substitutions);
 	public List<Object> executeHqlQuery(String query, Map<String, Object> substitutions);
-}
\ No newline at end of file
+
+	public List<Integer> getPatientsWithVisitsStarted(Date fromDate, Date toDate);
+
+	public List<Integer> getPatientsWithObsDatetimeValue(Concept question, Date fromDate, Date toDate);
+
+	/**
+	 * Gets the non-voided visits of the given patients in a period. Both ends of the period are inclusive and both are
+	 * required, as a null date matches no visits
+	 * @param patientIds the patient ids
+	 * @param fromDate the start of the period
+	 * @param toDate the end of the period
+	 * @param startedInPeriod if true only visits which started in the period are returned. Otherwise visits which
+	 *                        started by the end of the period and hadn't stopped before its start are returned, which
+	 *                        includes active visits
+	 * @return the visits, ordered by start date
+	 */
+	public List<Visit> getVisits(Collection<Integer> patientIds, Date fromDate, Date toDate, boolean startedInPeriod);
+
+	/**
+	 * Gets the ids and dates of the non-voided visits of the given patients in a period, without loading the visits.
+	 * The period is the same as for {@link #getVisits(Collection, Date, Date, boolean)}, except that either end may
+	 * be null to leave it open
+	 * @param patientIds the patient ids
+	 * @param fromDate the start of the period, or null for no lower limit
+	 * @param toDate the end of the period, or null for no upper limit
+	 * @param startedInPeriod if true only visits which started in the period are returned. Otherwise visits which
+	 *                        started by the end of the period and hadn't stopped before its start are returned. This
+	 *                        makes no difference when fromDate is null
+	 * @return the visits, ordered by start date
+	 */
+	public List<VisitSummary> getVisitSummaries(Collection<Integer> patientIds, Date fromDate, Date toDate, boolean startedInPeriod);
+
+	/**
+	 * Gets the non-voided encounters of the given patients, type and forms
+	 * @param patientIds the patient ids
+	 * @param type the encounter type
+	 * @param forms the forms, or null for encounters of any form
+	 * @return the encounter id, patient id, encounter date and form id of each encounter, ordered by encounter date
+	 */
+	public List<Object[]> getEncounterSummaries(Collection<Integer> patientIds, EncounterType type, Collection<Form> forms);
+
+	/**
+	 * Gets the non-voided names of the given persons
+	 * @param personIds the person ids
+	 * @return the person id, family name, given name and middle name of each name, preferred names first
+	 */
+	public List<Object[]> getPersonNameSummaries(Collection<Integer> personIds);
+
+	/**
+	 * Gets the non-voided obs for the given questions in the given encounters
+	 * @param encounterIds the encounter ids
+	 * @param questions the questions
+	 * @return the obs
+	 */
+	public List<Obs> getObsForEncounters(Collection<Integer> encounterIds, Collection<Concept> questions);
+
+	/**
+	 * Gets the obs for the given questions in the given encounters
+	 * @param encounterIds the encounter ids
+	 * @param questions the questions
+	 * @return the encounter id, question concept id and coded answer concept id (or null) of each obs
+	 */
+	public List<Object[]> getObsCodedValues(Collection<Integer> encounterIds, Collection<Concept> questions);
+
+	/**
+	 * Gets a patient's most recent obs of a question recorded on encounters of a form
+	 * @param patient the patient
+	 * @param question the question
+	 * @param form the form
+	 * @param limit the maximum number of obs
+	 * @return the obs, most recent encounter first
+	 */
+	public List<Obs> getLatestObsOnForm(Patient patient, Concept question, Form form, int limit);
+
+	/**
+	 * Gets the non-voided drug orders of the given patients
+	 * @param patientIds the patient ids
+	 * @param careSetting the care setting, or null for orders in any care setting. Discontinuation orders are only
+	 *                    included when this is null
+	 * @param activeOnly whether to only include orders which are active now. Discontinuation orders are never active
+	 * @return the drug orders, most recently activated first
+	 */
+	public List<DrugOrder> getDrugOrders(Collection<Integer> patientIds, CareSetting careSetting, boolean activeOnly);
+
+	/**
+	 * Gets the dates of a patient's encounters of a form
+	 * @param patient the patient
+	 * @param form the form
+	 * @param fromDate only encounters on or after this date are included
+	 * @return the encounter dates
+	 */
+	public List<Date> getEncounterDatetimes(Patient patient, Form form, Date fromDate);
+
+	/**
+	 * Counts the patients with each value of a person attribute
+	 * @param attributeType the attribute type
+	 * @param program if not null, only patients enrolled in this program are counted
+	 * @return rows of the trimmed lower case value and the number of patients
+	 */
+	public List<Object[]> getPatientCountsByAttributeValue(PersonAttributeType attributeType, Program program);
+
+	/**
+	 * Gets the patients with a person attribute set to one of the given values
+	 * @param attributeType the attribute type
+	 * @param values the lower case values
+	 * @param startIndex the index of the first patient or null
+	 * @param length the maximum number of patients or null for all
+	 * @return the patient ids, ordered by id
+	 */
+	public List<Integer> getPatientsByAttributeValues(PersonAttributeType attributeType, Collection<String> values, Integer startIndex, Integer length);
+
+	/**
+	 * Sets the value of the existing attributes of the given type on the given persons
+	 * @param attributeType the attribute type
+	 * @param personIds the person ids
+	 * @param value the new value
+	 * @return the number of attributes updated
+	 */
+	public int updatePersonAttributeValues(PersonAttributeType attributeType, Collection<Integer> personIds, String value);
+
+	/**
+	 * Gets the persons who don't have an attribute of the given type
+	 * @param attributeType the attribute type
+	 * @param personIds the person ids
+	 * @return the ids of those persons without the attribute, ordered by id
+	 */
+	public List<Integer> getPersonsWithoutAttribute(PersonAttributeType attributeType, Collection<Integer> personIds);
+
+	/**
+	 * Queues an encounter event unless one with the same idempotency key already exists
+	 * @param idempotencyKey the idempotency key
+	 * @param processor the processor class name
+	 * @param encounterUuid the encounter uuid
+	 * @return the id of the queued event or null if it was already queued
+	 */
+	public Integer enqueueEncounterEvent(String idempotencyKey, String processor, String encounterUuid);
+
+	public EncounterEvent getEncounterEvent(Integer id);
+
+	/**
+	 * Gets events which are waiting to be (re)processed, oldest first
+	 * @param maxAttempts events with this many attempts are left in the failure log
+	 * @param staleBefore events still marked as processing since before this date are considered abandoned
+	 * @param limit the maximum number of events
+	 * @return the events
+	 */
+	public List<EncounterEvent> getQueuedEncounterEvents(int maxAttempts, Date staleBefore, int limit);
+
+	/**
+	 * Atomically marks an event as being processed so that only one worker runs it
+	 * @param id the event id
+	 * @param staleBefore abandoned events processing since before this date can be re-claimed
+	 * @return true if the event was claimed
+	 */
+	public boolean claimEncounterEvent(Integer id, Date staleBefore);
+
+	public void updateEncounterEvent(EncounterEvent event);
+
+	public void saveReportProfileEntries(List<ReportProfileEntry> entries);
+
+	public List<ReportProfileEntry> getReportProfileRuns(String reportUuid, int limit);
+
+	public List<ReportProfileEntry> getReportProfileEntries(String runUuid);
+
+	public int purgeReportProfileEntries(Date before);
+
+	/**
+	 * Gets the next chunk of non-voided patient ids
+	 * @param afterId only ids greater than this are returned, or null to start from the first patient
+	 * @param limit the maximum number of ids
+	 * @return the ids in ascending order
+	 */
+	public List<Integer> getPatientIds(Integer afterId, int limit);
+
+	public long getPatientCount();
+
+	public void savePatientValidationIssues(List<PatientValidationIssue> issues);
+
+	public List<PatientValidationIssue> getPatientValidationIssues(String runUuid, int startIndex, int length);
+
+	public long getPatientValidationIssueCount(String runUuid);
+
+	/**
+	 * Gets the run which saved the most recent patient validation issue
+	 * @return the run uuid or null if there are no issues
+	 */
+	public String getLatestPatientValidationRunUuid();
+
+	/**
+	 * Deletes the issues of every run except the given one
+	 * @param keepRunUuid the run to keep
+	 * @return the number of issues deleted
+	 */
+	public int purgePatientValidationIssues(String keepRunUuid);
+
+	/**
+	 * Deletes the issues of a run
+	 * @param runUuid the run uuid
+	 * @return the number of issues deleted
+	 */
+	public int deletePatientValidationRun(String runUuid);
+
+	/**
+	 * Counts the error and queue records of a data queue
+	 * @param queue the queue
+	 * @return the counts
+	 */
+	public DataQueueSummary getDataQueueSummary(DataQueue queue);
+
+	/**
+	 * Gets a page of the error messages of a data queue, paging by id so that later pages don't get slower
+	 * @param queue the queue
+	 * @param beforeId only messages with an id less than this are returned, or null to start from the newest message
+	 * @param limit the maximum number of messages
+	 * @return the messages in descending id order
+	 */
+	public List<DataQueueErrorMessage> getDataQueueErrorMessages(DataQueue queue, Integer beforeId, int limit);
+}
@@ -13,9 +13,37 @@ import org.hibernate.Query;
 import org.hibernate.SQLQuery;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.BooleanType;
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.LongType;
+import org.hibernate.type.StringType;
+import org.openmrs.CareSetting;
 import org.openmrs.Cohort;
+import org.openmrs.Concept;
+import org.openmrs.DrugOrder;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
+import org.openmrs.Obs;
+import org.openmrs.Order;
+import org.openmrs.OrderType;
+import org.openmrs.Patient;
+import org.openmrs.PersonAttribute;
+import org.openmrs.PersonAttributeType;
+import org.openmrs.Program;
+import org.openmrs.Visit;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.kenyaemr.api.db.KenyaEmrDAO;
+import org.openmrs.module.kenyaemr.model.DataQueue;
+import org.openmrs.module.kenyaemr.model.DataQueueErrorMessage;
+import org.openmrs.module.kenyaemr.model.DataQueueSummary;
+import org.openmrs.module.kenyaemr.model.EncounterEvent;
+import org.openmrs.module.kenyaemr.model.PatientValidationIssue;
+import org.openmrs.module.kenyaemr.model.ReportProfileEntry;
+import org.openmrs.module.kenyaemr.model.VisitSummary;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -82,6 +110,529 @@ public class HibernateKenyaEmrDAO implements KenyaEmrDAO {
 		return q.list();
 	}
 
+	@Override
+	public List<Integer> getPatientsWithVisitsStarted(Date fromDate, Date toDate) {
+		return getCurrentSession().createQuery("select distinct v.patient.patientId from Visit v " +
+				"where v.voided = false and v.patient.voided = false and v.startDatetime between :fromDate and :toDate")
+				.setTimestamp("fromDate", fromDate)
+				.setTimestamp("toDate", toDate)
+				.list();
+	}
+
+	@Override
+	public List<Integer> getPatientsWithObsDatetimeValue(Concept question, Date fromDate, Date toDate) {
+		return getCurrentSession().createQuery("select distinct o.person.personId from Obs o " +
+				"where o.voided = false and o.concept = :question and o.valueDatetime between :fromDate and :toDate " +
+				"and o.person.personId in (select p.patientId from Patient p where p.voided = false)")
+				.setParameter("question", question)
+				.setTimestamp("fromDate", fromDate)
+				.setTimestamp("toDate", toDate)
+				.list();
+	}
+
+	@Override
+	public List<Visit> getVisits(Collection<Integer> patientIds, Date fromDate, Date toDate, boolean startedInPeriod) {
+		String query = "from Visit v where v.voided = false and v.patient.patientId in (:patientIds) and v.startDatetime <= :toDate and ";
+		query += startedInPeriod ? "v.startDatetime >= :fromDate" : "(v.stopDatetime is null or v.stopDatetime >= :fromDate)";
+
+		return getCurrentSession().createQuery(query + " order by v.startDatetime")
+				.setParameterList("patientIds", patientIds)
+				.setTimestamp("fromDate", fromDate)
+				.setTimestamp("toDate", toDate)
+				.list();
+	}
+
+	@Override
+	public List<VisitSummary> getVisitSummaries(Collection<Integer> patientIds, Date fromDate, Date toDate, boolean startedInPeriod) {
+		String query = "select v.visitId, v.patient.patientId, v.startDatetime, v.stopDatetime from Visit v " +
+				"where v.voided = false and v.patient.patientId in (:patientIds)";
+		if (toDate != null) {
+			query += " and v.startDatetime <= :toDate";
+		}
+		if (fromDate != null) {
+			query += startedInPeriod ? " and v.startDatetime >= :fromDate" : " and (v.stopDatetime is null or v.stopDatetime >= :fromDate)";
+		}
+
+		Query q = getCurrentSession().createQuery(query + " order by v.startDatetime")
+				.setParameterList("patientIds", patientIds);
+		if (toDate != null) {
+			q.setTimestamp("toDate", toDate);
+		}
+		if (fromDate != null) {
+			q.setTimestamp("fromDate", fromDate);
+		}
+
+		List<VisitSummary> visits = new ArrayList<VisitSummary>();
+		for (Object[] row : (List<Object[]>) q.list()) {
+			visits.add(new VisitSummary((Integer) row[0], (Integer) row[1], (Date) row[2], (Date) row[3]));
+		}
+		return visits;
+	}
+
+	@Override
+	public List<Object[]> getEncounterSummaries(Collection<Integer> patientIds, EncounterType type, Collection<Form> forms) {
+		Query query = getCurrentSession().createQuery("select e.encounterId, e.patient.patientId, e.encounterDatetime, f.formId from Encounter e left join e.form f " +
+				"where e.voided = false and e.patient.patientId in (:patientIds) and e.encounterType = :type " +
+				(forms != null ? "and f in (:forms) " : "") +
+				"order by e.encounterDatetime, e.encounterId")
+				.setParameterList("patientIds", patientIds)
+				.setParameter("type", type);
+		if (forms != null) {
+			query.setParameterList("forms", forms);
+		}
+		return query.list();
+	}
+
+	@Override
+	public List<Object[]> getPersonNameSummaries(Collection<Integer> personIds) {
+		return getCurrentSession().createQuery("select n.person.personId, n.familyName, n.givenName, n.middleName from PersonName n " +
+				"where n.voided = false and n.person.personId in (:personIds) order by n.preferred desc, n.personNameId")
+				.setParameterList("personIds", personIds)
+				.list();
+	}
+
+	@Override
+	public List<Obs> getObsForEncounters(Collection<Integer> encounterIds, Collection<Concept> questions) {
+		return getCurrentSession().createQuery("from Obs o where o.voided = false and o.encounter.encounterId in (:encounterIds) and o.concept in (:questions)")
+				.setParameterList("encounterIds", encounterIds)
+				.setParameterList("questions", questions)
+				.list();
+	}
+
+	@Override
+	public List<Object[]> getObsCodedValues(Collection<Integer> encounterIds, Collection<Concept> questions) {
+		return getCurrentSession().createQuery("select o.encounter.encounterId, o.concept.conceptId, a.conceptId from Obs o left join o.valueCoded a " +
+				"where o.voided = false and o.encounter.encounterId in (:encounterIds) and o.concept in (:questions)")
+				.setParameterList("encounterIds", encounterIds)
+				.setParameterList("questions", questions)
+				.list();
+	}
+
+	@Override
+	public List<Obs> getLatestObsOnForm(Patient patient, Concept question, Form form, int limit) {
+		return getCurrentSession().createQuery("select o from Obs o inner join o.encounter e " +
+				"where o.voided = false and e.voided = false and o.person.personId = :patientId and o.concept = :question and e.form = :form " +
+				"order by e.encounterDatetime desc, o.obsId desc")
+				.setInteger("patientId", patient.getPatientId())
+				.setParameter("question", question)
+				.setParameter("form", form)
+				.setMaxResults(limit)
+				.list();
+	}
+
+	@Override
+	public List<DrugOrder> getDrugOrders(Collection<Integer> patientIds, CareSetting careSetting, boolean activeOnly) {
+		// Like OrderService, discontinuation orders are only included when orders aren't filtered by care setting
+		boolean excludeDiscontinuations = careSetting != null || activeOnly;
+
+		String query = "from DrugOrder o where o.voided = false and o.patient.patientId in (:patientIds) and o.orderType.uuid = :drugOrderType";
+		if (careSetting != null) {
+			query += " and o.careSetting = :careSetting";
+		}
+		if (excludeDiscontinuations) {
+			query += " and o.action != :discontinue";
+		}
+		if (activeOnly) {
+			query += " and o.dateActivated <= :now and (o.dateStopped is null or o.dateStopped > :now)" +
+					" and (o.autoExpireDate is null or o.autoExpireDate > :now)";
+		}
+
+		Query q = getCurrentSession().createQuery(query + " order by o.dateActivated desc, o.orderId desc")
+				.setParameterList("patientIds", patientIds)
+				.setString("drugOrderType", OrderType.DRUG_ORDER_TYPE_UUID);
+		if (careSetting != null) {
+			q.setParameter("careSetting", careSetting);
+		}
+		if (excludeDiscontinuations) {
+			q.setParameter("discontinue", Order.Action.DISCONTINUE);
+		}
+		if (activeOnly) {
+			q.setTimestamp("now", new Date());
+		}
+		return q.list();
+	}
+
+	@Override
+	public List<Date> getEncounterDatetimes(Patient patient, Form form, Date fromDate) {
+		return getCurrentSession().createQuery("select e.encounterDatetime from Encounter e " +
+				"where e.voided = false and e.patient = :patient and e.form = :form and e.encounterDatetime >= :fromDate")
+				.setParameter("patient", patient)
+				.setParameter("form", form)
+				.setTimestamp("fromDate", fromDate)
+				.list();
+	}
+
+	@Override
+	public List<Object[]> getPatientCountsByAttributeValue(PersonAttributeType attributeType, Program program) {
+		String query = "select lower(trim(pa.value)), count(distinct pa.person_id) from person_attribute pa " +
+				"inner join patient p on p.patient_id = pa.person_id and p.voided = 0 ";
+		if (program != null) {
+			query += "inner join patient_program pp on pp.patient_id = pa.person_id and pp.program_id = :programId and pp.voided = 0 ";
+		}
+		query += "where pa.voided = 0 and pa.person_attribute_type_id = :attributeTypeId group by lower(trim(pa.value))";
+
+		SQLQuery q = getCurrentSession().createSQLQuery(query);
+		q.setInteger("attributeTypeId", attributeType.getPersonAttributeTypeId());
+		if (program != null) {
+			q.setInteger("programId", program.getProgramId());
+		}
+		return q.list();
+	}
+
+	@Override
+	public List<Integer> getPatientsByAttributeValues(PersonAttributeType attributeType, Collection<String> values, Integer startIndex, Integer length) {
+		SQLQuery q = getCurrentSession().createSQLQuery("select distinct pa.person_id from person_attribute pa " +
+				"inner join patient p on p.patient_id = pa.person_id and p.voided = 0 " +
+				"where pa.voided = 0 and pa.person_attribute_type_id = :attributeTypeId and lower(trim(pa.value)) in (:values) " +
+				"order by pa.person_id");
+		q.addScalar("person_id", IntegerType.INSTANCE);
+		q.setInteger("attributeTypeId", attributeType.getPersonAttributeTypeId());
+		q.setParameterList("values", values);
+		if (startIndex != null) {
+			q.setFirstResult(startIndex);
+		}
+		if (length != null) {
+			q.setMaxResults(length);
+		}
+		return q.list();
+	}
+
+	@Override
+	public int updatePersonAttributeValues(PersonAttributeType attributeType, Collection<Integer> personIds, String value) {
+		if (personIds.isEmpty()) {
+			return 0;
+		}
+
+		// Pending changes to these attributes must be written before they are updated underneath the session
+		getCurrentSession().flush();
+
+		// Declaring the synchronized entity limits second level cache invalidation to person attributes
+		int updated = getCurrentSession().createSQLQuery("update person_attribute set value = :value, changed_by = :changedBy, date_changed = :now " +
+				"where voided = 0 and person_attribute_type_id = :attributeTypeId and person_id in (:personIds)")
+				.addSynchronizedEntityClass(PersonAttribute.class)
+				.setParameter("value", value)
+				.setInteger("changedBy", Context.getAuthenticatedUser().getUserId())
+				.setTimestamp("now", new Date())
+				.setInteger("attributeTypeId", attributeType.getPersonAttributeTypeId())
+				.setParameterList("personIds", personIds)
+				.executeUpdate();
+
+		// Attributes already loaded into this session still hold the old values, so reload them
+		List<Integer> attributeIds = getCurrentSession().createSQLQuery("select person_attribute_id from person_attribute " +
+				"where voided = 0 and person_attribute_type_id = :attributeTypeId and person_id in (:personIds)")
+				.addScalar("person_attribute_id", IntegerType.INSTANCE)
+				.setInteger("attributeTypeId", attributeType.getPersonAttributeTypeId())
+				.setParameterList("personIds", personIds)
+				.list();
+
+		SessionImplementor session = (SessionImplementor) getCurrentSession();
+		EntityPersister persister = session.getFactory().getMetamodel().entityPersister(PersonAttribute.class);
+		for (Integer attributeId : attributeIds) {
+			Object loaded = session.getPersistenceContext().getEntity(session.generateEntityKey(attributeId, persister));
+			if (loaded != null) {
+				getCurrentSession().refresh(loaded);
+			}
+		}
+		return updated;
+	}
+
+	@Override
+	public List<Integer> getPersonsWithoutAttribute(PersonAttributeType attributeType, Collection<Integer> personIds) {
+		if (personIds.isEmpty()) {
+			return new ArrayList<Integer>();
+		}
+
+		return getCurrentSession().createSQLQuery("select p.person_id from person p where p.voided = 0 and p.person_id in (:personIds) " +
+				"and not exists (select 1 from person_attribute a where a.person_id = p.person_id and a.voided = 0 and a.person_attribute_type_id = :attributeTypeId) " +
+				"order by p.person_id")
+				.addScalar("person_id", IntegerType.INSTANCE)
+				.setParameterList("personIds", personIds)
+				.setInteger("attributeTypeId", attributeType.getPersonAttributeTypeId())
+				.list();
+	}
+
+	@Override
+	public Integer enqueueEncounterEvent(String idempotencyKey, String processor, String encounterUuid) {
+		int inserted = getCurrentSession().createSQLQuery(
+				"insert into kenyaemr_encounter_event_queue (idempotency_key, processor, encounter_uuid, status, attempts, date_created) " +
+				"select :key, :processor, :encounterUuid, :status, 0, :now from (select 1) as t " +
+				"where not exists (select 1 from kenyaemr_encounter_event_queue q where q.idempotency_key = :key)")
+				.setParameter("key", idempotencyKey)
+				.setParameter("processor", processor)
+				.setParameter("encounterUuid", encounterUuid)
+				.setParameter("status", EncounterEvent.STATUS_PENDING)
+				.setTimestamp("now", new Date())
+				.executeUpdate();
+
+		if (inserted == 0) {
+			return null;
+		}
+
+		Number id = (Number) getCurrentSession().createSQLQuery("select id from kenyaemr_encounter_event_queue where idempotency_key = :key")
+				.setParameter("key", idempotencyKey)
+				.uniqueResult();
+		return id != null ? id.intValue() : null;
+	}
+
+	@Override
+	public EncounterEvent getEncounterEvent(Integer id) {
+		List<Object[]> rows = getCurrentSession().createSQLQuery(EVENT_COLUMNS + " where id = :id")
+				.setParameter("id", id)
+				.list();
+		return rows.isEmpty() ? null : toEncounterEvent(rows.get(0));
+	}
+
+	@Override
+	public List<EncounterEvent> getQueuedEncounterEvents(int maxAttempts, Date staleBefore, int limit) {
+		List<Object[]> rows = getCurrentSession().createSQLQuery(EVENT_COLUMNS +
+				" where (status in (:pending, :failed) and attempts < :maxAttempts)" +
+				" or (status = :processing and date_processed < :staleBefore)" +
+				" order by id")
+				.setParameter("pending", EncounterEvent.STATUS_PENDING)
+				.setParameter("failed", EncounterEvent.STATUS_FAILED)
+				.setParameter("processing", EncounterEvent.STATUS_PROCESSING)
+				.setParameter("maxAttempts", maxAttempts)
+				.setTimestamp("staleBefore", staleBefore)
+				.setMaxResults(limit)
+				.list();
+
+		List<EncounterEvent> events = new ArrayList<EncounterEvent>();
+		for (Object[] row : rows) {
+			events.add(toEncounterEvent(row));
+		}
+		return events;
+	}
+
+	@Override
+	public boolean claimEncounterEvent(Integer id, Date staleBefore) {
+		int claimed = getCurrentSession().createSQLQuery(
+				"update kenyaemr_encounter_event_queue set status = :processing, date_processed = :now " +
+				"where id = :id and (status in (:pending, :failed) or (status = :processing and date_processed < :staleBefore))")
+				.setParameter("processing", EncounterEvent.STATUS_PROCESSING)
+				.setParameter("pending", EncounterEvent.STATUS_PENDING)
+				.setParameter("failed", EncounterEvent.STATUS_FAILED)
+				.setParameter("id", id)
+				.setTimestamp("now", new Date())
+				.setTimestamp("staleBefore", staleBefore)
+				.executeUpdate();
+		return claimed == 1;
+	}
+
+	@Override
+	public void updateEncounterEvent(EncounterEvent event) {
+		getCurrentSession().createSQLQuery(
+				"update kenyaemr_encounter_event_queue set status = :status, attempts = :attempts, last_error = :lastError, " +
+				"date_processed = :dateProcessed where id = :id")
+				.setParameter("status", event.getStatus())
+				.setParameter("attempts", event.getAttempts())
+				.setParameter("lastError", event.getLastError(), StringType.INSTANCE)
+				.setTimestamp("dateProcessed", event.getDateProcessed())
+				.setParameter("id", event.getId())
+				.executeUpdate();
+	}
+
+	private static final String EVENT_COLUMNS = "select id, idempotency_key, processor, encounter_uuid, status, attempts, last_error, date_created, date_processed from kenyaemr_encounter_event_queue";
+
+	private static EncounterEvent toEncounterEvent(Object[] row) {
+		EncounterEvent event = new EncounterEvent(((Number) row[0]).intValue(), (String) row[1], (String) row[2], (String) row[3], (String) row[4], ((Number) row[5]).intValue());
+		event.setLastError((String) row[6]);
+		event.setDateCreated((Date) row[7]);
+		event.setDateProcessed((Date) row[8]);
+		return event;
+	}
+
+	@Override
+	public void saveReportProfileEntries(List<ReportProfileEntry> entries) {
+		Session session = getCurrentSession();
+		for (ReportProfileEntry entry : entries) {
+			session.createSQLQuery(
+					"insert into kenyaemr_report_profile (run_uuid, report_uuid, report_name, depth, definition_type, definition_uuid, " +
+					"definition_name, definition_class, elapsed_ms, self_ms, row_count, sql_text, cache_hit, date_created) " +
+					"values (:runUuid, :reportUuid, :reportName, :depth, :definitionType, :definitionUuid, :definitionName, " +
+					":definitionClass, :elapsedMs, :selfMs, :rowCount, :sqlText, :cacheHit, :dateCreated)")
+					.setParameter("runUuid", entry.getRunUuid())
+					.setParameter("reportUuid", entry.getReportUuid(), StringType.INSTANCE)
+					.setParameter("reportName", entry.getReportName(), StringType.INSTANCE)
+					.setParameter("depth", entry.getDepth())
+					.setParameter("definitionType", entry.getDefinitionType())
+					.setParameter("definitionUuid", entry.getDefinitionUuid(), StringType.INSTANCE)
+					.setParameter("definitionName", entry.getDefinitionName(), StringType.INSTANCE)
+					.setParameter("definitionClass", entry.getDefinitionClass())
+					.setParameter("elapsedMs", entry.getElapsedMs())
+					.setParameter("selfMs", entry.getSelfMs())
+					.setParameter("rowCount", entry.getRowCount(), IntegerType.INSTANCE)
+					.setParameter("sqlText", entry.getSqlText(), StringType.INSTANCE)
+					.setParameter("cacheHit", entry.getCacheHit(), BooleanType.INSTANCE)
+					.setTimestamp("dateCreated", entry.getDateCreated())
+					.executeUpdate();
+		}
+	}
+
+	@Override
+	public List<ReportProfileEntry> getReportProfileRuns(String reportUuid, int limit) {
+		List<Object[]> rows = getCurrentSession().createSQLQuery(PROFILE_COLUMNS + " where report_uuid = :reportUuid and depth = 0 order by id desc")
+				.setParameter("reportUuid", reportUuid)
+				.setMaxResults(limit)
+				.list();
+		return toReportProfileEntries(rows);
+	}
+
+	@Override
+	public List<ReportProfileEntry> getReportProfileEntries(String runUuid) {
+		List<Object[]> rows = getCurrentSession().createSQLQuery(PROFILE_COLUMNS + " where run_uuid = :runUuid order by id")
+				.setParameter("runUuid", runUuid)
+				.list();
+		return toReportProfileEntries(rows);
+	}
+
+	@Override
+	public int purgeReportProfileEntries(Date before) {
+		return getCurrentSession().createSQLQuery("delete from kenyaemr_report_profile where date_created < :before")
+				.setTimestamp("before", before)
+				.executeUpdate();
+	}
+
+	private static final String PROFILE_COLUMNS = "select id, run_uuid, report_uuid, report_name, depth, definition_type, definition_uuid, definition_name, " +
+			"definition_class, elapsed_ms, self_ms, row_count, sql_text, cache_hit, date_created from kenyaemr_report_profile";
+
+	private static List<ReportProfileEntry> toReportProfileEntries(List<Object[]> rows) {
+		List<ReportProfileEntry> entries = new ArrayList<ReportProfileEntry>();
+		for (Object[] row : rows) {
+			ReportProfileEntry entry = new ReportProfileEntry();
+			entry.setId(((Number) row[0]).intValue());
+			entry.setRunUuid((String) row[1]);
+			entry.setReportUuid((String) row[2]);
+			entry.setReportName((String) row[3]);
+			entry.setDepth(((Number) row[4]).intValue());
+			entry.setDefinitionType((String) row[5]);
+			entry.setDefinitionUuid((String) row[6]);
+			entry.setDefinitionName((String) row[7]);
+			entry.setDefinitionClass((String) row[8]);
+			entry.setElapsedMs(((Number) row[9]).longValue());
+			entry.setSelfMs(((Number) row[10]).longValue());
+			entry.setRowCount(row[11] != null ? ((Number) row[11]).intValue() : null);
+			entry.setSqlText((String) row[12]);
+			entry.setCacheHit(row[13] instanceof Boolean ? (Boolean) row[13] : row[13] != null && ((Number) row[13]).intValue() != 0);
+			entry.setDateCreated((Date) row[14]);
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	@Override
+	public List<Integer> getPatientIds(Integer afterId, int limit) {
+		return getCurrentSession().createQuery("select p.patientId from Patient p where p.voided = false and p.patientId > :afterId order by p.patientId")
+				.setInteger("afterId", afterId != null ? afterId : 0)
+				.setMaxResults(limit)
+				.list();
+	}
+
+	@Override
+	public long getPatientCount() {
+		return (Long) getCurrentSession().createQuery("select count(p) from Patient p where p.voided = false").uniqueResult();
+	}
+
+	@Override
+	public void savePatientValidationIssues(List<PatientValidationIssue> issues) {
+		Session session = getCurrentSession();
+		for (PatientValidationIssue issue : issues) {
+			session.createSQLQuery(
+					"insert into kenyaemr_patient_validation_issue (run_uuid, patient_id, errors, date_created) " +
+					"values (:runUuid, :patientId, :errors, :dateCreated)")
+					.setParameter("runUuid", issue.getRunUuid())
+					.setParameter("patientId", issue.getPatientId())
+					.setParameter("errors", issue.getErrors())
+					.setTimestamp("dateCreated", issue.getDateCreated())
+					.executeUpdate();
+		}
+	}
+
+	@Override
+	public List<PatientValidationIssue> getPatientValidationIssues(String runUuid, int startIndex, int length) {
+		List<Object[]> rows = getCurrentSession().createSQLQuery("select id, run_uuid, patient_id, errors, date_created " +
+				"from kenyaemr_patient_validation_issue where run_uuid = :runUuid order by patient_id")
+				.setParameter("runUuid", runUuid)
+				.setFirstResult(startIndex)
+				.setMaxResults(length)
+				.list();
+
+		List<PatientValidationIssue> issues = new ArrayList<PatientValidationIssue>();
+		for (Object[] row : rows) {
+			PatientValidationIssue issue = new PatientValidationIssue();
+			issue.setId(((Number) row[0]).intValue());
+			issue.setRunUuid((String) row[1]);
+			issue.setPatientId(((Number) row[2]).intValue());
+			issue.setErrors((String) row[3]);
+			issue.setDateCreated((Date) row[4]);
+			issues.add(issue);
+		}
+		return issues;
+	}
+
+	@Override
+	public long getPatientValidationIssueCount(String runUuid) {
+		Number count = (Number) getCurrentSession().createSQLQuery("select count(*) from kenyaemr_patient_validation_issue where run_uuid = :runUuid")
+				.setParameter("runUuid", runUuid)
+				.uniqueResult();
+		return count.longValue();
+	}
+
+	@Override
+	public String getLatestPatientValidationRunUuid() {
+		List<String> runUuids = getCurrentSession().createSQLQuery("select run_uuid from kenyaemr_patient_validation_issue order by date_created desc, id desc")
+				.setMaxResults(1)
+				.list();
+		return runUuids.isEmpty() ? null : runUuids.get(0);
+	}
+
+	@Override
+	public int purgePatientValidationIssues(String keepRunUuid) {
+		return getCurrentSession().createSQLQuery("delete from kenyaemr_patient_validation_issue where run_uuid <> :keepRunUuid")
+				.setParameter("keepRunUuid", keepRunUuid)
+				.executeUpdate();
+	}
+
+	@Override
+	public int deletePatientValidationRun(String runUuid) {
+		return getCurrentSession().createSQLQuery("delete from kenyaemr_patient_validation_issue where run_uuid = :runUuid")
+				.setParameter("runUuid", runUuid)
+				.executeUpdate();
+	}
+
+	/**
+	 * Both error counts are taken in a single pass, which the discriminator index allows to be answered from the
+	 * index alone rather than the error payloads
+	 */
+	@Override
+	public DataQueueSummary getDataQueueSummary(DataQueue queue) {
+		Session session = getCurrentSession();
+		Object[] errors = (Object[]) session.createSQLQuery("select count(*) as total, " +
+				"coalesce(sum(case when discriminator = 'json-registration' then 1 else 0 end), 0) as registrations " +
+				"from " + queue.getErrorDataTable())
+				.addScalar("total", LongType.INSTANCE)
+				.addScalar("registrations", LongType.INSTANCE)
+				.uniqueResult();
+		Number queueData = (Number) session.createSQLQuery("select count(*) from " + queue.getQueueDataTable()).uniqueResult();
+
+		return new DataQueueSummary((Long) errors[0], (Long) errors[1], queueData.longValue());
+	}
+
+	@Override
+	public List<DataQueueErrorMessage> getDataQueueErrorMessages(DataQueue queue, Integer beforeId, int limit) {
+		Query query = getCurrentSession().createSQLQuery("select id, message, date_created from " + queue.getErrorMessageTable() +
+				(beforeId != null ? " where id < :beforeId" : "") + " order by id desc")
+				.setMaxResults(limit);
+		if (beforeId != null) {
+			query.setParameter("beforeId", beforeId);
+		}
+
+		List<DataQueueErrorMessage> messages = new ArrayList<DataQueueErrorMessage>();
+		for (Object[] row : (List<Object[]>) query.list()) {
+			messages.add(new DataQueueErrorMessage(((Number) row[0]).intValue(), row[1] != null ? row[1].toString() : null, (Date) row[2]));
+		}
+		return messages;
+	}
+
 	private void applySubstitutions(Query q, Map<String, Object> substitutions) {
 		for (Map.Entry<String, Object> e : substitutions.entrySet()) {
 			if (e.getValue() instanceof Collection) {
@@ -9,13 +9,24 @@
  */
 package org.openmrs.module.kenyaemr.api.impl;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openmrs.CareSetting;
+import org.openmrs.Concept;
+import org.openmrs.DrugOrder;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
 import org.openmrs.GlobalProperty;
 import org.openmrs.Location;
 import org.openmrs.LocationAttributeType;
+import org.openmrs.Obs;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifierType;
+import org.openmrs.Person;
+import org.openmrs.PersonAttribute;
+import org.openmrs.PersonAttributeType;
+import org.openmrs.Program;
 import org.openmrs.Visit;
 import org.openmrs.api.APIException;
 import org.openmrs.api.LocationService;
@@ -27,12 +38,25 @@ import org.openmrs.module.idgen.SequentialIdentifierGenerator;
 import org.openmrs.module.idgen.service.IdentifierSourceService;
 import org.openmrs.module.idgen.validator.LuhnModNIdentifierValidator;
 import org.openmrs.module.kenyacore.identifier.IdentifierManager;
+import org.openmrs.module.kenyaemr.Dictionary;
 import org.openmrs.module.kenyaemr.EmrConstants;
 import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.api.db.KenyaEmrDAO;
 import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
 import org.openmrs.module.kenyaemr.metadata.FacilityMetadata;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
+import org.openmrs.module.kenyaemr.metadata.MchMetadata;
+import org.openmrs.module.kenyaemr.model.AppointmentHistoryEntry;
+import org.openmrs.module.kenyaemr.model.DataQueue;
+import org.openmrs.module.kenyaemr.model.DataQueueErrorMessage;
+import org.openmrs.module.kenyaemr.model.DataQueueSummary;
+import org.openmrs.module.kenyaemr.model.EncounterEvent;
+import org.openmrs.module.kenyaemr.model.EncounterSummary;
+import org.openmrs.module.kenyaemr.model.HivTestStatus;
+import org.openmrs.module.kenyaemr.model.PatientValidationIssue;
+import org.openmrs.module.kenyaemr.model.ReportProfileEntry;
+import org.openmrs.module.kenyaemr.model.VisitSummary;
+import org.openmrs.module.kenyaemr.util.HtsConstants;
 import org.openmrs.module.kenyaemr.util.RowMapper;
 import org.openmrs.module.kenyaemr.util.SqlQueryHelper;
 import org.openmrs.module.kenyaemr.wrapper.Facility;
@@ -58,6 +82,11 @@ public class KenyaEmrServiceImpl extends BaseOpenmrsService implements KenyaEmrS
 	protected static final String OPENMRS_MEDICAL_RECORD_NUMBER_NAME = "Kenya EMR - OpenMRS Medical Record Number";
 	protected static final String HIV_UNIQUE_PATIENT_NUMBER_NAME = "Kenya EMR - OpenMRS HIV Unique Patient Number";
 
+	/**
+	 * The maximum number of patient ids passed to a single query, to keep IN clauses a reasonable size
+	 */
+	protected static final int PATIENT_ID_CHUNK_SIZE = 1000;
+
 	@Autowired
 	private IdentifierManager identifierManager;
 
@@ -179,9 +208,409 @@ public class KenyaEmrServiceImpl extends BaseOpenmrsService implements KenyaEmrS
 		Date endOfDay = OpenmrsUtil.getLastMomentOfDay(date);
 
 		// look for visits that started before endOfDay and ended after startOfDay
-		List<Visit> visits = Context.getVisitService().getVisits(null, Collections.singleton(patient), null, null, null, endOfDay, startOfDay, null, null, true, false);
-		Collections.reverse(visits); // We want by date asc
-		return visits;
+		if (patient.getPatientId() == null) {
+			return new ArrayList<Visit>();
+		}
+		return dao.getVisits(Collections.singleton(patient.getPatientId()), startOfDay, endOfDay, false);
+	}
+
+	/**
+	 * @see KenyaEmrService#getPatientsWithVisitsStarted(java.util.Date, java.util.Date)
+	 */
+	@Override
+	public List<Integer> getPatientsWithVisitsStarted(Date fromDate, Date toDate) {
+		return dao.getPatientsWithVisitsStarted(fromDate, toDate);
+	}
+
+	/**
+	 * @see KenyaEmrService#getPatientsScheduled(java.util.Date, java.util.Date)
+	 */
+	@Override
+	public List<Integer> getPatientsScheduled(Date fromDate, Date toDate) {
+		return dao.getPatientsWithObsDatetimeValue(Dictionary.getConcept(Dictionary.RETURN_VISIT_DATE), fromDate, toDate);
+	}
+
+	/**
+	 * @see KenyaEmrService#sortPatientsByName(java.util.Collection)
+	 */
+	@Override
+	public List<Integer> sortPatientsByName(Collection<Integer> patientIds) {
+		List<Integer> ids = new ArrayList<Integer>(new LinkedHashSet<Integer>(patientIds));
+
+		// Rows are ordered with preferred names first, so the first name of each patient is the one it displays
+		final Map<Integer, String[]> names = new HashMap<Integer, String[]>();
+		for (int start = 0; start < ids.size(); start += PATIENT_ID_CHUNK_SIZE) {
+			List<Integer> chunk = ids.subList(start, Math.min(start + PATIENT_ID_CHUNK_SIZE, ids.size()));
+
+			for (Object[] row : dao.getPersonNameSummaries(chunk)) {
+				if (!names.containsKey((Integer) row[0])) {
+					names.put((Integer) row[0], new String[] { (String) row[1], (String) row[2], (String) row[3] });
+				}
+			}
+		}
+
+		Collections.sort(ids, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer id1, Integer id2) {
+				String[] name1 = names.get(id1);
+				String[] name2 = names.get(id2);
+				if (name1 == null || name2 == null) {
+					return name1 != null ? -1 : (name2 != null ? 1 : id1.compareTo(id2));
+				}
+				for (int part = 0; part < name1.length; part++) {
+					int ret = OpenmrsUtil.compareWithNullAsGreatest(StringUtils.lowerCase(name1[part]), StringUtils.lowerCase(name2[part]));
+					if (ret != 0) {
+						return ret;
+					}
+				}
+				return id1.compareTo(id2);
+			}
+		});
+		return ids;
+	}
+
+	/**
+	 * @see KenyaEmrService#getVisitsByPatient(java.util.Collection, java.util.Date, java.util.Date, boolean)
+	 */
+	@Override
+	public Map<Integer, List<Visit>> getVisitsByPatient(Collection<Integer> patientIds, Date fromDate, Date toDate, boolean startedInPeriod) {
+		Map<Integer, List<Visit>> visitsByPatient = new HashMap<Integer, List<Visit>>();
+		if (patientIds.isEmpty()) {
+			return visitsByPatient;
+		}
+
+		for (Visit visit : dao.getVisits(patientIds, fromDate, toDate, startedInPeriod)) {
+			Integer patientId = visit.getPatient().getPatientId();
+			List<Visit> visits = visitsByPatient.get(patientId);
+			if (visits == null) {
+				visits = new ArrayList<Visit>();
+				visitsByPatient.put(patientId, visits);
+			}
+			visits.add(visit);
+		}
+		return visitsByPatient;
+	}
+
+	/**
+	 * @see KenyaEmrService#getVisitSummariesByPatient(java.util.Collection, java.util.Date, java.util.Date, boolean)
+	 */
+	@Override
+	public Map<Integer, List<VisitSummary>> getVisitSummariesByPatient(Collection<Integer> patientIds, Date fromDate, Date toDate, boolean startedInPeriod) {
+		Map<Integer, List<VisitSummary>> visitsByPatient = new HashMap<Integer, List<VisitSummary>>();
+
+		List<Integer> ids = new ArrayList<Integer>(patientIds);
+		for (int start = 0; start < ids.size(); start += PATIENT_ID_CHUNK_SIZE) {
+			List<Integer> chunk = ids.subList(start, Math.min(start + PATIENT_ID_CHUNK_SIZE, ids.size()));
+
+			for (VisitSummary visit : dao.getVisitSummaries(chunk, fromDate, toDate, startedInPeriod)) {
+				List<VisitSummary> visits = visitsByPatient.get(visit.getPatientId());
+				if (visits == null) {
+					visits = new ArrayList<VisitSummary>();
+					visitsByPatient.put(visit.getPatientId(), visits);
+				}
+				visits.add(visit);
+			}
+		}
+		return visitsByPatient;
+	}
+
+	/**
+	 * @see KenyaEmrService#getHivTestStatuses(java.util.Collection)
+	 */
+	@Override
+	public Map<Integer, HivTestStatus> getHivTestStatuses(Collection<Integer> patientIds) {
+		EncounterType mchConsultation = MetadataUtils.existing(EncounterType.class, MchMetadata._EncounterType.MCHMS_CONSULTATION);
+		Form antenatalVisitForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_ANTENATAL_VISIT);
+		Form deliveryForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_DELIVERY);
+		Form postnatalVisitForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_POSTNATAL_VISIT);
+
+		Concept finalTestQuestion = Context.getConceptService().getConcept(HtsConstants.HTS_FINAL_TEST_CONCEPT_ID);
+		Concept discordantCouple = Dictionary.getConcept(Dictionary.DISCORDANT_COUPLE);
+		Concept upnQuestion = Context.getConceptService().getConcept(HtsConstants.HTS_UPN_QUESTION_CONCEPT_ID);
+
+		List<Concept> questions = new ArrayList<Concept>();
+		for (Concept question : Arrays.asList(finalTestQuestion, discordantCouple, upnQuestion)) {
+			if (question != null) {
+				questions.add(question);
+			}
+		}
+
+		Map<Integer, HivTestStatus> statuses = new HashMap<Integer, HivTestStatus>();
+
+		List<Integer> ids = new ArrayList<Integer>(patientIds);
+		for (int start = 0; start < ids.size(); start += PATIENT_ID_CHUNK_SIZE) {
+			List<Integer> chunk = ids.subList(start, Math.min(start + PATIENT_ID_CHUNK_SIZE, ids.size()));
+
+			// The latest encounter of each form for each patient. Rows are ordered by date so later ones replace earlier ones
+			Map<Integer, Map<Integer, Object[]>> lastEncountersByPatient = new HashMap<Integer, Map<Integer, Object[]>>();
+			List<Object[]> rows = new ArrayList<Object[]>();
+			rows.addAll(dao.getEncounterSummaries(chunk, HtsConstants.htsEncType, Arrays.asList(HtsConstants.htsInitialForm, HtsConstants.htsRetestForm, HtsConstants.htsLinkageForm)));
+			rows.addAll(dao.getEncounterSummaries(chunk, mchConsultation, Arrays.asList(antenatalVisitForm, deliveryForm, postnatalVisitForm)));
+			for (Object[] row : rows) {
+				Map<Integer, Object[]> lastEncounters = lastEncountersByPatient.get((Integer) row[1]);
+				if (lastEncounters == null) {
+					lastEncounters = new HashMap<Integer, Object[]>();
+					lastEncountersByPatient.put((Integer) row[1], lastEncounters);
+				}
+				lastEncounters.put((Integer) row[3], row);
+			}
+
+			if (lastEncountersByPatient.isEmpty()) {
+				continue;
+			}
+
+			Map<Integer, Object[]> htsTests = new HashMap<Integer, Object[]>();
+			Map<Integer, Object[]> mchTests = new HashMap<Integer, Object[]>();
+			Map<Integer, Object[]> linkages = new HashMap<Integer, Object[]>();
+			Set<Integer> encounterIds = new HashSet<Integer>();
+
+			for (Map.Entry<Integer, Map<Integer, Object[]>> entry : lastEncountersByPatient.entrySet()) {
+				Map<Integer, Object[]> lastEncounters = entry.getValue();
+
+				// The later of the initial test and retest, with the retest taking precedence on the same date
+				Object[] initial = lastEncounters.get(HtsConstants.htsInitialForm.getFormId());
+				Object[] retest = lastEncounters.get(HtsConstants.htsRetestForm.getFormId());
+				Object[] htsTest = retest;
+				if (initial != null && (retest == null || ((Date) initial[2]).after((Date) retest[2]))) {
+					htsTest = initial;
+				}
+
+				Object[] mchTest = lastEncounters.get(antenatalVisitForm.getFormId());
+				if (mchTest == null) {
+					mchTest = lastEncounters.get(deliveryForm.getFormId());
+				}
+				if (mchTest == null) {
+					mchTest = lastEncounters.get(postnatalVisitForm.getFormId());
+				}
+
+				Object[] linkage = lastEncounters.get(HtsConstants.htsLinkageForm.getFormId());
+
+				for (Object[] encounter : Arrays.asList(htsTest, mchTest, linkage)) {
+					if (encounter != null) {
+						encounterIds.add((Integer) encounter[0]);
+					}
+				}
+				htsTests.put(entry.getKey(), htsTest);
+				mchTests.put(entry.getKey(), mchTest);
+				linkages.put(entry.getKey(), linkage);
+			}
+
+			// The answers of each encounter, by question
+			Map<Integer, Map<Integer, Set<Integer>>> answersByEncounter = new HashMap<Integer, Map<Integer, Set<Integer>>>();
+			if (!questions.isEmpty()) {
+				for (Object[] row : dao.getObsCodedValues(encounterIds, questions)) {
+					Map<Integer, Set<Integer>> answers = answersByEncounter.get((Integer) row[0]);
+					if (answers == null) {
+						answers = new HashMap<Integer, Set<Integer>>();
+						answersByEncounter.put((Integer) row[0], answers);
+					}
+					Set<Integer> values = answers.get((Integer) row[1]);
+					if (values == null) {
+						values = new HashSet<Integer>();
+						answers.put((Integer) row[1], values);
+					}
+					if (row[2] != null) {
+						values.add((Integer) row[2]);
+					}
+				}
+			}
+
+			for (Integer patientId : lastEncountersByPatient.keySet()) {
+				Object[] linkage = linkages.get(patientId);
+				boolean linkageSuccessful = false;
+				if (linkage != null && upnQuestion != null) {
+					Map<Integer, Set<Integer>> answers = answersByEncounter.get((Integer) linkage[0]);
+					linkageSuccessful = answers != null && answers.containsKey(upnQuestion.getConceptId());
+				}
+
+				statuses.put(patientId, new HivTestStatus(
+						createHivTest(htsTests.get(patientId), answersByEncounter, finalTestQuestion, discordantCouple, antenatalVisitForm, deliveryForm),
+						createHivTest(mchTests.get(patientId), answersByEncounter, finalTestQuestion, discordantCouple, antenatalVisitForm, deliveryForm),
+						linkage != null ? (Date) linkage[2] : null,
+						linkageSuccessful
+				));
+			}
+		}
+		return statuses;
+	}
+
+	/**
+	 * @see KenyaEmrService#getLastEncounterSummaries(java.util.Collection, org.openmrs.EncounterType, java.util.Collection)
+	 */
+	@Override
+	public Map<Integer, EncounterSummary> getLastEncounterSummaries(Collection<Integer> patientIds, EncounterType type, Collection<Form> forms) {
+		Map<Integer, EncounterSummary> lastEncounters = new HashMap<Integer, EncounterSummary>();
+
+		List<Integer> ids = new ArrayList<Integer>(patientIds);
+		for (int start = 0; start < ids.size(); start += PATIENT_ID_CHUNK_SIZE) {
+			List<Integer> chunk = ids.subList(start, Math.min(start + PATIENT_ID_CHUNK_SIZE, ids.size()));
+
+			// Rows are ordered by date so later ones replace earlier ones
+			for (Object[] row : dao.getEncounterSummaries(chunk, type, forms)) {
+				lastEncounters.put((Integer) row[1], new EncounterSummary((Integer) row[0], (Integer) row[1], (Date) row[2], (Integer) row[3]));
+			}
+		}
+		return lastEncounters;
+	}
+
+	/**
+	 * @see KenyaEmrService#getObsByEncounter(java.util.Collection, java.util.Collection)
+	 */
+	@Override
+	public Map<Integer, List<Obs>> getObsByEncounter(Collection<Integer> encounterIds, Collection<Concept> questions) {
+		Map<Integer, List<Obs>> obsByEncounter = new HashMap<Integer, List<Obs>>();
+
+		List<Integer> ids = new ArrayList<Integer>(encounterIds);
+		for (int start = 0; start < ids.size(); start += PATIENT_ID_CHUNK_SIZE) {
+			List<Integer> chunk = ids.subList(start, Math.min(start + PATIENT_ID_CHUNK_SIZE, ids.size()));
+
+			for (Obs obs : dao.getObsForEncounters(chunk, questions)) {
+				Integer encounterId = obs.getEncounter().getEncounterId();
+				List<Obs> obsList = obsByEncounter.get(encounterId);
+				if (obsList == null) {
+					obsList = new ArrayList<Obs>();
+					obsByEncounter.put(encounterId, obsList);
+				}
+				obsList.add(obs);
+			}
+		}
+		return obsByEncounter;
+	}
+
+	/**
+	 * @see KenyaEmrService#getDrugOrdersByPatient(java.util.Collection, org.openmrs.CareSetting, boolean)
+	 */
+	@Override
+	public Map<Integer, List<DrugOrder>> getDrugOrdersByPatient(Collection<Integer> patientIds, CareSetting careSetting, boolean activeOnly) {
+		Map<Integer, List<DrugOrder>> ordersByPatient = new HashMap<Integer, List<DrugOrder>>();
+
+		List<Integer> ids = new ArrayList<Integer>(patientIds);
+		for (int start = 0; start < ids.size(); start += PATIENT_ID_CHUNK_SIZE) {
+			List<Integer> chunk = ids.subList(start, Math.min(start + PATIENT_ID_CHUNK_SIZE, ids.size()));
+
+			for (DrugOrder order : dao.getDrugOrders(chunk, careSetting, activeOnly)) {
+				Integer patientId = order.getPatient().getPatientId();
+				List<DrugOrder> orders = ordersByPatient.get(patientId);
+				if (orders == null) {
+					orders = new ArrayList<DrugOrder>();
+					ordersByPatient.put(patientId, orders);
+				}
+				orders.add(order);
+			}
+		}
+		return ordersByPatient;
+	}
+
+	/**
+	 * Creates a HIV test from an encounter row and the answers recorded on it
+	 */
+	private HivTestStatus.Test createHivTest(Object[] encounter, Map<Integer, Map<Integer, Set<Integer>>> answersByEncounter, Concept finalTestQuestion,
+											 Concept discordantCouple, Form antenatalVisitForm, Form deliveryForm) {
+		if (encounter == null) {
+			return null;
+		}
+
+		Integer formId = (Integer) encounter[3];
+		HivTestStatus.Setting setting = HivTestStatus.Setting.HTS;
+		if (formId.equals(antenatalVisitForm.getFormId())) {
+			setting = HivTestStatus.Setting.ANC;
+		} else if (formId.equals(deliveryForm.getFormId())) {
+			setting = HivTestStatus.Setting.MATERNITY;
+		} else if (!formId.equals(HtsConstants.htsInitialForm.getFormId()) && !formId.equals(HtsConstants.htsRetestForm.getFormId())) {
+			setting = HivTestStatus.Setting.PNC;
+		}
+
+		Map<Integer, Set<Integer>> answers = answersByEncounter.get((Integer) encounter[0]);
+		Set<Integer> results = new HashSet<Integer>();
+		boolean discordant = false;
+		if (answers != null) {
+			if (finalTestQuestion != null && answers.containsKey(finalTestQuestion.getConceptId())) {
+				results.addAll(answers.get(finalTestQuestion.getConceptId()));
+			}
+			discordant = answers.containsKey(discordantCouple.getConceptId())
+					&& answers.get(discordantCouple.getConceptId()).contains(Dictionary.getConcept(Dictionary.YES).getConceptId());
+		}
+
+		return new HivTestStatus.Test((Integer) encounter[0], (Date) encounter[2], setting, results, discordant);
+	}
+
+	/**
+	 * @see KenyaEmrService#getAppointmentHistory(org.openmrs.Patient, org.openmrs.Form, int)
+	 */
+	@Override
+	public List<AppointmentHistoryEntry> getAppointmentHistory(Patient patient, Form form, int limit) {
+		List<Obs> appointmentObs = dao.getLatestObsOnForm(patient, Dictionary.getConcept(Dictionary.RETURN_VISIT_DATE), form, limit);
+
+		Date earliestAppointment = null;
+		for (Obs obs : appointmentObs) {
+			if (obs.getValueDatetime() != null && (earliestAppointment == null || obs.getValueDatetime().before(earliestAppointment))) {
+				earliestAppointment = obs.getValueDatetime();
+			}
+		}
+
+		// Only encounters on or after the earliest appointment can honour one, so that's all we need to look up
+		Set<Date> visitDays = new TreeSet<Date>();
+		if (earliestAppointment != null) {
+			for (Date encounterDate : dao.getEncounterDatetimes(patient, form, OpenmrsUtil.firstSecondOfDay(earliestAppointment))) {
+				visitDays.add(OpenmrsUtil.firstSecondOfDay(encounterDate));
+			}
+		}
+
+		List<AppointmentHistoryEntry> history = new ArrayList<AppointmentHistoryEntry>();
+		for (Obs obs : appointmentObs) {
+			Date appointmentDate = obs.getValueDatetime();
+			boolean honoured = appointmentDate != null && visitDays.contains(OpenmrsUtil.firstSecondOfDay(appointmentDate));
+			history.add(new AppointmentHistoryEntry(obs.getEncounter(), appointmentDate, honoured));
+		}
+		return history;
+	}
+
+	/**
+	 * @see KenyaEmrService#getPatientCountsByAttributeValue(org.openmrs.PersonAttributeType, org.openmrs.Program)
+	 */
+	@Override
+	public Map<String, Integer> getPatientCountsByAttributeValue(PersonAttributeType attributeType, Program program) {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (Object[] row : dao.getPatientCountsByAttributeValue(attributeType, program)) {
+			if (row[0] != null) {
+				counts.put((String) row[0], ((Number) row[1]).intValue());
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * @see KenyaEmrService#getPatientsByAttributeValues(org.openmrs.PersonAttributeType, java.util.Collection, Integer, Integer)
+	 */
+	@Override
+	public List<Integer> getPatientsByAttributeValues(PersonAttributeType attributeType, Collection<String> values, Integer startIndex, Integer length) {
+		Set<String> lowerCaseValues = new HashSet<String>();
+		for (String value : values) {
+			lowerCaseValues.add(value.trim().toLowerCase());
+		}
+		if (lowerCaseValues.isEmpty()) {
+			return new ArrayList<Integer>();
+		}
+		return dao.getPatientsByAttributeValues(attributeType, lowerCaseValues, startIndex, length);
+	}
+
+	/**
+	 * @see KenyaEmrService#updatePersonAttributeValues(org.openmrs.PersonAttributeType, java.util.Collection, String)
+	 */
+	@Override
+	public int updatePersonAttributeValues(PersonAttributeType attributeType, Collection<Integer> patientIds, String value) {
+		int updated = dao.updatePersonAttributeValues(attributeType, patientIds, value);
+
+		// Missing attributes are added the same way as the patient wrappers add them, which skips blank values
+		for (Integer personId : dao.getPersonsWithoutAttribute(attributeType, patientIds)) {
+			Person person = Context.getPersonService().getPerson(personId);
+			person.addAttribute(new PersonAttribute(attributeType, value));
+			if (person.getAttribute(attributeType) != null) {
+				Context.getPersonService().savePerson(person);
+				updated++;
+			}
+		}
+		return updated;
 	}
 
 	/**
@@ -262,6 +691,46 @@ public class KenyaEmrServiceImpl extends BaseOpenmrsService implements KenyaEmrS
 		return dao.executeHqlQuery(query, substitutions);
 	}
 
+	/**
+	 * @see KenyaEmrService#enqueueEncounterEvent(String, String, String)
+	 */
+	@Override
+	public Integer enqueueEncounterEvent(String idempotencyKey, String processor, String encounterUuid) {
+		return dao.enqueueEncounterEvent(idempotencyKey, processor, encounterUuid);
+	}
+
+	/**
+	 * @see KenyaEmrService#getEncounterEvent(Integer)
+	 */
+	@Override
+	public EncounterEvent getEncounterEvent(Integer id) {
+		return dao.getEncounterEvent(id);
+	}
+
+	/**
+	 * @see KenyaEmrService#getQueuedEncounterEvents(int, java.util.Date, int)
+	 */
+	@Override
+	public List<EncounterEvent> getQueuedEncounterEvents(int maxAttempts, Date staleBefore, int limit) {
+		return dao.getQueuedEncounterEvents(maxAttempts, staleBefore, limit);
+	}
+
+	/**
+	 * @see KenyaEmrService#claimEncounterEvent(Integer, java.util.Date)
+	 */
+	@Override
+	public boolean claimEncounterEvent(Integer id, Date staleBefore) {
+		return dao.claimEncounterEvent(id, staleBefore);
+	}
+
+	/**
+	 * @see KenyaEmrService#updateEncounterEvent(org.openmrs.module.kenyaemr.model.EncounterEvent)
+	 */
+	@Override
+	public void updateEncounterEvent(EncounterEvent event) {
+		dao.updateEncounterEvent(event);
+	}
+
 	/**
 	 * @param queryId
 	 * @param params
@@ -302,4 +771,116 @@ public class KenyaEmrServiceImpl extends BaseOpenmrsService implements KenyaEmrS
 		}
 		return updatedParams;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @see KenyaEmrService#saveReportProfileEntries(java.util.List)
+	 */
+	@Override
+	public void saveReportProfileEntries(List<ReportProfileEntry> entries) {
+		dao.saveReportProfileEntries(entries);
+	}
+
+	/**
+	 * @see KenyaEmrService#getReportProfileRuns(String, int)
+	 */
+	@Override
+	public List<ReportProfileEntry> getReportProfileRuns(String reportUuid, int limit) {
+		return dao.getReportProfileRuns(reportUuid, limit);
+	}
+
+	/**
+	 * @see KenyaEmrService#getReportProfileEntries(String)
+	 */
+	@Override
+	public List<ReportProfileEntry> getReportProfileEntries(String runUuid) {
+		return dao.getReportProfileEntries(runUuid);
+	}
+
+	/**
+	 * @see KenyaEmrService#purgeReportProfileEntries(java.util.Date)
+	 */
+	@Override
+	public int purgeReportProfileEntries(Date before) {
+		return dao.purgeReportProfileEntries(before);
+	}
+
+	/**
+	 * @see KenyaEmrService#getPatientIds(Integer, int)
+	 */
+	@Override
+	public List<Integer> getPatientIds(Integer afterId, int limit) {
+		return dao.getPatientIds(afterId, limit);
+	}
+
+	/**
+	 * @see KenyaEmrService#getPatientCount()
+	 */
+	@Override
+	public long getPatientCount() {
+		return dao.getPatientCount();
+	}
+
+	/**
+	 * @see KenyaEmrService#savePatientValidationIssues(java.util.List)
+	 */
+	@Override
+	public void savePatientValidationIssues(List<PatientValidationIssue> issues) {
+		dao.savePatientValidationIssues(issues);
+	}
+
+	/**
+	 * @see KenyaEmrService#getPatientValidationIssues(String, int, int)
+	 */
+	@Override
+	public List<PatientValidationIssue> getPatientValidationIssues(String runUuid, int startIndex, int length) {
+		return dao.getPatientValidationIssues(runUuid, startIndex, length);
+	}
+
+	/**
+	 * @see KenyaEmrService#getPatientValidationIssueCount(String)
+	 */
+	@Override
+	public long getPatientValidationIssueCount(String runUuid) {
+		return dao.getPatientValidationIssueCount(runUuid);
+	}
+
+	/**
+	 * @see KenyaEmrService#getLatestPatientValidationRunUuid()
+	 */
+	@Override
+	public String getLatestPatientValidationRunUuid() {
+		return dao.getLatestPatientValidationRunUuid();
+	}
+
+	/**
+	 * @see KenyaEmrService#purgePatientValidationIssues(String)
+	 */
+	@Override
+	public int purgePatientValidationIssues(String keepRunUuid) {
+		return dao.purgePatientValidationIssues(keepRunUuid);
+	}
+
+	/**
+	 * @see KenyaEmrService#deletePatientValidationRun(String)
+	 */
+	@Override
+	public int deletePatientValidationRun(String runUuid) {
+		return dao.deletePatientValidationRun(runUuid);
+	}
+
+	/**
+	 * @see KenyaEmrService#getDataQueueSummary(org.openmrs.module.kenyaemr.model.DataQueue)
+	 */
+	@Override
+	public DataQueueSummary getDataQueueSummary(DataQueue queue) {
+		return dao.getDataQueueSummary(queue);
+	}
+
+	/**
+	 * @see KenyaEmrService#getDataQueueErrorMessages(org.openmrs.module.kenyaemr.model.DataQueue, Integer, int)
+	 */
+	@Override
+	public List<DataQueueErrorMessage> getDataQueueErrorMessages(DataQueue queue, Integer beforeId, int limit) {
+		return dao.getDataQueueErrorMessages(queue, beforeId, limit);
+	}
+}
@@ -27,10 +27,11 @@ import org.openmrs.module.kenyacore.calculation.BooleanResult;
 import org.openmrs.module.kenyacore.calculation.Filters;
 import org.openmrs.module.kenyacore.calculation.PatientFlagCalculation;
 import org.openmrs.module.kenyaemr.Dictionary;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
 import org.openmrs.module.kenyaemr.metadata.MchMetadata;
+import org.openmrs.module.kenyaemr.model.HivTestStatus;
 import org.openmrs.module.kenyaemr.util.EmrUtils;
-import org.openmrs.module.kenyaemr.util.HtsConstants;
 import org.openmrs.module.metadatadeploy.MetadataUtils;
 
 import java.util.ArrayList;
@@ -73,6 +74,7 @@ public class HighRiskNegativeClientCategorizationCalculation extends AbstractPat
         Program mchmsProgram = MetadataUtils.existing(Program.class, MchMetadata._Program.MCHMS);
         Program hivProgram = MetadataUtils.existing(Program.class, HivMetadata._Program.HIV);
         Set<Integer> inMchmsProgram = Filters.inProgram(mchmsProgram, cohort, context);
+        Map<Integer, HivTestStatus> testStatuses = Context.getService(KenyaEmrService.class).getHivTestStatuses(inMchmsProgram);
         CalculationResultMap ret = new CalculationResultMap();
 
         for (Integer ptId : cohort) {
@@ -82,8 +84,6 @@ public class HighRiskNegativeClientCategorizationCalculation extends AbstractPat
             Patient patient = patientService.getPatient(ptId);
 
             ConceptService cs = Context.getConceptService();
-            Concept htsFinalTestQuestion = cs.getConcept(HtsConstants.HTS_FINAL_TEST_CONCEPT_ID);
-            Concept htsNegativeResult = cs.getConcept(HtsConstants.HTS_NEGATIVE_RESULT_CONCEPT_ID);
             Concept discordantCouple = Dictionary.getConcept(Dictionary.DISCORDANT_COUPLE);
             Concept behavioralAssessmentOutcomeQuestion = cs.getConcept(165091);
             Concept assessmentOutcomeHighRiskAnswer = cs.getConcept(138643);
@@ -94,50 +94,17 @@ public class HighRiskNegativeClientCategorizationCalculation extends AbstractPat
 
             // 1. PMTCT client enrolled in MCH
             if (inMchmsProgram.contains(ptId)) {
-                // Check  Tested HIV- clients in HTS module
-                Encounter lastHtsInitialEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsInitialForm);
-                Encounter lastHtsRetestEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsRetestForm);
-
-                //  Check new Tested HIV- clients in MCH module
-                Form antenatalVisitForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_ANTENATAL_VISIT);
-                Form matVisitForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_DELIVERY);
-                Form pncVisitForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_POSTNATAL_VISIT);
-                EncounterType mchConsultationEncounterType = MetadataUtils.existing(EncounterType.class, MchMetadata._EncounterType.MCHMS_CONSULTATION);
-                Encounter lastANCHtsEnc = EmrUtils.lastEncounter(patient,mchConsultationEncounterType,antenatalVisitForm );
-                Encounter lastMatHtsEnc = EmrUtils.lastEncounter(patient,mchConsultationEncounterType,matVisitForm );
-                Encounter lastPNCHtsEnc = EmrUtils.lastEncounter(patient,mchConsultationEncounterType,pncVisitForm );
-
-                Encounter lastHtsEnc = null;
-                if (lastHtsInitialEnc != null && lastHtsRetestEnc == null) {
-                    lastHtsEnc = lastHtsInitialEnc;
-                } else if (lastHtsInitialEnc == null && lastHtsRetestEnc != null) {
-                    lastHtsEnc = lastHtsRetestEnc;
-                } else if (lastHtsInitialEnc != null && lastHtsRetestEnc != null) {
-                    if (lastHtsInitialEnc.getEncounterDatetime().after(lastHtsRetestEnc.getEncounterDatetime())) {
-                        lastHtsEnc = lastHtsInitialEnc;
-                    } else {
-                        lastHtsEnc = lastHtsRetestEnc;
-                    }
-                }
-                // MCH module testing
-                // If there are no HIV HTS module tests, check MCH HIV tests
-                if (lastHtsInitialEnc == null && lastHtsRetestEnc == null) {
-                    if (lastANCHtsEnc != null) {
-                        lastHtsEnc = lastANCHtsEnc;
-                    } else if (lastMatHtsEnc != null) {
-                        lastHtsEnc = lastMatHtsEnc;
-                    } else if (lastPNCHtsEnc != null) {
-                        lastHtsEnc = lastPNCHtsEnc;
-                    }
-                }
+                // Tested HIV- clients in the HTS module, or if there are no HTS tests, the MCH module
+                HivTestStatus testStatus = testStatuses.get(ptId);
+                HivTestStatus.Test lastTest = testStatus != null ? testStatus.getLastTest() : null;
 
-                if(lastHtsEnc != null) {
-                    boolean patientHasNegativeTestResult = lastHtsEnc != null ? EmrUtils.encounterThatPassCodedAnswer(lastHtsEnc, htsFinalTestQuestion, htsNegativeResult) : false;
+                if(lastTest != null) {
+                    boolean patientHasNegativeTestResult = lastTest.isNegative();
 
                     // 2. Tested negative
                     if (patientHasNegativeTestResult) {
                        // 3. In discordant relationship
-                        boolean patientInDiscordantRelationship = lastHtsEnc != null ? EmrUtils.encounterThatPassCodedAnswer(lastHtsEnc, discordantCouple, yesAnswer) : false;
+                        boolean patientInDiscordantRelationship = lastTest.isDiscordantCouple();
                         if (patientInDiscordantRelationship) {
                             result = true;
                         }
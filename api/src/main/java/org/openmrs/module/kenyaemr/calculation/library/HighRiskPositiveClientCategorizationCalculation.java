@@ -33,9 +33,11 @@ import org.openmrs.module.kenyacore.calculation.Calculations;
 import org.openmrs.module.kenyacore.calculation.Filters;
 import org.openmrs.module.kenyacore.calculation.PatientFlagCalculation;
 import org.openmrs.module.kenyaemr.Dictionary;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.calculation.EmrCalculationUtils;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
 import org.openmrs.module.kenyaemr.metadata.MchMetadata;
+import org.openmrs.module.kenyaemr.model.HivTestStatus;
 import org.openmrs.module.kenyaemr.util.EmrUtils;
 import org.openmrs.module.kenyaemr.util.HtsConstants;
 import org.openmrs.module.metadatadeploy.MetadataUtils;
@@ -87,6 +89,7 @@ public class HighRiskPositiveClientCategorizationCalculation extends AbstractPat
 
         Concept latestVL = Dictionary.getConcept(Dictionary.HIV_VIRAL_LOAD);
         CalculationResultMap lastVLObs = Calculations.lastObs(latestVL, inHivProgram, context);
+        Map<Integer, HivTestStatus> testStatuses = Context.getService(KenyaEmrService.class).getHivTestStatuses(inMchmsProgram);
 
         for (Integer ptId : cohort) {
             boolean result = false;
@@ -105,50 +108,18 @@ public class HighRiskPositiveClientCategorizationCalculation extends AbstractPat
             // 1. PMTCT client enrolled in MCH
             if (inMchmsProgram.contains(ptId)) {
 
-                // Check new Tested HIV+ clients in HTS module in the past one month
-                Encounter lastHtsInitialEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsInitialForm);
-                Encounter lastHtsRetestEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsRetestForm);
-
-                //  Check new Tested HIV+ clients in MCH module in the past one month
+                //  Reported status at MCH enrollment
                 Form mchEnrollmentForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_ENROLLMENT);
-                Form antenatalVisitForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_ANTENATAL_VISIT);
-                Form matVisitForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_DELIVERY);
-                Form pncVisitForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_POSTNATAL_VISIT);
                 EncounterType mchEnrollmentEncounterType = MetadataUtils.existing(EncounterType.class, MchMetadata._EncounterType.MCHMS_ENROLLMENT);
-                EncounterType mchConsultationEncounterType = MetadataUtils.existing(EncounterType.class, MchMetadata._EncounterType.MCHMS_CONSULTATION);
                 Encounter lastMCHEnrollmentEnc = EmrUtils.lastEncounter(patient,mchEnrollmentEncounterType,mchEnrollmentForm );
-                Encounter lastANCHtsEnc = EmrUtils.lastEncounter(patient,mchConsultationEncounterType,antenatalVisitForm );
-                Encounter lastMatHtsEnc = EmrUtils.lastEncounter(patient,mchConsultationEncounterType,matVisitForm );
-                Encounter lastPNCHtsEnc = EmrUtils.lastEncounter(patient,mchConsultationEncounterType,pncVisitForm );
-
-                Encounter lastHtsEnc = null;
-                if (lastHtsInitialEnc != null && lastHtsRetestEnc == null) {
-                    lastHtsEnc = lastHtsInitialEnc;
-                } else if (lastHtsInitialEnc == null && lastHtsRetestEnc != null) {
-                    lastHtsEnc = lastHtsRetestEnc;
-                } else if (lastHtsInitialEnc != null && lastHtsRetestEnc != null) {
-                    if (lastHtsInitialEnc.getEncounterDatetime().after(lastHtsRetestEnc.getEncounterDatetime())) {
-                        lastHtsEnc = lastHtsInitialEnc;
-                    } else {
-                        lastHtsEnc = lastHtsRetestEnc;
-                    }
-                }
-                // MCH module testing
-                // If there are no HIV HTS module tests, check MCH HIV tests
-                if (lastHtsInitialEnc == null && lastHtsRetestEnc == null) {
-                    if (lastANCHtsEnc != null) {
-                        lastHtsEnc = lastANCHtsEnc;
-                    } else if (lastMatHtsEnc != null) {
-                        lastHtsEnc = lastMatHtsEnc;
-                    } else if (lastPNCHtsEnc != null) {
-                        lastHtsEnc = lastPNCHtsEnc;
-                    }
-                }
 
-                if(lastHtsEnc != null) {
-                    Date lastHtsEncounterDate = lastHtsEnc.getEncounterDatetime();
-                    htsEncounterDiffDays = daysBetween(currentDate, lastHtsEncounterDate);
-                    boolean patientHasPositiveTestResult = lastHtsEnc != null ? EmrUtils.encounterThatPassCodedAnswer(lastHtsEnc, htsFinalTestQuestion, htsPositiveResult) : false;
+                // Tested HIV+ clients in the HTS module, or if there are no HTS tests, the MCH module
+                HivTestStatus testStatus = testStatuses.get(ptId);
+                HivTestStatus.Test lastTest = testStatus != null ? testStatus.getLastTest() : null;
+
+                if(lastTest != null) {
+                    htsEncounterDiffDays = daysBetween(currentDate, lastTest.getDate());
+                    boolean patientHasPositiveTestResult = lastTest.isPositive();
 
                     // 2. Recently tested positive <= 30 days
                     if (patientHasPositiveTestResult && htsEncounterDiffDays <= 30) {
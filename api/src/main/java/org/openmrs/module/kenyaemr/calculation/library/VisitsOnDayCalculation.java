@@ -9,8 +9,6 @@
  */
 package org.openmrs.module.kenyaemr.calculation.library;
 
-import org.openmrs.Patient;
-import org.openmrs.Visit;
 import org.openmrs.api.context.Context;
 import org.openmrs.calculation.patient.PatientCalculationContext;
 import org.openmrs.calculation.result.CalculationResultMap;
@@ -18,16 +16,17 @@ import org.openmrs.calculation.result.ListResult;
 import org.openmrs.calculation.result.SimpleResult;
 import org.openmrs.module.kenyacore.calculation.AbstractPatientCalculation;
 import org.openmrs.module.kenyacore.calculation.CalculationUtils;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.model.VisitSummary;
 import org.openmrs.module.reporting.common.DateUtil;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Returns a list of visits each patient had on a particular date
+ * Returns a list of visits each patient had on a particular date, as {@link VisitSummary} values
  */
 public class VisitsOnDayCalculation extends AbstractPatientCalculation {
 
@@ -43,26 +42,18 @@ public class VisitsOnDayCalculation extends AbstractPatientCalculation {
 		Date startOfDay = DateUtil.getStartOfDay(date);
 		Date endOfDay = DateUtil.getEndOfDay(date);
 		
-		List<Patient> patientStubs = new ArrayList<Patient>();
-		for (Integer ptId : cohort) {
-			patientStubs.add(new Patient(ptId));
-		}
-		
-		// look for visits that started before endOfDay and ended after startOfDay 
-		List<Visit> visits = Context.getVisitService().getVisits(null, patientStubs, null, null, null, endOfDay, startOfDay, null, null, true, false);
-		
-		// organize by patient
+		// look for visits that started before endOfDay and ended after startOfDay
+		Map<Integer, List<VisitSummary>> visitsByPatient = Context.getService(KenyaEmrService.class).getVisitSummariesByPatient(cohort, startOfDay, endOfDay, false);
+
 		CalculationResultMap ret = new CalculationResultMap();
-		for (Visit v : visits) {
-			Integer ptId = v.getPatient().getId();
-			ListResult holder = (ListResult) ret.get(ptId);
-			if (holder == null) {
-				holder = new ListResult();
-				ret.put(ptId, holder);
+		for (Map.Entry<Integer, List<VisitSummary>> entry : visitsByPatient.entrySet()) {
+			ListResult holder = new ListResult();
+			for (VisitSummary visit : entry.getValue()) {
+				holder.add(new SimpleResult(visit, this));
 			}
-			holder.add(new SimpleResult(v, this));
+			ret.put(entry.getKey(), holder);
 		}
-		
+
 		CalculationUtils.ensureEmptyListResults(ret, cohort);
 		return ret;
 	}
@@ -11,27 +11,19 @@ package org.openmrs.module.kenyaemr.calculation.library.hiv;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.openmrs.Concept;
-import org.openmrs.Encounter;
 import org.openmrs.EncounterType;
-import org.openmrs.Form;
-import org.openmrs.Patient;
-import org.openmrs.api.ConceptService;
-import org.openmrs.api.EncounterService;
-import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
 import org.openmrs.calculation.patient.PatientCalculationContext;
 import org.openmrs.calculation.result.CalculationResultMap;
 import org.openmrs.module.kenyacore.calculation.AbstractPatientCalculation;
 import org.openmrs.module.kenyacore.calculation.BooleanResult;
-import org.openmrs.module.kenyaemr.metadata.MchMetadata;
-import org.openmrs.module.kenyaemr.util.EmrUtils;
-import org.openmrs.module.kenyaemr.util.HtsConstants;
+import org.openmrs.module.kenyacore.calculation.Calculations;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.metadata.HivMetadata;
+import org.openmrs.module.kenyaemr.model.HivTestStatus;
 import org.openmrs.module.metadatadeploy.MetadataUtils;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -44,66 +36,21 @@ public class HIVNegativePatientsCalculation extends AbstractPatientCalculation {
     @Override
     public CalculationResultMap evaluate(Collection<Integer> cohort, Map<String, Object> parameterValues, PatientCalculationContext context) {
 
-        EncounterService encounterService = Context.getEncounterService();
-        PatientService patientService = Context.getPatientService();
+        EncounterType hivEnrollment = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_ENROLLMENT);
+        CalculationResultMap enrollmentEncounters = Calculations.lastEncounter(hivEnrollment, cohort, context);
+        Map<Integer, HivTestStatus> testStatuses = Context.getService(KenyaEmrService.class).getHivTestStatuses(cohort);
 
         CalculationResultMap ret = new CalculationResultMap();
         for(Integer ptId: cohort){
-            Patient patient = patientService.getPatient(ptId);
-
             boolean patientNegative = false;
-            List<Encounter> enrollmentEncounters = encounterService.getEncounters(
-                    Context.getPatientService().getPatient(ptId),
-                    null,
-                    null,
-                    null,
-                    null,
-                    Arrays.asList(Context.getEncounterService().getEncounterTypeByUuid("de78a6be-bfc5-4634-adc3-5f1a280455cc")),
-                    null,
-                    null,
-                    null,
-                    false
-            );
-
-            Encounter lastHtsInitialEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsInitialForm);
-            Encounter lastHtsRetestEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsRetestForm);
-
-            Form antenatalVisitForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_ANTENATAL_VISIT);
-            Form matVisitForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_DELIVERY);
-            Form pncVisitForm = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_POSTNATAL_VISIT);
-            EncounterType mchConsultationEncounterType = MetadataUtils.existing(EncounterType.class, MchMetadata._EncounterType.MCHMS_CONSULTATION);
-            Encounter lastANCHtsEnc = EmrUtils.lastEncounter(patient,mchConsultationEncounterType,antenatalVisitForm );
-            Encounter lastMatHtsEnc = EmrUtils.lastEncounter(patient,mchConsultationEncounterType,matVisitForm );
-            Encounter lastPNCHtsEnc = EmrUtils.lastEncounter(patient,mchConsultationEncounterType,pncVisitForm );
-
-            Encounter lastHtsEnc = null;
-
-            if (lastHtsInitialEnc != null && lastHtsRetestEnc == null) {
-                lastHtsEnc = lastHtsInitialEnc;
-            } else if (lastHtsInitialEnc == null && lastHtsRetestEnc != null) {
-                lastHtsEnc = lastHtsRetestEnc;
-            } else if (lastHtsInitialEnc != null && lastHtsRetestEnc != null) {
-                if (lastHtsInitialEnc.getEncounterDatetime().after(lastHtsRetestEnc.getEncounterDatetime())) {
-                    lastHtsEnc = lastHtsInitialEnc;
-                } else {
-                    lastHtsEnc = lastHtsRetestEnc;
-                }
-            }  else if (lastANCHtsEnc != null) {
-                lastHtsEnc = lastANCHtsEnc;
-            }else if (lastMatHtsEnc != null) {
-                lastHtsEnc = lastMatHtsEnc;
-            }else if (lastPNCHtsEnc != null) {
-                lastHtsEnc = lastPNCHtsEnc;
-            }
-
-            ConceptService cs = Context.getConceptService();
-            Concept htsFinalTestQuestion = cs.getConcept(HtsConstants.HTS_FINAL_TEST_CONCEPT_ID);
-            Concept htsNegativeResult = cs.getConcept(HtsConstants.HTS_NEGATIVE_RESULT_CONCEPT_ID);
-
-            boolean patientHasNegativeTestResult = lastHtsEnc != null ? EmrUtils.encounterThatPassCodedAnswer(lastHtsEnc, htsFinalTestQuestion, htsNegativeResult) : false;
 
+            // The last HTS test, or if there is none, the ANC, maternity or PNC test
+            HivTestStatus testStatus = testStatuses.get(ptId);
+            HivTestStatus.Test lastTest = testStatus != null ? testStatus.getLastTest() : null;
+            boolean patientHasNegativeTestResult = lastTest != null && lastTest.isNegative();
 
-            if(enrollmentEncounters.size() <= 0 && patientHasNegativeTestResult) {
+            boolean enrolled = enrollmentEncounters.get(ptId) != null && !enrollmentEncounters.get(ptId).isEmpty();
+            if(!enrolled && patientHasNegativeTestResult) {
                 patientNegative = true;
             }
 
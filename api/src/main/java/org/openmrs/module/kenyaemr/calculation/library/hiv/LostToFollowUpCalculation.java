@@ -12,13 +12,10 @@ package org.openmrs.module.kenyaemr.calculation.library.hiv;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Concept;
-import org.openmrs.Encounter;
 import org.openmrs.EncounterType;
 import org.openmrs.Form;
 import org.openmrs.Obs;
 import org.openmrs.Program;
-import org.openmrs.api.EncounterService;
-import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
 import org.openmrs.calculation.patient.PatientCalculationContext;
 import org.openmrs.calculation.result.CalculationResultMap;
@@ -28,14 +25,17 @@ import org.openmrs.module.kenyacore.calculation.Filters;
 import org.openmrs.module.kenyacore.calculation.PatientFlagCalculation;
 import org.openmrs.module.kenyaemr.Dictionary;
 import org.openmrs.module.kenyaemr.HivConstants;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
-import org.openmrs.module.kenyaemr.util.EmrUtils;
+import org.openmrs.module.kenyaemr.model.EncounterSummary;
 import org.openmrs.module.metadatadeploy.MetadataUtils;
 
-
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -70,53 +70,65 @@ public class LostToFollowUpCalculation extends AbstractPatientCalculation implem
 		Set<Integer> alive = Filters.alive(cohort, context);
 		Set<Integer> inHivProgram = Filters.inProgram(hivProgram, alive, context);
 
+		Concept tcaConcept = Dictionary.getConcept(Dictionary.RETURN_VISIT_DATE);
+		Concept reasonForDiscontinuation = Dictionary.getConcept(Dictionary.REASON_FOR_PROGRAM_DISCONTINUATION);
+		Concept discontinuedLtfu = Dictionary.getConcept(Dictionary.LOST_TO_FOLLOWUP);
+		EncounterType hivDiscEncType = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_DISCONTINUATION);
+		Form hivDiscForm = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_DISCONTINUATION);
+		EncounterType hivEnrolmentEncType = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_ENROLLMENT);
+		EncounterType greenCardEncType = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_CONSULTATION);
+		Form pocHivFollowup = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
+		Form rdeHivFollowup = MetadataUtils.existing(Form.class, HivMetadata._Form.MOH_257_VISIT_SUMMARY);
+
+		KenyaEmrService service = Context.getService(KenyaEmrService.class);
+		Map<Integer, EncounterSummary> lastHivDiscontinuationEncounters = service.getLastEncounterSummaries(alive, hivDiscEncType, Collections.singleton(hivDiscForm));
+		Map<Integer, EncounterSummary> lastHivEnrollmentEncounters = service.getLastEncounterSummaries(alive, hivEnrolmentEncType, null);
+		Map<Integer, EncounterSummary> lastFollowUpEncounters = service.getLastEncounterSummaries(alive, greenCardEncType, Arrays.asList(pocHivFollowup, rdeHivFollowup));
+
+		// Only the TCA of the last followup of patients in the program, and the reason of a discontinuation after the
+		// last enrollment and followup (i.e. the patient hasn't re-enrolled) are of interest
+		Set<Integer> encounterIds = new HashSet<Integer>();
+		Set<Integer> discontinued = new HashSet<Integer>();
+		for (Integer ptId : alive) {
+			EncounterSummary lastFollowUpEncounter = lastFollowUpEncounters.get(ptId);
+			EncounterSummary lastHivDiscontinuationEncounter = lastHivDiscontinuationEncounters.get(ptId);
+			EncounterSummary lastHivEnrollmentEncounter = lastHivEnrollmentEncounters.get(ptId);
+
+			if (inHivProgram.contains(ptId) && lastFollowUpEncounter != null) {
+				encounterIds.add(lastFollowUpEncounter.getEncounterId());
+			}
+			if (lastHivDiscontinuationEncounter != null && lastHivEnrollmentEncounter != null && lastFollowUpEncounter != null) {
+				Date discontinuationDate = lastHivDiscontinuationEncounter.getEncounterDatetime();
+				if (discontinuationDate.after(lastHivEnrollmentEncounter.getEncounterDatetime()) && discontinuationDate.after(lastFollowUpEncounter.getEncounterDatetime())) {
+					encounterIds.add(lastHivDiscontinuationEncounter.getEncounterId());
+					discontinued.add(ptId);
+				}
+			}
+		}
+
+		Map<Integer, List<Obs>> obsByEncounter = service.getObsByEncounter(encounterIds, Arrays.asList(tcaConcept, reasonForDiscontinuation));
+
 		CalculationResultMap ret = new CalculationResultMap();
 		for (Integer ptId : cohort) {
 			boolean lost = false;
-			Integer tcaConcept = 5096;
-			Date tcaDate = null;
-			PatientService patientService = Context.getPatientService();
-			EncounterService encounterService = Context.getEncounterService();
-
-			Concept reasonForDiscontinuation = Dictionary.getConcept(Dictionary.REASON_FOR_PROGRAM_DISCONTINUATION);
-			Concept discontinued_ltfu = Dictionary.getConcept(Dictionary.LOST_TO_FOLLOWUP);
-			EncounterType hivDiscEncType = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_DISCONTINUATION);
-			Form hivDiscForm = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_DISCONTINUATION);
-			Encounter lastHivDiscontinuationEncounter = EmrUtils.lastEncounter(patientService.getPatient(ptId), hivDiscEncType, hivDiscForm);  //last hiv discontinuation encounter
-			EncounterType hivEnrolmentEncounter = encounterService.getEncounterTypeByUuid(HivMetadata._EncounterType.HIV_ENROLLMENT);
-			Encounter lastHivEnrollmentEncounter = EmrUtils.lastEncounter(patientService.getPatient(ptId), hivEnrolmentEncounter);
-			// Is patient alive and in HIV program
-
-			//With Greencard Encounter
-			EncounterType greenCardEncType = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_CONSULTATION);
-			Form pocHivFollowup = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
-			Form rdeHivFollowup = MetadataUtils.existing(Form.class, HivMetadata._Form.MOH_257_VISIT_SUMMARY);
-			Encounter lastFollowUpEncounter = EmrUtils.lastEncounter(patientService.getPatient(ptId), greenCardEncType, Arrays.asList(pocHivFollowup, rdeHivFollowup));  //last hiv followup encounter
-
-			if (inHivProgram.contains(ptId)) {
-
-				if (lastFollowUpEncounter != null) {
-					for (Obs obs : lastFollowUpEncounter.getObs()) {
-						if (obs.getConcept().getConceptId().equals(tcaConcept)) {
-							tcaDate = obs.getValueDatetime();
-							if (tcaDate != null) {
-								if (daysSince(tcaDate, context) > HivConstants.LOST_TO_FOLLOW_UP_THRESHOLD_DAYS) {
-									lost = true;
-									break;
-								}
-							}
-						}
+
+			// Is patient alive and in HIV program, but past their last TCA
+			if (inHivProgram.contains(ptId) && lastFollowUpEncounters.containsKey(ptId)) {
+				for (Obs obs : getObs(obsByEncounter, lastFollowUpEncounters.get(ptId))) {
+					Date tcaDate = obs.getValueDatetime();
+					if (obs.getConcept().equals(tcaConcept) && tcaDate != null && daysSince(tcaDate, context) > HivConstants.LOST_TO_FOLLOW_UP_THRESHOLD_DAYS) {
+						lost = true;
+						break;
 					}
 				}
 			}
-			// Is patient alive and discontinued from HIV program
-			if (alive.contains(ptId) && lastHivDiscontinuationEncounter != null && lastHivEnrollmentEncounter != null && lastFollowUpEncounter != null) {          //these clients are no longer in hiv prog
-				if (lastHivDiscontinuationEncounter.getEncounterDatetime().after(lastHivEnrollmentEncounter.getEncounterDatetime()) && lastHivDiscontinuationEncounter.getEncounterDatetime().after(lastFollowUpEncounter.getEncounterDatetime())) {   // check for re-enrollments
-					for (Obs obs : lastHivDiscontinuationEncounter.getObs()) {
-						if (obs.getConcept().equals(reasonForDiscontinuation) && obs.getValueCoded().equals(discontinued_ltfu)) {
-							lost = true;
-							break;
-						}
+
+			// Is patient alive and discontinued from HIV program as lost to followup
+			if (!lost && discontinued.contains(ptId)) {
+				for (Obs obs : getObs(obsByEncounter, lastHivDiscontinuationEncounters.get(ptId))) {
+					if (obs.getConcept().equals(reasonForDiscontinuation) && discontinuedLtfu.equals(obs.getValueCoded())) {
+						lost = true;
+						break;
 					}
 				}
 			}
@@ -124,4 +136,9 @@ public class LostToFollowUpCalculation extends AbstractPatientCalculation implem
 		}
 		return ret;
 	}
+
+	private static List<Obs> getObs(Map<Integer, List<Obs>> obsByEncounter, EncounterSummary encounter) {
+		List<Obs> obs = obsByEncounter.get(encounter.getEncounterId());
+		return obs != null ? obs : Collections.<Obs>emptyList();
+	}
 }
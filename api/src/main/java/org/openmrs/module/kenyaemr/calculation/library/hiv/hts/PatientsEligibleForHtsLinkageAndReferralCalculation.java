@@ -11,28 +11,15 @@ package org.openmrs.module.kenyaemr.calculation.library.hiv.hts;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.openmrs.Concept;
-import org.openmrs.Encounter;
-import org.openmrs.EncounterType;
-import org.openmrs.Form;
-import org.openmrs.Patient;
-import org.openmrs.api.ConceptService;
-import org.openmrs.api.EncounterService;
-import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
 import org.openmrs.calculation.patient.PatientCalculationContext;
 import org.openmrs.calculation.result.CalculationResultMap;
 import org.openmrs.module.kenyacore.calculation.AbstractPatientCalculation;
 import org.openmrs.module.kenyacore.calculation.BooleanResult;
-import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
-import org.openmrs.module.kenyaemr.metadata.HivMetadata;
-import org.openmrs.module.kenyaemr.util.EmrUtils;
-import org.openmrs.module.kenyaemr.util.HtsConstants;
-import org.openmrs.module.metadatadeploy.MetadataUtils;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.model.HivTestStatus;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -45,57 +32,20 @@ public class PatientsEligibleForHtsLinkageAndReferralCalculation extends Abstrac
     @Override
     public CalculationResultMap evaluate(Collection<Integer> cohort, Map<String, Object> parameterValues, PatientCalculationContext context) {
 
-        EncounterService encounterService = Context.getEncounterService();
-        PatientService patientService = Context.getPatientService();
+        Map<Integer, HivTestStatus> testStatuses = Context.getService(KenyaEmrService.class).getHivTestStatuses(cohort);
 
         CalculationResultMap ret = new CalculationResultMap();
         for(Integer ptId: cohort){
-            Patient patient = patientService.getPatient(ptId);
             boolean notEnrolled = false;
 
-            List<Encounter> enrollmentEncounters = encounterService.getEncounters(
-                    Context.getPatientService().getPatient(ptId),
-                    null,
-                    null,
-                    null,
-                    null,
-                    Arrays.asList(MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_ENROLLMENT)),
-                    null,
-                    null,
-                    null,
-                    false
-            );
+            HivTestStatus testStatus = testStatuses.get(ptId);
+            HivTestStatus.Test lastHtsTest = testStatus != null ? testStatus.getLastHtsTest() : null;
 
-            List<Encounter> htsEncounters = Context.getEncounterService().getEncounters(patient, null, null, null, Arrays.asList(HtsConstants.htsInitialForm, HtsConstants.htsRetestForm), null, null, null, null, false);
+            boolean patientHasPositiveTestResult = lastHtsTest != null && lastHtsTest.isPositive();
+            // this assumes a successful linkage must record unique patient number
+            boolean patientHasSuccessfulLinkage = testStatus != null && testStatus.isLinkageSuccessful();
 
-            Encounter lastHtsInitialEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsInitialForm);
-            Encounter lastHtsRetestEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsRetestForm);
-            Encounter lastLinkageEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsLinkageForm);
-            Encounter lastHtsEnc = null;
-
-            if (lastHtsInitialEnc != null && lastHtsRetestEnc == null) {
-                lastHtsEnc = lastHtsInitialEnc;
-            } else if (lastHtsInitialEnc == null && lastHtsRetestEnc != null) {
-                lastHtsEnc = lastHtsRetestEnc;
-            } else if (lastHtsInitialEnc != null && lastHtsRetestEnc != null) {
-                if (lastHtsInitialEnc.getEncounterDatetime().after(lastHtsRetestEnc.getEncounterDatetime())) {
-                    lastHtsEnc = lastHtsInitialEnc;
-                } else {
-                    lastHtsEnc = lastHtsRetestEnc;
-                }
-            }
-
-            ConceptService cs = Context.getConceptService();
-            Concept htsFinalTestQuestion = cs.getConcept(HtsConstants.HTS_FINAL_TEST_CONCEPT_ID);
-            Concept htsPositiveResult = cs.getConcept(HtsConstants.HTS_POSITIVE_RESULT_CONCEPT_ID);
-            //Concept linkageQuestion = cs.getConcept(HtsConstants.HTSLINKAGE_QUESTION_CONCEPT_ID);
-            Concept linkageSuccessful = cs.getConcept(HtsConstants.HTS_UPN_QUESTION_CONCEPT_ID);// this assumes a successful linkage must record unique patient number
-
-            boolean patientHasPositiveTestResult = lastHtsEnc != null ? EmrUtils.encounterThatPassCodedAnswer(lastHtsEnc, htsFinalTestQuestion, htsPositiveResult) : false;
-            boolean patientHasSuccessfulLinkage = lastLinkageEnc != null ? EmrUtils.encounterHasObsForConcept(lastLinkageEnc, linkageSuccessful) : false;
-            //boolean patientHasSuccessfulLinkage = lastLinkageEnc != null ? EmrUtils.encounterThatPassCodedAnswer(lastLinkageEnc, linkageQuestion, linkageSuccessful) : false;
-
-            if(htsEncounters.size() > 0 && patientHasPositiveTestResult && !patientHasSuccessfulLinkage) {
+            if(patientHasPositiveTestResult && !patientHasSuccessfulLinkage) {
                 notEnrolled = true;
             }
 
@@ -11,26 +11,19 @@ package org.openmrs.module.kenyaemr.calculation.library.hiv.hts;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.openmrs.Concept;
-import org.openmrs.Encounter;
 import org.openmrs.EncounterType;
-import org.openmrs.Patient;
-import org.openmrs.api.ConceptService;
-import org.openmrs.api.EncounterService;
-import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
 import org.openmrs.calculation.patient.PatientCalculationContext;
 import org.openmrs.calculation.result.CalculationResultMap;
 import org.openmrs.module.kenyacore.calculation.AbstractPatientCalculation;
 import org.openmrs.module.kenyacore.calculation.BooleanResult;
+import org.openmrs.module.kenyacore.calculation.Calculations;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
-import org.openmrs.module.kenyaemr.util.EmrUtils;
-import org.openmrs.module.kenyaemr.util.HtsConstants;
+import org.openmrs.module.kenyaemr.model.HivTestStatus;
 import org.openmrs.module.metadatadeploy.MetadataUtils;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -43,52 +36,19 @@ public class PatientsEligibleForHtsRetestCalculation extends AbstractPatientCalc
     @Override
     public CalculationResultMap evaluate(Collection<Integer> cohort, Map<String, Object> parameterValues, PatientCalculationContext context) {
 
-        EncounterService encounterService = Context.getEncounterService();
-        PatientService patientService = Context.getPatientService();
-
+        EncounterType hivEnrollment = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_ENROLLMENT);
+        CalculationResultMap enrollmentEncounters = Calculations.lastEncounter(hivEnrollment, cohort, context);
+        Map<Integer, HivTestStatus> testStatuses = Context.getService(KenyaEmrService.class).getHivTestStatuses(cohort);
 
         CalculationResultMap ret = new CalculationResultMap();
         for(Integer ptId: cohort){
-            Patient patient = patientService.getPatient(ptId);
             boolean patientEligible = false;
-            List<Encounter> enrollmentEncounters = encounterService.getEncounters(
-                    Context.getPatientService().getPatient(ptId),
-                    null,
-                    null,
-                    null,
-                    null,
-                    Arrays.asList(MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_ENROLLMENT)),
-                    null,
-                    null,
-                    null,
-                    false
-            );
-
-            Encounter lastHtsInitialEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsInitialForm);
-            Encounter lastHtsRetestEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsRetestForm);
-            Encounter lastLinkageEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsLinkageForm);
-            Encounter lastHtsEnc = null;
-
-            if (lastHtsInitialEnc != null && lastHtsRetestEnc == null) {
-                lastHtsEnc = lastHtsInitialEnc;
-            } else if (lastHtsInitialEnc == null && lastHtsRetestEnc != null) {
-                lastHtsEnc = lastHtsRetestEnc;
-            } else if (lastHtsInitialEnc != null && lastHtsRetestEnc != null) {
-                if (lastHtsInitialEnc.getEncounterDatetime().after(lastHtsRetestEnc.getEncounterDatetime())) {
-                    lastHtsEnc = lastHtsInitialEnc;
-                } else {
-                    lastHtsEnc = lastHtsRetestEnc;
-                }
-            }
-
-            ConceptService cs = Context.getConceptService();
-            Concept htsFinalTestQuestion = cs.getConcept(HtsConstants.HTS_FINAL_TEST_CONCEPT_ID);
-            Concept htsPositiveResult = cs.getConcept(HtsConstants.HTS_POSITIVE_RESULT_CONCEPT_ID);
 
-            boolean patientHasPositiveTestResult = lastHtsEnc != null ? EmrUtils.encounterThatPassCodedAnswer(lastHtsEnc, htsFinalTestQuestion, htsPositiveResult) : false;
+            HivTestStatus testStatus = testStatuses.get(ptId);
+            boolean linked = testStatus != null && testStatus.hasLinkage();
 
-           // if(enrollmentEncounters.size() <= 0 && patientHasPositiveTestResult && lastLinkageEnc == null) {
-            if(enrollmentEncounters.size() <= 0 && lastLinkageEnc == null) {          //Criteria:Not enrolled and not linked
+            boolean enrolled = enrollmentEncounters.get(ptId) != null && !enrollmentEncounters.get(ptId).isEmpty();
+            if(!enrolled && !linked) {          //Criteria:Not enrolled and not linked
                 patientEligible = true;
             }
 
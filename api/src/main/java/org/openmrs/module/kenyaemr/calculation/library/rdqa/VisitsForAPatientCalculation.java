@@ -9,14 +9,13 @@
  */
 package org.openmrs.module.kenyaemr.calculation.library.rdqa;
 
-import org.openmrs.Visit;
+import org.openmrs.api.context.Context;
 import org.openmrs.calculation.patient.PatientCalculationContext;
 import org.openmrs.calculation.result.CalculationResultMap;
-import org.openmrs.calculation.result.ListResult;
 import org.openmrs.calculation.result.SimpleResult;
 import org.openmrs.module.kenyacore.calculation.AbstractPatientCalculation;
-import org.openmrs.module.kenyacore.calculation.CalculationUtils;
-import org.openmrs.module.kenyacore.report.data.patient.definition.VisitsForPatientDataDefinition;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.model.VisitSummary;
 
 import java.util.Collection;
 import java.util.List;
@@ -30,14 +29,12 @@ public class VisitsForAPatientCalculation extends AbstractPatientCalculation {
 	@Override
 	public CalculationResultMap evaluate(Collection<Integer> cohort, Map<String, Object> parameterValues, PatientCalculationContext context) {
 
-		VisitsForPatientDataDefinition definition = new VisitsForPatientDataDefinition();
-		CalculationResultMap data = CalculationUtils.evaluateWithReporting(definition, cohort, parameterValues, null, context);
+		Map<Integer, List<VisitSummary>> visitsByPatient = Context.getService(KenyaEmrService.class).getVisitSummariesByPatient(cohort, null, null, false);
 		CalculationResultMap ret = new CalculationResultMap();
 
 		for (Integer ptid : cohort) {
-			ListResult result = (ListResult) data.get(ptid);
-			List<Visit> visits = CalculationUtils.extractResultValues(result);
-			Integer noOfVisits = visits != null && visits.size() > 0? visits.size(): 0;
+			List<VisitSummary> visits = visitsByPatient.get(ptid);
+			Integer noOfVisits = visits != null ? visits.size() : 0;
 			ret.put(ptid, new SimpleResult(noOfVisits, this));
 		}
 
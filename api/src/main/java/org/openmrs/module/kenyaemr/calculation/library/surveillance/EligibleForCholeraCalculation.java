@@ -11,22 +11,20 @@ package org.openmrs.module.kenyaemr.calculation.library.surveillance;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.joda.time.DateTime;
-import org.joda.time.Days;
-import org.openmrs.*;
-import org.openmrs.api.ConceptService;
-import org.openmrs.api.PatientService;
-import org.openmrs.api.context.Context;
 import org.openmrs.calculation.patient.PatientCalculationContext;
 import org.openmrs.calculation.result.CalculationResultMap;
-import org.openmrs.module.kenyacore.calculation.*;
-import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
-import org.openmrs.module.kenyaemr.metadata.HivMetadata;
-import org.openmrs.module.kenyaemr.util.EmrUtils;
-import org.openmrs.module.metadatadeploy.MetadataUtils;
+import org.openmrs.module.kenyacore.calculation.AbstractPatientCalculation;
+import org.openmrs.module.kenyacore.calculation.BooleanResult;
+import org.openmrs.module.kenyacore.calculation.Calculations;
+import org.openmrs.module.kenyacore.calculation.Filters;
+import org.openmrs.module.kenyacore.calculation.PatientFlagCalculation;
+import org.openmrs.module.kenyaemr.calculation.EmrCalculationUtils;
+import org.openmrs.module.kenyaemr.calculation.library.surveillance.SurveillanceScreeningData.ScreeningEncounter;
+import org.openmrs.module.reporting.common.Age;
 
-import java.text.SimpleDateFormat;
-import java.util.*;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Calculates the eligibility for Cholera screening flag for  patients
@@ -39,11 +37,6 @@ import java.util.*;
 public class EligibleForCholeraCalculation extends AbstractPatientCalculation implements PatientFlagCalculation {
     protected static final Log log = LogFactory.getLog(EligibleForCholeraCalculation.class);
 
-    public static final EncounterType consultationEncType = MetadataUtils.existing(EncounterType.class, CommonMetadata._EncounterType.CONSULTATION);
-    public static final Form clinicalEncounterForm = MetadataUtils.existing(Form.class, CommonMetadata._Form.CLINICAL_ENCOUNTER);
-    public static final EncounterType greenCardEncType = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_CONSULTATION);
-    public static final Form greenCardForm = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
-
     @Override
     public String getFlagMessage() {
         return "Suspected Cholera case";
@@ -56,63 +49,27 @@ public class EligibleForCholeraCalculation extends AbstractPatientCalculation im
     @Override
     public CalculationResultMap evaluate(Collection<Integer> cohort, Map<String, Object> parameterValues, PatientCalculationContext context) {
         Set<Integer> alive = Filters.alive(cohort, context);
-        PatientService patientService = Context.getPatientService();
+        SurveillanceScreeningData data = SurveillanceScreeningData.get(alive, context);
+        CalculationResultMap ages = Calculations.ages(alive, context);
         CalculationResultMap ret = new CalculationResultMap();
-        for (Integer ptId : alive) {
-            boolean result = false;
-            List<Visit> activeVisits = Context.getVisitService().getActiveVisitsByPatient(patientService.getPatient(ptId));
-            if (!activeVisits.isEmpty()) {
-                Date dateCreated = null;
-                Date currentDate = new Date();
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-                String todayDate = dateFormat.format(currentDate);
-                Patient patient = patientService.getPatient(ptId);
-                Encounter lastClinicalEncounter = EmrUtils.lastEncounter(patient, consultationEncType, clinicalEncounterForm); //last clinical encounter form
-                Encounter lastGreenCardEnc = EmrUtils.lastEncounter(patient, greenCardEncType, greenCardForm);   //last greencard followup form
-                ConceptService cs = Context.getConceptService();
-                Concept vomitingResult = cs.getConcept(VOMITING);
-                Concept diarrheaResult = cs.getConcept(DIARRHEA);
-                Concept screeningQuestion = cs.getConcept(SCREENING_QUESTION);
-                boolean patientVomitClinicalEncResult = lastClinicalEncounter != null ? EmrUtils.encounterThatPassCodedAnswer(lastClinicalEncounter, screeningQuestion, vomitingResult) : false;
-                boolean patientDiarrheaClinicalEncResult = lastClinicalEncounter != null ? EmrUtils.encounterThatPassCodedAnswer(lastClinicalEncounter, screeningQuestion, diarrheaResult) : false;
-                boolean patientVomitGreenCardResult = lastGreenCardEnc != null ? EmrUtils.encounterThatPassCodedAnswer(lastGreenCardEnc, screeningQuestion, vomitingResult) : false;
-                boolean patientDiarrheaGreenCardResult = lastGreenCardEnc != null ? EmrUtils.encounterThatPassCodedAnswer(lastGreenCardEnc, screeningQuestion, diarrheaResult) : false;
-                if (patient.getAge() > 2) {
-                    if (lastClinicalEncounter != null) {
-                        for (Obs obs : lastClinicalEncounter.getObs()) {
-                            if (patientVomitClinicalEncResult && patientDiarrheaClinicalEncResult) {
-                                dateCreated = obs.getDateCreated();
-                                if (dateCreated != null) {
-                                    String createdDate = dateFormat.format(dateCreated);
-                                    if (createdDate.equals(todayDate)) {
-                                        result = true;
-                                        break;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    if (lastGreenCardEnc != null) {
-                        for (Obs obs : lastGreenCardEnc.getObs()) {
-                            if (patientVomitGreenCardResult && patientDiarrheaGreenCardResult) {
-                                dateCreated = obs.getDateCreated();
-                                if (dateCreated != null) {
-                                    String createdDate = dateFormat.format(dateCreated);
-                                    if (createdDate.equals(todayDate)) {
-                                        result = true;
-                                        break;
-                                    }
-                                }
-                            }
-                        }
-
-                    }
-                }
 
-                ret.put(ptId, new BooleanResult(result, this));
+        for (Integer ptId : alive) {
+            if (data.hasActiveVisit(ptId)) {
+                Age age = EmrCalculationUtils.resultForPatient(ages, ptId);
+                boolean eligible = age != null && age.getFullYears() > 2
+                        && (screenedToday(data.getLastClinicalEncounter(ptId)) || screenedToday(data.getLastGreenCardEncounter(ptId)));
+                ret.put(ptId, new BooleanResult(eligible, this));
             }
         }
 
         return ret;
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks whether the screening recorded in an encounter today meets the case definition
+     */
+    private boolean screenedToday(ScreeningEncounter encounter) {
+        return encounter != null && encounter.isCreatedToday()
+                && encounter.hasAnswers(SCREENING_QUESTION, VOMITING, DIARRHEA);
+    }
+}
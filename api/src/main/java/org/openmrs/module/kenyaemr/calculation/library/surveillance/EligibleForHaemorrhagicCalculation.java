@@ -11,33 +11,15 @@ package org.openmrs.module.kenyaemr.calculation.library.surveillance;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.joda.time.DateTime;
-import org.joda.time.Days;
-import org.openmrs.Concept;
-import org.openmrs.Encounter;
-import org.openmrs.EncounterType;
-import org.openmrs.Form;
-import org.openmrs.Obs;
-import org.openmrs.Patient;
-import org.openmrs.Visit;
-import org.openmrs.api.ConceptService;
-import org.openmrs.api.PatientService;
-import org.openmrs.api.context.Context;
 import org.openmrs.calculation.patient.PatientCalculationContext;
 import org.openmrs.calculation.result.CalculationResultMap;
 import org.openmrs.module.kenyacore.calculation.AbstractPatientCalculation;
 import org.openmrs.module.kenyacore.calculation.BooleanResult;
 import org.openmrs.module.kenyacore.calculation.Filters;
 import org.openmrs.module.kenyacore.calculation.PatientFlagCalculation;
-import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
-import org.openmrs.module.kenyaemr.metadata.HivMetadata;
-import org.openmrs.module.kenyaemr.util.EmrUtils;
-import org.openmrs.module.metadatadeploy.MetadataUtils;
+import org.openmrs.module.kenyaemr.calculation.library.surveillance.SurveillanceScreeningData.ScreeningEncounter;
 
-import java.text.SimpleDateFormat;
 import java.util.Collection;
-import java.util.Date;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -51,82 +33,36 @@ import java.util.Set;
 public class EligibleForHaemorrhagicCalculation extends AbstractPatientCalculation implements PatientFlagCalculation {
     protected static final Log log = LogFactory.getLog(EligibleForHaemorrhagicCalculation.class);
 
-    public static final EncounterType consultationEncType = MetadataUtils.existing(EncounterType.class, CommonMetadata._EncounterType.CONSULTATION);
-    public static final Form clinicalEncounterForm = MetadataUtils.existing(Form.class, CommonMetadata._Form.CLINICAL_ENCOUNTER);
-
-    public static final EncounterType greenCardEncType = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_CONSULTATION);
-    public static final Form greenCardForm = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
-
     @Override
     public String getFlagMessage() {
         return "Suspected Haemorrhagic Fever";
     }
+
     Integer FEVER = 140238;
-    Integer BLEEDING_TENDENCIES = 162628;  
+    Integer BLEEDING_TENDENCIES = 162628;
     Integer SCREENING_QUESTION = 5219;
 
     @Override
     public CalculationResultMap evaluate(Collection<Integer> cohort, Map<String, Object> parameterValues, PatientCalculationContext context) {
-
         Set<Integer> alive = Filters.alive(cohort, context);
-        PatientService patientService = Context.getPatientService();
+        SurveillanceScreeningData data = SurveillanceScreeningData.get(alive, context);
         CalculationResultMap ret = new CalculationResultMap();
 
         for (Integer ptId : alive) {
-            boolean eligible = false;
-            List<Visit> activeVisits = Context.getVisitService().getActiveVisitsByPatient(patientService.getPatient(ptId));
-            if (!activeVisits.isEmpty()) {
-                Date currentDate = new Date();              
-                Date dateCreated = null;
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-                String todayDate = dateFormat.format(currentDate);
-                Patient patient = patientService.getPatient(ptId);
-
-                Encounter lastHivFollowUpEncounter = EmrUtils.lastEncounter(patient, greenCardEncType, greenCardForm);   //last greencard followup form
-                Encounter lastClinicalEncounter = EmrUtils.lastEncounter(patient, consultationEncType, clinicalEncounterForm);   //last clinical encounter form
-
-                ConceptService cs = Context.getConceptService();
-                Concept feverResult = cs.getConcept(FEVER);
-                Concept bleedingResult = cs.getConcept(BLEEDING_TENDENCIES);
-                Concept screeningQuestion = cs.getConcept(SCREENING_QUESTION);
-
-                boolean patientFeverResultGreenCard = lastHivFollowUpEncounter != null ? EmrUtils.encounterThatPassCodedAnswer(lastHivFollowUpEncounter, screeningQuestion, feverResult) : false;
-                boolean patientBleedingResultGreenCard = lastHivFollowUpEncounter != null ? EmrUtils.encounterThatPassCodedAnswer(lastHivFollowUpEncounter, screeningQuestion, bleedingResult) : false;
-                boolean patientFeverResultClinical = lastClinicalEncounter != null ? EmrUtils.encounterThatPassCodedAnswer(lastClinicalEncounter, screeningQuestion, feverResult) : false;
-                boolean patientBleedingResultClinical = lastClinicalEncounter != null ? EmrUtils.encounterThatPassCodedAnswer(lastClinicalEncounter, screeningQuestion, bleedingResult) : false;
-
-                if (lastHivFollowUpEncounter != null) {
-                    if (patientFeverResultGreenCard && patientBleedingResultGreenCard) {
-                        for (Obs obs : lastHivFollowUpEncounter.getObs()) {
-                            dateCreated = obs.getDateCreated();
-                          
-                            if (dateCreated != null) {
-                                String createdDate = dateFormat.format(dateCreated);                              
-                                    if (createdDate.equals(todayDate)) {
-                                        eligible = true;
-                                        break;                                    
-                                }
-                            }
-                        }
-                    }
-                }
-                if (lastClinicalEncounter != null) {
-                    if (patientFeverResultClinical && patientBleedingResultClinical) {
-                        for (Obs obs : lastClinicalEncounter.getObs()) {
-                            dateCreated = obs.getDateCreated();                         
-                            if (dateCreated != null) {
-                                String createdDate = dateFormat.format(dateCreated);                              
-                                    if (createdDate.equals(todayDate)) {
-                                        eligible = true;
-                                        break;                                  
-                                }
-                            }
-                        }
-                    }
-                }
+            if (data.hasActiveVisit(ptId)) {
+                boolean eligible = screenedToday(data.getLastGreenCardEncounter(ptId)) || screenedToday(data.getLastClinicalEncounter(ptId));
                 ret.put(ptId, new BooleanResult(eligible, this));
             }
         }
+
         return ret;
     }
+
+    /**
+     * Checks whether the screening recorded in an encounter today meets the case definition
+     */
+    private boolean screenedToday(ScreeningEncounter encounter) {
+        return encounter != null && encounter.isCreatedToday()
+                && encounter.hasAnswers(SCREENING_QUESTION, FEVER, BLEEDING_TENDENCIES);
+    }
 }
@@ -0,0 +1,282 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.calculation.library.surveillance;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.openmrs.Concept;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
+import org.openmrs.api.context.Context;
+import org.openmrs.calculation.patient.PatientCalculationContext;
+import org.openmrs.calculation.result.CalculationResultMap;
+import org.openmrs.module.kenyacore.calculation.Calculations;
+import org.openmrs.module.kenyaemr.calculation.EmrCalculationUtils;
+import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
+import org.openmrs.module.kenyaemr.metadata.HivMetadata;
+import org.openmrs.module.metadatadeploy.MetadataUtils;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
+import org.openmrs.module.reporting.evaluation.service.EvaluationService;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Data shared by the surveillance flag calculations, fetched once for a cohort: which patients have an active visit,
+ * their last triage, clinical encounter and green card encounters with the screening obs on them, and their last
+ * temperature. The data is cached in the calculation context so that flags evaluated with the same context share it.
+ */
+public class SurveillanceScreeningData {
+
+    private static final String CACHE_KEY = SurveillanceScreeningData.class.getName();
+
+    public static final Integer TEMPERATURE = 5088;
+
+    public static final Integer DURATION = 159368;
+
+    private final Set<Integer> patientIds;
+
+    private final Set<Integer> activeVisitPatients = new HashSet<Integer>();
+
+    private final Map<Integer, ScreeningEncounter> lastTriageEncounters = new HashMap<Integer, ScreeningEncounter>();
+
+    private final Map<Integer, ScreeningEncounter> lastClinicalEncounters = new HashMap<Integer, ScreeningEncounter>();
+
+    private final Map<Integer, ScreeningEncounter> lastGreenCardEncounters = new HashMap<Integer, ScreeningEncounter>();
+
+    private CalculationResultMap lastTemperatures;
+
+    private SurveillanceScreeningData(Collection<Integer> patientIds) {
+        this.patientIds = new HashSet<Integer>(patientIds);
+    }
+
+    /**
+     * Gets the screening data for the given cohort, from the calculation context if it has already been fetched
+     * @param cohort the patient ids
+     * @param context the calculation context
+     * @return the screening data
+     */
+    public static SurveillanceScreeningData get(Collection<Integer> cohort, PatientCalculationContext context) {
+        SurveillanceScreeningData data = (SurveillanceScreeningData) context.getFromCache(CACHE_KEY);
+        if (data == null || !data.patientIds.containsAll(cohort)) {
+            data = new SurveillanceScreeningData(cohort);
+            data.fetch(context);
+            context.addToCache(CACHE_KEY, data);
+        }
+        return data;
+    }
+
+    /**
+     * Checks whether a patient has an active visit
+     * @param patientId the patient id
+     * @return true if the patient has an active visit
+     */
+    public boolean hasActiveVisit(Integer patientId) {
+        return activeVisitPatients.contains(patientId);
+    }
+
+    /**
+     * Gets the last triage encounter of a patient
+     * @param patientId the patient id
+     * @return the encounter or null
+     */
+    public ScreeningEncounter getLastTriageEncounter(Integer patientId) {
+        return lastTriageEncounters.get(patientId);
+    }
+
+    /**
+     * Gets the last clinical encounter of a patient
+     * @param patientId the patient id
+     * @return the encounter or null
+     */
+    public ScreeningEncounter getLastClinicalEncounter(Integer patientId) {
+        return lastClinicalEncounters.get(patientId);
+    }
+
+    /**
+     * Gets the last green card encounter of a patient
+     * @param patientId the patient id
+     * @return the encounter or null
+     */
+    public ScreeningEncounter getLastGreenCardEncounter(Integer patientId) {
+        return lastGreenCardEncounters.get(patientId);
+    }
+
+    /**
+     * Gets the last recorded temperature of a patient
+     * @param patientId the patient id
+     * @return the temperature or null
+     */
+    public Double getLastTemperature(Integer patientId) {
+        return EmrCalculationUtils.numericObsResultForPatient(lastTemperatures, patientId);
+    }
+
+    /**
+     * Fetches the data with one query each for active visits, encounters, obs and temperatures
+     * @param context the calculation context
+     */
+    protected void fetch(PatientCalculationContext context) {
+        Concept temperature = Context.getConceptService().getConcept(TEMPERATURE);
+        lastTemperatures = Calculations.lastObs(temperature, patientIds, context);
+
+        if (patientIds.isEmpty()) {
+            return;
+        }
+
+        EvaluationService evaluationService = Context.getService(EvaluationService.class);
+        EvaluationContext evaluationContext = new EvaluationContext();
+
+        SqlQueryBuilder visitQuery = new SqlQueryBuilder();
+        visitQuery.append("select distinct v.patient_id from visit v ");
+        visitQuery.append("where v.voided = 0 and v.date_stopped is null and v.patient_id in (:patientIds)");
+        visitQuery.addParameter("patientIds", patientIds);
+        activeVisitPatients.addAll(evaluationService.evaluateToList(visitQuery, Integer.class, evaluationContext));
+
+        if (activeVisitPatients.isEmpty()) {
+            return;
+        }
+
+        EncounterType triageType = MetadataUtils.existing(EncounterType.class, CommonMetadata._EncounterType.TRIAGE);
+        Form triageForm = MetadataUtils.existing(Form.class, CommonMetadata._Form.TRIAGE);
+        EncounterType consultationType = MetadataUtils.existing(EncounterType.class, CommonMetadata._EncounterType.CONSULTATION);
+        Form clinicalEncounterForm = MetadataUtils.existing(Form.class, CommonMetadata._Form.CLINICAL_ENCOUNTER);
+        EncounterType greenCardType = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_CONSULTATION);
+        Form greenCardForm = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
+
+        // Encounters in the order returned by EncounterService, so the last one of each type per patient wins
+        SqlQueryBuilder encounterQuery = new SqlQueryBuilder();
+        encounterQuery.append("select e.patient_id, e.encounter_id, e.form_id from encounter e ");
+        encounterQuery.append("where e.voided = 0 and e.patient_id in (:patientIds) and (");
+        encounterQuery.append("(e.encounter_type = :triageType and e.form_id = :triageForm) or ");
+        encounterQuery.append("(e.encounter_type = :consultationType and e.form_id = :clinicalEncounterForm) or ");
+        encounterQuery.append("(e.encounter_type = :greenCardType and e.form_id = :greenCardForm)) ");
+        encounterQuery.append("order by e.encounter_datetime, e.encounter_id");
+        encounterQuery.addParameter("patientIds", activeVisitPatients);
+        encounterQuery.addParameter("triageType", triageType.getEncounterTypeId());
+        encounterQuery.addParameter("triageForm", triageForm.getFormId());
+        encounterQuery.addParameter("consultationType", consultationType.getEncounterTypeId());
+        encounterQuery.addParameter("clinicalEncounterForm", clinicalEncounterForm.getFormId());
+        encounterQuery.addParameter("greenCardType", greenCardType.getEncounterTypeId());
+        encounterQuery.addParameter("greenCardForm", greenCardForm.getFormId());
+
+        for (Object[] row : evaluationService.evaluateToList(encounterQuery, evaluationContext)) {
+            Integer patientId = ((Number) row[0]).intValue();
+            ScreeningEncounter encounter = new ScreeningEncounter(((Number) row[1]).intValue());
+            int formId = ((Number) row[2]).intValue();
+
+            if (formId == triageForm.getFormId()) {
+                lastTriageEncounters.put(patientId, encounter);
+            } else if (formId == clinicalEncounterForm.getFormId()) {
+                lastClinicalEncounters.put(patientId, encounter);
+            } else {
+                lastGreenCardEncounters.put(patientId, encounter);
+            }
+        }
+
+        Map<Integer, ScreeningEncounter> lastEncounters = new HashMap<Integer, ScreeningEncounter>();
+        for (Map<Integer, ScreeningEncounter> encounters : Arrays.asList(lastTriageEncounters, lastClinicalEncounters, lastGreenCardEncounters)) {
+            for (ScreeningEncounter encounter : encounters.values()) {
+                lastEncounters.put(encounter.encounterId, encounter);
+            }
+        }
+
+        if (lastEncounters.isEmpty()) {
+            return;
+        }
+
+        SqlQueryBuilder obsQuery = new SqlQueryBuilder();
+        obsQuery.append("select o.encounter_id, o.concept_id, o.value_coded, o.value_numeric, o.date_created from obs o ");
+        obsQuery.append("where o.voided = 0 and o.encounter_id in (:encounterIds)");
+        obsQuery.addParameter("encounterIds", lastEncounters.keySet());
+
+        Date now = context.getNow();
+        for (Object[] row : evaluationService.evaluateToList(obsQuery, evaluationContext)) {
+            ScreeningEncounter encounter = lastEncounters.get(((Number) row[0]).intValue());
+            Integer conceptId = ((Number) row[1]).intValue();
+
+            if (row[2] != null) {
+                encounter.addAnswer(conceptId, ((Number) row[2]).intValue());
+            }
+            if (DURATION.equals(conceptId) && row[3] != null) {
+                encounter.duration = ((Number) row[3]).doubleValue();
+            }
+            if (row[4] != null && DateUtils.isSameDay((Date) row[4], now)) {
+                encounter.createdToday = true;
+            }
+        }
+    }
+
+    /**
+     * The screening obs of an encounter
+     */
+    public static class ScreeningEncounter {
+
+        private final Integer encounterId;
+
+        private final Map<Integer, Set<Integer>> answers = new HashMap<Integer, Set<Integer>>();
+
+        private Double duration = 0.0;
+
+        private boolean createdToday = false;
+
+        protected ScreeningEncounter(Integer encounterId) {
+            this.encounterId = encounterId;
+        }
+
+        protected void addAnswer(Integer question, Integer answer) {
+            Set<Integer> questionAnswers = answers.get(question);
+            if (questionAnswers == null) {
+                questionAnswers = new HashSet<Integer>();
+                answers.put(question, questionAnswers);
+            }
+            questionAnswers.add(answer);
+        }
+
+        /**
+         * Checks whether the encounter has all of the given coded answers for a question
+         * @param question the question concept id
+         * @param answers the answer concept ids
+         * @return true if every answer was recorded
+         */
+        public boolean hasAnswers(Integer question, Integer... answers) {
+            Set<Integer> questionAnswers = this.answers.get(question);
+            if (questionAnswers == null) {
+                return false;
+            }
+            for (Integer answer : answers) {
+                if (!questionAnswers.contains(answer)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Gets the recorded duration of symptoms, or zero if none was recorded
+         * @return the duration
+         */
+        public Double getDuration() {
+            return duration;
+        }
+
+        /**
+         * Checks whether any obs of the encounter were created today, i.e. the screening was done today
+         * @return true if created today
+         */
+        public boolean isCreatedToday() {
+            return createdToday;
+        }
+    }
+}
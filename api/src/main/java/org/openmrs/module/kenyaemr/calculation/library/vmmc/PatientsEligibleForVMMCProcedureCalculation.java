@@ -27,10 +27,11 @@ import org.openmrs.module.kenyacore.calculation.AbstractPatientCalculation;
 import org.openmrs.module.kenyacore.calculation.BooleanResult;
 import org.openmrs.module.kenyacore.calculation.Calculations;
 import org.openmrs.module.kenyacore.calculation.Filters;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
 import org.openmrs.module.kenyaemr.metadata.VMMCMetadata;
+import org.openmrs.module.kenyaemr.model.HivTestStatus;
 import org.openmrs.module.kenyaemr.util.EmrUtils;
-import org.openmrs.module.kenyaemr.util.HtsConstants;
 import org.openmrs.module.kenyaemr.util.VmmcConstants;
 import org.openmrs.module.metadatadeploy.MetadataUtils;
 
@@ -58,6 +59,7 @@ public class PatientsEligibleForVMMCProcedureCalculation extends AbstractPatient
         Set<Integer> alive = Filters.alive(cohort, context);
         Program vmmcProgram = MetadataUtils.existing(Program.class, VMMCMetadata._Program.VMMC);
         Set<Integer> inVmmcProgram = Filters.inProgram(vmmcProgram, alive, context);
+        Map<Integer, HivTestStatus> testStatuses = Context.getService(KenyaEmrService.class).getHivTestStatuses(inVmmcProgram);
 
         CalculationResultMap ret = new CalculationResultMap();
         for(Integer ptId: cohort) {
@@ -70,27 +72,11 @@ public class PatientsEligibleForVMMCProcedureCalculation extends AbstractPatient
             Concept vmmcConventionalMethodAnswer = cs.getConcept(VmmcConstants.CONVENTIONAL_METHOD);
             Concept vmmcDeviceMethodAnswer = cs.getConcept(VmmcConstants.DEVICE_METHOD);
 
-            Concept htsFinalTestQuestion = cs.getConcept(HtsConstants.HTS_FINAL_TEST_CONCEPT_ID);
-            Concept htsPositiveResult = cs.getConcept(HtsConstants.HTS_POSITIVE_RESULT_CONCEPT_ID);
-
             Encounter lastVmmcMedicalHistoryEnc = EmrUtils.lastEncounter(patient, VmmcConstants.vmmcMedicalHistoryEncType, VmmcConstants.vmmcMedicalHistoryExaminationForm);
-            Encounter lastHtsInitialEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsInitialForm);
-            Encounter lastHtsRetestEnc = EmrUtils.lastEncounter(patient, HtsConstants.htsEncType, HtsConstants.htsRetestForm);
-            Encounter lastHtsEnc = null;
-
-            if (lastHtsInitialEnc != null && lastHtsRetestEnc == null) {
-                lastHtsEnc = lastHtsInitialEnc;
-            } else if (lastHtsInitialEnc == null && lastHtsRetestEnc != null) {
-                lastHtsEnc = lastHtsRetestEnc;
-            } else if (lastHtsInitialEnc != null && lastHtsRetestEnc != null) {
-                if (lastHtsInitialEnc.getEncounterDatetime().after(lastHtsRetestEnc.getEncounterDatetime())) {
-                    lastHtsEnc = lastHtsInitialEnc;
-                } else {
-                    lastHtsEnc = lastHtsRetestEnc;
-                }
-            }
-            if (lastHtsEnc != null && lastVmmcMedicalHistoryEnc != null && lastHtsEnc.getEncounterDatetime().equals(lastVmmcMedicalHistoryEnc.getEncounterDatetime())) {
-                patientHasSameDayPositiveTestResult = lastHtsEnc != null ? EmrUtils.encounterThatPassCodedAnswer(lastHtsEnc, htsFinalTestQuestion, htsPositiveResult) : false;
+            HivTestStatus testStatus = testStatuses.get(ptId);
+            HivTestStatus.Test lastHtsTest = testStatus != null ? testStatus.getLastHtsTest() : null;
+            if (lastHtsTest != null && lastVmmcMedicalHistoryEnc != null && lastHtsTest.getDate().getTime() == lastVmmcMedicalHistoryEnc.getEncounterDatetime().getTime()) {
+                patientHasSameDayPositiveTestResult = lastHtsTest.isPositive();
             }
 
             boolean patientWantsConventionalMethod = lastVmmcMedicalHistoryEnc != null ? EmrUtils.encounterThatPassCodedAnswer(lastVmmcMedicalHistoryEnc, vmmcMethodQuestion, vmmcConventionalMethodAnswer) : false;
@@ -0,0 +1,331 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.chore;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.kenyacore.chore.AbstractChore;
+import org.openmrs.module.kenyaemr.EmrActivator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Base class for chores which process a large set of rows, e.g. every patient with orders. The ids to process are
+ * supplied up front by a set-based query and processed in chunks, each in its own transaction followed by a session
+ * clear. The last completed id is stored in a global property so that a chore interrupted by a failure or restart
+ * resumes where it stopped rather than starting over.
+ *
+ * Chunks may be processed on several threads by setting {@link #GP_THREADS}. When running in parallel, a chunk
+ * completed beyond the checkpoint may be repeated after a failure so {@link #processChunk(List, PrintWriter)}
+ * should tolerate re-running. Chores which create data, e.g. encounters or identifiers, or which keep state between
+ * chunks should override {@link #getThreads()} to return 1.
+ */
+public abstract class AbstractChunkedChore extends AbstractChore {
+
+	protected final Log log = LogFactory.getLog(getClass());
+
+	public static final String GP_CHUNK_SIZE = "kenyaemr.chore.chunkSize";
+
+	public static final String GP_THREADS = "kenyaemr.chore.threads";
+
+	private static final String GP_CHECKPOINT_SUFFIX = ".checkpoint";
+
+	private static final int DEFAULT_CHUNK_SIZE = 500;
+
+	/**
+	 * Supplies the ids to process. Ids are processed in ascending order
+	 * @return the ids
+	 */
+	protected abstract List<Integer> getIds();
+
+	/**
+	 * Processes one chunk of ids. Called inside a transaction which is committed when this returns
+	 * @param ids the ids
+	 * @param output the output writer
+	 */
+	protected abstract void processChunk(List<Integer> ids, PrintWriter output);
+
+	/**
+	 * Called once before any chunk is processed, e.g. to load reference data
+	 * @param output the output writer
+	 */
+	protected void beforeChunks(PrintWriter output) {
+	}
+
+	/**
+	 * Called once all chunks have been processed, e.g. for set-based clean-up
+	 * @param output the output writer
+	 */
+	protected void afterChunks(PrintWriter output) {
+	}
+
+	/**
+	 * @see AbstractChore#perform(java.io.PrintWriter)
+	 */
+	@Override
+	public void perform(PrintWriter output) {
+		beforeChunks(output);
+
+		Integer checkpoint = getCheckpoint();
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Integer id : new TreeSet<Integer>(getIds())) {
+			if (checkpoint == null || id > checkpoint) {
+				ids.add(id);
+			}
+		}
+
+		if (checkpoint != null) {
+			output.println("Resuming " + getChoreName() + " after id " + checkpoint);
+		}
+
+		List<List<Integer>> chunks = new ArrayList<List<Integer>>();
+		int chunkSize = getChunkSize();
+		for (int i = 0; i < ids.size(); i += chunkSize) {
+			chunks.add(ids.subList(i, Math.min(i + chunkSize, ids.size())));
+		}
+
+		ChunkProgress progress = new ChunkProgress(chunks, output);
+		int threads = getThreads();
+		DaemonToken token = EmrActivator.getDaemonToken();
+
+		if (threads > 1 && token != null && chunks.size() > 1) {
+			runInParallel(chunks, progress, threads, token, output);
+		} else {
+			for (int c = 0; c < chunks.size(); c++) {
+				runChunk(c, chunks.get(c), progress, output);
+			}
+		}
+
+		afterChunks(output);
+		clearCheckpoint();
+		output.println("Completed " + getChoreName() + ": processed " + ids.size() + " records in " + chunks.size() + " chunks");
+	}
+
+	/**
+	 * Runs chunks on a fixed pool of daemon threads
+	 */
+	private void runInParallel(List<List<Integer>> chunks, final ChunkProgress progress, int threads, final DaemonToken token, final PrintWriter output) {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int c = 0; c < chunks.size(); c++) {
+				final int index = c;
+				final List<Integer> chunk = chunks.get(c);
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						Daemon.runInDaemonThreadAndWait(new Runnable() {
+							@Override
+							public void run() {
+								runChunk(index, chunk, progress, output);
+							}
+						}, token);
+					}
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+
+			if (progress.getFailure() != null) {
+				throw progress.getFailure();
+			}
+		}
+		catch (RuntimeException ex) {
+			throw ex;
+		}
+		catch (Exception ex) {
+			throw new RuntimeException("Unable to complete " + getChoreName(), ex);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs a single chunk in a new transaction and records the checkpoint
+	 */
+	private void runChunk(int index, final List<Integer> chunk, ChunkProgress progress, final PrintWriter output) {
+		if (progress.getFailure() != null) {
+			return; // another chunk has failed so stop processing
+		}
+
+		try {
+			newTransaction().execute(new TransactionCallbackWithoutResult() {
+				@Override
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					processChunk(chunk, output);
+					Context.flushSession();
+				}
+			});
+			Context.clearSession();
+
+			progress.completed(index);
+		}
+		catch (RuntimeException ex) {
+			progress.failed(ex);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Tracks completed chunks and advances the checkpoint to the end of the last contiguous completed chunk
+	 */
+	private class ChunkProgress {
+
+		private final List<List<Integer>> chunks;
+		private final PrintWriter output;
+		private final boolean[] completed;
+		private int contiguous = 0;
+		private int completedCount = 0;
+		private volatile RuntimeException failure;
+
+		ChunkProgress(List<List<Integer>> chunks, PrintWriter output) {
+			this.chunks = chunks;
+			this.output = output;
+			this.completed = new boolean[chunks.size()];
+		}
+
+		synchronized void completed(int index) {
+			completed[index] = true;
+			completedCount++;
+
+			int previous = contiguous;
+			while (contiguous < completed.length && completed[contiguous]) {
+				contiguous++;
+			}
+			if (contiguous > previous) {
+				List<Integer> lastChunk = chunks.get(contiguous - 1);
+				saveCheckpoint(lastChunk.get(lastChunk.size() - 1));
+			}
+
+			String message = getChoreName() + ": completed chunk " + completedCount + " of " + chunks.size() + " (" + (completedCount * 100 / chunks.size()) + "%)";
+			log.info(message);
+			output.println(message);
+			output.flush();
+		}
+
+		void failed(RuntimeException ex) {
+			failure = ex;
+		}
+
+		RuntimeException getFailure() {
+			return failure;
+		}
+	}
+
+	/**
+	 * Gets the number of ids per chunk
+	 * @return the chunk size
+	 */
+	protected int getChunkSize() {
+		return getIntegerProperty(GP_CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Gets the number of threads to process chunks with. Subclasses that can't run chunks concurrently should
+	 * override this to return 1
+	 * @return the number of threads
+	 */
+	protected int getThreads() {
+		return getIntegerProperty(GP_THREADS, 1);
+	}
+
+	/**
+	 * Convenience method to fetch ids with a single column SQL query
+	 * @param sql the query
+	 * @return the ids
+	 */
+	protected List<Integer> queryIds(String sql) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (List<Object> row : Context.getAdministrationService().executeSQL(sql, true)) {
+			if (row.get(0) != null) {
+				ids.add(((Number) row.get(0)).intValue());
+			}
+		}
+		return ids;
+	}
+
+	protected Integer getCheckpoint() {
+		String value = Context.getAdministrationService().getGlobalProperty(getCheckpointProperty());
+		return StringUtils.isNotBlank(value) ? Integer.valueOf(value.trim()) : null;
+	}
+
+	private void saveCheckpoint(final Integer id) {
+		newTransaction().execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				AdministrationService as = Context.getAdministrationService();
+				GlobalProperty gp = as.getGlobalPropertyObject(getCheckpointProperty());
+				if (gp == null) {
+					gp = new GlobalProperty(getCheckpointProperty(), null, "Last id processed by an incomplete run of " + getChoreName());
+				}
+				gp.setPropertyValue(id.toString());
+				as.saveGlobalProperty(gp);
+			}
+		});
+	}
+
+	private void clearCheckpoint() {
+		AdministrationService as = Context.getAdministrationService();
+		GlobalProperty gp = as.getGlobalPropertyObject(getCheckpointProperty());
+		if (gp != null) {
+			as.purgeGlobalProperty(gp);
+		}
+	}
+
+	private String getCheckpointProperty() {
+		return (getId() != null ? getId() : "kenyaemr.chore." + getClass().getSimpleName()) + GP_CHECKPOINT_SUFFIX;
+	}
+
+	private String getChoreName() {
+		return getId() != null ? getId() : getClass().getSimpleName();
+	}
+
+	private int getIntegerProperty(String property, int defaultValue) {
+		String value = Context.getAdministrationService().getGlobalProperty(property);
+		try {
+			return StringUtils.isNotBlank(value) ? Math.max(1, Integer.parseInt(value.trim())) : defaultValue;
+		}
+		catch (NumberFormatException ex) {
+			log.warn("Invalid value for " + property + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Chunks and checkpoints always get their own transaction, even if the chore is run inside one, so that each
+	 * is committed as soon as it completes
+	 */
+	private TransactionTemplate newTransaction() {
+		PlatformTransactionManager transactionManager = Context.getRegisteredComponent("transactionManager", PlatformTransactionManager.class);
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		return template;
+	}
+}
@@ -16,7 +16,6 @@ import org.openmrs.PatientIdentifierType;
 import org.openmrs.api.PatientService;
 import org.openmrs.module.idgen.IdentifierSource;
 import org.openmrs.module.idgen.service.IdentifierSourceService;
-import org.openmrs.module.kenyacore.chore.AbstractChore;
 import org.openmrs.module.kenyacore.chore.Requires;
 import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
@@ -25,6 +24,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,7 +35,7 @@ import java.util.Map;
  */
 @Component("kenyaemr.chore.fixMissingOpenmrsIdentifiers")
 @Requires({ VoidDuplicateIdentifiers.class })
-public class FixMissingOpenmrsIdentifiers extends AbstractChore {
+public class FixMissingOpenmrsIdentifiers extends AbstractChunkedChore {
 
 	@Autowired
 	private KenyaEmrService kenyaEmrService;
@@ -46,44 +46,67 @@ public class FixMissingOpenmrsIdentifiers extends AbstractChore {
 	@Autowired
 	private IdentifierSourceService idgenService;
 
+	private int fixedMissing, fixedNoPreferred;
+
 	/**
-	 * @see org.openmrs.module.kenyacore.chore.AbstractChore#perform(java.io.PrintWriter)
+	 * Selects patients who have no OpenMRS ID or no preferred identifier
+	 * @see AbstractChunkedChore#getIds()
 	 */
 	@Override
-	public void perform(PrintWriter output) {
-		Location defaultLocation = kenyaEmrService.getDefaultLocation();
+	protected List<Integer> getIds() {
+		fixedMissing = 0;
+		fixedNoPreferred = 0;
 
-		if (defaultLocation == null) {
-			return; // Database is obviously clean as this hasn't yet been configured
+		if (kenyaEmrService.getDefaultLocation() == null) {
+			return new ArrayList<Integer>(); // Database is obviously clean as this hasn't yet been configured
 		}
 
+		PatientIdentifierType openmrsIdType = MetadataUtils.existing(PatientIdentifierType.class, CommonMetadata._PatientIdentifierType.OPENMRS_ID);
+
+		return queryIds("select p.patient_id from patient p where p.voided = 0 and ("
+				+ "not exists (select 1 from patient_identifier i where i.patient_id = p.patient_id and i.voided = 0 and i.identifier_type = " + openmrsIdType.getId() + ")"
+				+ " or not exists (select 1 from patient_identifier i where i.patient_id = p.patient_id and i.voided = 0 and i.preferred = 1))");
+	}
+
+	/**
+	 * @see AbstractChunkedChore#processChunk(java.util.List, java.io.PrintWriter)
+	 */
+	@Override
+	protected void processChunk(List<Integer> patientIds, PrintWriter output) {
+		Location defaultLocation = kenyaEmrService.getDefaultLocation();
+
 		PatientIdentifierType openmrsIdType = MetadataUtils.existing(PatientIdentifierType.class, CommonMetadata._PatientIdentifierType.OPENMRS_ID);
 		IdentifierSource openmrsIdSource = idgenService.getAutoGenerationOption(openmrsIdType).getSource();
 
-		List<Patient> allPatients = patientService.getAllPatients();
+		List<Patient> patients = new ArrayList<Patient>();
 		Map<Patient, PatientIdentifier> patientsWithOpenmrsID = new HashMap<Patient, PatientIdentifier>();
 
-		for (Patient patient : allPatients) {
+		for (Integer patientId : patientIds) {
+			Patient patient = patientService.getPatient(patientId);
+			patients.add(patient);
+
 			PatientIdentifier openmrsID = patient.getPatientIdentifier(openmrsIdType);
 			if (openmrsID != null) {
-				patientsWithOpenmrsID.put(patient, patient.getPatientIdentifier(openmrsIdType));
+				patientsWithOpenmrsID.put(patient, openmrsID);
 			}
 		}
 
-		int missingOpenmrsIDs = allPatients.size() - patientsWithOpenmrsID.size();
+		int missingOpenmrsIDs = patients.size() - patientsWithOpenmrsID.size();
 
 		// Batch generation of identifiers is a lot faster than one-by-one generation
-		List<String> generatedIds = idgenService.generateIdentifiers(openmrsIdSource, missingOpenmrsIDs, FixMissingOpenmrsIdentifiers.class.getSimpleName());
+		List<String> generatedIds = missingOpenmrsIDs > 0
+				? idgenService.generateIdentifiers(openmrsIdSource, missingOpenmrsIDs, FixMissingOpenmrsIdentifiers.class.getSimpleName())
+				: new ArrayList<String>();
 
-		int fixedMissing = 0, fixedNoPreferred = 0;
+		int generatedUsed = 0;
 
-		for (Patient patient : allPatients) {
+		for (Patient patient : patients) {
 			PatientIdentifier openmrsID = patientsWithOpenmrsID.get(patient);
 			boolean needsSaved = false;
 
 			// Generate new OpenMRS ID if needed
 			if (openmrsID == null) {
-				String generated = generatedIds.get(fixedMissing);
+				String generated = generatedIds.get(generatedUsed++);
 				openmrsID = new PatientIdentifier(generated, openmrsIdType, defaultLocation);
 				patient.addIdentifier(openmrsID);
 
@@ -103,11 +126,26 @@ public class FixMissingOpenmrsIdentifiers extends AbstractChore {
 				patientService.savePatientIdentifier(openmrsID);
 			}
 		}
+	}
 
+	/**
+	 * @see AbstractChunkedChore#afterChunks(java.io.PrintWriter)
+	 */
+	@Override
+	protected void afterChunks(PrintWriter output) {
 		output.println("Fixed " + fixedMissing + " missing OpenMRS IDs");
 		output.println("Fixed " + fixedNoPreferred + " patients with no preferred ID");
 	}
 
+	/**
+	 * Counters are shared between chunks
+	 * @see AbstractChunkedChore#getThreads()
+	 */
+	@Override
+	protected int getThreads() {
+		return 1;
+	}
+
 	/**
 	 * Helper method to determine if a patient has a preferred ID
 	 * @param patient the patient
@@ -9,6 +9,7 @@
  */
 package org.openmrs.module.kenyaemr.chore;
 
+import org.apache.commons.lang.StringUtils;
 import org.openmrs.Concept;
 import org.openmrs.Encounter;
 import org.openmrs.EncounterType;
@@ -16,66 +17,100 @@ import org.openmrs.Form;
 import org.openmrs.Obs;
 import org.openmrs.api.EncounterService;
 import org.openmrs.api.FormService;
-import org.openmrs.module.kenyacore.chore.AbstractChore;
 import org.openmrs.module.kenyaemr.Dictionary;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Clerks forgot to adjust hiv enrollment encounter dates for patients who had already been enrolled in other facilities
  * This affect the transfer in details and the RDE data entry.
+ *
+ * Each encounter is only ever set to the date of its own obs, so chunks can safely be repeated or run in parallel
+ * (see {@link AbstractChunkedChore#GP_THREADS})
  */
 @Component("kenyaemr.chore.hivEnrollmentEncounterDateSynched")
-public class HivEnrollmentEncounterDateSynched extends AbstractChore {
+public class HivEnrollmentEncounterDateSynched extends AbstractChunkedChore {
 
 	@Autowired
 	private EncounterService encounterService;
 
 	@Autowired
 	private FormService formService;
+
+	private final AtomicInteger count = new AtomicInteger(), foundMatching = new AtomicInteger();
+
 	/**
-	 * @see org.openmrs.module.kenyacore.chore.AbstractChore#perform(java.io.PrintWriter)
+	 * @see AbstractChunkedChore#getIds()
 	 */
-
 	@Override
-	public void perform(PrintWriter out) {
+	protected List<Integer> getIds() {
+		count.set(0);
+		foundMatching.set(0);
 
 		Form MOH_257_FACE_PAGE_ENCOUNTER_FORM = formService.getFormByUuid(HivMetadata._Form.MOH_257_FACE_PAGE);
 		Form HIV_ENROLLMENT_FORM =  formService.getFormByUuid(HivMetadata._Form.HIV_ENROLLMENT);
-		Concept concept = Dictionary.getConcept(Dictionary.DATE_ENROLLED_IN_HIV_CARE);
 		EncounterType encounterType = encounterService.getEncounterTypeByUuid(HivMetadata._EncounterType.HIV_ENROLLMENT);
 
+		List<Integer> formIds = new ArrayList<Integer>();
+		for (Form form : Arrays.asList(MOH_257_FACE_PAGE_ENCOUNTER_FORM, HIV_ENROLLMENT_FORM)) {
+			if (form != null) {
+				formIds.add(form.getFormId());
+			}
+		}
+
+		if (encounterType == null || formIds.isEmpty()) {
+			return new ArrayList<Integer>();
+		}
+
 		//find a list of encounter per MOH_257_FACE_PAGE_ENCOUNTER_FORM and encounterType
-		List<Encounter> encounters = encounterService.getEncounters(null, null, null, null, Arrays.asList(MOH_257_FACE_PAGE_ENCOUNTER_FORM, HIV_ENROLLMENT_FORM), Arrays.asList(encounterType), null, null, null, false);
-		int count = 0;
-		int found_matching = 0;
+		return queryIds("select encounter_id from encounter where voided = 0 and encounter_type = " + encounterType.getId()
+				+ " and form_id in (" + StringUtils.join(formIds, ",") + ")");
+	}
+
+	/**
+	 * @see AbstractChunkedChore#processChunk(java.util.List, java.io.PrintWriter)
+	 */
+	@Override
+	protected void processChunk(List<Integer> encounterIds, PrintWriter out) {
+		Concept concept = Dictionary.getConcept(Dictionary.DATE_ENROLLED_IN_HIV_CARE);
+
 		// list of all obs
 		Set<Obs> obsList;
 		Date encounter_date;
 		Date obs_value_date;
-		for (Encounter encounter : encounters) {
+		for (Integer encounterId : encounterIds) {
+			Encounter encounter = encounterService.getEncounter(encounterId);
 			encounter_date =  encounter.getEncounterDatetime();
 			obsList = encounter.getAllObs(false);
 			for(Obs obs : obsList) {
 				if (obs.getConcept().equals(concept)) {
-					found_matching++;
+					foundMatching.incrementAndGet();
 					obs_value_date = obs.getValueDatetime();
 						if(!(encounter_date.equals(obs_value_date))) {
 							encounter.setEncounterDatetime(obs.getValueDatetime());
-							count++;
+							count.incrementAndGet();
 						}
 				}
 			}
 		}
-		out.println("Matching found "+found_matching+" observations");
-		out.println("Adjusted "+count+" encounters to reflect date first enrolled into care");
+	}
 
+	/**
+	 * @see AbstractChunkedChore#afterChunks(java.io.PrintWriter)
+	 */
+	@Override
+	protected void afterChunks(PrintWriter out) {
+		out.println("Matching found "+foundMatching+" observations");
+		out.println("Adjusted "+count+" encounters to reflect date first enrolled into care");
 	}
+
 }
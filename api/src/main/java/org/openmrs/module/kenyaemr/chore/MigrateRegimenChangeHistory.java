@@ -11,6 +11,7 @@ package org.openmrs.module.kenyaemr.chore;
 
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.time.StopWatch;
+import org.openmrs.CareSetting;
 import org.openmrs.Cohort;
 import org.openmrs.Concept;
 import org.openmrs.DrugOrder;
@@ -20,14 +21,13 @@ import org.openmrs.Form;
 import org.openmrs.Obs;
 import org.openmrs.Patient;
 import org.openmrs.Person;
-import org.openmrs.User;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.EncounterService;
 import org.openmrs.api.FormService;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
-import org.openmrs.module.kenyacore.chore.AbstractChore;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
 import org.openmrs.module.kenyaemr.regimen.DrugReference;
 import org.openmrs.module.kenyaemr.regimen.RegimenChange;
@@ -65,7 +65,7 @@ import java.util.Set;
  * handles migration of orders to populate model for DrugRegimenHistory
  */
 @Component("kenyaemr.chore.migrateRegimenChangeHistory")
-public class MigrateRegimenChangeHistory extends AbstractChore {
+public class MigrateRegimenChangeHistory extends AbstractChunkedChore {
 
     private Map<String, Integer> masterSetConcepts = new LinkedHashMap<String, Integer>();
 
@@ -73,67 +73,84 @@ public class MigrateRegimenChangeHistory extends AbstractChore {
 
     private Map<String, List<RegimenDefinitionGroup>> regimenGroups = new LinkedHashMap<String, List<RegimenDefinitionGroup>>();
 
+    private static final int TB_REGIMEN_CONCEPT_ID = 160021;
+
+    private static final int ARV_REGIMEN_CONCEPT_ID = 1085;
+
+    /**
+     * @see AbstractChunkedChore#beforeChunks(PrintWriter)
+     */
+    @Override
+    protected void beforeChunks(PrintWriter out) {
+        refresh();
+    }
+
     /**
-     * @see AbstractChore#perform(PrintWriter)
+     * @see AbstractChunkedChore#getIds()
      */
+    @Override
+    protected List<Integer> getIds() {
+        return new ArrayList<Integer>(getPatientsWithOrders());
+    }
 
+    /**
+     * @see AbstractChunkedChore#processChunk(List, PrintWriter)
+     */
     @Override
-    public void perform(PrintWriter out) {
+    protected void processChunk(List<Integer> patientIds, PrintWriter out) {
 
         ConceptService conceptService = Context.getConceptService();
-        Concept ARVRegimenConcept = conceptService.getConcept(1085);
-        Concept TBRegimenConcept = conceptService.getConcept(160021);
+        Concept ARVRegimenConcept = conceptService.getConcept(ARV_REGIMEN_CONCEPT_ID);
+        Concept TBRegimenConcept = conceptService.getConcept(TB_REGIMEN_CONCEPT_ID);
         PatientService patientService = Context.getPatientService();
         EncounterService encounterService = Context.getEncounterService();
         FormService formService = Context.getFormService();
-        User defaultUser = Context.getUserService().getUser(1);
 
         EncounterType encType = encounterService.getEncounterTypeByUuid(CommonMetadata._EncounterType.DRUG_REGIMEN_EDITOR);
         Form form = formService.getFormByUuid(CommonMetadata._Form.DRUG_REGIMEN_EDITOR);
 
-        int tbRegimenConceptId = 160021;
-        int arvRegimenConceptId = 1085;
+        // Load the drug orders of the whole chunk at once, rather than twice per patient
+        CareSetting outpatient = Context.getOrderService().getCareSettingByName("OUTPATIENT");
+        Map<Integer, List<DrugOrder>> drugOrdersByPatient = Context.getService(KenyaEmrService.class).getDrugOrdersByPatient(patientIds, outpatient, false);
 
-        refresh();
-
-        int counter=0;
-
-        for (Integer patientId : getPatientsWithOrders()) {
+        for (Integer patientId : patientIds) {
             Patient patient = patientService.getPatient(patientId);
-            RegimenChangeHistory tbRegimenHistory = RegimenChangeHistory.forPatient(patient, TBRegimenConcept);
-            RegimenChangeHistory hivRegimenHistory = RegimenChangeHistory.forPatient(patient, ARVRegimenConcept);
+            List<DrugOrder> drugOrders = drugOrdersByPatient.containsKey(patientId) ? drugOrdersByPatient.get(patientId) : new ArrayList<DrugOrder>();
+            RegimenChangeHistory tbRegimenHistory = RegimenChangeHistory.forDrugOrders(drugOrders, TBRegimenConcept);
+            RegimenChangeHistory hivRegimenHistory = RegimenChangeHistory.forDrugOrders(drugOrders, ARVRegimenConcept);
 
             List<RegimenChange> tbRegimenChanges = tbRegimenHistory.getChanges();
             List<RegimenChange> arvRegimenChanges = hivRegimenHistory.getChanges();
 
-            if (tbRegimenChanges.size() < 1 && arvRegimenChanges.size() < 1) {
-                continue;
-            }
-
             if (tbRegimenChanges.size() > 0) {
-                processRegimenChanges(patient, tbRegimenConceptId, tbRegimenChanges, form, encType);
+                processRegimenChanges(patient, TB_REGIMEN_CONCEPT_ID, tbRegimenChanges, form, encType);
             }
 
             if (arvRegimenChanges.size() > 0) {
-                processRegimenChanges(patient, arvRegimenConceptId, arvRegimenChanges, form, encType);
-
+                processRegimenChanges(patient, ARV_REGIMEN_CONCEPT_ID, arvRegimenChanges, form, encType);
             }
-            counter++;
-
-            if ((counter%400)==0) {
-                Context.flushSession();
-                Context.clearSession();
-                counter=0;
+        }
+    }
 
-            }
+    /**
+     * Regimen encounters are created per patient so re-running a chunk would duplicate them
+     * @see AbstractChunkedChore#getThreads()
+     */
+    @Override
+    protected int getThreads() {
+        return 1;
+    }
 
-        }
+    /**
+     * @see AbstractChunkedChore#afterChunks(PrintWriter)
+     */
+    @Override
+    protected void afterChunks(PrintWriter out) {
         out.println("Completed migration for drug regimen history");
         out.println("Voiding encounters with null regimen....");
         voidAllEncountersWithNullRegimen();
         discontinueAllActiveOrders();
         out.println("Successfully completed all drug regimen migration operations");
-
     }
 
 
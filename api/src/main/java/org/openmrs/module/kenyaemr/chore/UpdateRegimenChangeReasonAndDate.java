@@ -9,7 +9,7 @@
  */
 package org.openmrs.module.kenyaemr.chore;
 
-import org.openmrs.Cohort;
+import org.apache.commons.lang.StringUtils;
 import org.openmrs.Concept;
 import org.openmrs.Encounter;
 import org.openmrs.EncounterType;
@@ -23,12 +23,8 @@ import org.openmrs.api.FormService;
 import org.openmrs.api.OrderService;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
-import org.openmrs.module.kenyacore.chore.AbstractChore;
 import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
 import org.openmrs.module.kenyaemr.util.EmrUtils;
-import org.openmrs.module.reporting.cohort.definition.SqlCohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.service.CohortDefinitionService;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
 import org.springframework.stereotype.Component;
 
 import java.io.PrintWriter;
@@ -43,14 +39,21 @@ import java.util.Set;
  * updates reason and date regimen stopped for migrated orders
  */
 @Component("kenyaemr.chore.UpdateRegimenChangeReasonAndDate")
-public class UpdateRegimenChangeReasonAndDate extends AbstractChore {
+public class UpdateRegimenChangeReasonAndDate extends AbstractChunkedChore {
 
     /**
-     * @see AbstractChore#perform(PrintWriter)
+     * @see AbstractChunkedChore#getIds()
      */
+    @Override
+    protected List<Integer> getIds() {
+        return queryIds("select distinct patient_id from orders where date_stopped is not null and voided=0");
+    }
 
+    /**
+     * @see AbstractChunkedChore#processChunk(List, PrintWriter)
+     */
     @Override
-    public void perform(PrintWriter out) {
+    protected void processChunk(List<Integer> patientIds, PrintWriter out) {
 
         ConceptService conceptService = Context.getConceptService();
         PatientService patientService = Context.getPatientService();
@@ -61,17 +64,14 @@ public class UpdateRegimenChangeReasonAndDate extends AbstractChore {
         String DATE_REGIMEN_STOPPED = "1191AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA";
         String REASON_REGIMEN_STOPPED_NON_CODED = "5622AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA";
 
-
-
-
         EncounterType encType = encounterService.getEncounterTypeByUuid(CommonMetadata._EncounterType.DRUG_REGIMEN_EDITOR);
         Form form = formService.getFormByUuid(CommonMetadata._Form.DRUG_REGIMEN_EDITOR);
 
 
         Map<Integer, Set<RegimenChangeReason>> records = new HashMap<Integer, Set<RegimenChangeReason>>();
-        for (Integer orderId : getDiscontinuedOrders().getMemberIds()) {
+        for (Integer orderId : getDiscontinuedOrders(patientIds)) {
             Order o = orderService.getOrder(orderId);
-            Integer patientId = orderService.getOrder(orderId).getPatient().getPatientId();
+            Integer patientId = o.getPatient().getPatientId();
             if (records.get(patientId) != null) {
                 records.get(patientId).add(new RegimenChangeReason(o.getPatient().getPatientId(), o.getDateActivated(), o.getDateStopped(), o.getOrderReason(), o.getOrderReasonNonCoded()));
             } else {
@@ -82,10 +82,7 @@ public class UpdateRegimenChangeReasonAndDate extends AbstractChore {
             }
         }
 
-
-        int counter = 0;
         for (Map.Entry<Integer, Set<RegimenChangeReason>> entry : records.entrySet()) {
-
             Patient p = patientService.getPatient(entry.getKey());
             Set<RegimenChangeReason> changeReasons = entry.getValue();
             List<Encounter> encounters = EmrUtils.AllEncounters(p, encType, form);
@@ -122,31 +119,28 @@ public class UpdateRegimenChangeReasonAndDate extends AbstractChore {
                    encounterService.saveEncounter(encounter);
                 }
             }
-            counter++;
-
-            if ((counter%500)==0) {
-                Context.flushSession();
-                Context.clearSession();
-                counter=0;
-            }
         }
-
-        out.println("Completed updating migrated orders with reason for regimen change");
-
     }
 
+    /**
+     * Obs are added to existing encounters so re-running a chunk would duplicate them
+     * @see AbstractChunkedChore#getThreads()
+     */
+    @Override
+    protected int getThreads() {
+        return 1;
+    }
 
+    /**
+     * @see AbstractChunkedChore#afterChunks(PrintWriter)
+     */
+    @Override
+    protected void afterChunks(PrintWriter out) {
+        out.println("Completed updating migrated orders with reason for regimen change");
+    }
 
-    private Cohort getDiscontinuedOrders() {
-        String sqlQuery = "select order_id from orders where date_stopped is not null and voided=0;";
-        Cohort cohort = null;
-        SqlCohortDefinition cohortDefinition = new SqlCohortDefinition(sqlQuery);
-        try {
-            cohort = Context.getService(CohortDefinitionService.class).evaluate(cohortDefinition, null);
-        } catch (EvaluationException e) {
-            e.printStackTrace();
-        }
-        return cohort;
+    private List<Integer> getDiscontinuedOrders(List<Integer> patientIds) {
+        return queryIds("select order_id from orders where date_stopped is not null and voided=0 and patient_id in (" + StringUtils.join(patientIds, ",") + ")");
     }
 
     class RegimenChangeReason {
@@ -0,0 +1,251 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.form;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Patient;
+import org.openmrs.Visit;
+import org.openmrs.api.context.Context;
+import org.openmrs.calculation.patient.PatientCalculation;
+import org.openmrs.calculation.patient.PatientCalculationContext;
+import org.openmrs.calculation.patient.PatientCalculationService;
+import org.openmrs.calculation.result.CalculationResult;
+import org.openmrs.module.appframework.domain.AppDescriptor;
+import org.openmrs.module.kenyacore.CoreContext;
+import org.openmrs.module.kenyacore.calculation.CalculationUtils;
+import org.openmrs.module.kenyacore.form.FormConfiguration;
+import org.openmrs.module.kenyacore.form.FormDescriptor;
+import org.openmrs.module.kenyacore.form.FormManager;
+import org.openmrs.module.kenyacore.program.ProgramDescriptor;
+import org.openmrs.module.kenyacore.program.ProgramManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which forms can still be entered for a visit. This gives the same forms as
+ * {@link FormManager#getAllUncompletedFormsForVisit(AppDescriptor, Visit)}, but evaluates the show-if calculations of
+ * all candidate forms together in one calculation context. That method can't supply the candidates because it
+ * evaluates each show-if calculation itself, so the candidates are the common and active program visit forms and the
+ * completed forms come from {@link FormManager#getCompletedFormsForVisit(AppDescriptor, Visit)}. Calculation results
+ * are kept briefly for each visit, so that re-rendering the visit panel doesn't evaluate them again, and are dropped
+ * once a transaction which saved an encounter of the patient commits.
+ */
+public class FormAvailabilityEvaluator {
+
+	protected static final Log log = LogFactory.getLog(FormAvailabilityEvaluator.class);
+
+	/**
+	 * How long the calculation results for a visit are kept
+	 */
+	public static final long CACHE_TIMEOUT_MS = 60 * 1000;
+
+	private static final FormAvailabilityEvaluator instance = new FormAvailabilityEvaluator();
+
+	private final Map<Integer, CachedResults> resultsByVisit = new ConcurrentHashMap<Integer, CachedResults>();
+
+	private FormAvailabilityEvaluator() {
+	}
+
+	/**
+	 * Gets the singleton instance
+	 * @return the instance
+	 */
+	public static FormAvailabilityEvaluator getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Gets the common and program visit forms which are available to the patient of the given visit and haven't
+	 * already been completed in that visit
+	 * @param app the current app (may be null to not filter by app)
+	 * @param visit the visit
+	 * @return the form descriptors
+	 */
+	public List<FormDescriptor> getUncompletedFormsForVisit(AppDescriptor app, Visit visit) {
+		Patient patient = visit.getPatient();
+
+		Set<FormDescriptor> candidates = new LinkedHashSet<FormDescriptor>();
+		for (FormConfiguration configuration : Context.getRegisteredComponents(FormConfiguration.class)) {
+			if (configuration.getCommonVisitForms() != null) {
+				candidates.addAll(configuration.getCommonVisitForms());
+			}
+		}
+		ProgramManager programManager = CoreContext.getInstance().getManager(ProgramManager.class);
+		for (ProgramDescriptor program : programManager.getPatientActivePrograms(patient)) {
+			if (program.getVisitForms() != null) {
+				candidates.addAll(program.getVisitForms());
+			}
+		}
+
+		FormManager formManager = CoreContext.getInstance().getManager(FormManager.class);
+		Set<FormDescriptor> completed = new HashSet<FormDescriptor>(formManager.getCompletedFormsForVisit(app, visit));
+
+		List<FormDescriptor> filtered = new ArrayList<FormDescriptor>();
+		for (FormDescriptor descriptor : candidates) {
+			if (app != null && (descriptor.getApps() == null || !descriptor.getApps().contains(app))) {
+				continue;
+			}
+			if (!isForGender(descriptor, patient)) {
+				continue;
+			}
+			if (completed.contains(descriptor) && descriptor.getFrequency() != FormDescriptor.Frequency.UNLIMITED) {
+				continue;
+			}
+			filtered.add(descriptor);
+		}
+
+		Map<Class<? extends PatientCalculation>, Boolean> results = getCalculationResults(visit, filtered);
+
+		List<FormDescriptor> available = new ArrayList<FormDescriptor>();
+		for (FormDescriptor descriptor : filtered) {
+			if (descriptor.getShowIfCalculation() == null || Boolean.TRUE.equals(results.get(descriptor.getShowIfCalculation()))) {
+				available.add(descriptor);
+			}
+		}
+		return available;
+	}
+
+	/**
+	 * Drops the cached calculation results for a patient once the current transaction commits, or immediately if there
+	 * is none. Dropping them earlier would let a render from another thread cache results from the uncommitted state
+	 * @param patientId the patient id
+	 */
+	public void invalidateAfterCommit(final Integer patientId) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					invalidate(patientId);
+				}
+			});
+		} else {
+			invalidate(patientId);
+		}
+	}
+
+	/**
+	 * Drops the cached calculation results for a patient
+	 * @param patientId the patient id
+	 */
+	public void invalidate(Integer patientId) {
+		for (Iterator<CachedResults> i = resultsByVisit.values().iterator(); i.hasNext(); ) {
+			if (i.next().patientId.equals(patientId)) {
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Checks whether calculation results are cached for a visit
+	 * @param visit the visit
+	 * @return true if results are cached
+	 */
+	boolean hasCachedResults(Visit visit) {
+		return visit.getVisitId() != null && resultsByVisit.containsKey(visit.getVisitId());
+	}
+
+	/**
+	 * Gets the results of the show-if calculations of the given forms, evaluating any which aren't cached
+	 * @param visit the visit
+	 * @param descriptors the form descriptors
+	 * @return whether each calculation is true for the visit's patient
+	 */
+	protected Map<Class<? extends PatientCalculation>, Boolean> getCalculationResults(Visit visit, List<FormDescriptor> descriptors) {
+		Integer patientId = visit.getPatient().getPatientId();
+		long now = System.currentTimeMillis();
+
+		CachedResults cached = visit.getVisitId() != null ? resultsByVisit.get(visit.getVisitId()) : null;
+		if (cached == null || !cached.patientId.equals(patientId) || now - cached.created > CACHE_TIMEOUT_MS) {
+			cached = new CachedResults(patientId, now);
+		}
+
+		PatientCalculationService calculationService = Context.getService(PatientCalculationService.class);
+		PatientCalculationContext calculationContext = null;
+
+		for (FormDescriptor descriptor : descriptors) {
+			Class<? extends PatientCalculation> calculationClass = descriptor.getShowIfCalculation();
+			if (calculationClass == null || cached.results.containsKey(calculationClass)) {
+				continue;
+			}
+
+			if (calculationContext == null) {
+				calculationContext = calculationService.createCalculationContext();
+			}
+
+			boolean show = false;
+			try {
+				PatientCalculation calculation = CalculationUtils.instantiateCalculation(calculationClass, null);
+				CalculationResult result = calculationService.evaluate(patientId, calculation, calculationContext);
+				show = result != null && Boolean.TRUE.equals(result.getValue());
+			}
+			catch (Exception ex) {
+				log.error("Unable to evaluate " + calculationClass.getSimpleName() + " for patient #" + patientId, ex);
+			}
+			cached.results.put(calculationClass, show);
+		}
+
+		if (visit.getVisitId() != null) {
+			removeExpired(now);
+			resultsByVisit.put(visit.getVisitId(), cached);
+		}
+		return cached.results;
+	}
+
+	/**
+	 * Checks whether a form is for the gender of a patient
+	 * @param descriptor the form descriptor
+	 * @param patient the patient
+	 * @return true if the form is for the patient's gender
+	 */
+	protected static boolean isForGender(FormDescriptor descriptor, Patient patient) {
+		if (descriptor.getGender() == FormDescriptor.Gender.MALE) {
+			return "M".equals(patient.getGender());
+		}
+		if (descriptor.getGender() == FormDescriptor.Gender.FEMALE) {
+			return "F".equals(patient.getGender());
+		}
+		return true;
+	}
+
+	private void removeExpired(long now) {
+		for (Iterator<CachedResults> i = resultsByVisit.values().iterator(); i.hasNext(); ) {
+			if (now - i.next().created > CACHE_TIMEOUT_MS) {
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Calculation results for the patient of a visit
+	 */
+	private static class CachedResults {
+
+		private final Integer patientId;
+
+		private final long created;
+
+		private final Map<Class<? extends PatientCalculation>, Boolean> results = new ConcurrentHashMap<Class<? extends PatientCalculation>, Boolean>();
+
+		private CachedResults(Integer patientId, long created) {
+			this.patientId = patientId;
+			this.created = created;
+		}
+	}
+}
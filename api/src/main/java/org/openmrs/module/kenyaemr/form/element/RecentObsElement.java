@@ -12,6 +12,8 @@ package org.openmrs.module.kenyaemr.form.element;
 import org.apache.commons.lang3.StringUtils;
 import org.openmrs.Concept;
 import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.Person;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.htmlformentry.FormEntryContext;
 import org.openmrs.module.htmlformentry.element.HtmlGeneratorElement;
@@ -19,6 +21,11 @@ import org.openmrs.module.kenyaemr.wrapper.PatientWrapper;
 import org.openmrs.module.kenyaui.KenyaUiUtils;
 import org.openmrs.module.metadatadeploy.MetadataUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -29,6 +36,7 @@ public class RecentObsElement implements HtmlGeneratorElement {
 	private String conceptId;
 	private boolean showDate = true;
 	private String noneMessage;
+	private Map<String, Obs> latestObs;
 
 	/**
 	 * Creates a new element
@@ -36,6 +44,18 @@ public class RecentObsElement implements HtmlGeneratorElement {
 	 * @param parameters the tag parameters
 	 */
 	public RecentObsElement(FormEntryContext context, Map<String, String> parameters) {
+		this(context, parameters, null);
+	}
+
+	/**
+	 * Creates a new element which looks up its obs in the given prefetched obs, if it has been fetched
+	 * @param context the form entry context
+	 * @param parameters the tag parameters
+	 * @param latestObs the latest obs of the patient by concept identifier (may be null)
+	 */
+	public RecentObsElement(FormEntryContext context, Map<String, String> parameters, Map<String, Obs> latestObs) {
+		this.latestObs = latestObs;
+
 		conceptId = parameters.get("conceptId");
 
 		if (StringUtils.isEmpty(conceptId)) {
@@ -60,9 +80,14 @@ public class RecentObsElement implements HtmlGeneratorElement {
 
 		KenyaUiUtils kenyaui = Context.getRegisteredComponents(KenyaUiUtils.class).get(0);
 
-		PatientWrapper patient = new PatientWrapper(context.getExistingPatient());
-
-		Obs obs = patient.lastObs(MetadataUtils.existing(Concept.class, conceptId));
+		Obs obs;
+		if (latestObs != null && latestObs.containsKey(conceptId)) {
+			obs = latestObs.get(conceptId);
+		}
+		else {
+			PatientWrapper patient = new PatientWrapper(context.getExistingPatient());
+			obs = patient.lastObs(MetadataUtils.existing(Concept.class, conceptId));
+		}
 
 		StringBuilder sb = new StringBuilder("<span>");
 
@@ -80,4 +105,45 @@ public class RecentObsElement implements HtmlGeneratorElement {
 		sb.append("</span>");
 		return sb.toString();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Fetches the latest obs of a patient for several concepts with one query
+	 * @param patient the patient
+	 * @param conceptIds the concept identifiers
+	 * @return the latest obs by concept identifier, including null values for concepts without obs. Concepts which
+	 * don't exist are left out.
+	 */
+	public static Map<String, Obs> fetchLatestObs(Patient patient, Collection<String> conceptIds) {
+		Map<String, Obs> latestObs = new HashMap<String, Obs>();
+		Map<Concept, List<String>> identifiersByConcept = new HashMap<Concept, List<String>>();
+
+		for (String conceptId : conceptIds) {
+			Concept concept = MetadataUtils.possible(Concept.class, conceptId);
+			if (concept != null) {
+				if (!identifiersByConcept.containsKey(concept)) {
+					identifiersByConcept.put(concept, new ArrayList<String>());
+				}
+				identifiersByConcept.get(concept).add(conceptId);
+				latestObs.put(conceptId, null);
+			}
+		}
+
+		if (identifiersByConcept.isEmpty()) {
+			return latestObs;
+		}
+
+		// Obs are returned latest first, so the first for each concept is its latest
+		List<Obs> obss = Context.getObsService().getObservations(Collections.singletonList((Person) patient), null,
+				new ArrayList<Concept>(identifiersByConcept.keySet()), null, null, null, null, null, null, null, null, false);
+
+		for (Obs obs : obss) {
+			List<String> identifiers = identifiersByConcept.remove(obs.getConcept());
+			if (identifiers != null) {
+				for (String identifier : identifiers) {
+					latestObs.put(identifier, obs);
+				}
+			}
+		}
+		return latestObs;
+	}
+}
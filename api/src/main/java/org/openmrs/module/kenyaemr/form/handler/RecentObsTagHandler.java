@@ -9,6 +9,8 @@
  */
 package org.openmrs.module.kenyaemr.form.handler;
 
+import org.openmrs.Obs;
+import org.openmrs.Patient;
 import org.openmrs.module.htmlformentry.BadFormDesignException;
 import org.openmrs.module.htmlformentry.FormEntrySession;
 import org.openmrs.module.htmlformentry.FormSubmissionController;
@@ -16,17 +18,72 @@ import org.openmrs.module.htmlformentry.handler.SubstitutionTagHandler;
 import org.openmrs.module.kenyaemr.form.element.RecentObsElement;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
- * Last obs tag handler
+ * Last obs tag handler. Forms can contain many of these tags, so the first tag of a session fetches the latest obs
+ * for every recentObs tag in the form with one query, and the rest are answered from those.
  */
 @Component
 public class RecentObsTagHandler extends SubstitutionTagHandler {
 
+	private static final Pattern TAG = Pattern.compile("<recentObs\\b([^>]*)>");
+
+	private static final Pattern CONCEPT_ID = Pattern.compile("\\bconceptId\\s*=\\s*[\"']([^\"']*)[\"']");
+
+	/**
+	 * The prefetched obs of each session, which are released along with the session
+	 */
+	private final Map<FormEntrySession, Map<String, Obs>> sessionObs = Collections.synchronizedMap(new WeakHashMap<FormEntrySession, Map<String, Obs>>());
+
 	@Override
 	protected String getSubstitution(FormEntrySession session, FormSubmissionController submissionController, Map<String, String> parameters) throws BadFormDesignException {
-		RecentObsElement element = new RecentObsElement(session.getContext(), parameters);
+		RecentObsElement element = new RecentObsElement(session.getContext(), parameters, getLatestObs(session));
 		return element.generateHtml(session.getContext());
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Gets the latest obs for the concepts of the session's form, fetching them on first use
+	 * @param session the form entry session
+	 * @return the latest obs by concept identifier, or null if there's no patient
+	 */
+	protected Map<String, Obs> getLatestObs(FormEntrySession session) {
+		Patient patient = session.getContext().getExistingPatient();
+		if (patient == null) {
+			return null;
+		}
+
+		Map<String, Obs> latestObs = sessionObs.get(session);
+		if (latestObs == null) {
+			String xml = session.getHtmlForm() != null ? session.getHtmlForm().getXmlData() : null;
+			latestObs = RecentObsElement.fetchLatestObs(patient, getConceptIds(xml));
+			sessionObs.put(session, latestObs);
+		}
+		return latestObs;
+	}
+
+	/**
+	 * Gets the concept identifiers of all recentObs tags in the given form XML
+	 * @param xml the form XML (may be null)
+	 * @return the concept identifiers
+	 */
+	protected static Set<String> getConceptIds(String xml) {
+		Set<String> conceptIds = new LinkedHashSet<String>();
+		if (xml != null) {
+			Matcher tag = TAG.matcher(xml);
+			while (tag.find()) {
+				Matcher conceptId = CONCEPT_ID.matcher(tag.group(1));
+				if (conceptId.find()) {
+					conceptIds.add(conceptId.group(1));
+				}
+			}
+		}
+		return conceptIds;
+	}
+}
@@ -21,11 +21,15 @@ import org.openmrs.PatientIdentifierType;
 import org.openmrs.Person;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
+import org.openmrs.calculation.patient.PatientCalculation;
+import org.openmrs.calculation.patient.PatientCalculationContext;
+import org.openmrs.calculation.patient.PatientCalculationService;
 import org.openmrs.calculation.result.CalculationResult;
 import org.openmrs.module.htmlformentry.FormEntrySession;
+import org.openmrs.module.kenyacore.calculation.CalculationUtils;
 import org.openmrs.module.kenyaemr.Dictionary;
+import org.openmrs.module.kenyaemr.EmrConstants;
 import org.openmrs.module.kenyaemr.api.KenyaEmrService;
-import org.openmrs.module.kenyaemr.calculation.EmrCalculationUtils;
 import org.openmrs.module.kenyaemr.calculation.library.HighRiskNegativeClientCategorizationCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.HighRiskPositiveClientCategorizationCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.hiv.DiscontinuationVelocityCalculation;
@@ -47,7 +51,10 @@ import org.openmrs.module.reporting.common.DateUtil;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 /**
  * Velocity functions for adding logic to HTML forms
  */
@@ -55,6 +62,32 @@ public class EmrVelocityFunctions {
 
 	private FormEntrySession session;
 	protected static final Log log = LogFactory.getLog(EmrVelocityFunctions.class);
+
+	/**
+	 * The calculations behind each function, so that those referenced by a form can be evaluated together
+	 */
+	private static final Map<String, Class<? extends PatientCalculation>> FUNCTION_CALCULATIONS = new LinkedHashMap<String, Class<? extends PatientCalculation>>();
+
+	static {
+		FUNCTION_CALCULATIONS.put("patientIsStable", StablePatientsCalculation.class);
+		FUNCTION_CALCULATIONS.put("currentInArt", OnArtCalculation.class);
+		FUNCTION_CALCULATIONS.put("patientInTbProgram", PatientInTbProgramCalculation.class);
+		FUNCTION_CALCULATIONS.put("patientDueForTbProgramEnrollment", PatientDueForTbProgramEnrollmentCalculation.class);
+		FUNCTION_CALCULATIONS.put("currentInIPT", OnIptProgramCalculation.class);
+		FUNCTION_CALCULATIONS.put("GreenCardVelocityCalculation", GreenCardVelocityCalculation.class);
+		FUNCTION_CALCULATIONS.put("DiscontinuationVelocityCalculation", DiscontinuationVelocityCalculation.class);
+		FUNCTION_CALCULATIONS.put("IptDiscontinuationVelocityCalculation", IptDiscontinuationVelocityCalculation.class);
+		FUNCTION_CALCULATIONS.put("TbDiscontinuationVelocityCalculation", TbDiscontinuationVelocityCalculation.class);
+		FUNCTION_CALCULATIONS.put("OtzDiscontinuationVelocityCalculation", OtzDiscontinuationVelocityCalculation.class);
+		FUNCTION_CALCULATIONS.put("OvcDiscontinuationVelocityCalculation", OvcDiscontinuationVelocityCalculation.class);
+		FUNCTION_CALCULATIONS.put("isHighRiskPositiveMchClient", HighRiskPositiveClientCategorizationCalculation.class);
+		FUNCTION_CALCULATIONS.put("isHighRiskNegativeMchClient", HighRiskNegativeClientCategorizationCalculation.class);
+	}
+
+	private PatientCalculationContext calculationContext;
+
+	private Map<Class<? extends PatientCalculation>, CalculationResult> calculationResults = new HashMap<Class<? extends PatientCalculation>, CalculationResult>();
+
 	/**
 	 * Constructs a new functions provider
 	 * @param session the form entry session
@@ -63,6 +96,55 @@ public class EmrVelocityFunctions {
 		this.session = session;
 	}
 
+	/**
+	 * Gets the result of a calculation for the session's patient. A form can call the same function many times, so
+	 * results are kept for the life of the session. The first call also evaluates every other calculation referenced
+	 * by the form, all in one calculation context
+	 * @param calculationClass the calculation class
+	 * @return the calculation result
+	 */
+	protected CalculationResult evaluateForPatient(Class<? extends PatientCalculation> calculationClass) {
+		if (!calculationResults.containsKey(calculationClass)) {
+			if (calculationContext == null) {
+				calculationContext = Context.getService(PatientCalculationService.class).createCalculationContext();
+				prefetchFormCalculations();
+			}
+
+			if (!calculationResults.containsKey(calculationClass)) {
+				calculationResults.put(calculationClass, evaluate(calculationClass));
+			}
+		}
+		return calculationResults.get(calculationClass);
+	}
+
+	/**
+	 * Evaluates the calculations of all functions referenced in the form's XML
+	 */
+	private void prefetchFormCalculations() {
+		String xml = session.getHtmlForm() != null ? session.getHtmlForm().getXmlData() : null;
+		if (xml == null) {
+			return;
+		}
+
+		for (Map.Entry<String, Class<? extends PatientCalculation>> function : FUNCTION_CALCULATIONS.entrySet()) {
+			Class<? extends PatientCalculation> calculationClass = function.getValue();
+			if (xml.contains(EmrConstants.MODULE_ID + "." + function.getKey() + "(") && !calculationResults.containsKey(calculationClass)) {
+				try {
+					calculationResults.put(calculationClass, evaluate(calculationClass));
+				}
+				catch (Exception ex) {
+					// The function may be in a branch of the form which is never rendered, so only fail if it's called
+					log.warn("Unable to prefetch " + calculationClass.getSimpleName() + " for form", ex);
+				}
+			}
+		}
+	}
+
+	private CalculationResult evaluate(Class<? extends PatientCalculation> calculationClass) {
+		PatientCalculation calculation = CalculationUtils.instantiateCalculation(calculationClass, null);
+		return Context.getService(PatientCalculationService.class).evaluate(session.getPatient().getId(), calculation, calculationContext);
+	}
+
 	/**
 	 * Checks whether the patient has HIV identifier
 	 * @return true if patient has such an identifier
@@ -104,7 +186,7 @@ public class EmrVelocityFunctions {
 
 	public Boolean patientIsStable() {
 
-		CalculationResult stablePatient = EmrCalculationUtils.evaluateForPatient(StablePatientsCalculation.class, null,session.getPatient());
+		CalculationResult stablePatient = evaluateForPatient(StablePatientsCalculation.class);
 		return 	(Boolean) stablePatient.getValue();
 
 
@@ -117,7 +199,7 @@ public class EmrVelocityFunctions {
 
 	public Boolean currentInArt() {
 
-		CalculationResult patientCurrentInART = EmrCalculationUtils.evaluateForPatient(OnArtCalculation.class, null,session.getPatient());
+		CalculationResult patientCurrentInART = evaluateForPatient(OnArtCalculation.class);
 		return 	(Boolean) patientCurrentInART.getValue();
 
 	}
@@ -142,7 +224,7 @@ public class EmrVelocityFunctions {
 
 	public Boolean patientInTbProgram() {
 
-		CalculationResult patientEnrolledInTbProgram = EmrCalculationUtils.evaluateForPatient(PatientInTbProgramCalculation.class, null,session.getPatient());
+		CalculationResult patientEnrolledInTbProgram = evaluateForPatient(PatientInTbProgramCalculation.class);
 		return 	(Boolean) patientEnrolledInTbProgram.getValue();
 
 	}
@@ -154,7 +236,7 @@ public class EmrVelocityFunctions {
 
 	public Boolean patientDueForTbProgramEnrollment() {
 
-		CalculationResult patientEligibleForEnrollmentTbProgram = EmrCalculationUtils.evaluateForPatient(PatientDueForTbProgramEnrollmentCalculation.class, null,session.getPatient());
+		CalculationResult patientEligibleForEnrollmentTbProgram = evaluateForPatient(PatientDueForTbProgramEnrollmentCalculation.class);
 		return 	(Boolean) patientEligibleForEnrollmentTbProgram.getValue();
 
 	}
@@ -166,7 +248,7 @@ public class EmrVelocityFunctions {
 
 	public Boolean currentInIPT() {
 
-		CalculationResult patientEnrolledInIPTProgram = EmrCalculationUtils.evaluateForPatient(OnIptProgramCalculation.class, null,session.getPatient());
+		CalculationResult patientEnrolledInIPTProgram = evaluateForPatient(OnIptProgramCalculation.class);
 		return 	(Boolean) patientEnrolledInIPTProgram.getValue();
 
 	}
@@ -178,7 +260,7 @@ public class EmrVelocityFunctions {
 
 	public String GreenCardVelocityCalculation() {
 
-		CalculationResult greenCardVelocity = EmrCalculationUtils.evaluateForPatient(GreenCardVelocityCalculation.class, null,session.getPatient());
+		CalculationResult greenCardVelocity = evaluateForPatient(GreenCardVelocityCalculation.class);
 		return 	(String) greenCardVelocity.getValue();
 
 
@@ -186,7 +268,7 @@ public class EmrVelocityFunctions {
 
 	public String DiscontinuationVelocityCalculation() {
 
-		CalculationResult discontinuationVelocity = EmrCalculationUtils.evaluateForPatient(DiscontinuationVelocityCalculation.class, null,session.getPatient());
+		CalculationResult discontinuationVelocity = evaluateForPatient(DiscontinuationVelocityCalculation.class);
 		return 	(String) discontinuationVelocity.getValue();
 
 
@@ -194,14 +276,14 @@ public class EmrVelocityFunctions {
 
 	public String IptDiscontinuationVelocityCalculation() {
 
-		CalculationResult iptDiscontinuationVelocity = EmrCalculationUtils.evaluateForPatient(IptDiscontinuationVelocityCalculation.class, null,session.getPatient());
+		CalculationResult iptDiscontinuationVelocity = evaluateForPatient(IptDiscontinuationVelocityCalculation.class);
 		return 	(String) iptDiscontinuationVelocity.getValue();
 
 
 	}
 	public String TbDiscontinuationVelocityCalculation() {
 
-		CalculationResult tbDiscontinuationVelocity = EmrCalculationUtils.evaluateForPatient(TbDiscontinuationVelocityCalculation.class, null,session.getPatient());
+		CalculationResult tbDiscontinuationVelocity = evaluateForPatient(TbDiscontinuationVelocityCalculation.class);
 		return 	(String) tbDiscontinuationVelocity.getValue();
 
 
@@ -209,13 +291,13 @@ public class EmrVelocityFunctions {
 
 	public String OtzDiscontinuationVelocityCalculation() {
 
-		CalculationResult otzDiscontinuationVelocity = EmrCalculationUtils.evaluateForPatient(OtzDiscontinuationVelocityCalculation.class, null,session.getPatient());
+		CalculationResult otzDiscontinuationVelocity = evaluateForPatient(OtzDiscontinuationVelocityCalculation.class);
 		return 	(String) otzDiscontinuationVelocity.getValue();
 	}
 
 	public String OvcDiscontinuationVelocityCalculation() {
 
-		CalculationResult ovcDiscontinuationVelocity = EmrCalculationUtils.evaluateForPatient(OvcDiscontinuationVelocityCalculation.class, null,session.getPatient());
+		CalculationResult ovcDiscontinuationVelocity = evaluateForPatient(OvcDiscontinuationVelocityCalculation.class);
 		return 	(String) ovcDiscontinuationVelocity.getValue();
 	}
 	/**
@@ -348,7 +430,7 @@ public class EmrVelocityFunctions {
 
 	public Boolean isHighRiskPositiveMchClient() {
 
-		CalculationResult highRiskPositiveMchClient = EmrCalculationUtils.evaluateForPatient(HighRiskPositiveClientCategorizationCalculation.class, null,session.getPatient());
+		CalculationResult highRiskPositiveMchClient = evaluateForPatient(HighRiskPositiveClientCategorizationCalculation.class);
 		return 	(Boolean) highRiskPositiveMchClient.getValue();
 
 	}
@@ -361,7 +443,7 @@ public class EmrVelocityFunctions {
 
 	public Boolean isHighRiskNegativeMchClient() {
 
-		CalculationResult highRiskNegativeMchClient = EmrCalculationUtils.evaluateForPatient(HighRiskNegativeClientCategorizationCalculation.class, null,session.getPatient());
+		CalculationResult highRiskNegativeMchClient = evaluateForPatient(HighRiskNegativeClientCategorizationCalculation.class);
 		return 	(Boolean) highRiskNegativeMchClient.getValue();
 
 	}
@@ -0,0 +1,124 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.metadata;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.Module;
+import org.openmrs.module.ModuleFactory;
+import org.openmrs.module.kenyaemr.EmrConstants;
+import org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Metadata bundle which is only deployed when its content has changed since the last deployment. A bundle's content
+ * is its compiled class so the checksum is taken over the class file (and the module version). Bundles whose content
+ * also depends on global properties must list them in {@link #getChecksumGlobalProperties()} so that changing one
+ * causes a redeployment.
+ *
+ * The checksum only covers what the bundle deploys, not what is in the database. Metadata edited or retired by hand
+ * is therefore no longer restored on every startup, only when the bundle next changes. To force a redeployment,
+ * delete the bundle's kenyaemr.metadata.*.checksum global property.
+ */
+public abstract class ChecksummedMetadataBundle extends AbstractMetadataBundle {
+
+	private static final Log log = LogFactory.getLog(ChecksummedMetadataBundle.class);
+
+	/**
+	 * Installs the metadata in this bundle
+	 */
+	protected abstract void installMetadata();
+
+	/**
+	 * @see org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle#install()
+	 */
+	@Override
+	public void install() {
+		AdministrationService administrationService = Context.getAdministrationService();
+		String property = getChecksumProperty();
+		String checksum = calculateChecksum();
+
+		if (checksum != null && checksum.equals(administrationService.getGlobalProperty(property))) {
+			log.info("Skipping " + getClass().getSimpleName() + " as it is unchanged since last deployed");
+			return;
+		}
+
+		installMetadata();
+
+		if (checksum != null) {
+			GlobalProperty gp = administrationService.getGlobalPropertyObject(property);
+			if (gp == null) {
+				gp = new GlobalProperty(property, null, "Checksum of the last deployed " + getClass().getSimpleName());
+			}
+			gp.setPropertyValue(checksum);
+			administrationService.saveGlobalProperty(gp);
+		}
+	}
+
+	/**
+	 * Gets the global properties which installMetadata reads, and which are therefore part of the bundle's content.
+	 * Both their values and whether they exist are included in the checksum
+	 * @return the global property names
+	 */
+	protected Collection<String> getChecksumGlobalProperties() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Gets the name of the global property which stores the last deployed checksum
+	 * @return the property name
+	 */
+	protected String getChecksumProperty() {
+		return EmrConstants.MODULE_ID + ".metadata." + getClass().getSimpleName() + ".checksum";
+	}
+
+	/**
+	 * Calculates the checksum of this bundle's content
+	 * @return the checksum or null if it can't be calculated, in which case the bundle is always deployed
+	 */
+	protected String calculateChecksum() {
+		InputStream stream = getClass().getResourceAsStream(getClass().getSimpleName() + ".class");
+		if (stream == null) {
+			return null;
+		}
+
+		try {
+			Module module = ModuleFactory.getModuleById(EmrConstants.MODULE_ID);
+			String version = module != null ? module.getVersion() : "";
+			StringBuilder content = new StringBuilder(DigestUtils.md5Hex(stream));
+
+			AdministrationService administrationService = Context.getAdministrationService();
+			for (String property : getChecksumGlobalProperties()) {
+				GlobalProperty gp = administrationService.getGlobalPropertyObject(property);
+				content.append('\n').append(property);
+				if (gp != null) {
+					content.append('=').append(gp.getPropertyValue());
+				}
+			}
+
+			return version + ":" + DigestUtils.md5Hex(content.toString());
+		}
+		catch (Exception ex) {
+			log.warn("Unable to calculate checksum for " + getClass().getSimpleName(), ex);
+			return null;
+		}
+		finally {
+			IOUtils.closeQuietly(stream);
+		}
+	}
+}
@@ -18,11 +18,13 @@ import org.openmrs.module.kenyaemr.EmrConstants;
 import org.openmrs.module.kenyaemr.Metadata;
 import org.openmrs.module.kenyaemr.datatype.FormDatatype;
 import org.openmrs.module.kenyaemr.datatype.LocationDatatype;
-import org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle;
 import org.springframework.stereotype.Component;
 import org.openmrs.customdatatype.datatype.FreeTextDatatype;
 import org.openmrs.customdatatype.datatype.ConceptDatatype;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.encounterType;
 import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.form;
 import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.globalProperty;
@@ -37,7 +39,7 @@ import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.visitTyp
  * Common metadata bundle
  */
 @Component
-public class CommonMetadata extends AbstractMetadataBundle {
+public class CommonMetadata extends ChecksummedMetadataBundle {
 
 	public static final String GP_CLIENT_VERIFICATION_GET_END_POINT = "kenyaemr.client.registry.get.api";
 	public static final String GP_CLIENT_VERIFICATION_POST_END_POINT = "kenyaemr.client.registry.post.api";
@@ -176,10 +178,24 @@ public class CommonMetadata extends AbstractMetadataBundle {
 	}
 
 	/**
-	 * @see org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle#install()
+	 * The client verification properties are only installed if they don't exist, so deleting one must cause a
+	 * redeployment
+	 * @see ChecksummedMetadataBundle#getChecksumGlobalProperties()
+	 */
+	@Override
+	protected Collection<String> getChecksumGlobalProperties() {
+		return Arrays.asList(GP_CLIENT_VERIFICATION_GET_END_POINT, GP_CLIENT_VERIFICATION_POST_END_POINT,
+				GP_CLIENT_VERIFICATION_API_TOKEN, GP_CLIENT_VERIFICATION_TOKEN_URL, GP_CLIENT_VERIFICATION_OAUTH2_CLIENT_ID,
+				GP_CLIENT_VERIFICATION_OAUTH2_CLIENT_SECRET, GP_CLIENT_VERIFICATION_OAUTH2_SCOPE,
+				GP_CLIENT_VERIFICATION_QUERY_UPI_END_POINT, GP_CLIENT_VERIFICATION_QUERY_CCC_END_POINT,
+				GP_CLIENT_VERIFICATION_UPDATE_END_POINT);
+	}
+
+	/**
+	 * @see ChecksummedMetadataBundle#installMetadata()
 	 */
 	@Override
-	public void install() {
+	protected void installMetadata() {
 		install(encounterType("Consultation", "Collection of clinical data during the main consultation", _EncounterType.CONSULTATION));
 		install(encounterType("Lab Results", "Collection of laboratory results", _EncounterType.LAB_RESULTS));
 		install(encounterType("Registration", "Initial data collection for a patient, not specific to any program", _EncounterType.REGISTRATION));
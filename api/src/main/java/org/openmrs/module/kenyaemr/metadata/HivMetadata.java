@@ -14,10 +14,12 @@ import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.kenyaemr.Dictionary;
 import org.openmrs.module.kenyaemr.Metadata;
-import org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle;
 import org.openmrs.module.metadatadeploy.bundle.Requires;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.encounterType;
 import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.form;
 import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.globalProperty;
@@ -29,7 +31,7 @@ import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.program;
  */
 @Component
 @Requires({ CommonMetadata.class })
-public class HivMetadata extends AbstractMetadataBundle {
+public class HivMetadata extends ChecksummedMetadataBundle {
 
 	public static final String MODULE_ID = "kenyaemr";
 	public static final String LDL_DEFAULT_VALUE = MODULE_ID + ".LDL_default_value";
@@ -84,10 +86,19 @@ public class HivMetadata extends AbstractMetadataBundle {
 	}
 
 	/**
-	 * @see org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle#install()
+	 * The UPN identifier format depends on whether this is a KDoD facility
+	 * @see ChecksummedMetadataBundle#getChecksumGlobalProperties()
+	 */
+	@Override
+	protected Collection<String> getChecksumGlobalProperties() {
+		return Collections.singletonList("kenyaemr.isKDoD");
+	}
+
+	/**
+	 * @see ChecksummedMetadataBundle#installMetadata()
 	 */
 	@Override
-	public void install() {
+	protected void installMetadata() {
 		AdministrationService administrationService = Context.getAdministrationService();
 		final String isKDoD = (administrationService.getGlobalProperty("kenyaemr.isKDoD"));
 
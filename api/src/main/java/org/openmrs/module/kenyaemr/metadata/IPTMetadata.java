@@ -12,7 +12,6 @@ package org.openmrs.module.kenyaemr.metadata;
 import org.openmrs.PatientIdentifierType.LocationBehavior;
 import org.openmrs.module.kenyaemr.Dictionary;
 import org.openmrs.module.kenyaemr.Metadata;
-import org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle;
 import org.openmrs.module.metadatadeploy.bundle.Requires;
 import org.springframework.stereotype.Component;
 
@@ -26,7 +25,7 @@ import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.program;
  */
 @Component
 @Requires({ CommonMetadata.class })
-public class IPTMetadata extends AbstractMetadataBundle {
+public class IPTMetadata extends ChecksummedMetadataBundle {
 
 	public static final class _EncounterType {
 		public static final String IPT_OUTCOME = "bb77c683-2144-48a5-a011-66d904d776c9";
@@ -49,10 +48,10 @@ public class IPTMetadata extends AbstractMetadataBundle {
 	}
 
 	/**
-	 * @see org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle#install()
+	 * @see ChecksummedMetadataBundle#installMetadata()
 	 */
 	@Override
-	public void install() {
+	protected void installMetadata() {
 		install(encounterType("IPT Initiation", "Initiation into IPT ", _EncounterType.IPT_INITIATION));
 		install(encounterType("IPT Outcome", "Discontinuation from IPT", _EncounterType.IPT_OUTCOME));
 		install(encounterType("IPT FollowUp", "Follow up in IPT", _EncounterType.IPT_FOLLOWUP));
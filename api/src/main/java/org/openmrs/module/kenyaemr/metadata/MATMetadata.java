@@ -10,7 +10,6 @@
 package org.openmrs.module.kenyaemr.metadata;
 
 import org.openmrs.module.kenyaemr.Dictionary;
-import org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle;
 import org.openmrs.module.metadatadeploy.bundle.Requires;
 import org.springframework.stereotype.Component;
 
@@ -24,7 +23,7 @@ import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.program;
  */
 @Component
 @Requires({ CommonMetadata.class })
-public class MATMetadata extends AbstractMetadataBundle {
+public class MATMetadata extends ChecksummedMetadataBundle {
 
 	public static final class _Program {
 		public static final String MAT = "4b898e20-9b2d-11ee-b9d1-0242ac120002";
@@ -53,10 +52,10 @@ public class MATMetadata extends AbstractMetadataBundle {
 		public static final String MAT_TRANSIT_FORM = "b9495048-eceb-4dd2-bfba-330dc4900ee9";
 	}
 	/**
-	 * @see org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle#install()
+	 * @see ChecksummedMetadataBundle#installMetadata()
 	 */
 	@Override
-	public void install() {
+	protected void installMetadata() {
 
 		install(program("MAT", "Methadone Assisted Therapy", Dictionary.MAT_PROGRAM, _Program.MAT));
 		install(encounterType("MAT Clinical Encounter", "MAT Clinical Encounter", _EncounterType.MAT_CLINICAL_ENCOUNTER));
@@ -12,7 +12,6 @@ package org.openmrs.module.kenyaemr.metadata;
 import org.openmrs.PatientIdentifierType.LocationBehavior;
 import org.openmrs.module.kenyaemr.Dictionary;
 import org.openmrs.module.kenyaemr.Metadata;
-import org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle;
 import org.openmrs.module.metadatadeploy.bundle.Requires;
 import org.springframework.stereotype.Component;
 
@@ -26,7 +25,7 @@ import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.program;
  */
 @Component
 @Requires({CommonMetadata.class})
-public class MchMetadata extends AbstractMetadataBundle {
+public class MchMetadata extends ChecksummedMetadataBundle {
 
 	public static final class _EncounterType {
 		public static final String MCHCS_CONSULTATION = "bcc6da85-72f2-4291-b206-789b8186a021";
@@ -66,10 +65,10 @@ public class MchMetadata extends AbstractMetadataBundle {
 	}
 
 	/**
-	 * @see org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle#install()
+	 * @see ChecksummedMetadataBundle#installMetadata()
 	 */
 	@Override
-	public void install() {
+	protected void installMetadata() {
 		///////////////////////////// MCH child services ////////////////////////////////
 
 		install(encounterType("CWC Enrollment", "Enrollment of child onto MCH program", _EncounterType.MCHCS_ENROLLMENT));
@@ -10,7 +10,6 @@
 package org.openmrs.module.kenyaemr.metadata;
 
 import org.openmrs.module.kenyaemr.Metadata;
-import org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle;
 import org.openmrs.module.metadatadeploy.bundle.Requires;
 import org.springframework.stereotype.Component;
 
@@ -21,7 +20,7 @@ import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.*;
  */
 @Component
 @Requires({ CommonMetadata.class })
-public class OTZMetadata extends AbstractMetadataBundle {
+public class OTZMetadata extends ChecksummedMetadataBundle {
 
 	public static final class _EncounterType {
 		public static final String OTZ_DISCONTINUATION = "162382b8-0464-11ea-9a9f-362b9e155667";
@@ -46,10 +45,10 @@ public class OTZMetadata extends AbstractMetadataBundle {
 	}
 
 	/**
-	 * @see AbstractMetadataBundle#install()
+	 * @see ChecksummedMetadataBundle#installMetadata()
 	 */
 	@Override
-	public void install() {
+	protected void installMetadata() {
 		install(encounterType("OTZ Enrollment", "Enrollment onto OTZ program", _EncounterType.OTZ_ENROLLMENT));
 		install(encounterType("OTZ Discontinuation", "Discontinuation from OTZ program", _EncounterType.OTZ_DISCONTINUATION));
 		install(encounterType("OTZ Activity", "Consultation in OTZ Program", _EncounterType.OTZ_ACTIVITY));
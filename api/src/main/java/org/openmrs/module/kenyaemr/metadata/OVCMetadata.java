@@ -11,7 +11,6 @@ package org.openmrs.module.kenyaemr.metadata;
 
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.module.kenyaemr.Metadata;
-import org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle;
 import org.openmrs.module.metadatadeploy.bundle.Requires;
 import org.springframework.stereotype.Component;
 
@@ -26,7 +25,7 @@ import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.relation
  */
 @Component
 @Requires({ CommonMetadata.class })
-public class OVCMetadata extends AbstractMetadataBundle {
+public class OVCMetadata extends ChecksummedMetadataBundle {
 
 	public static final class _EncounterType {
 		public static final String OVC_DISCONTINUATION = "5cf00d9e-09da-11ea-8d71-362b9e155667";
@@ -59,10 +58,10 @@ public class OVCMetadata extends AbstractMetadataBundle {
 	}
 
 	/**
-	 * @see AbstractMetadataBundle#install()
+	 * @see ChecksummedMetadataBundle#installMetadata()
 	 */
 	@Override
-	public void install() {
+	protected void installMetadata() {
 		install(encounterType("OVC Enrollment", "Enrollment onto OVC program", _EncounterType.OVC_ENROLLMENT));
 		install(encounterType("OVC Discontinuation", "Discontinuation from OVC program", _EncounterType.OVC_DISCONTINUATION));
 
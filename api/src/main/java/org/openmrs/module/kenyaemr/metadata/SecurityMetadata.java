@@ -13,7 +13,6 @@ import org.openmrs.Privilege;
 import org.openmrs.api.UserService;
 import org.openmrs.module.kenyadq.DqConstants;
 import org.openmrs.module.kenyaemr.EmrConstants;
-import org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle;
 import org.openmrs.util.PrivilegeConstants;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -30,7 +29,7 @@ import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.role;
  * Security metadata bundle
  */
 @Component
-public class SecurityMetadata extends AbstractMetadataBundle {
+public class SecurityMetadata extends ChecksummedMetadataBundle {
 
 	@Autowired
 	@Qualifier("userService")
@@ -65,10 +64,10 @@ public class SecurityMetadata extends AbstractMetadataBundle {
 	}
 
 	/**
-	 * @see org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle#install()
+	 * @see ChecksummedMetadataBundle#installMetadata()
 	 */
 	@Override
-	public void install() {
+	protected void installMetadata() {
 		String[] appIds = {
 				EmrConstants.APP_REGISTRATION,
 				EmrConstants.APP_INTAKE,
@@ -12,7 +12,6 @@ package org.openmrs.module.kenyaemr.metadata;
 import org.openmrs.PatientIdentifierType.LocationBehavior;
 import org.openmrs.module.kenyaemr.Dictionary;
 import org.openmrs.module.kenyaemr.Metadata;
-import org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle;
 import org.openmrs.module.metadatadeploy.bundle.Requires;
 import org.springframework.stereotype.Component;
 
@@ -26,7 +25,7 @@ import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.program;
  */
 @Component
 @Requires({ CommonMetadata.class })
-public class TbMetadata extends AbstractMetadataBundle {
+public class TbMetadata extends ChecksummedMetadataBundle {
 
 	public static final class _EncounterType {
 		public static final String TB_DISCONTINUATION = "d3e3d723-7458-4b4e-8998-408e8a551a84";
@@ -52,10 +51,10 @@ public class TbMetadata extends AbstractMetadataBundle {
 	}
 
 	/**
-	 * @see org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle#install()
+	 * @see ChecksummedMetadataBundle#installMetadata()
 	 */
 	@Override
-	public void install() {
+	protected void installMetadata() {
 		install(encounterType("TB Screening", "Screening of patient for TB", _EncounterType.TB_SCREENING));
 		install(encounterType("TB Enrollment", "Enrollment onto TB program", _EncounterType.TB_ENROLLMENT));
 		install(encounterType("TB Discontinuation", "Discontinuation from TB program", _EncounterType.TB_DISCONTINUATION));
@@ -11,7 +11,6 @@ package org.openmrs.module.kenyaemr.metadata;
 
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.module.kenyaemr.Metadata;
-import org.openmrs.module.metadatadeploy.bundle.AbstractMetadataBundle;
 import org.openmrs.module.metadatadeploy.bundle.Requires;
 import org.springframework.stereotype.Component;
 
@@ -22,7 +21,7 @@ import static org.openmrs.module.metadatadeploy.bundle.CoreConstructors.*;
  */
 @Component
 @Requires({ CommonMetadata.class })
-public class VMMCMetadata extends AbstractMetadataBundle {
+public class VMMCMetadata extends ChecksummedMetadataBundle {
 
 	public static final class _EncounterType {
 		public static final String VMMC_DISCONTINUATION = "4f02dfed-a2ec-40c2-b546-85dab5831871";
@@ -52,10 +51,10 @@ public class VMMCMetadata extends AbstractMetadataBundle {
 		public static final String VMMC = "162223AAAAAAAAAAAAAAAAAAAAAAAAAAAAAA";
 	}
 	/**
-	 * @see AbstractMetadataBundle#install()
+	 * @see ChecksummedMetadataBundle#installMetadata()
 	 */
 	@Override
-	public void install() {
+	protected void installMetadata() {
 		install(encounterType("VMMC Enrollment", "Enrollment onto VMMC program", _EncounterType.VMMC_ENROLLMENT));
 		install(encounterType("VMMC Discontinuation", "Discontinuation from VMMC program", _EncounterType.VMMC_DISCONTINUATION));
 		install(encounterType("VMMC Procedure", "VMMC procedure encounter", _EncounterType.VMMC_PROCEDURE));
@@ -0,0 +1,61 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.model;
+
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.openmrs.Encounter;
+
+import java.util.Date;
+
+/**
+ * An appointment given at an encounter, i.e. the return visit date recorded on it, and whether the patient came back
+ * on that date
+ */
+public class AppointmentHistoryEntry {
+
+	private Encounter encounter;
+	private Date appointmentDate;
+	private boolean honoured;
+
+	public AppointmentHistoryEntry(Encounter encounter, Date appointmentDate, boolean honoured) {
+		this.encounter = encounter;
+		this.appointmentDate = appointmentDate;
+		this.honoured = honoured;
+	}
+
+	/**
+	 * Gets the encounter at which the appointment was given
+	 * @return the encounter
+	 */
+	public Encounter getEncounter() {
+		return encounter;
+	}
+
+	public Date getAppointmentDate() {
+		return appointmentDate;
+	}
+
+	/**
+	 * Gets whether there is an encounter of the same form on the appointment date
+	 * @return true if the appointment was honoured
+	 */
+	public boolean isHonoured() {
+		return honoured;
+	}
+
+	/**
+	 * Gets the number of days between the encounter and the appointment
+	 * @return the number of days
+	 */
+	public int getAppointmentPeriod() {
+		return Days.daysBetween(new LocalDate(encounter.getEncounterDatetime()), new LocalDate(appointmentDate)).getDays();
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.model;
+
+/**
+ * The external data queues whose status is shown to users. Each has an error table, a queue table and an error
+ * message table named after its prefix, e.g. medic_error_data, medic_queue_data and medic_error_message
+ */
+public enum DataQueue {
+
+	MEDIC("medic"),
+	MUZIMA("muzima");
+
+	private final String prefix;
+
+	DataQueue(String prefix) {
+		this.prefix = prefix;
+	}
+
+	public String getErrorDataTable() {
+		return prefix + "_error_data";
+	}
+
+	public String getQueueDataTable() {
+		return prefix + "_queue_data";
+	}
+
+	public String getErrorMessageTable() {
+		return prefix + "_error_message";
+	}
+}
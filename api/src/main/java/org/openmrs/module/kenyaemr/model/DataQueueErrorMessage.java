@@ -0,0 +1,40 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.model;
+
+import java.util.Date;
+
+/**
+ * An error message logged while processing a data queue
+ */
+public class DataQueueErrorMessage {
+
+	private final Integer id;
+	private final String message;
+	private final Date dateCreated;
+
+	public DataQueueErrorMessage(Integer id, String message, Date dateCreated) {
+		this.id = id;
+		this.message = message;
+		this.dateCreated = dateCreated;
+	}
+
+	public Integer getId() {
+		return id;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public Date getDateCreated() {
+		return dateCreated;
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.model;
+
+/**
+ * The record counts of a data queue
+ */
+public class DataQueueSummary {
+
+	private final long totalErrors;
+	private final long registrationErrors;
+	private final long queueData;
+
+	public DataQueueSummary(long totalErrors, long registrationErrors, long queueData) {
+		this.totalErrors = totalErrors;
+		this.registrationErrors = registrationErrors;
+		this.queueData = queueData;
+	}
+
+	/**
+	 * Gets the number of records in the error table
+	 * @return the number of errors
+	 */
+	public long getTotalErrors() {
+		return totalErrors;
+	}
+
+	/**
+	 * Gets the number of errors for registrations, which are mostly potential duplicates
+	 * @return the number of registration errors
+	 */
+	public long getRegistrationErrors() {
+		return registrationErrors;
+	}
+
+	/**
+	 * Gets the number of records waiting to be processed
+	 * @return the number of queued records
+	 */
+	public long getQueueData() {
+		return queueData;
+	}
+}
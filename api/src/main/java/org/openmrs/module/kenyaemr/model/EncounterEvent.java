@@ -0,0 +1,119 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.model;
+
+import java.util.Date;
+
+/**
+ * A queued post-save encounter event, i.e. one row of kenyaemr_encounter_event_queue. Each event targets a single
+ * processor and encounter and is identified by an idempotency key so that re-saving an unchanged encounter does
+ * not queue the same work twice.
+ */
+public class EncounterEvent {
+
+	public static final String STATUS_PENDING = "PENDING";
+	public static final String STATUS_PROCESSING = "PROCESSING";
+	public static final String STATUS_COMPLETED = "COMPLETED";
+	public static final String STATUS_FAILED = "FAILED";
+
+	private Integer id;
+	private String idempotencyKey;
+	private String processor;
+	private String encounterUuid;
+	private String status;
+	private Integer attempts;
+	private String lastError;
+	private Date dateCreated;
+	private Date dateProcessed;
+
+	public EncounterEvent() {
+	}
+
+	public EncounterEvent(Integer id, String idempotencyKey, String processor, String encounterUuid, String status, Integer attempts) {
+		this.id = id;
+		this.idempotencyKey = idempotencyKey;
+		this.processor = processor;
+		this.encounterUuid = encounterUuid;
+		this.status = status;
+		this.attempts = attempts;
+	}
+
+	public Integer getId() {
+		return id;
+	}
+
+	public void setId(Integer id) {
+		this.id = id;
+	}
+
+	public String getIdempotencyKey() {
+		return idempotencyKey;
+	}
+
+	public void setIdempotencyKey(String idempotencyKey) {
+		this.idempotencyKey = idempotencyKey;
+	}
+
+	public String getProcessor() {
+		return processor;
+	}
+
+	public void setProcessor(String processor) {
+		this.processor = processor;
+	}
+
+	public String getEncounterUuid() {
+		return encounterUuid;
+	}
+
+	public void setEncounterUuid(String encounterUuid) {
+		this.encounterUuid = encounterUuid;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public Integer getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(Integer attempts) {
+		this.attempts = attempts;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+	public Date getDateCreated() {
+		return dateCreated;
+	}
+
+	public void setDateCreated(Date dateCreated) {
+		this.dateCreated = dateCreated;
+	}
+
+	public Date getDateProcessed() {
+		return dateProcessed;
+	}
+
+	public void setDateProcessed(Date dateProcessed) {
+		this.dateProcessed = dateProcessed;
+	}
+}
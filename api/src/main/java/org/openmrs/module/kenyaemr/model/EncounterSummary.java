@@ -0,0 +1,50 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.model;
+
+import java.util.Date;
+
+/**
+ * The id, date and form of an encounter, for when the full encounter with its obs isn't needed
+ */
+public class EncounterSummary {
+
+	private final Integer encounterId;
+	private final Integer patientId;
+	private final Date encounterDatetime;
+	private final Integer formId;
+
+	public EncounterSummary(Integer encounterId, Integer patientId, Date encounterDatetime, Integer formId) {
+		this.encounterId = encounterId;
+		this.patientId = patientId;
+		this.encounterDatetime = encounterDatetime;
+		this.formId = formId;
+	}
+
+	public Integer getEncounterId() {
+		return encounterId;
+	}
+
+	public Integer getPatientId() {
+		return patientId;
+	}
+
+	public Date getEncounterDatetime() {
+		return encounterDatetime;
+	}
+
+	/**
+	 * Gets the form of the encounter
+	 * @return the form id or null if the encounter wasn't entered with a form
+	 */
+	public Integer getFormId() {
+		return formId;
+	}
+}
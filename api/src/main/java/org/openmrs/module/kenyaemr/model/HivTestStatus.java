@@ -0,0 +1,141 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.model;
+
+import org.openmrs.module.kenyaemr.util.HtsConstants;
+
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * A patient's latest HIV tests and linkage, as recorded on the HTS and MCH forms
+ */
+public class HivTestStatus {
+
+	/**
+	 * Where a test was done, i.e. which form it was recorded on
+	 */
+	public enum Setting {
+		HTS, ANC, MATERNITY, PNC
+	}
+
+	/**
+	 * A single HIV test, i.e. an encounter of one of the testing forms
+	 */
+	public static class Test {
+
+		private final Integer encounterId;
+		private final Date date;
+		private final Setting setting;
+		private final Set<Integer> results;
+		private final boolean discordantCouple;
+
+		public Test(Integer encounterId, Date date, Setting setting, Set<Integer> results, boolean discordantCouple) {
+			this.encounterId = encounterId;
+			this.date = date;
+			this.setting = setting;
+			this.results = results;
+			this.discordantCouple = discordantCouple;
+		}
+
+		public Integer getEncounterId() {
+			return encounterId;
+		}
+
+		public Date getDate() {
+			return date;
+		}
+
+		public Setting getSetting() {
+			return setting;
+		}
+
+		/**
+		 * Gets the final test results recorded on the encounter
+		 * @return the result concept ids
+		 */
+		public Set<Integer> getResults() {
+			return results;
+		}
+
+		public boolean isPositive() {
+			return results.contains(HtsConstants.HTS_POSITIVE_RESULT_CONCEPT_ID);
+		}
+
+		public boolean isNegative() {
+			return results.contains(HtsConstants.HTS_NEGATIVE_RESULT_CONCEPT_ID);
+		}
+
+		/**
+		 * Gets whether the client was recorded as being in a discordant couple at the test
+		 * @return true if in a discordant couple
+		 */
+		public boolean isDiscordantCouple() {
+			return discordantCouple;
+		}
+	}
+
+	private final Test lastHtsTest;
+	private final Test lastMchTest;
+	private final Date linkageDate;
+	private final boolean linkageSuccessful;
+
+	public HivTestStatus(Test lastHtsTest, Test lastMchTest, Date linkageDate, boolean linkageSuccessful) {
+		this.lastHtsTest = lastHtsTest;
+		this.lastMchTest = lastMchTest;
+		this.linkageDate = linkageDate;
+		this.linkageSuccessful = linkageSuccessful;
+	}
+
+	/**
+	 * Gets the latest test recorded on the HTS initial or retest forms
+	 * @return the test or null
+	 */
+	public Test getLastHtsTest() {
+		return lastHtsTest;
+	}
+
+	/**
+	 * Gets the MCH test, taken from the latest ANC visit, or if there is none the latest delivery, or if there is none
+	 * the latest PNC visit
+	 * @return the test or null
+	 */
+	public Test getLastMchTest() {
+		return lastMchTest;
+	}
+
+	/**
+	 * Gets the latest HTS test, or if the patient has never been tested in HTS, their MCH test
+	 * @return the test or null
+	 */
+	public Test getLastTest() {
+		return lastHtsTest != null ? lastHtsTest : lastMchTest;
+	}
+
+	/**
+	 * Gets the date of the latest HTS linkage encounter
+	 * @return the date or null if the patient has no linkage encounter
+	 */
+	public Date getLinkageDate() {
+		return linkageDate;
+	}
+
+	public boolean hasLinkage() {
+		return linkageDate != null;
+	}
+
+	/**
+	 * Gets whether the latest linkage was successful, i.e. it recorded a unique patient number
+	 * @return true if successful
+	 */
+	public boolean isLinkageSuccessful() {
+		return linkageSuccessful;
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.model;
+
+import java.util.Date;
+
+/**
+ * The timing of a single definition evaluation during a profiled report run, i.e. one row of
+ * kenyaemr_report_profile. Times are inclusive of nested evaluations, except for the self time.
+ */
+public class ReportProfileEntry {
+
+	private Integer id;
+	private String runUuid;
+	private String reportUuid;
+	private String reportName;
+	private Integer depth;
+	private String definitionType;
+	private String definitionUuid;
+	private String definitionName;
+	private String definitionClass;
+	private Long elapsedMs;
+	private Long selfMs;
+	private Integer rowCount;
+	private String sqlText;
+	private Boolean cacheHit;
+	private Date dateCreated;
+
+	public Integer getId() {
+		return id;
+	}
+
+	public void setId(Integer id) {
+		this.id = id;
+	}
+
+	public String getRunUuid() {
+		return runUuid;
+	}
+
+	public void setRunUuid(String runUuid) {
+		this.runUuid = runUuid;
+	}
+
+	public String getReportUuid() {
+		return reportUuid;
+	}
+
+	public void setReportUuid(String reportUuid) {
+		this.reportUuid = reportUuid;
+	}
+
+	public String getReportName() {
+		return reportName;
+	}
+
+	public void setReportName(String reportName) {
+		this.reportName = reportName;
+	}
+
+	public Integer getDepth() {
+		return depth;
+	}
+
+	public void setDepth(Integer depth) {
+		this.depth = depth;
+	}
+
+	public String getDefinitionType() {
+		return definitionType;
+	}
+
+	public void setDefinitionType(String definitionType) {
+		this.definitionType = definitionType;
+	}
+
+	public String getDefinitionUuid() {
+		return definitionUuid;
+	}
+
+	public void setDefinitionUuid(String definitionUuid) {
+		this.definitionUuid = definitionUuid;
+	}
+
+	public String getDefinitionName() {
+		return definitionName;
+	}
+
+	public void setDefinitionName(String definitionName) {
+		this.definitionName = definitionName;
+	}
+
+	public String getDefinitionClass() {
+		return definitionClass;
+	}
+
+	public void setDefinitionClass(String definitionClass) {
+		this.definitionClass = definitionClass;
+	}
+
+	public Long getElapsedMs() {
+		return elapsedMs;
+	}
+
+	public void setElapsedMs(Long elapsedMs) {
+		this.elapsedMs = elapsedMs;
+	}
+
+	public Long getSelfMs() {
+		return selfMs;
+	}
+
+	public void setSelfMs(Long selfMs) {
+		this.selfMs = selfMs;
+	}
+
+	public Integer getRowCount() {
+		return rowCount;
+	}
+
+	public void setRowCount(Integer rowCount) {
+		this.rowCount = rowCount;
+	}
+
+	public String getSqlText() {
+		return sqlText;
+	}
+
+	public void setSqlText(String sqlText) {
+		this.sqlText = sqlText;
+	}
+
+	public Boolean getCacheHit() {
+		return cacheHit;
+	}
+
+	public void setCacheHit(Boolean cacheHit) {
+		this.cacheHit = cacheHit;
+	}
+
+	public Date getDateCreated() {
+		return dateCreated;
+	}
+
+	public void setDateCreated(Date dateCreated) {
+		this.dateCreated = dateCreated;
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.model;
+
+import java.util.Date;
+
+/**
+ * The id and dates of a visit, for when the full visit with its encounters isn't needed
+ */
+public class VisitSummary {
+
+	private final Integer visitId;
+	private final Integer patientId;
+	private final Date startDatetime;
+	private final Date stopDatetime;
+
+	public VisitSummary(Integer visitId, Integer patientId, Date startDatetime, Date stopDatetime) {
+		this.visitId = visitId;
+		this.patientId = patientId;
+		this.startDatetime = startDatetime;
+		this.stopDatetime = stopDatetime;
+	}
+
+	public Integer getVisitId() {
+		return visitId;
+	}
+
+	public Integer getPatientId() {
+		return patientId;
+	}
+
+	public Date getStartDatetime() {
+		return startDatetime;
+	}
+
+	/**
+	 * Gets the stop date of the visit
+	 * @return the stop date or null if the visit is still active
+	 */
+	public Date getStopDatetime() {
+		return stopDatetime;
+	}
+}
@@ -51,11 +51,23 @@ public class RegimenChangeHistory {
 	 * @return the regimen history
 	 */
 	public static RegimenChangeHistory forPatient(Patient patient, Concept medSet) {
-		Set<Concept> relevantGenerics = new HashSet<Concept>(medSet.getSetMembers());
 		CareSetting outpatient = Context.getOrderService().getCareSettingByName("OUTPATIENT");
 		List<DrugOrder> drugOrdersOnly = EmrUtils.drugOrdersFromOrders(patient, outpatient);
 
-		return new RegimenChangeHistory(relevantGenerics, drugOrdersOnly);
+		return forDrugOrders(drugOrdersOnly, medSet);
+	}
+
+	/**
+	 * Generates a regimen order history from drug orders which have already been loaded, e.g. for a whole cohort with
+	 * {@link org.openmrs.module.kenyaemr.api.KenyaEmrService#getDrugOrdersByPatient(java.util.Collection, CareSetting, boolean)}
+	 * @param drugOrders the patient's outpatient drug orders
+	 * @param medSet the medset concept defining the list of relevant drug concepts
+	 * @return the regimen history
+	 */
+	public static RegimenChangeHistory forDrugOrders(List<DrugOrder> drugOrders, Concept medSet) {
+		Set<Concept> relevantGenerics = new HashSet<Concept>(medSet.getSetMembers());
+
+		return new RegimenChangeHistory(relevantGenerics, drugOrders);
 	}
 
 	/**
@@ -0,0 +1,96 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.reporting.cohort.definition;
+
+import org.openmrs.module.reporting.cohort.definition.BaseCohortDefinition;
+
+/**
+ * Base class for the differentiated care cohorts, which are slices of the patients in kenyaemr_etl.etl_current_in_care
+ * who have started ART, by stability, length of their last TCA, age at their last visit and gender. All slices are
+ * served from a single read of the table, see
+ * {@link org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.DiffCareCohortDefinitionEvaluator}
+ */
+public abstract class DiffCareCohortDefinition extends BaseCohortDefinition {
+
+	public enum Stability {
+		STABLE,
+		UNSTABLE,
+		UNDOCUMENTED
+	}
+
+	public enum TcaLength {
+		UNDER_4_MONTHS,
+		FOUR_MONTHS_OR_MORE
+	}
+
+	public enum AgeGroup {
+		UNDER_15,
+		FIFTEEN_OR_OLDER
+	}
+
+	private final Stability stability;
+
+	private final TcaLength tcaLength;
+
+	private final AgeGroup ageGroup;
+
+	private final String gender;
+
+	/**
+	 * Creates a slice, where a null criterion matches any patient
+	 * @param stability the stability
+	 * @param tcaLength the length of the last TCA
+	 * @param ageGroup the age group at the last visit
+	 * @param gender the gender
+	 */
+	protected DiffCareCohortDefinition(Stability stability, TcaLength tcaLength, AgeGroup ageGroup, String gender) {
+		this.stability = stability;
+		this.tcaLength = tcaLength;
+		this.ageGroup = ageGroup;
+		this.gender = gender;
+	}
+
+	/**
+	 * Checks whether a patient belongs to this slice
+	 * @param stability the patient's stability
+	 * @param tcaMonths the months between the patient's last visit and TCA
+	 * @param age the patient's age in years at their last visit
+	 * @param gender the patient's gender
+	 * @return true if the patient belongs to this slice
+	 */
+	public boolean includes(Stability stability, Integer tcaMonths, Integer age, String gender) {
+		if (this.stability != null && this.stability != stability) {
+			return false;
+		}
+		if (tcaLength != null && (tcaMonths == null || (tcaMonths >= 4) != (tcaLength == TcaLength.FOUR_MONTHS_OR_MORE))) {
+			return false;
+		}
+		if (ageGroup != null && (age == null || (age >= 15) != (ageGroup == AgeGroup.FIFTEEN_OR_OLDER))) {
+			return false;
+		}
+		return this.gender == null || this.gender.equalsIgnoreCase(gender);
+	}
+
+	public Stability getStability() {
+		return stability;
+	}
+
+	public TcaLength getTcaLength() {
+		return tcaLength;
+	}
+
+	public AgeGroup getAgeGroup() {
+		return ageGroup;
+	}
+
+	public String getGender() {
+		return gender;
+	}
+}
@@ -9,7 +9,6 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition;
 
-import org.openmrs.module.reporting.cohort.definition.BaseCohortDefinition;
 import org.openmrs.module.reporting.common.Localized;
 import org.openmrs.module.reporting.definition.configuration.ConfigurationPropertyCachingStrategy;
 import org.openmrs.module.reporting.evaluation.caching.Caching;
@@ -19,6 +18,9 @@ import org.openmrs.module.reporting.evaluation.caching.Caching;
  */
 @Caching(strategy = ConfigurationPropertyCachingStrategy.class)
 @Localized("reporting.DiffCareStableOver4MonthstcaCohortDefinition")
-public class DiffCareStableOver4MonthstcaCohortDefinition extends BaseCohortDefinition {
+public class DiffCareStableOver4MonthstcaCohortDefinition extends DiffCareCohortDefinition {
 
+	public DiffCareStableOver4MonthstcaCohortDefinition() {
+		super(Stability.STABLE, TcaLength.FOUR_MONTHS_OR_MORE, null, null);
+	}
 }
@@ -9,7 +9,6 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition;
 
-import org.openmrs.module.reporting.cohort.definition.BaseCohortDefinition;
 import org.openmrs.module.reporting.common.Localized;
 import org.openmrs.module.reporting.definition.configuration.ConfigurationPropertyCachingStrategy;
 import org.openmrs.module.reporting.evaluation.caching.Caching;
@@ -18,6 +17,9 @@ import org.openmrs.module.reporting.evaluation.caching.Caching;
  */
 @Caching(strategy = ConfigurationPropertyCachingStrategy.class)
 @Localized("reporting.DiffCareStableUnder4MonthstcaOver15MaleCohortDefinition")
-public class DiffCareStableUnder4MonthstcaOver15MaleCohortDefinition extends BaseCohortDefinition {
+public class DiffCareStableUnder4MonthstcaOver15MaleCohortDefinition extends DiffCareCohortDefinition {
 
+	public DiffCareStableUnder4MonthstcaOver15MaleCohortDefinition() {
+		super(Stability.STABLE, TcaLength.UNDER_4_MONTHS, AgeGroup.FIFTEEN_OR_OLDER, "M");
+	}
 }
@@ -9,7 +9,6 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition;
 
-import org.openmrs.module.reporting.cohort.definition.BaseCohortDefinition;
 import org.openmrs.module.reporting.common.Localized;
 import org.openmrs.module.reporting.definition.configuration.ConfigurationPropertyCachingStrategy;
 import org.openmrs.module.reporting.evaluation.caching.Caching;
@@ -19,6 +18,9 @@ import org.openmrs.module.reporting.evaluation.caching.Caching;
  */
 @Caching(strategy = ConfigurationPropertyCachingStrategy.class)
 @Localized("reporting.DiffCarecurrentInCareOnARTUnder15CohortDefinition")
-public class DiffCarecurrentInCareOnARTUnder15CohortDefinition extends BaseCohortDefinition {
+public class DiffCarecurrentInCareOnARTUnder15CohortDefinition extends DiffCareCohortDefinition {
 
+	public DiffCarecurrentInCareOnARTUnder15CohortDefinition() {
+		super(null, null, AgeGroup.UNDER_15, null);
+	}
 }
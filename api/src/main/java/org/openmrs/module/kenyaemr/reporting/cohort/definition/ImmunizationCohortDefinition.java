@@ -0,0 +1,83 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.reporting.cohort.definition;
+
+import org.openmrs.module.reporting.cohort.definition.BaseCohortDefinition;
+import org.openmrs.module.reporting.common.Localized;
+import org.openmrs.module.reporting.definition.configuration.ConfigurationProperty;
+import org.openmrs.module.reporting.definition.configuration.ConfigurationPropertyCachingStrategy;
+import org.openmrs.module.reporting.evaluation.caching.Caching;
+
+/**
+ * Children given a vaccine between ${startDate} and ${endDate}, according to the HEI immunization ETL table. All
+ * vaccines for a period are evaluated together, see
+ * {@link org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.ImmunizationCohortDefinitionEvaluator}
+ */
+@Caching(strategy = ConfigurationPropertyCachingStrategy.class)
+@Localized("reporting.ImmunizationCohortDefinition")
+public class ImmunizationCohortDefinition extends BaseCohortDefinition {
+
+	/**
+	 * The vaccines recorded in kenyaemr_etl.etl_hei_immunization, with their date columns
+	 */
+	public enum Vaccine {
+		BCG("BCG"),
+		OPV_BIRTH("OPV_birth"),
+		OPV_1("OPV_1"),
+		OPV_2("OPV_2"),
+		OPV_3("OPV_3"),
+		IPV("IPV"),
+		DPT_HEP_B_HIB_1("DPT_Hep_B_Hib_1"),
+		DPT_HEP_B_HIB_2("DPT_Hep_B_Hib_2"),
+		DPT_HEP_B_HIB_3("DPT_Hep_B_Hib_3"),
+		PCV_10_1("PCV_10_1"),
+		PCV_10_2("PCV_10_2"),
+		PCV_10_3("PCV_10_3"),
+		ROTA_1("ROTA_1"),
+		ROTA_2("ROTA_2"),
+		ROTA_3("ROTA_3"),
+		VITAMIN_A_6_MONTHS("VitaminA_6_months"),
+		VITAMIN_A_1_YEAR("VitaminA_1_yr"),
+		VITAMIN_A_18_MONTHS("VitaminA_1_and_half_yr"),
+		VITAMIN_A_2_TO_5_YEARS("VitaminA_2_to_5_yr"),
+		YELLOW_FEVER("Yellow_fever"),
+		MEASLES_RUBELLA_1("Measles_rubella_1"),
+		MEASLES_RUBELLA_2("Measles_rubella_2"),
+		FULLY_IMMUNIZED("fully_immunized");
+
+		private final String column;
+
+		Vaccine(String column) {
+			this.column = column;
+		}
+
+		public String getColumn() {
+			return column;
+		}
+	}
+
+	@ConfigurationProperty(required = true)
+	private Vaccine vaccine;
+
+	public ImmunizationCohortDefinition() {
+	}
+
+	public ImmunizationCohortDefinition(Vaccine vaccine) {
+		this.vaccine = vaccine;
+	}
+
+	public Vaccine getVaccine() {
+		return vaccine;
+	}
+
+	public void setVaccine(Vaccine vaccine) {
+		this.vaccine = vaccine;
+	}
+}
@@ -9,53 +9,26 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.ANCRegisterCohortDefinition;
-import org.openmrs.module.reporting.common.ObjectUtil;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.openmrs.module.reporting.query.encounter.EncounterQueryResult;
 import org.openmrs.module.reporting.query.encounter.definition.EncounterQuery;
-import org.openmrs.module.reporting.query.encounter.evaluator.EncounterQueryEvaluator;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.List;
 
 /**
  * Evaluator for patients for ANC Register
  */
 @Handler(supports = {ANCRegisterCohortDefinition.class})
-public class ANCRegisterCohortDefinitionEvaluator implements EncounterQueryEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-	@Autowired
-	EvaluationService evaluationService;
-
-	public EncounterQueryResult evaluate(EncounterQuery definition, EvaluationContext context) throws EvaluationException {
-		context = ObjectUtil.nvl(context, new EvaluationContext());
-		EncounterQueryResult queryResult = new EncounterQueryResult(definition, context);
-
-		String qry = "SELECT v.encounter_id\n" +
+public class ANCRegisterCohortDefinitionEvaluator extends AbstractSqlEncounterQueryEvaluator {
+
+	/**
+	 * @see AbstractSqlEncounterQueryEvaluator#getQuery(EncounterQuery, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(EncounterQuery definition, EvaluationContext context) {
+		return "SELECT v.encounter_id\n" +
 				"from kenyaemr_etl.etl_mch_antenatal_visit v\n" +
 				"         inner join kenyaemr_etl.etl_mch_enrollment e\n" +
 				"                    on v.patient_id = e.patient_id\n" +
 				"where date(v.visit_date) BETWEEN date(:startDate) AND date(:endDate);";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date)context.getParameterValue("startDate");
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("endDate", endDate);
-		builder.addParameter("startDate", startDate);
-
-		List<Integer> results = evaluationService.evaluateToList(builder, Integer.class, context);
-		queryResult.getMemberIds().addAll(results);
-		return queryResult;
 	}
-
 }
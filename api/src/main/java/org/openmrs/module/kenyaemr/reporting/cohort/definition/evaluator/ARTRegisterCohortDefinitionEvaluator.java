@@ -9,49 +9,23 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.ARTRegisterCohortDefinition;
-import org.openmrs.module.kenyaemr.reporting.cohort.definition.IPTRegisterCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
-import org.openmrs.module.reporting.common.ObjectUtil;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for ART Register Cohort Evaluator
  */
 @Handler(supports = {ARTRegisterCohortDefinition.class})
-public class ARTRegisterCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-	@Autowired
-	EvaluationService evaluationService;
-
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		ARTRegisterCohortDefinition definition = (ARTRegisterCohortDefinition) cohortDefinition;
-
-        if (definition == null)
-            return null;
-
-		Cohort newCohort = new Cohort();
-
-		context = ObjectUtil.nvl(context, new EvaluationContext());
-
-		String qry = "select patient_id\n" +
+public class ARTRegisterCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select patient_id\n" +
 				"from\n" +
 				"(select e.patient_id,\n" +
 				" e.date_started\n" +
@@ -64,18 +38,5 @@ public class ARTRegisterCohortDefinitionEvaluator implements CohortDefinitionEva
 				"   inner join kenyaemr_etl.etl_hiv_enrollment enr on enr.patient_id=e.patient_id\n" +
 				" where date(e.date_started) between date(:startDate) and date(:endDate)\n" +
 				"  group by e.patient_id) a;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date)context.getParameterValue("startDate");
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("endDate", endDate);
-		builder.addParameter("startDate", startDate);
-
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-
-        return new EvaluatedCohort(newCohort, definition, context);
-    }
-
+	}
 }
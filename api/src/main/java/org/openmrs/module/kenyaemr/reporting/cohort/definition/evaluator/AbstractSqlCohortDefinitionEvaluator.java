@@ -0,0 +1,88 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
+
+import org.openmrs.Cohort;
+import org.openmrs.module.reporting.cohort.EvaluatedCohort;
+import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
+import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
+import org.openmrs.module.reporting.common.ObjectUtil;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+import org.openmrs.module.reporting.evaluation.EvaluationException;
+
+import java.util.Set;
+
+/**
+ * Base class for cohort definition evaluators which select patients with a single SQL query. Patients are restricted
+ * to the base cohort of the evaluation context in the database, around the query unless it uses
+ * {@link #andInBaseCohort(String, EvaluationContext)} to filter them itself.
+ */
+public abstract class AbstractSqlCohortDefinitionEvaluator extends AbstractSqlQueryEvaluator implements CohortDefinitionEvaluator {
+
+	/**
+	 * @see CohortDefinitionEvaluator#evaluate(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
+		context = ObjectUtil.nvl(context, new EvaluationContext());
+
+		Cohort newCohort = new Cohort();
+		newCohort.setMemberIds(evaluateIds(cohortDefinition, getQuery(cohortDefinition, context), getIdColumn(), getBaseCohortIds(context), context));
+		return new EvaluatedCohort(newCohort, cohortDefinition, context);
+	}
+
+	/**
+	 * Gets a condition which restricts a patient id column to the base cohort. Evaluators of grouped queries use this
+	 * so that patients are filtered before they are grouped, rather than after the whole query has been evaluated.
+	 * @param column the patient id column, e.g. fup.patient_id
+	 * @param context the evaluation context
+	 * @return the condition starting with "and", or an empty string if there is no restriction to apply in the query
+	 */
+	protected String andInBaseCohort(String column, EvaluationContext context) {
+		return isRestrictedInDatabase(getBaseCohortIds(context)) ? " and " + column + " in (:" + RESTRICTED_IDS + ")" : "";
+	}
+
+	/**
+	 * Gets the ids of the base cohort which patients are restricted to
+	 * @param context the evaluation context
+	 * @return the ids, or null if patients aren't restricted
+	 */
+	private Set<Integer> getBaseCohortIds(EvaluationContext context) {
+		if (selectsPatients() && context != null && context.getBaseCohort() != null) {
+			return context.getBaseCohort().getMemberIds();
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the query, which selects a single id column
+	 * @param cohortDefinition the cohort definition
+	 * @param context the evaluation context
+	 * @return the query
+	 */
+	protected abstract String getQuery(CohortDefinition cohortDefinition, EvaluationContext context);
+
+	/**
+	 * Gets the name of the id column selected by the query
+	 * @return the column name
+	 */
+	protected String getIdColumn() {
+		return "patient_id";
+	}
+
+	/**
+	 * Whether the query selects patient ids, which can be restricted to the base cohort. Queries selecting other ids,
+	 * e.g. of contacts, aren't restricted.
+	 * @return true if the query selects patient ids
+	 */
+	protected boolean selectsPatients() {
+		return true;
+	}
+}
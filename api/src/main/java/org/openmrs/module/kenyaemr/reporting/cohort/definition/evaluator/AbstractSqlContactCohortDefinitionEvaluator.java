@@ -0,0 +1,33 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
+
+/**
+ * Base class for cohort definition evaluators which select HTS contacts by their id in the contact listing tables.
+ * Contact ids aren't patient ids, so they aren't restricted to the base cohort.
+ */
+public abstract class AbstractSqlContactCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getIdColumn()
+	 */
+	@Override
+	protected String getIdColumn() {
+		return "id";
+	}
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#selectsPatients()
+	 */
+	@Override
+	protected boolean selectsPatients() {
+		return false;
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
+
+import org.openmrs.module.reporting.common.ObjectUtil;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+import org.openmrs.module.reporting.evaluation.EvaluationException;
+import org.openmrs.module.reporting.evaluation.context.EncounterEvaluationContext;
+import org.openmrs.module.reporting.query.encounter.EncounterQueryResult;
+import org.openmrs.module.reporting.query.encounter.definition.EncounterQuery;
+import org.openmrs.module.reporting.query.encounter.evaluator.EncounterQueryEvaluator;
+
+import java.util.Set;
+
+/**
+ * Base class for encounter query evaluators which select encounters with a single SQL query. Encounters are restricted
+ * to the base encounters of the evaluation context in the database.
+ */
+public abstract class AbstractSqlEncounterQueryEvaluator extends AbstractSqlQueryEvaluator implements EncounterQueryEvaluator {
+
+	/**
+	 * @see EncounterQueryEvaluator#evaluate(EncounterQuery, EvaluationContext)
+	 */
+	@Override
+	public EncounterQueryResult evaluate(EncounterQuery definition, EvaluationContext context) throws EvaluationException {
+		context = ObjectUtil.nvl(context, new EvaluationContext());
+		EncounterQueryResult queryResult = new EncounterQueryResult(definition, context);
+
+		Set<Integer> restrictTo = null;
+		if (context instanceof EncounterEvaluationContext && ((EncounterEvaluationContext) context).getBaseEncounters() != null) {
+			restrictTo = ((EncounterEvaluationContext) context).getBaseEncounters().getMemberIds();
+		}
+
+		queryResult.getMemberIds().addAll(evaluateIds(definition, getQuery(definition, context), "encounter_id", restrictTo, context));
+		return queryResult;
+	}
+
+	/**
+	 * Gets the query, which selects a single encounter_id column
+	 * @param definition the encounter query
+	 * @param context the evaluation context
+	 * @return the query
+	 */
+	protected abstract String getQuery(EncounterQuery definition, EvaluationContext context);
+}
@@ -0,0 +1,205 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.module.reporting.evaluation.Definition;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+import org.openmrs.module.reporting.evaluation.EvaluationException;
+import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
+import org.openmrs.module.reporting.evaluation.service.EvaluationService;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Base class for evaluators which select ids with a single SQL query. The query is run as a derived table so that its
+ * ids can be restricted in the database, e.g. to the base cohort of the evaluation context, and limited to the row
+ * limit of the context. The named parameters of the query are checked against the available values before it is run.
+ * <p>
+ * The restriction is applied outside the derived table. MySQL 5.7 merges the derived table into the outer query, and
+ * so pushes the restriction into the scan, only when the query has no GROUP BY, DISTINCT, aggregates, LIMIT or UNION.
+ * Most report queries group, in which case the derived table is still materialized in full and the restriction only
+ * reduces the ids transferred and hydrated. Queries which need the restriction applied earlier can filter on the
+ * :restrictedIds parameter themselves, in which case it isn't also applied outside. Restrictions of more than
+ * {@link #MAX_RESTRICTED_IDS} ids aren't sent to the database at all, but applied to the ids the query selects.
+ */
+public abstract class AbstractSqlQueryEvaluator {
+
+	/**
+	 * The named parameter which holds the ids to restrict to
+	 */
+	protected static final String RESTRICTED_IDS = "restrictedIds";
+
+	/**
+	 * The most ids to restrict to in the database. Larger restrictions are applied in memory as binding them costs
+	 * more than selecting and discarding the extra ids.
+	 */
+	protected static final int MAX_RESTRICTED_IDS = 5000;
+
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.)*'|\"(?:[^\"\\\\]|\\\\.)*\"");
+
+	private static final Pattern NAMED_PARAMETER = Pattern.compile("(?<![:\\w]):([a-zA-Z_]\\w*)");
+
+	protected final Log log = LogFactory.getLog(getClass());
+
+	@Autowired
+	protected EvaluationService evaluationService;
+
+	/**
+	 * Gets the values of the named parameters which queries may use. By default these are the start and end dates of
+	 * the evaluation context, which may be null.
+	 * @param definition the definition being evaluated
+	 * @param context the evaluation context
+	 * @return the parameter values by name
+	 */
+	protected Map<String, Object> getParameterValues(Definition definition, EvaluationContext context) {
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("startDate", context.getParameterValue("startDate"));
+		values.put("endDate", context.getParameterValue("endDate"));
+		return values;
+	}
+
+	/**
+	 * Evaluates a query which selects a single id column
+	 * @param definition the definition being evaluated
+	 * @param query the query
+	 * @param idColumn the name of the id column selected by the query
+	 * @param restrictTo the ids to restrict the results to, or null for no restriction
+	 * @param context the evaluation context
+	 * @return the ids
+	 * @throws EvaluationException if the query uses a parameter which has no value
+	 */
+	protected Set<Integer> evaluateIds(Definition definition, String query, String idColumn, Set<Integer> restrictTo, EvaluationContext context) throws EvaluationException {
+		if (restrictTo != null && restrictTo.isEmpty()) {
+			return new HashSet<Integer>();
+		}
+
+		Map<String, Object> values = getParameterValues(definition, context);
+		Set<String> names = getParameterNames(query);
+		boolean restrictInDatabase = isRestrictedInDatabase(restrictTo);
+		boolean restrictedByQuery = names.remove(RESTRICTED_IDS);
+		if (restrictedByQuery && !restrictInDatabase) {
+			throw new EvaluationException("No value for parameter :" + RESTRICTED_IDS + " of " + definition.getClass().getSimpleName());
+		}
+
+		// The limit can only be applied by the database when it applies the whole restriction
+		Integer limit = (restrictTo == null || restrictInDatabase) ? context.getLimit() : null;
+
+		SqlQueryBuilder builder = new SqlQueryBuilder();
+		builder.append(buildQuery(query, idColumn, restrictInDatabase && !restrictedByQuery, limit));
+		for (String name : names) {
+			if (!values.containsKey(name)) {
+				throw new EvaluationException("No value for parameter :" + name + " of " + definition.getClass().getSimpleName());
+			}
+			builder.addParameter(name, values.get(name));
+		}
+		if (restrictInDatabase) {
+			builder.addParameter(RESTRICTED_IDS, restrictTo);
+		}
+
+		long start = System.currentTimeMillis();
+		List<Integer> ids = evaluationService.evaluateToList(builder, Integer.class, context);
+		if (log.isDebugEnabled()) {
+			log.debug(definition.getClass().getSimpleName() + " selected " + ids.size() + " ids in " + (System.currentTimeMillis() - start) + "ms");
+		}
+
+		if (restrictTo != null && !restrictInDatabase) {
+			return restrict(ids, restrictTo, context.getLimit());
+		}
+		return new HashSet<Integer>(ids);
+	}
+
+	/**
+	 * Checks whether a restriction is applied in the database
+	 * @param restrictTo the ids to restrict to, or null for no restriction
+	 * @return true if the ids are bound as the :restrictedIds parameter
+	 */
+	protected static boolean isRestrictedInDatabase(Set<Integer> restrictTo) {
+		return restrictTo != null && restrictTo.size() <= MAX_RESTRICTED_IDS;
+	}
+
+	/**
+	 * Restricts ids in memory
+	 * @param ids the ids
+	 * @param restrictTo the ids to restrict to
+	 * @param limit the maximum number of ids, or null for no limit. The lowest ids are kept.
+	 * @return the restricted ids
+	 */
+	protected static Set<Integer> restrict(Collection<Integer> ids, Set<Integer> restrictTo, Integer limit) {
+		Set<Integer> restricted = new TreeSet<Integer>(ids);
+		restricted.retainAll(restrictTo);
+
+		Set<Integer> result = new HashSet<Integer>();
+		for (Integer id : restricted) {
+			if (limit != null && result.size() >= limit) {
+				break;
+			}
+			result.add(id);
+		}
+		return result;
+	}
+
+	/**
+	 * Wraps a query as a derived table which selects its id column
+	 * @param query the query
+	 * @param idColumn the name of the id column selected by the query
+	 * @param restricted whether to restrict the ids to the :restrictedIds parameter
+	 * @param limit the maximum number of ids, or null for no limit
+	 * @return the wrapped query
+	 */
+	protected static String buildQuery(String query, String idColumn, boolean restricted, Integer limit) {
+		StringBuilder sb = new StringBuilder("select q." + idColumn + " from (\n" + stripTerminator(query) + "\n) q");
+		if (restricted) {
+			sb.append(" where q.").append(idColumn).append(" in (:").append(RESTRICTED_IDS).append(")");
+		}
+		if (limit != null) {
+			sb.append(" limit ").append(limit);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the named parameters used by a query, ignoring anything in string literals
+	 * @param query the query
+	 * @return the parameter names
+	 */
+	protected static Set<String> getParameterNames(String query) {
+		Set<String> names = new LinkedHashSet<String>();
+		Matcher matcher = NAMED_PARAMETER.matcher(STRING_LITERAL.matcher(query).replaceAll("''"));
+		while (matcher.find()) {
+			names.add(matcher.group(1));
+		}
+		return names;
+	}
+
+	/**
+	 * Removes any trailing semicolons so the query can be nested
+	 * @param query the query
+	 * @return the query without its terminator
+	 */
+	protected static String stripTerminator(String query) {
+		String stripped = query.trim();
+		while (stripped.endsWith(";")) {
+			stripped = stripped.substring(0, stripped.length() - 1).trim();
+		}
+		return stripped;
+	}
+}
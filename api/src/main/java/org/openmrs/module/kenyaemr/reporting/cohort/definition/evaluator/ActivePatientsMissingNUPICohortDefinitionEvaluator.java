@@ -9,23 +9,10 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.ActivePatientsMissingNUPICohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for ActivePatientsMissingNUPICohortDefinition
@@ -33,24 +20,14 @@ import java.util.List;
  * Provides a MissingNUPI of a patient with regard to the last visit
  */
 @Handler(supports = {ActivePatientsMissingNUPICohortDefinition.class})
-public class ActivePatientsMissingNUPICohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-
-	@Autowired
-	EvaluationService evaluationService;
-
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		ActivePatientsMissingNUPICohortDefinition definition = (ActivePatientsMissingNUPICohortDefinition) cohortDefinition;
-
-        if (definition == null)
-            return null;
-
-		Cohort newCohort = new Cohort();
-
-		String qry="select t.patient_id\n" +
+public class ActivePatientsMissingNUPICohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select t.patient_id\n" +
 				"from(\n" +
 				"    select fup.visit_date,fup.patient_id, max(e.visit_date) as enroll_date,\n" +
 				"           greatest(max(fup.visit_date), ifnull(max(d.visit_date),'0000-00-00')) as latest_vis_date,\n" +
@@ -77,14 +54,5 @@ public class ActivePatientsMissingNUPICohortDefinitionEvaluator implements Cohor
 				"            )\n" +
 				"        )\n" +
 				"    ) t;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date endDate = new Date();
-		builder.addParameter("endDate", endDate);
-
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		return new EvaluatedCohort(newCohort, definition, context);
-    }
+	}
 }
@@ -9,23 +9,10 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.ActivePatientsSnapshotCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for ActivePatientsSnapshotCohortDefinition
@@ -33,24 +20,14 @@ import java.util.List;
  * Provides a snapshot of a patient with regard to the last visit
  */
 @Handler(supports = {ActivePatientsSnapshotCohortDefinition.class})
-public class ActivePatientsSnapshotCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-
-	@Autowired
-	EvaluationService evaluationService;
-
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		ActivePatientsSnapshotCohortDefinition definition = (ActivePatientsSnapshotCohortDefinition) cohortDefinition;
+public class ActivePatientsSnapshotCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
-        if (definition == null)
-            return null;
-
-		Cohort newCohort = new Cohort();
-
-		String qry="select t.patient_id\n" +
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select t.patient_id\n" +
 				"from (select fup.visit_date,\n" +
 				"             fup.patient_id,\n" +
 				"             max(e.visit_date)                                                                as enroll_date,\n" +
@@ -74,7 +51,7 @@ public class ActivePatientsSnapshotCohortDefinitionEvaluator implements CohortDe
 				"            where date(visit_date) <= date(:endDate)\n" +
 				"              and program_name = 'HIV'\n" +
 				"            group by patient_id) d on d.patient_id = fup.patient_id\n" +
-				"      where fup.visit_date <= date(:endDate)\n" +
+				"      where fup.visit_date <= date(:endDate)" + andInBaseCohort("fup.patient_id", context) + "\n" +
 				"      group by patient_id\n" +
 				"      having (started_on_drugs is not null and started_on_drugs <> '')\n" +
 				"         and (\n" +
@@ -87,16 +64,5 @@ public class ActivePatientsSnapshotCohortDefinitionEvaluator implements CohortDe
 				"                   disc_patient is null)\n" +
 				"              )\n" +
 				"          )) t;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date)context.getParameterValue("startDate");
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("startDate", startDate);
-		builder.addParameter("endDate", endDate);
-
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		return new EvaluatedCohort(newCohort, definition, context);
-    }
+	}
 }
@@ -9,56 +9,24 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.AppointmentsCheckedInCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for Current on ART
  */
 @Handler(supports = {AppointmentsCheckedInCohortDefinition.class})
-public class AppointmentsCheckedInCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-	@Autowired
-	EvaluationService evaluationService;
-
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		AppointmentsCheckedInCohortDefinition definition = (AppointmentsCheckedInCohortDefinition) cohortDefinition;
-
-        if (definition == null)
-            return null;
-
-		Cohort newCohort = new Cohort();
-
-		String qry=" select\n" +
+public class AppointmentsCheckedInCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return " select\n" +
 				"v.patient_id from visit v \n" +
 				"where date(v.date_started) = curdate();";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-
-
-        return new EvaluatedCohort(newCohort, definition, context);
-    }
-
+	}
 }
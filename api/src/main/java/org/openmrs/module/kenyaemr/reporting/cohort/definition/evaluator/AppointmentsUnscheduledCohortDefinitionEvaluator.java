@@ -9,57 +9,25 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.AppointmentsUnscheduledCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for Current on ART
  */
 @Handler(supports = {AppointmentsUnscheduledCohortDefinition.class})
-public class AppointmentsUnscheduledCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-	@Autowired
-	EvaluationService evaluationService;
-
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		AppointmentsUnscheduledCohortDefinition definition = (AppointmentsUnscheduledCohortDefinition) cohortDefinition;
-
-        if (definition == null)
-            return null;
-
-		Cohort newCohort = new Cohort();
-
-		String qry=" select v.patient_id \n" +
+public class AppointmentsUnscheduledCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return " select v.patient_id \n" +
 				"from visit v \n" +
 				"left outer join kenyaemr_etl.etl_patients_booked_today b on b.patient_id = v.patient_id\n" +
 				"where v.voided=0 and date(v.date_started) = curdate() and b.patient_id is null;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-
-
-        return new EvaluatedCohort(newCohort, definition, context);
-    }
-
+	}
 }
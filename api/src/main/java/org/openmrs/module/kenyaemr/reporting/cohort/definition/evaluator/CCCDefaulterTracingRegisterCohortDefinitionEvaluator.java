@@ -9,52 +9,22 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.CCCDefaulterTracingRegisterCohortDefinition;
-import org.openmrs.module.reporting.common.ObjectUtil;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.openmrs.module.reporting.query.encounter.EncounterQueryResult;
 import org.openmrs.module.reporting.query.encounter.definition.EncounterQuery;
-import org.openmrs.module.reporting.query.encounter.evaluator.EncounterQueryEvaluator;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.List;
 
 /**
  * Handler for CCC defaulter tracing cohort definition
  */
 @Handler(supports = {CCCDefaulterTracingRegisterCohortDefinition.class})
-public class CCCDefaulterTracingRegisterCohortDefinitionEvaluator implements EncounterQueryEvaluator {
-
-	private final Log log = LogFactory.getLog(this.getClass());
-	@Autowired
-	EvaluationService evaluationService;
-
-	public EncounterQueryResult evaluate(EncounterQuery definition, EvaluationContext context) throws EvaluationException {
-		context = ObjectUtil.nvl(context, new EvaluationContext());
-		EncounterQueryResult queryResult = new EncounterQueryResult(definition, context);
-
-        if (definition == null)
-            return null;
-
-		String qry="select encounter_id from kenyaemr_etl.etl_ccc_defaulter_tracing where date(visit_date) between date(:startDate) and date(:endDate);";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date)context.getParameterValue("startDate");
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("endDate", endDate);
-		builder.addParameter("startDate", startDate);
-
-		List<Integer> results = evaluationService.evaluateToList(builder, Integer.class, context);
-		queryResult.getMemberIds().addAll(results);
-		return queryResult;
-    }
-
+public class CCCDefaulterTracingRegisterCohortDefinitionEvaluator extends AbstractSqlEncounterQueryEvaluator {
+
+	/**
+	 * @see AbstractSqlEncounterQueryEvaluator#getQuery(EncounterQuery, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(EncounterQuery definition, EvaluationContext context) {
+		return "select encounter_id from kenyaemr_etl.etl_ccc_defaulter_tracing where date(visit_date) between date(:startDate) and date(:endDate);";
+	}
 }
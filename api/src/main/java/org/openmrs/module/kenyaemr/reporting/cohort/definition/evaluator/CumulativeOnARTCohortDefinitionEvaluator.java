@@ -9,45 +9,23 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.CumulativeOnARTCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for cumulative on ART
  */
 @Handler(supports = {CumulativeOnARTCohortDefinition.class})
-public class CumulativeOnARTCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-	@Autowired
-	EvaluationService evaluationService;
-
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		CumulativeOnARTCohortDefinition definition = (CumulativeOnARTCohortDefinition) cohortDefinition;
-
-        if (definition == null)
-            return null;
-
-		Cohort newCohort = new Cohort();
-
-		String qry="select distinct net.patient_id  \n" +
+public class CumulativeOnARTCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select distinct net.patient_id  \n" +
 				"from (\n" +
 				"select e.patient_id,e.date_started,min(enr.visit_date) as enrollment_date,\n" +
 				"e.gender,\n" +
@@ -73,17 +51,5 @@ public class CumulativeOnARTCohortDefinitionEvaluator implements CohortDefinitio
 				"left outer join kenyaemr_etl.etl_patient_hiv_followup fup on fup.patient_id=e.patient_id\n" +
 				"group by e.patient_id\n" +
 				"having  (TI_on_art =0 and date_started <= :endDate ) )net;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("endDate", endDate);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-
-
-        return new EvaluatedCohort(newCohort, definition, context);
-    }
-
+	}
 }
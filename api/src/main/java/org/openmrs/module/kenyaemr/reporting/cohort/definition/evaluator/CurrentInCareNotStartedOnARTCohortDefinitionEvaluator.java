@@ -9,48 +9,22 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.CurrentInCareNotStartedOnARTCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for patients currently in care but have not been started on art
  */
 @Handler(supports = {CurrentInCareNotStartedOnARTCohortDefinition.class})
-public class CurrentInCareNotStartedOnARTCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-
-	@Autowired
-	EvaluationService evaluationService;
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-		CurrentInCareNotStartedOnARTCohortDefinition definition = (CurrentInCareNotStartedOnARTCohortDefinition) cohortDefinition;
-
-		if (definition == null)
-			return null;
-
-		Cohort newCohort = new Cohort();
-		String qry=" select patient_id from kenyaemr_etl.etl_current_in_care where started_on_drugs is null;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		return new EvaluatedCohort(newCohort, definition, context);
-    }
-
+public class CurrentInCareNotStartedOnARTCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return " select patient_id from kenyaemr_etl.etl_current_in_care where started_on_drugs is null;";
+	}
 }
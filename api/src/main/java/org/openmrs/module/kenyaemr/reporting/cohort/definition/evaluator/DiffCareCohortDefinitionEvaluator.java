@@ -0,0 +1,121 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
+
+import org.openmrs.Cohort;
+import org.openmrs.annotation.Handler;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.DiffCareCohortDefinition;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.DiffCareCohortDefinition.Stability;
+import org.openmrs.module.reporting.cohort.EvaluatedCohort;
+import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
+import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+import org.openmrs.module.reporting.evaluation.EvaluationException;
+import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
+import org.openmrs.module.reporting.evaluation.service.EvaluationService;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Evaluates every {@link DiffCareCohortDefinition}. The first evaluation classifies all patients on ART in
+ * kenyaemr_etl.etl_current_in_care with a single query and keeps the classifications in the evaluation context, so
+ * the other differentiated care slices of the report or dashboard are answered from them
+ */
+@Handler(supports = DiffCareCohortDefinition.class)
+public class DiffCareCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
+
+	private static final String CACHE_KEY = DiffCareCohortDefinitionEvaluator.class.getName() + ":classifications";
+
+	@Autowired
+	EvaluationService evaluationService;
+
+	/**
+	 * @see CohortDefinitionEvaluator#evaluate(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
+
+		DiffCareCohortDefinition definition = (DiffCareCohortDefinition) cohortDefinition;
+
+		Set<Integer> patientIds = new HashSet<Integer>();
+		for (Classification classification : getClassifications(context)) {
+			if (definition.includes(classification.stability, classification.tcaMonths, classification.age, classification.gender)) {
+				patientIds.add(classification.patientId);
+			}
+		}
+
+		Cohort newCohort = new Cohort();
+		newCohort.setMemberIds(patientIds);
+		return new EvaluatedCohort(newCohort, definition, context);
+	}
+
+	/**
+	 * Gets the classification of each patient on ART, from the evaluation context if already fetched
+	 * @param context the evaluation context
+	 * @return the classifications
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<Classification> getClassifications(EvaluationContext context) throws EvaluationException {
+		List<Classification> classifications = (List<Classification>) context.getFromCache(CACHE_KEY);
+		if (classifications == null) {
+			classifications = fetchClassifications(context);
+			context.addToCache(CACHE_KEY, classifications);
+		}
+		return classifications;
+	}
+
+	/**
+	 * Fetches the classification of each patient on ART with a single query
+	 */
+	private List<Classification> fetchClassifications(EvaluationContext context) throws EvaluationException {
+		String qry = "select c.patient_id,\n" +
+				"       case when c.stability = 1 then 'STABLE' when c.stability = 2 then 'UNSTABLE' when c.stability is null then 'UNDOCUMENTED' end,\n" +
+				"       timestampdiff(month, c.latest_vis_date, c.latest_tca),\n" +
+				"       timestampdiff(year, c.dob, c.latest_vis_date),\n" +
+				"       c.gender\n" +
+				"from kenyaemr_etl.etl_current_in_care c where c.started_on_drugs is not null;";
+
+		SqlQueryBuilder builder = new SqlQueryBuilder();
+		builder.append(qry);
+		List<Object[]> rows = evaluationService.evaluateToList(builder, context);
+
+		List<Classification> classifications = new ArrayList<Classification>(rows.size());
+		for (Object[] row : rows) {
+			Classification classification = new Classification();
+			classification.patientId = ((Number) row[0]).intValue();
+			classification.stability = row[1] != null ? Stability.valueOf(row[1].toString()) : null;
+			classification.tcaMonths = row[2] != null ? ((Number) row[2]).intValue() : null;
+			classification.age = row[3] != null ? ((Number) row[3]).intValue() : null;
+			classification.gender = row[4] != null ? row[4].toString() : null;
+			classifications.add(classification);
+		}
+		return classifications;
+	}
+
+	/**
+	 * A patient's stability, TCA length, age and gender
+	 */
+	protected static class Classification {
+
+		private Integer patientId;
+
+		private Stability stability;
+
+		private Integer tcaMonths;
+
+		private Integer age;
+
+		private String gender;
+	}
+}
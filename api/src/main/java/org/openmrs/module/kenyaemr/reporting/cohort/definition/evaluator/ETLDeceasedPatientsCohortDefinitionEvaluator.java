@@ -9,59 +9,28 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.ETLDeceasedPatientsCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for patients who died within a reporting period
  */
 @Handler(supports = {ETLDeceasedPatientsCohortDefinition.class})
-public class ETLDeceasedPatientsCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-
-	@Autowired
-	EvaluationService evaluationService;
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-		ETLDeceasedPatientsCohortDefinition definition = (ETLDeceasedPatientsCohortDefinition) cohortDefinition;
-
-		if (definition == null)
-			return null;
-
-		Cohort newCohort = new Cohort();
-		String qry=" SELECT patient_id\n" +
+public class ETLDeceasedPatientsCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return " SELECT patient_id\n" +
 				"from kenyaemr_etl.etl_patient_demographics\n" +
 				"where dead=1 and date(death_date) between date(:startDate) and date(:endDate) \n" +
 				"union\n" +
 				"select patient_id\n" +
 				"from kenyaemr_etl.etl_patient_program_discontinuation\n" +
 				"where program_name='HIV' and date(date_died) between date(:startDate) and date(:endDate);";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		Date startDate = (Date)context.getParameterValue("startDate");
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("endDate", endDate);
-		builder.addParameter("startDate", startDate);
-		builder.append(qry);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		return new EvaluatedCohort(newCohort, definition, context);
-    }
-
+	}
 }
@@ -9,48 +9,23 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.ETLLTFUWithDateRangeCohortDefinition;
-import org.openmrs.module.kenyaemr.reporting.cohort.definition.ETLLostToFollowupCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for patients who have missed their appointments for more than 180 days
  */
 @Handler(supports = {ETLLTFUWithDateRangeCohortDefinition.class})
-public class ETLLTFUWithDateRangeCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-
-	@Autowired
-	EvaluationService evaluationService;
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-		ETLLTFUWithDateRangeCohortDefinition definition = (ETLLTFUWithDateRangeCohortDefinition) cohortDefinition;
-
-		Date startDate = (Date) context.getParameterValue("startDate");
-		Date endDate = (Date) context.getParameterValue("endDate");
-
+public class ETLLTFUWithDateRangeCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
-		if (definition == null)
-			return null;
-
-		Cohort newCohort = new Cohort();
-		String qry="select t.patient_id\n" +
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select t.patient_id\n" +
 				"from (\n" +
 				"         select fup.visit_date,\n" +
 				"                date(d.visit_date),\n" +
@@ -85,7 +60,7 @@ public class ETLLTFUWithDateRangeCohortDefinitionEvaluator implements CohortDefi
 				"                 and program_name = 'HIV'\n" +
 				"               group by patient_id\n" +
 				"              ) d on d.patient_id = fup.patient_id\n" +
-				"         where fup.visit_date <= date(:endDate)\n" +
+				"         where fup.visit_date <= date(:endDate)" + andInBaseCohort("fup.patient_id", context) + "\n" +
 				"         group by patient_id\n" +
 				"         having (\n" +
 				"                        (timestampdiff(DAY, date(latest_fup_tca), date(:startDate)) <= 30) and\n" +
@@ -99,15 +74,5 @@ public class ETLLTFUWithDateRangeCohortDefinitionEvaluator implements CohortDefi
 				"                                and d.discontinuation_reason = 5240))\n" +
 				"                    )\n" +
 				"     ) t;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		builder.addParameter("startDate", startDate);
-		builder.addParameter("endDate", endDate);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		return new EvaluatedCohort(newCohort, definition, context);
-    }
-
+	}
 }
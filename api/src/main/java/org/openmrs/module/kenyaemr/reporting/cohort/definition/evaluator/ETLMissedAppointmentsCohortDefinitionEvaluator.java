@@ -9,42 +9,23 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.ETLMissedAppointmentsCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for patients who have missed their appointments
  */
 @Handler(supports = {ETLMissedAppointmentsCohortDefinition.class})
-public class ETLMissedAppointmentsCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-
-	@Autowired
-	EvaluationService evaluationService;
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-		ETLMissedAppointmentsCohortDefinition definition = (ETLMissedAppointmentsCohortDefinition) cohortDefinition;
+public class ETLMissedAppointmentsCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
-		if (definition == null)
-			return null;
-
-		Cohort newCohort = new Cohort();
-		String qry="select t.patient_id\n" +
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select t.patient_id\n" +
 				"from (select fup.visit_date,\n" +
 				"             fup.patient_id,\n" +
 				"             max(e.visit_date)                                                                                        as enroll_date,\n" +
@@ -80,7 +61,7 @@ public class ETLMissedAppointmentsCohortDefinitionEvaluator implements CohortDef
 				"            where date(visit_date) <= date(curdate())\n" +
 				"              and program_name = 'HIV'\n" +
 				"            group by patient_id) d on d.patient_id = fup.patient_id\n" +
-				"      where fup.visit_date <= date(curdate())\n" +
+				"      where fup.visit_date <= date(curdate())" + andInBaseCohort("fup.patient_id", context) + "\n" +
 				"      group by patient_id\n" +
 				"      having (\n" +
 				"                     ((timestampdiff(DAY, date(refill_tca), date(curdate())) between 1 and 30 and\n" +
@@ -95,12 +76,5 @@ public class ETLMissedAppointmentsCohortDefinitionEvaluator implements CohortDef
 				"                         or (date(latest_fast_track_visit_date) > date(date_discontinued) and\n" +
 				"                             date(refill_tca) > date(date_discontinued) or disc_patient is null))\n" +
 				"                 )) t;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		return new EvaluatedCohort(newCohort, definition, context);
-    }
-
+	}
 }
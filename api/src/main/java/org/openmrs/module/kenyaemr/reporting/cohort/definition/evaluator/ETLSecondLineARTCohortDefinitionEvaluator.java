@@ -9,45 +9,23 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.ETLSecondLineARTCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for  on ART Second line
  */
 @Handler(supports = {ETLSecondLineARTCohortDefinition.class})
-public class ETLSecondLineARTCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-	@Autowired
-	EvaluationService evaluationService;
-
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		ETLSecondLineARTCohortDefinition definition = (ETLSecondLineARTCohortDefinition) cohortDefinition;
-
-        if (definition == null)
-            return null;
-
-		Cohort newCohort = new Cohort();
-
-		String qry="select t.patient_id\n" +
+public class ETLSecondLineARTCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select t.patient_id\n" +
 				"  from(\n" +
 				"         select fup.visit_date,fup.patient_id, max(e.visit_date) as enroll_date,\n" +
 				"                greatest(max(fup.visit_date), ifnull(max(d.visit_date),'0000-00-00')) as latest_vis_date,\n" +
@@ -65,7 +43,7 @@ public class ETLSecondLineARTCohortDefinitionEvaluator implements CohortDefiniti
 				"                     where date(visit_date) <= date(curdate()) and program_name='HIV'\n" +
 				"                     group by patient_id\n" +
 				"                  ) d on d.patient_id = fup.patient_id\n" +
-				"           where fup.visit_date <= date(curdate())\n" +
+				"           where fup.visit_date <= date(curdate())" + andInBaseCohort("fup.patient_id", context) + "\n" +
 				"           group by patient_id\n" +
 				"           having (started_on_drugs is not null and started_on_drugs <> '') and (\n" +
 				"           (\n" +
@@ -74,19 +52,5 @@ public class ETLSecondLineARTCohortDefinitionEvaluator implements CohortDefiniti
 				"             )\n" +
 				"           )\n" +
 				"       ) t;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date)context.getParameterValue("startDate");
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("endDate", endDate);
-		builder.addParameter("startDate", startDate);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-
-
-        return new EvaluatedCohort(newCohort, definition, context);
-    }
-
+	}
 }
@@ -9,62 +9,22 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.EnhancedAdherenceRegisterCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
-import org.openmrs.module.reporting.common.ObjectUtil;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for Enhanced Adherence Preparation
  */
 @Handler(supports = {EnhancedAdherenceRegisterCohortDefinition.class})
-public class EnhancedAdherenceRegisterCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-	private final Log log = LogFactory.getLog(this.getClass());
-	@Autowired
-	EvaluationService evaluationService;
+public class EnhancedAdherenceRegisterCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
 	@Override
-	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		EnhancedAdherenceRegisterCohortDefinition definition = (EnhancedAdherenceRegisterCohortDefinition) cohortDefinition;
-
-		if (definition == null)
-			return null;
-
-		Cohort newCohort = new Cohort();
-
-		context = ObjectUtil.nvl(context, new EvaluationContext());
-		//EncounterQueryResult queryResult = new EncounterQueryResult(definition, context);
-
-		String qry = "select patient_id from kenyaemr_etl.etl_enhanced_adherence where visit_date between date(:startDate) and date(:endDate);";
-
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date)context.getParameterValue("startDate");
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("endDate", endDate);
-		builder.addParameter("startDate", startDate);
-
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-
-		return new EvaluatedCohort(newCohort, definition, context);
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select patient_id from kenyaemr_etl.etl_enhanced_adherence where visit_date between date(:startDate) and date(:endDate);";
 	}
-
 }
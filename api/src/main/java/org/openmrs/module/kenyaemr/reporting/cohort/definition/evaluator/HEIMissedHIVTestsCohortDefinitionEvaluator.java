@@ -9,48 +9,23 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.HEIMissedHIVTestsCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
-import org.openmrs.module.reporting.common.ObjectUtil;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for HEI who missed HIV tests at different stages
  */
 @Handler(supports = {HEIMissedHIVTestsCohortDefinition.class})
-public class HEIMissedHIVTestsCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-	@Autowired
-	EvaluationService evaluationService;
-
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		HEIMissedHIVTestsCohortDefinition definition = (HEIMissedHIVTestsCohortDefinition) cohortDefinition;
-
-        if (definition == null)
-            return null;
-
-		Cohort newCohort = new Cohort();
+public class HEIMissedHIVTestsCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
-		context = ObjectUtil.nvl(context, new EvaluationContext());
-
-		String qry = "select e.patient_id\n" +
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select e.patient_id\n" +
 				"         from kenyaemr_etl.etl_hei_enrollment e\n" +
 				"                inner join kenyaemr_etl.etl_patient_demographics d on e.patient_id = d.patient_id\n" +
 				"             left join kenyaemr_etl.etl_hiv_enrollment hiv on e.patient_id = hiv.patient_id\n" +
@@ -111,18 +86,5 @@ public class HEIMissedHIVTestsCohortDefinitionEvaluator implements CohortDefinit
 				"         and p.patient_id is null\n" +
 				"         and hiv.patient_id is null\n" +
 				"         group by e.patient_id;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date)context.getParameterValue("startDate");
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("endDate", endDate);
-		builder.addParameter("startDate", startDate);
-
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-
-        return new EvaluatedCohort(newCohort, definition, context);
-    }
-
+	}
 }
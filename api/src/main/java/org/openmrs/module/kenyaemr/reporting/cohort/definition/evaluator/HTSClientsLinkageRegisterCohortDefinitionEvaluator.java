@@ -9,22 +9,10 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.HTSClientsLinkageRegisterCohortDefinition;
-import org.openmrs.module.reporting.common.ObjectUtil;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.openmrs.module.reporting.query.encounter.EncounterQueryResult;
 import org.openmrs.module.reporting.query.encounter.definition.EncounterQuery;
-import org.openmrs.module.reporting.query.encounter.evaluator.EncounterQueryEvaluator;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.List;
 
 /**
  * Evaluator for patients for HTS Register - linkage and referral
@@ -32,17 +20,14 @@ import java.util.List;
  * or had referral and linkage form filled with the linkage details
  */
 @Handler(supports = {HTSClientsLinkageRegisterCohortDefinition.class})
-public class HTSClientsLinkageRegisterCohortDefinitionEvaluator implements EncounterQueryEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-	@Autowired
-	EvaluationService evaluationService;
-
-	public EncounterQueryResult evaluate(EncounterQuery definition, EvaluationContext context) throws EvaluationException {
-		context = ObjectUtil.nvl(context, new EvaluationContext());
-		EncounterQueryResult queryResult = new EncounterQueryResult(definition, context);
-
-		String qry = "(SELECT l.encounter_id\n" +
+public class HTSClientsLinkageRegisterCohortDefinitionEvaluator extends AbstractSqlEncounterQueryEvaluator {
+
+	/**
+	 * @see AbstractSqlEncounterQueryEvaluator#getQuery(EncounterQuery, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(EncounterQuery definition, EvaluationContext context) {
+		return "(SELECT l.encounter_id\n" +
 				"from kenyaemr_etl.etl_hts_referral_and_linkage l\n" +
 				"inner join kenyaemr_etl.etl_patient_demographics pt on pt.patient_id=l.patient_id and pt.voided=0\n" +
 				"inner join kenyaemr_etl.etl_hts_test t on t.patient_id=l.patient_id and t.test_type in(1,2) and t.final_test_result='Positive' and t.visit_date <=l.visit_date and t.voided=0\n" +
@@ -57,17 +42,5 @@ public class HTSClientsLinkageRegisterCohortDefinitionEvaluator implements Encou
 				"WHERE t.test_type = 1 AND t.final_test_result='Positive' AND t.voided=0 AND l.patient_id IS NULL\n" +
 				"  AND date(e.visit_date) BETWEEN date(:startDate) AND date(:endDate)\n" +
 				")";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date)context.getParameterValue("startDate");
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("endDate", endDate);
-		builder.addParameter("startDate", startDate);
-
-		List<Integer> results = evaluationService.evaluateToList(builder, Integer.class, context);
-		queryResult.getMemberIds().addAll(results);
-		return queryResult;
 	}
-
 }
@@ -9,41 +9,23 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.HTSClientsTestedPositiveNotLinkedCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for patients for HTS Register - linkage and referral: those who tested positive but not linked
  */
 @Handler(supports = {HTSClientsTestedPositiveNotLinkedCohortDefinition.class})
-public class HTSClientsTestedPositiveNotLinkedCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-	private final Log log = LogFactory.getLog(this.getClass());
+public class HTSClientsTestedPositiveNotLinkedCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
-	@Autowired
-	EvaluationService evaluationService;
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
 	@Override
-	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-		HTSClientsTestedPositiveNotLinkedCohortDefinition definition = (HTSClientsTestedPositiveNotLinkedCohortDefinition) cohortDefinition;
-
-		if (definition == null)
-			return null;
-
-		Cohort newCohort = new Cohort();
-		String qry=" select t.patient_id\n" +
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return " select t.patient_id\n" +
 				"from kenyaemr_etl.etl_hts_test t\n" +
 				"  left join\n" +
 				"((SELECT l.patient_id\n" +
@@ -61,12 +43,5 @@ public class HTSClientsTestedPositiveNotLinkedCohortDefinitionEvaluator implemen
 				")) l on l.patient_id = t.patient_id\n" +
 				"where t.final_test_result = 'Positive' and t.voided = 0 and t.test_type=2 and l.patient_id is null\n" +
 				";";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		return new EvaluatedCohort(newCohort, definition, context);
 	}
-
 }
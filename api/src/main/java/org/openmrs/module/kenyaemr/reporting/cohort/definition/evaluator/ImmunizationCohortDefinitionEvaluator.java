@@ -0,0 +1,120 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
+
+import org.openmrs.Cohort;
+import org.openmrs.annotation.Handler;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.ImmunizationCohortDefinition;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.ImmunizationCohortDefinition.Vaccine;
+import org.openmrs.module.reporting.cohort.EvaluatedCohort;
+import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
+import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+import org.openmrs.module.reporting.evaluation.EvaluationException;
+import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
+import org.openmrs.module.reporting.evaluation.service.EvaluationService;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates an {@link ImmunizationCohortDefinition}. The first evaluation for a period reads the immunization table once,
+ * pivoting every vaccine given in the period per child, and keeps the result in the evaluation context so the other
+ * vaccines of the report are answered from it. Each result is restricted to the base cohort of its own context
+ */
+@Handler(supports = ImmunizationCohortDefinition.class)
+public class ImmunizationCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
+
+	@Autowired
+	EvaluationService evaluationService;
+
+	/**
+	 * @see CohortDefinitionEvaluator#evaluate(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
+
+		ImmunizationCohortDefinition definition = (ImmunizationCohortDefinition) cohortDefinition;
+
+		Date startDate = (Date) context.getParameterValue("startDate");
+		Date endDate = (Date) context.getParameterValue("endDate");
+
+		Set<Integer> patientIds = new HashSet<Integer>(getVaccinatedPatients(startDate, endDate, context).get(definition.getVaccine()));
+
+		// The cached sets cover every child, so they must be restricted to this evaluation's base cohort
+		if (context.getBaseCohort() != null) {
+			patientIds.retainAll(context.getBaseCohort().getMemberIds());
+		}
+
+		Cohort newCohort = new Cohort();
+		newCohort.setMemberIds(patientIds);
+		return new EvaluatedCohort(newCohort, cohortDefinition, context);
+	}
+
+	/**
+	 * Gets the children given each vaccine in a period, from the evaluation context if already fetched
+	 * @param startDate the start date
+	 * @param endDate the end date
+	 * @param context the evaluation context
+	 * @return the patient ids by vaccine
+	 */
+	@SuppressWarnings("unchecked")
+	protected Map<Vaccine, Set<Integer>> getVaccinatedPatients(Date startDate, Date endDate, EvaluationContext context) throws EvaluationException {
+		String cacheKey = getClass().getName() + ":" + (startDate != null ? startDate.getTime() : null) + ":" + (endDate != null ? endDate.getTime() : null);
+
+		Map<Vaccine, Set<Integer>> vaccinated = (Map<Vaccine, Set<Integer>>) context.getFromCache(cacheKey);
+		if (vaccinated == null) {
+			vaccinated = fetchVaccinatedPatients(startDate, endDate, context);
+			context.addToCache(cacheKey, vaccinated);
+		}
+		return vaccinated;
+	}
+
+	/**
+	 * Fetches the children given each vaccine in a period with a single query. The query sticks to SQL that H2 can
+	 * also run, so that it can be tested
+	 */
+	private Map<Vaccine, Set<Integer>> fetchVaccinatedPatients(Date startDate, Date endDate, EvaluationContext context) throws EvaluationException {
+		Vaccine[] vaccines = Vaccine.values();
+
+		StringBuilder columns = new StringBuilder();
+		StringBuilder anyGiven = new StringBuilder();
+		for (Vaccine vaccine : vaccines) {
+			String given = "cast(i." + vaccine.getColumn() + " as date) between cast(:startDate as date) and cast(:endDate as date)";
+			columns.append(", max(case when ").append(given).append(" then 1 else 0 end)");
+			anyGiven.append(anyGiven.length() > 0 ? " or " : "").append(given);
+		}
+
+		SqlQueryBuilder builder = new SqlQueryBuilder();
+		builder.append("select i.patient_id" + columns + " from kenyaemr_etl.etl_hei_immunization i where " + anyGiven + " group by i.patient_id");
+		builder.addParameter("startDate", startDate);
+		builder.addParameter("endDate", endDate);
+		List<Object[]> rows = evaluationService.evaluateToList(builder, context);
+
+		Map<Vaccine, Set<Integer>> vaccinated = new EnumMap<Vaccine, Set<Integer>>(Vaccine.class);
+		for (Vaccine vaccine : vaccines) {
+			vaccinated.put(vaccine, new HashSet<Integer>());
+		}
+		for (Object[] row : rows) {
+			Integer patientId = ((Number) row[0]).intValue();
+			for (int v = 0; v < vaccines.length; v++) {
+				if (row[v + 1] != null && ((Number) row[v + 1]).intValue() > 0) {
+					vaccinated.get(vaccines[v]).add(patientId);
+				}
+			}
+		}
+		return vaccinated;
+	}
+}
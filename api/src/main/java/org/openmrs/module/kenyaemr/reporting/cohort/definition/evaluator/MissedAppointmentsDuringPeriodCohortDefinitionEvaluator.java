@@ -9,43 +9,23 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.MissedAppointmentsDuringPeriodCohortDefinition;
-import org.openmrs.module.reporting.common.ObjectUtil;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.openmrs.module.reporting.query.encounter.EncounterQueryResult;
 import org.openmrs.module.reporting.query.encounter.definition.EncounterQuery;
-import org.openmrs.module.reporting.query.encounter.evaluator.EncounterQueryEvaluator;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.List;
 
 /**
  * Evaluator for patients who have missed their appointments during a reporting period
  */
 @Handler(supports = {MissedAppointmentsDuringPeriodCohortDefinition.class})
-public class MissedAppointmentsDuringPeriodCohortDefinitionEvaluator implements EncounterQueryEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-
-	@Autowired
-	EvaluationService evaluationService;
-    @Override
-	public EncounterQueryResult evaluate(EncounterQuery definition, EvaluationContext context) throws EvaluationException {
-		context = ObjectUtil.nvl(context, new EvaluationContext());
-		EncounterQueryResult queryResult = new EncounterQueryResult(definition, context);
-
-		if (definition == null)
-			return null;
-
-		String qry="select encounter_id\n" +
+public class MissedAppointmentsDuringPeriodCohortDefinitionEvaluator extends AbstractSqlEncounterQueryEvaluator {
+
+	/**
+	 * @see AbstractSqlEncounterQueryEvaluator#getQuery(EncounterQuery, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(EncounterQuery definition, EvaluationContext context) {
+		return "select encounter_id\n" +
 				"from (select fup.encounter_id,fup.patient_id, honoredVisit.patient_id honored_appt, honoured_refill.patient_id as honouredRefill\n" +
 				"      from kenyaemr_etl.etl_patient_hiv_followup fup\n" +
 				"               left join kenyaemr_etl.etl_patient_hiv_followup honoredVisit\n" +
@@ -60,17 +40,5 @@ public class MissedAppointmentsDuringPeriodCohortDefinitionEvaluator implements
 				"      group by fup.encounter_id, fup.patient_id\n" +
 				"      having honored_appt is null\n" +
 				"         and honouredRefill is null) mApp;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		Date startDate = (Date)context.getParameterValue("startDate");
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("endDate", endDate);
-		builder.addParameter("startDate", startDate);
-		builder.append(qry);
-
-		List<Integer> results = evaluationService.evaluateToList(builder, Integer.class, context);
-		queryResult.getMemberIds().addAll(results);
-		return queryResult;
-    }
-
+	}
 }
@@ -9,59 +9,24 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.PendingVLAndCD4ResultsCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for patients for ANC Register
  */
 @Handler(supports = {PendingVLAndCD4ResultsCohortDefinition.class})
-public class PendingVLAndCD4ResultsDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-	@Autowired
-	EvaluationService evaluationService;
+public class PendingVLAndCD4ResultsDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
 	@Override
-	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		PendingVLAndCD4ResultsCohortDefinition definition = (PendingVLAndCD4ResultsCohortDefinition) cohortDefinition;
-
-		if (definition == null)
-			return null;
-
-		Cohort newCohort = new Cohort();
-
-		String qry="select distinct o.patient_id from orders o \n" +
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select distinct o.patient_id from orders o \n" +
 				"  inner join (select order_type_id from order_type where uuid = '52a447d3-a64a-11e3-9aeb-50e549534c5e') ot on ot.order_type_id = o.order_type_id\n" +
 				"  where o.concept_id in (1305, 856, 5497, 730) and o.voided=0 and o.order_action='NEW' and o.date_stopped is null";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		/*Date startDate = (Date)context.getParameterValue("startDate");
-		Date endDate = (Date)context.getParameterValue("endDate");
-		builder.addParameter("endDate", endDate);
-		builder.addParameter("startDate", startDate);*/
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-
-
-		return new EvaluatedCohort(newCohort, definition, context);
 	}
-
 }
@@ -9,51 +9,23 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.ScheduledARTDrugRefillsCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Returns a list of patients scheduled to have drug refills within a period
  */
 @Handler(supports = ScheduledARTDrugRefillsCohortDefinition.class)
-public class ScheduledARTDrugRefillsCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-	protected static final Log log = LogFactory.getLog(ScheduledARTDrugRefillsCohortDefinition.class);
-
-	@Autowired
-	EvaluationService evaluationService;
-
+public class ScheduledARTDrugRefillsCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
 	/**
-	 * @see CohortDefinitionEvaluator#evaluate(CohortDefinition, EvaluationContext)
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
 	 */
 	@Override
-	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		ScheduledARTDrugRefillsCohortDefinition cohortddef = (ScheduledARTDrugRefillsCohortDefinition) cohortDefinition;
-
-		Date startDate = (Date) context.getParameterValue("startDate");
-		Date endDate = (Date) context.getParameterValue("endDate");
-
-
-		Cohort newCohort = new Cohort();
-
-		String qry=" select e.patient_id\n" +
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return " select e.patient_id\n" +
 				"from (\n" +
 				"select fup.visit_date,fup.patient_id, min(e.visit_date) as enroll_date,\n" +
 				"    max(fup.visit_date) as latest_vis_date,\n" +
@@ -79,16 +51,5 @@ public class ScheduledARTDrugRefillsCohortDefinitionEvaluator implements CohortD
 				"(((date(latest_tca) between date(:startDate) and date(:endDate)) and (date(latest_vis_date) >= date(latest_tca)) or date(latest_tca) > curdate()) ) and (date(latest_tca) > date(date_discontinued) or disc_patient is null ))\n" +
 				") e\n" +
 				";";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		builder.addParameter("startDate", startDate);
-		builder.addParameter("endDate", endDate);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-
-
-		return new EvaluatedCohort(newCohort, cohortDefinition, context);
 	}
-}
\ No newline at end of file
+}
@@ -9,52 +9,23 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
-import org.openmrs.module.kenyaemr.reporting.cohort.definition.ScheduledARTDrugRefillsCohortDefinition;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.ScheduledAppointmentCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Returns a list of patients scheduled to have appointments within a period
  */
 @Handler(supports = ScheduledAppointmentCohortDefinition.class)
-public class ScheduledAppointmentCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-	protected static final Log log = LogFactory.getLog(ScheduledARTDrugRefillsCohortDefinition.class);
-
-	@Autowired
-	EvaluationService evaluationService;
-
+public class ScheduledAppointmentCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
 	/**
-	 * @see CohortDefinitionEvaluator#evaluate(CohortDefinition, EvaluationContext)
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
 	 */
 	@Override
-	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		ScheduledAppointmentCohortDefinition cohortddef = (ScheduledAppointmentCohortDefinition) cohortDefinition;
-
-		Date startDate = (Date) context.getParameterValue("startDate");
-		Date endDate = (Date) context.getParameterValue("endDate");
-
-
-		Cohort newCohort = new Cohort();
-
-		String qry="select t.patient_id\n" +
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select t.patient_id\n" +
 				"        from(\n" +
 				"        select fup.patient_id,d.patient_id as disc_patient,d.visit_date as disc_date,\n" +
 				"                           mid(max(concat(fup.visit_date,fup.next_appointment_date)),11) as latest_next_appointment_date\n" +
@@ -71,16 +42,5 @@ public class ScheduledAppointmentCohortDefinitionEvaluator implements CohortDefi
 				"            having latest_next_appointment_date between date(:startDate) AND date(:endDate) AND\n" +
 				"                   (max(e.visit_date) >= date(disc_date) or disc_patient is null or disc_date >= date(:endDate))\n" +
 				"        ) t;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		builder.addParameter("startDate", startDate);
-		builder.addParameter("endDate", endDate);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-
-
-		return new EvaluatedCohort(newCohort, cohortDefinition, context);
 	}
-}
\ No newline at end of file
+}
@@ -9,61 +9,22 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.VMMCRegisterCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for patients for VMMC Register
  */
 @Handler(supports = {VMMCRegisterCohortDefinition.class})
-public class VMMCRegisterCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-	protected static final Log log = LogFactory.getLog(VMMCRegisterCohortDefinition.class);
-
-	@Autowired
-	EvaluationService evaluationService;
-
+public class VMMCRegisterCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
 	/**
-	 * @see CohortDefinitionEvaluator#evaluate(CohortDefinition, EvaluationContext)
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
 	 */
 	@Override
-	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-		VMMCRegisterCohortDefinition cohortddef = (VMMCRegisterCohortDefinition) cohortDefinition;
-
-		Cohort newCohort = new Cohort();
-
-		Date startDate = (Date) context.getParameterValue("startDate");
-		Date endDate = (Date) context.getParameterValue("endDate");
-
-		String qry = "SELECT t.patient_id from kenyaemr_etl.etl_vmmc_circumcision_procedure t inner join kenyaemr_etl.etl_patient_demographics d on t.patient_id = d.patient_id and date(t.visit_date) BETWEEN date(:startDate) AND date(:endDate) GROUP BY t.patient_id;";
-
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		builder.addParameter("endDate", endDate);
-		builder.addParameter("startDate", startDate);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-
-
-		return new EvaluatedCohort(newCohort, cohortDefinition, context);
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "SELECT t.patient_id from kenyaemr_etl.etl_vmmc_circumcision_procedure t inner join kenyaemr_etl.etl_patient_demographics d on t.patient_id = d.patient_id and date(t.visit_date) BETWEEN date(:startDate) AND date(:endDate) GROUP BY t.patient_id;";
 	}
-
 }
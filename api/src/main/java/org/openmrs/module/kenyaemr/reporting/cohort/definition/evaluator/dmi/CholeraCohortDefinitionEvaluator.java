@@ -9,46 +9,24 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.dmi;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.dmi.CholeraCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.AbstractSqlCohortDefinitionEvaluator;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for Cholera Cohort
  */
 @Handler(supports = { CholeraCohortDefinition.class })
-public class CholeraCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-	
-	private final Log log = LogFactory.getLog(this.getClass());
-	
-	@Autowired
-	EvaluationService evaluationService;
-	
-	@Override
-	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
+public class CholeraCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
-		CholeraCohortDefinition definition = (CholeraCohortDefinition) cohortDefinition;
-		
-		if (definition == null)
-			return null;
-		
-		Cohort newCohort = new Cohort();
-		
-		String qry = "select a.patient_id\n" +
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select a.patient_id\n" +
 				"from (select patient_id, c.visit_date,group_concat(c.complaint) as complaint, c.complaint_date as complaint_date\n" +
 				"      from kenyaemr_etl.etl_allergy_chronic_illness c\n" +
 				"      where c.complaint in (142412,122983)\n" +
@@ -57,16 +35,5 @@ public class CholeraCohortDefinitionEvaluator implements CohortDefinitionEvaluat
 				"         join kenyaemr_etl.etl_patient_demographics d on a.patient_id = d.patient_id\n" +
 				"where timestampdiff(YEAR,date(d.DOB),coalesce(date(a.complaint_date),date(a.visit_date))) > 2 and FIND_IN_SET(122983, a.complaint) > 0\n" +
 				"  and FIND_IN_SET(142412, a.complaint) > 0;";
-		
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date) context.getParameterValue("startDate");
-		Date endDate = (Date) context.getParameterValue("endDate");
-		builder.addParameter("startDate", startDate);
-		builder.addParameter("endDate", endDate);
-		
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		return new EvaluatedCohort(newCohort, definition, context);
 	}
 }
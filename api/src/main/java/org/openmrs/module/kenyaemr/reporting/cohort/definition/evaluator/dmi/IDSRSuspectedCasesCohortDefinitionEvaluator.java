@@ -9,46 +9,24 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.dmi;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.dmi.IDSRSuspectedCasesCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.AbstractSqlCohortDefinitionEvaluator;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for Surveillance cases Cohort
  */
 @Handler(supports = { IDSRSuspectedCasesCohortDefinition.class })
-public class IDSRSuspectedCasesCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-	
-	private final Log log = LogFactory.getLog(this.getClass());
-	
-	@Autowired
-	EvaluationService evaluationService;
-	
-	@Override
-	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
+public class IDSRSuspectedCasesCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
-		IDSRSuspectedCasesCohortDefinition definition = (IDSRSuspectedCasesCohortDefinition) cohortDefinition;
-		
-		if (definition == null)
-			return null;
-		
-		Cohort newCohort = new Cohort();
-		
-		String qry = "select a.patient_id\n" +
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select a.patient_id\n" +
 				"from (select c.patient_id,\n" +
 				"             group_concat(c.complaint) as complaint,\n" +
 				"             epd.dob,\n" +
@@ -87,16 +65,5 @@ public class IDSRSuspectedCasesCohortDefinitionEvaluator implements CohortDefini
 				"       FIND_IN_SET(516, a.complaint) AND FIND_IN_SET(143264, a.complaint) > 0 AND a.fever_duration_from_days > 2))\n" +
 				"    and date(a.visit_date) BETWEEN date(:startDate) AND date(:endDate)\n" +
 				"group by patient_id;";
-		
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date) context.getParameterValue("startDate");
-		Date endDate = (Date) context.getParameterValue("endDate");
-		builder.addParameter("startDate", startDate);
-		builder.addParameter("endDate", endDate);
-		
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		return new EvaluatedCohort(newCohort, definition, context);
 	}
 }
@@ -9,46 +9,24 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.dmi;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.dmi.ILICohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.AbstractSqlCohortDefinitionEvaluator;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for ILI Cohort
  */
 @Handler(supports = { ILICohortDefinition.class })
-public class IliCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-	
-	private final Log log = LogFactory.getLog(this.getClass());
-	
-	@Autowired
-	EvaluationService evaluationService;
-	
-	@Override
-	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
+public class IliCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
 
-		ILICohortDefinition definition = (ILICohortDefinition) cohortDefinition;
-		
-		if (definition == null)
-			return null;
-		
-		Cohort newCohort = new Cohort();
-		
-		String qry = "select a.patient_id\n" +
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select a.patient_id\n" +
 				"from (select patient_id, c.complaint as complaint, c.complaint_date as complaint_date, c.visit_date\n" +
 				"      from kenyaemr_etl.etl_allergy_chronic_illness c\n" +
 				"      where c.complaint = 143264\n" +
@@ -59,16 +37,5 @@ public class IliCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
 				"              on a.patient_id = v.patient_id and date(a.visit_date) = date(v.date_started) and v.visit_type_id = 1\n" +
 				"         join kenyaemr_etl.etl_patient_triage t\n" +
 				"              on a.patient_id = t.patient_id and date(t.visit_date) = date(v.date_started) and t.temperature >= 38;";
-		
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date) context.getParameterValue("startDate");
-		Date endDate = (Date) context.getParameterValue("endDate");
-		builder.addParameter("startDate", startDate);
-		builder.addParameter("endDate", endDate);
-		
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		return new EvaluatedCohort(newCohort, definition, context);
 	}
 }
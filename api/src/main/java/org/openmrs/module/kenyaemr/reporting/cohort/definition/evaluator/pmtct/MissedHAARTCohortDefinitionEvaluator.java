@@ -9,46 +9,24 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.pmtct;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.AbstractSqlCohortDefinitionEvaluator;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.pmtct.MissedHAARTCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for pregnant or breastfeeding mothers who missed HAART
  */
 @Handler(supports = { MissedHAARTCohortDefinition.class })
-public class MissedHAARTCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-	
-	private final Log log = LogFactory.getLog(this.getClass());
-	
-	@Autowired
-	EvaluationService evaluationService;
-	
+public class MissedHAARTCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
 	@Override
-	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-		
-		MissedHAARTCohortDefinition definition = (MissedHAARTCohortDefinition) cohortDefinition;
-		
-		if (definition == null)
-			return null;
-		
-		Cohort newCohort = new Cohort();
-		
-		String qry = "select a.mch_client from (select e.patient_id as mch_client,\n"
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select a.mch_client from (select e.patient_id as mch_client,\n"
 		        + "       max(date(e.visit_date)) as latest_enrollment_date,\n"
 		        + "       date(x.disc_date) as disc_mch_date,\n"
 		        + "       d.patient_id as on_drugs_client,\n"
@@ -104,18 +82,13 @@ public class MissedHAARTCohortDefinitionEvaluator implements CohortDefinitionEva
 		        + "       (a.in_hiv_program is not null and (a.disc_from_hiv is null or date(a.hiv_enrollment_date) > date(a.hiv_disc_date))) or\n"
 		        + "       a.anc_client is not null or\n"
 		        + "       a.maternity_client is not null or a.postnatal_client is not null);";
-		
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date) context.getParameterValue("startDate");
-		Date endDate = (Date) context.getParameterValue("endDate");
-		builder.addParameter("startDate", startDate);
-		builder.addParameter("endDate", endDate);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		
-		return new EvaluatedCohort(newCohort, definition, context);
 	}
-	
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getIdColumn()
+	 */
+	@Override
+	protected String getIdColumn() {
+		return "mch_client";
+	}
 }
@@ -9,46 +9,24 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.pmtct;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.openmrs.Cohort;
 import org.openmrs.annotation.Handler;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.AbstractSqlCohortDefinitionEvaluator;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.pmtct.MissedSyphilisTestCohortDefinition;
-import org.openmrs.module.reporting.cohort.EvaluatedCohort;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
-import org.openmrs.module.reporting.cohort.definition.evaluator.CohortDefinitionEvaluator;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
 
 /**
  * Evaluator for MCH mothers who missed Syphilis tests
  */
 @Handler(supports = { MissedSyphilisTestCohortDefinition.class })
-public class MissedSyphilisTestCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-	
-	private final Log log = LogFactory.getLog(this.getClass());
-	
-	@Autowired
-    EvaluationService evaluationService;
-	
+public class MissedSyphilisTestCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
 	@Override
-	public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-		
-		MissedSyphilisTestCohortDefinition definition = (MissedSyphilisTestCohortDefinition) cohortDefinition;
-		
-		if (definition == null)
-			return null;
-		
-		Cohort newCohort = new Cohort();
-		
-		String qry = "select c.patient_id\n"
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "select c.patient_id\n"
 		        + "from (select e.patient_id,\n"
 		        + "             max(e.visit_date)                                as latest_mch_enrollment,\n"
 		        + "             a.patient_id                                     as anc_patient,\n"
@@ -112,18 +90,5 @@ public class MissedSyphilisTestCohortDefinitionEvaluator implements CohortDefini
 		        + "       (c.latest_hts_test_date < c.latest_mch_enrollment and c.hts_results ='Negative') or\n"
 		        + "       (c.latest_hts_test_date >= c.latest_mch_enrollment and\n"
 		        + "        (c.hts_results is null or c.hts_results = '')));";
-		
-		SqlQueryBuilder builder = new SqlQueryBuilder();
-		builder.append(qry);
-		Date startDate = (Date) context.getParameterValue("startDate");
-		Date endDate = (Date) context.getParameterValue("endDate");
-		builder.addParameter("startDate", startDate);
-		builder.addParameter("endDate", endDate);
-		List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-		
-		newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-		
-		return new EvaluatedCohort(newCohort, definition, context);
 	}
-	
 }
@@ -1,5 +1,20 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.sgbv;
 
+import org.openmrs.annotation.Handler;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.AbstractSqlCohortDefinitionEvaluator;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.sgbv.SGBVLineListCohortDefinition;
+import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+
 /**
  * This Source Code Form is subject to the terms of the Mozilla Public License,
  * v. 2.0. If a copy of the MPL was not distributed with this file, You can
@@ -32,36 +47,15 @@ import java.util.List;
  * Evaluator for SGBVLineListCohortDefinition
  */
 @Handler(supports = {SGBVLineListCohortDefinition.class})
-public class SGBVLinelistCohortDefinitionEvaluator implements CohortDefinitionEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-
-    @Autowired
-    EvaluationService evaluationService;
-
-    @Override
-    public EvaluatedCohort evaluate(CohortDefinition cohortDefinition, EvaluationContext context) throws EvaluationException {
-
-        SGBVLineListCohortDefinition definition = (SGBVLineListCohortDefinition) cohortDefinition;
-
-        if (definition == null)
-            return null;
-
-        Cohort newCohort = new Cohort();
-
-        String qry="SELECT patient_id FROM kenyaemr_etl.etl_gbv_screening\n" +
+public class SGBVLinelistCohortDefinitionEvaluator extends AbstractSqlCohortDefinitionEvaluator {
+
+	/**
+	 * @see AbstractSqlCohortDefinitionEvaluator#getQuery(CohortDefinition, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+		return "SELECT patient_id FROM kenyaemr_etl.etl_gbv_screening\n" +
                 " where visit_date between date(:startDate) and date(:endDate)\n" +
                 "GROUP BY patient_id;";
-
-        SqlQueryBuilder builder = new SqlQueryBuilder();
-        builder.append(qry);
-        Date startDate = (Date)context.getParameterValue("startDate");
-        Date endDate = (Date)context.getParameterValue("endDate");
-        builder.addParameter("startDate", startDate);
-        builder.addParameter("endDate", endDate);
-
-        List<Integer> ptIds = evaluationService.evaluateToList(builder, Integer.class, context);
-        newCohort.setMemberIds(new HashSet<Integer>(ptIds));
-        return new EvaluatedCohort(newCohort, definition, context);
-    }
+	}
 }
@@ -9,51 +9,25 @@
  */
 package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.sgbv;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.openmrs.annotation.Handler;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator.AbstractSqlEncounterQueryEvaluator;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.sgbv.SGBVRegisterCohortDefinition;
-import org.openmrs.module.reporting.common.ObjectUtil;
 import org.openmrs.module.reporting.evaluation.EvaluationContext;
-import org.openmrs.module.reporting.evaluation.EvaluationException;
-import org.openmrs.module.reporting.evaluation.querybuilder.SqlQueryBuilder;
-import org.openmrs.module.reporting.evaluation.service.EvaluationService;
-import org.openmrs.module.reporting.query.encounter.EncounterQueryResult;
 import org.openmrs.module.reporting.query.encounter.definition.EncounterQuery;
-import org.openmrs.module.reporting.query.encounter.evaluator.EncounterQueryEvaluator;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Date;
-import java.util.List;
 
 /**
  * Evaluator for patients for SGBV Register
  */
 @Handler(supports = {SGBVRegisterCohortDefinition.class})
-public class SGBVRegisterCohortDefinitionEvaluator implements EncounterQueryEvaluator {
-
-    private final Log log = LogFactory.getLog(this.getClass());
-    @Autowired
-    EvaluationService evaluationService;
-
-    public EncounterQueryResult evaluate(EncounterQuery definition, EvaluationContext context) throws EvaluationException {
-        context = ObjectUtil.nvl(context, new EvaluationContext());
-        EncounterQueryResult queryResult = new EncounterQueryResult(definition, context);
-
-        String qry="SELECT encounter_id FROM kenyaemr_etl.etl_gbv_screening\n" +
+public class SGBVRegisterCohortDefinitionEvaluator extends AbstractSqlEncounterQueryEvaluator {
+
+	/**
+	 * @see AbstractSqlEncounterQueryEvaluator#getQuery(EncounterQuery, EvaluationContext)
+	 */
+	@Override
+	protected String getQuery(EncounterQuery definition, EvaluationContext context) {
+		return "SELECT encounter_id FROM kenyaemr_etl.etl_gbv_screening\n" +
                 "where visit_date between date(:startDate) and date(:endDate)\n" +
                 " GROUP BY patient_id;";
-
-        SqlQueryBuilder builder = new SqlQueryBuilder();
-        builder.append(qry);
-        Date startDate = (Date)context.getParameterValue("startDate");
-        Date endDate = (Date)context.getParameterValue("endDate");
-        builder.addParameter("endDate", endDate);
-        builder.addParameter("startDate", startDate);
-
-        List<Integer> results = evaluationService.evaluateToList(builder, Integer.class, context);
-        queryResult.getMemberIds().addAll(results);
-        return queryResult;
-    }
-
+	}
 }
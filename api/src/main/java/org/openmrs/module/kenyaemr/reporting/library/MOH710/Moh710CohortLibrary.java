@@ -9,6 +9,8 @@
  */
 package org.openmrs.module.kenyaemr.reporting.library.MOH710;
 
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.ImmunizationCohortDefinition;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.ImmunizationCohortDefinition.Vaccine;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
 import org.openmrs.module.reporting.cohort.definition.SqlCohortDefinition;
 import org.openmrs.module.reporting.evaluation.parameter.Parameter;
@@ -915,340 +917,142 @@ public class Moh710CohortLibrary {
 */
 
 	//Queries for MOH710
-	/*Given BCG*/
-	public CohortDefinition givenBCGVaccineCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.BCG) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("BCG");
-		cd.setQuery(sqlQuery);
+	/**
+	 * Children given a vaccine between ${startDate} and ${endDate}. All vaccines of the report are read from the
+	 * immunization table with a single query
+	 * @param vaccine the vaccine
+	 * @param name the name
+	 * @param description the description
+	 * @return the cohort definition
+	 */
+	private CohortDefinition givenVaccineCl(Vaccine vaccine, String name, String description) {
+		ImmunizationCohortDefinition cd = new ImmunizationCohortDefinition(vaccine);
+		cd.setName(name);
 		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
 		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given BCG");
+		cd.setDescription(description);
 
 		return cd;
 	}
 
+	/*Given BCG*/
+	public CohortDefinition givenBCGVaccineCl() {
+		return givenVaccineCl(Vaccine.BCG, "BCG", "Given BCG");
+	}
+
 	/*Given OPV at birth*/
 	public CohortDefinition givenOPVCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.OPV_birth) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("OPV-0");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given OPV at birth");
-
-		return cd;
+		return givenVaccineCl(Vaccine.OPV_BIRTH, "OPV-0", "Given OPV at birth");
 	}
 
 	/*Given OPV 1*/
 	public CohortDefinition givenOPV1Cl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.OPV_1) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("OPV-1");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given OPV 1");
-
-		return cd;
+		return givenVaccineCl(Vaccine.OPV_1, "OPV-1", "Given OPV 1");
 	}
 
 	/*Given OPV 2*/
 	public CohortDefinition givenOPV2Cl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.OPV_2) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("OPV-2");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given OPV 2");
-
-		return cd;
+		return givenVaccineCl(Vaccine.OPV_2, "OPV-2", "Given OPV 2");
 	}
 
 	/*Given OPV 3*/
 	public CohortDefinition givenOPV3Cl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.OPV_3) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("OPV-3");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given OPV 3");
-
-		return cd;
+		return givenVaccineCl(Vaccine.OPV_3, "OPV-3", "Given OPV 3");
 	}
 
 	/*Given IPV*/
 	public CohortDefinition givenIpvCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.IPV) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("IPV");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given IPV");
-
-		return cd;
+		return givenVaccineCl(Vaccine.IPV, "IPV", "Given IPV");
 	}
 
 	/*Given Dpt-Hep-Hib 1*/
 	public CohortDefinition givenDptHepHibVaccine1Cl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.DPT_Hep_B_Hib_1) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("DHH-1");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Dpt-Hep-Hib 1");
-
-		return cd;
+		return givenVaccineCl(Vaccine.DPT_HEP_B_HIB_1, "DHH-1", "Given Dpt-Hep-Hib 1");
 	}
 
 	/*Given Dpt-Hep-Hib 2*/
 	public CohortDefinition givenDptHepHibVaccine2Cl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.DPT_Hep_B_Hib_2) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("DHH-2");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Dpt-Hep-Hib 2");
-
-		return cd;
+		return givenVaccineCl(Vaccine.DPT_HEP_B_HIB_2, "DHH-2", "Given Dpt-Hep-Hib 2");
 	}
 
 	/*Given Dpt-Hep-Hib 3*/
 	public CohortDefinition givenDptHepHibVaccine3Cl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.DPT_Hep_B_Hib_3) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("DHH-3");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Dpt-Hep-Hib 3");
-
-		return cd;
+		return givenVaccineCl(Vaccine.DPT_HEP_B_HIB_3, "DHH-3", "Given Dpt-Hep-Hib 3");
 	}
 
 	/*Given Pneumococcal 1*/
 	public CohortDefinition givenPneumococcal1VaccineCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.PCV_10_1) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("PCV-1");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Pneumococcal 1");
-
-		return cd;
+		return givenVaccineCl(Vaccine.PCV_10_1, "PCV-1", "Given Pneumococcal 1");
 	}
 
 	/*Given Pneumococcal 2*/
 	public CohortDefinition givenPneumococcal2VaccineCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.PCV_10_2) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("PCV-2");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Pneumococcal 2");
-
-		return cd;
+		return givenVaccineCl(Vaccine.PCV_10_2, "PCV-2", "Given Pneumococcal 2");
 	}
 
 	/*Given Pneumococcal 3*/
 	public CohortDefinition givenPneumococcal3VaccineCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.PCV_10_3) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("PCV-3");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Pneumococcal 3");
-
-		return cd;
+		return givenVaccineCl(Vaccine.PCV_10_3, "PCV-3", "Given Pneumococcal 3");
 	}
 
 	/*Given Rota 1 vaccine*/
 	public CohortDefinition givenRota1VirusVaccineCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.ROTA_1) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("ROTA-1");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Rota 1 vaccine");
-
-		return cd;
+		return givenVaccineCl(Vaccine.ROTA_1, "ROTA-1", "Given Rota 1 vaccine");
 	}
 
 	/*Given Rota 2 vaccine*/
 	public CohortDefinition givenRota2VirusVaccineCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.ROTA_2) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("ROTA-2");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Rota 2 vaccine");
-
-		return cd;
+		return givenVaccineCl(Vaccine.ROTA_2, "ROTA-2", "Given Rota 2 vaccine");
 	}
 
 	/*Given Rota 3 vaccine*/
 	public CohortDefinition givenRota3VirusVaccineCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.ROTA_3) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("ROTA-3");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Rota 3 vaccine");
-
-		return cd;
+		return givenVaccineCl(Vaccine.ROTA_3, "ROTA-3", "Given Rota 3 vaccine");
 	}
 
 	/*Given Vitamin A at 6 Months*/
 	public CohortDefinition givenVitAAt6MAgeCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.VitaminA_6_months) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("VA6M");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Vitamin A at 6 Months");
-
-		return cd;
+		return givenVaccineCl(Vaccine.VITAMIN_A_6_MONTHS, "VA6M", "Given Vitamin A at 6 Months");
 	}
 
 	/*Given Yellow Fever vaccine*/
 	public CohortDefinition givenYellowFeverVaccineCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id,i.Measles_rubella_1 from kenyaemr_etl.etl_hei_immunization i where date(i.Yellow_fever) between date(:startDate) and date(:endDate);";
-
-		cd.setName("YF");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Yellow Fever vaccine");
-
-		return cd;
+		return givenVaccineCl(Vaccine.YELLOW_FEVER, "YF", "Given Yellow Fever vaccine");
 	}
 
 	/*Given Measles-Rubella 1 vaccine*/
 	public CohortDefinition givenMeaslesRubella1VaccineCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.Measles_rubella_1) between date(:startDate) and date(:endDate);";
-
-		cd.setName("MR-1");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Measles-Rubella 1 vaccine");
-
-		return cd;
+		return givenVaccineCl(Vaccine.MEASLES_RUBELLA_1, "MR-1", "Given Measles-Rubella 1 vaccine");
 	}
 
 	/*Fully immunized child*/
 	public CohortDefinition fullyImmunizedCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.fully_immunized) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("FIC");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Fully immunized child");
-
-		return cd;
+		return givenVaccineCl(Vaccine.FULLY_IMMUNIZED, "FIC", "Fully immunized child");
 	}
 
 	/*Given Vitamin A at 1 years (200,000IU)*/
 	public CohortDefinition givenVitAAt12MonthsCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.VitaminA_1_yr) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("VA-1Y");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Vitamin A at 1 years (200,000IU)");
-
-		return cd;
+		return givenVaccineCl(Vaccine.VITAMIN_A_1_YEAR, "VA-1Y", "Vitamin A at 1 years (200,000IU)");
 	}
 
 	/*Given Vitamin A at 2 years to 5 years (200,000IU)*/
 	public CohortDefinition givenVitAAt18MonthsCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.VitaminA_1_and_half_yr) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("VA-2Y-5Y");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Vitamin A at 2 years to 5 years (200,000IU)");
-
-		return cd;
+		return givenVaccineCl(Vaccine.VITAMIN_A_18_MONTHS, "VA-2Y-5Y", "Vitamin A at 2 years to 5 years (200,000IU)");
 	}
 
 	/*Given Measles - Rubella 2(at 1 1/2 - 2 years)*/
 	public CohortDefinition givenVitAAt2To5YearsCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.VitaminA_2_to_5_yr) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("MR-2-1.5Y>2Y");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Measles - Rubella 2(at 1 1/2 - 2 years)");
-
-		return cd;
+		return givenVaccineCl(Vaccine.VITAMIN_A_2_TO_5_YEARS, "MR-2-1.5Y>2Y", "Measles - Rubella 2(at 1 1/2 - 2 years)");
 	}
 
 	/*Measles - Rubella 2(at 1 1/2 - 2 years)*/
 	public CohortDefinition givenMeaslesRubella2VaccineAge18To24MonthsCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.Measles_rubella_2) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("MR-2-1.5Y>2Y");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Given Measles - Rubella 2(at 1 1/2 - 2 years)");
-
-		return cd;
+		return givenVaccineCl(Vaccine.MEASLES_RUBELLA_2, "MR-2-1.5Y>2Y", "Given Measles - Rubella 2(at 1 1/2 - 2 years)");
 	}
 
 	/*Measles-Rubella 2 Above 2 years*/
 	public CohortDefinition givenMeaslesRubellaVaccine2AndAgedOver2YearsCl() {
-		SqlCohortDefinition cd = new SqlCohortDefinition();
-		String sqlQuery = "select i.patient_id from kenyaemr_etl.etl_hei_immunization i where date(i.Measles_rubella_2) between date(:startDate) and date(:endDate) group by i.patient_id;";
-
-		cd.setName("MR-2->2Y");
-		cd.setQuery(sqlQuery);
-		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
-		cd.addParameter(new Parameter("endDate", "End Date", Date.class));
-		cd.setDescription("Measles-Rubella 2 Above 2 years");
-
-		return cd;
+		return givenVaccineCl(Vaccine.MEASLES_RUBELLA_2, "MR-2->2Y", "Measles-Rubella 2 Above 2 years");
 	}
 
 	/*Tetanus Toxoid for pregnant women first dose*/
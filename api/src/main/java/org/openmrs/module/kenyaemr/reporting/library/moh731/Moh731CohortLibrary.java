@@ -13,7 +13,6 @@ import org.openmrs.EncounterType;
 import org.openmrs.module.kenyacore.report.ReportUtils;
 import org.openmrs.module.kenyacore.report.cohort.definition.CalculationCohortDefinition;
 import org.openmrs.module.kenyaemr.Dictionary;
-import org.openmrs.module.kenyaemr.calculation.library.MissedLastAppointmentCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.hiv.CtxFromAListOfMedicationOrdersCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.hiv.NextAppointmentPlus90DaysCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.hiv.NextOfVisitHigherThanContextCalculation;
@@ -79,10 +78,7 @@ public class Moh731CohortLibrary {
 	 *
 	 */
 	public CohortDefinition missedAppointment(){
-		CalculationCohortDefinition cdMissed = new CalculationCohortDefinition(new MissedLastAppointmentCalculation());
-		cdMissed.setName("Missed appointment patients");
-		cdMissed.addParameter(new Parameter("OnDate", "On Date", Date.class));
-		return cdMissed;
+		return artCohorts.missedAppointments();
 	}
 
 	/**
@@ -94,7 +90,7 @@ public class Moh731CohortLibrary {
 		cd.addParameter(new Parameter("fromDate", "From Date", Date.class));
 		cd.addParameter(new Parameter("toDate", "To Date", Date.class));
 		cd.addSearch("inCare", ReportUtils.map(currentlyInCare(), "onDate=${toDate}"));
-		cd.addSearch("startedBefore", ReportUtils.map(artCohorts.startedArt(), "onOrBefore=${fromDate-1d}"));
+		cd.addSearch("startedBefore", ReportUtils.map(artCohorts.startedArtOnOrBefore(), "onOrBefore=${fromDate-1d}"));
 		cd.addSearch("missedAppointment", ReportUtils.map(missedAppointment(), "onDate=${onDate}"));
 		cd.addSearch("toDeadLtf", ReportUtils.map(hivCohortLibrary.transferredOutDeadAndLtf(), "onOrBefore=${toDate}"));
 		cd.setCompositionString("inCare AND startedBefore AND NOT toDeadLtf");
@@ -112,7 +108,7 @@ public class Moh731CohortLibrary {
 		CompositionCohortDefinition cd = new CompositionCohortDefinition();
 		cd.setName("Appointment and started art");
 		cd.addParameter(new Parameter("onOrBefore", "Before Date", Date.class));
-		cd.addSearch("startedArt", ReportUtils.map(artCohorts.startedArt(), "onOrBefore=${onOrBefore}"));
+		cd.addSearch("startedArt", ReportUtils.map(artCohorts.startedArtOnOrBefore(), "onOrBefore=${onOrBefore}"));
 		cd.addSearch("hasAppointmentDate", ReportUtils.map(hasAppointmentDate, "onDate=${onOrBefore}"));
 		cd.setCompositionString("startedArt AND hasAppointmentDate");
 		return cd;
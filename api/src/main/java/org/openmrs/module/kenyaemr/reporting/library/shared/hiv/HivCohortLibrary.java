@@ -15,13 +15,9 @@ import org.openmrs.Program;
 import org.openmrs.module.reporting.cohort.definition.BaseObsCohortDefinition.TimeModifier;
 import org.openmrs.module.kenyacore.report.ReportUtils;
 import org.openmrs.module.kenyacore.report.cohort.definition.CalculationCohortDefinition;
-import org.openmrs.module.kenyacore.report.cohort.definition.DateCalculationCohortDefinition;
 import org.openmrs.module.kenyacore.report.cohort.definition.DateObsValueBetweenCohortDefinition;
 import org.openmrs.module.kenyaemr.Dictionary;
 import org.openmrs.module.kenyaemr.calculation.library.hiv.CtxFromAListOfMedicationOrdersCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.FirstProgramEnrollment;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.LostToFollowUpCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.art.IsTransferOutCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.hiv.pre_art.TransferredInAfterEnrollmentCalculation;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
 import org.openmrs.module.kenyaemr.reporting.library.moh731.Moh731CohortLibrary;
@@ -30,6 +26,7 @@ import org.openmrs.module.metadatadeploy.MetadataUtils;
 import org.openmrs.module.reporting.cohort.definition.CodedObsCohortDefinition;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
 import org.openmrs.module.reporting.cohort.definition.CompositionCohortDefinition;
+import org.openmrs.module.reporting.cohort.definition.SqlCohortDefinition;
 import org.openmrs.module.reporting.common.SetComparator;
 import org.openmrs.module.reporting.evaluation.parameter.Parameter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -205,24 +202,66 @@ public class HivCohortLibrary {
 		return cd;
 	}
 
+	/**
+	 * Patients who are alive and lost to follow up on ${onDate}, i.e. who are in the HIV program but more than 30 days
+	 * past the appointment date of their last followup, or whose last discontinuation from the program, after their
+	 * last enrollment and followup, was for loss to follow up
+	 * @return the cohort definition
+	 */
+	public CohortDefinition lostToFollowUp() {
+		String sqlQuery = "select t.patient_id from (\n" +
+				"  select e.patient_id,\n" +
+				"         max(e.visit_date) as enroll_date,\n" +
+				"         max(f.visit_date) as latest_vis_date,\n" +
+				"         mid(max(concat(f.visit_date, f.next_appointment_date)), 11) as latest_tca,\n" +
+				"         d.visit_date as date_discontinued,\n" +
+				"         d.discontinuation_reason as discontinuation_reason\n" +
+				"  from kenyaemr_etl.etl_hiv_enrollment e\n" +
+				"  join kenyaemr_etl.etl_patient_demographics p on p.patient_id = e.patient_id\n" +
+				"  join kenyaemr_etl.etl_patient_hiv_followup f on f.patient_id = e.patient_id and date(f.visit_date) <= date(:onDate)\n" +
+				"  left outer join (select patient_id, max(visit_date) as visit_date,\n" +
+				"                          mid(max(concat(visit_date, discontinuation_reason)), 11) as discontinuation_reason\n" +
+				"                   from kenyaemr_etl.etl_patient_program_discontinuation\n" +
+				"                   where date(visit_date) <= date(:onDate) and program_name = 'HIV'\n" +
+				"                   group by patient_id) d on d.patient_id = e.patient_id\n" +
+				"  where date(e.visit_date) <= date(:onDate)\n" +
+				"    and (p.dead = 0 or p.death_date is null or date(p.death_date) > date(:onDate))\n" +
+				"  group by e.patient_id\n" +
+				"  having ((date_discontinued is null or date(enroll_date) > date(date_discontinued))\n" +
+				"          and timestampdiff(DAY, date(latest_tca), date(:onDate)) > 30)\n" +
+				"      or (date(date_discontinued) > date(enroll_date) and date(date_discontinued) > date(latest_vis_date)\n" +
+				"          and discontinuation_reason = 5240)\n" +
+				") t;";
+		SqlCohortDefinition cd = new SqlCohortDefinition();
+		cd.setName("lost to follow up on date");
+		cd.setQuery(sqlQuery);
+		cd.addParameter(new Parameter("onDate", "On Date", Date.class));
+		cd.setDescription("Patients in the HIV program who are lost to follow up on date");
+		return cd;
+	}
+
 	/**
 	 * Patients who are transferred out, deads ltf
 	 * @return the cohort definition
 	 */
 	public CohortDefinition transferredOutDeadAndLtf(){
-		CalculationCohortDefinition calcLtf = new CalculationCohortDefinition(new LostToFollowUpCalculation());
-		calcLtf.setName("lost to follow up");
-		calcLtf.addParameter(new Parameter("onDate", "On Date", Date.class));
-
-		CalculationCohortDefinition calcTout = new CalculationCohortDefinition(new IsTransferOutCalculation());
+		String sqlQuery = "select d.patient_id from kenyaemr_etl.etl_patient_program_discontinuation d\n" +
+				"join (select patient_id, max(visit_date) as enroll_date from kenyaemr_etl.etl_hiv_enrollment\n" +
+				"      where date(visit_date) <= date(:onDate) group by patient_id) e on e.patient_id = d.patient_id\n" +
+				"where d.program_name = 'HIV' and d.discontinuation_reason = 159492 and date(d.visit_date) <= date(:onDate)\n" +
+				"  and date(coalesce(d.effective_discontinuation_date, d.visit_date)) > date(e.enroll_date)\n" +
+				"group by d.patient_id;";
+		SqlCohortDefinition calcTout = new SqlCohortDefinition();
 		calcTout.setName("to patients");
+		calcTout.setQuery(sqlQuery);
 		calcTout.addParameter(new Parameter("onDate", "On Date", Date.class));
+		calcTout.setDescription("Patients transferred out after their last HIV enrollment");
 
 		CompositionCohortDefinition cd = new CompositionCohortDefinition();
 		cd.addParameter(new Parameter("onOrBefore", "Before Date", Date.class));
 
 		cd.addSearch("deceased", ReportUtils.map(commonCohorts.deceasedPatients(), "onDate=${onOrBefore}"));
-		cd.addSearch("ltf", ReportUtils.map(calcLtf, "onDate=${onOrBefore}"));
+		cd.addSearch("ltf", ReportUtils.map(lostToFollowUp(), "onDate=${onOrBefore}"));
 		cd.addSearch("to", ReportUtils.map(calcTout, "onDate=${onOrBefore}"));
 		cd.addSearch("missedAppointment", ReportUtils.map(moh731CohortLibrary.missedAppointment(), "onDate=${onOrBefore}"));
 		cd.setCompositionString("deceased OR ltf OR to OR missedAppointment");
@@ -338,10 +377,15 @@ public class HivCohortLibrary {
 	 * @return the CohortDefinition
 	 */
 	public CohortDefinition firstProgramEnrollment(Integer outcomePeriod) {
-		DateCalculationCohortDefinition cd = new DateCalculationCohortDefinition(new FirstProgramEnrollment());
+		String sqlQuery = "select e.patient_id from kenyaemr_etl.etl_hiv_enrollment e\n" +
+				"group by e.patient_id\n" +
+				"having min(date(e.visit_date)) between date(:onOrAfter) and date(:onOrBefore);";
+		SqlCohortDefinition cd = new SqlCohortDefinition();
 		cd.setName("First program enrollment date");
+		cd.setQuery(sqlQuery);
 		cd.addParameter(new Parameter("onOrAfter", "After Date", Date.class));
 		cd.addParameter(new Parameter("onOrBefore", "Before Date", Date.class));
+		cd.setDescription("Patients whose first HIV enrollment is between dates");
 
 		CompositionCohortDefinition compCd = new CompositionCohortDefinition();
 		compCd.addParameter(new Parameter("onOrAfter", "After Date", Date.class));
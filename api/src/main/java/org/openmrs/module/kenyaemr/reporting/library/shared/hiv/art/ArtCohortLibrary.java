@@ -13,20 +13,10 @@ import org.openmrs.Concept;
 import org.openmrs.Program;
 import org.openmrs.module.kenyacore.report.ReportUtils;
 import org.openmrs.module.kenyacore.report.cohort.definition.CalculationCohortDefinition;
-import org.openmrs.module.kenyacore.report.cohort.definition.DateCalculationCohortDefinition;
-import org.openmrs.module.kenyaemr.calculation.library.MissedLastAppointmentCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.LostToFollowUpCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.hiv.art.EligibleForArtCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.hiv.art.EligibleForArtExclusiveCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.art.InitialArtStartDateCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.hiv.art.OnAlternateFirstLineArtCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.art.OnArtCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.hiv.art.OnOriginalFirstLineArtCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.art.OnSecondLineArtCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.art.PregnantAtArtStartCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.art.TbPatientAtArtStartCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.art.TransferredInAfterArtStartCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.art.WhoStageAtArtStartCalculation;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
 import org.openmrs.module.kenyaemr.regimen.RegimenManager;
 import org.openmrs.module.kenyaemr.reporting.cohort.definition.RegimenOrderCohortDefinition;
@@ -53,6 +43,18 @@ import java.util.Set;
 @Component
 public class ArtCohortLibrary {
 
+	/**
+	 * Selects each patient's ART start date, i.e. the earlier of their first HIV regimen and any start date recorded
+	 * on transfer in
+	 */
+	private static final String ART_START_DATES = "select a.patient_id, min(a.art_start_date) as art_start_date from (\n" +
+			"  select de.patient_id, date(de.date_started) as art_start_date from kenyaemr_etl.etl_drug_event de\n" +
+			"  where de.program = 'HIV' and (de.voided is null or de.voided = 0)\n" +
+			"  union all\n" +
+			"  select e.patient_id, date(e.date_started_art_at_transferring_facility) from kenyaemr_etl.etl_hiv_enrollment e\n" +
+			"  where e.date_started_art_at_transferring_facility is not null\n" +
+			") a group by a.patient_id";
+
 	@Autowired
 	private RegimenManager regimenManager;
 
@@ -92,10 +94,7 @@ public class ArtCohortLibrary {
 	 * @return the cohort definition
 	 */
 	public CohortDefinition lostToFollowUpPatients() {
-		CalculationCohortDefinition cd = new CalculationCohortDefinition(new LostToFollowUpCalculation());
-		cd.setName("lost to follow on date");
-		cd.addParameter(new Parameter("onDate", "On Date", Date.class));
-		return cd;
+		return hivCohortLibrary.lostToFollowUp();
 	}
 
 	/**
@@ -103,9 +102,16 @@ public class ArtCohortLibrary {
 	 * @return the cohort definition
 	 */
 	public CohortDefinition onArt() {
-		CalculationCohortDefinition cd = new CalculationCohortDefinition(new OnArtCalculation());
+		String sqlQuery = "select de.patient_id from kenyaemr_etl.etl_drug_event de\n" +
+				"where de.program = 'HIV' and (de.voided is null or de.voided = 0)\n" +
+				"  and date(de.date_started) <= date(:onDate)\n" +
+				"  and (de.date_discontinued is null or date(de.date_discontinued) > date(:onDate))\n" +
+				"group by de.patient_id;";
+		SqlCohortDefinition cd = new SqlCohortDefinition();
 		cd.setName("on ART on date");
+		cd.setQuery(sqlQuery);
 		cd.addParameter(new Parameter("onDate", "On Date", Date.class));
+		cd.setDescription("Patients with an active HIV regimen on date");
 		return cd;
 	}
 
@@ -114,9 +120,33 @@ public class ArtCohortLibrary {
 	 * @return the cohort definition
 	 */
 	public CohortDefinition missedAppointments() {
-		CalculationCohortDefinition cd = new CalculationCohortDefinition(new MissedLastAppointmentCalculation());
+		String sqlQuery = "select t.patient_id from (\n" +
+				"  select fup.patient_id,\n" +
+				"         max(e.visit_date) as enroll_date,\n" +
+				"         max(fup.visit_date) as latest_vis_date,\n" +
+				"         mid(max(concat(fup.visit_date, fup.next_appointment_date)), 11) as latest_tca,\n" +
+				"         d.patient_id as disc_patient,\n" +
+				"         d.visit_date as date_discontinued\n" +
+				"  from kenyaemr_etl.etl_patient_hiv_followup fup\n" +
+				"  join kenyaemr_etl.etl_patient_demographics p on p.patient_id = fup.patient_id\n" +
+				"  join kenyaemr_etl.etl_hiv_enrollment e on e.patient_id = fup.patient_id and date(e.visit_date) <= date(:onDate)\n" +
+				"  left outer join (select patient_id, max(coalesce(date(effective_discontinuation_date), visit_date)) as visit_date\n" +
+				"                   from kenyaemr_etl.etl_patient_program_discontinuation\n" +
+				"                   where date(visit_date) <= date(:onDate) and program_name = 'HIV'\n" +
+				"                   group by patient_id) d on d.patient_id = fup.patient_id\n" +
+				"  where date(fup.visit_date) <= date(:onDate)\n" +
+				"    and (p.dead = 0 or p.death_date is null or date(p.death_date) > date(:onDate))\n" +
+				"  group by fup.patient_id\n" +
+				"  having timestampdiff(DAY, date(latest_tca), date(:onDate)) between 1 and 30\n" +
+				"     and date(latest_vis_date) < date(latest_tca)\n" +
+				"     and date(latest_vis_date) < date_format(date(:onDate), '%Y-%m-01')\n" +
+				"     and (disc_patient is null or date(enroll_date) > date(date_discontinued))\n" +
+				") t;";
+		SqlCohortDefinition cd = new SqlCohortDefinition();
 		cd.setName("missed appointment on date");
+		cd.setQuery(sqlQuery);
 		cd.addParameter(new Parameter("onDate", "On Date", Date.class));
+		cd.setDescription("Patients whose last HIV appointment was missed by 30 days or less on date");
 		return cd;
 	}
 
@@ -190,9 +220,26 @@ public class ArtCohortLibrary {
 	 * @return the cohort definition
 	 */
 	public CohortDefinition onSecondLine() {
-		CalculationCohortDefinition cd = new CalculationCohortDefinition(new OnSecondLineArtCalculation());
+		String sqlQuery = "select t.patient_id from (\n" +
+				"  select de.patient_id,\n" +
+				"         mid(max(concat(date(de.date_started), de.regimen_line)), 11) as regimen_line\n" +
+				"  from kenyaemr_etl.etl_drug_event de\n" +
+				"  where de.program = 'HIV' and (de.voided is null or de.voided = 0) and date(de.date_started) <= date(:onDate)\n" +
+				"  group by de.patient_id\n" +
+				"  having regimen_line like '%second line%' or regimen_line = '2nd Line'\n" +
+				") t;";
+		SqlCohortDefinition secondLine = new SqlCohortDefinition();
+		secondLine.setName("last regimen is second line");
+		secondLine.setQuery(sqlQuery);
+		secondLine.addParameter(new Parameter("onDate", "On Date", Date.class));
+		secondLine.setDescription("Patients whose last HIV regimen on date is second line");
+
+		CompositionCohortDefinition cd = new CompositionCohortDefinition();
 		cd.setName("on second line regimen");
 		cd.addParameter(new Parameter("onDate", "On Date", Date.class));
+		cd.addSearch("secondLine", ReportUtils.map(secondLine, "onDate=${onDate}"));
+		cd.addSearch("ltfu", ReportUtils.map(lostToFollowUpPatients(), "onDate=${onDate}"));
+		cd.setCompositionString("secondLine AND NOT ltfu");
 		return cd;
 	}
 
@@ -217,10 +264,14 @@ public class ArtCohortLibrary {
 	 * @return the cohort definition
 	 */
 	public CohortDefinition netCohortMonthsBetweenDatesGivenMonths(Integer period) {
-		CalculationCohortDefinition calc = new CalculationCohortDefinition(new TransferredInAfterArtStartCalculation());
+		String sqlQuery = "select s.patient_id from (" + ART_START_DATES + ") s\n" +
+				"join kenyaemr_etl.etl_hiv_enrollment e on e.patient_id = s.patient_id\n" +
+				"where date(e.transfer_in_date) > date_add(s.art_start_date, interval " + period + " MONTH)\n" +
+				"group by s.patient_id;";
+		SqlCohortDefinition calc = new SqlCohortDefinition();
 		calc.setName("Patients who transferred in while started art");
-		calc.addCalculationParameter("outcomePeriod", period);
-		calc.addParameter(new Parameter("onDate", "On Date", Date.class));
+		calc.setQuery(sqlQuery);
+		calc.setDescription("Patients who transferred in more than " + period + " months after their ART start date");
 
 		CompositionCohortDefinition cd = new CompositionCohortDefinition();
 		cd.setName("month net cohort on date given months");
@@ -276,8 +327,16 @@ public class ArtCohortLibrary {
 	 * @return the cohort definition
 	 */
 	public CohortDefinition pregnantAtArtStart() {
-		CalculationCohortDefinition cd = new CalculationCohortDefinition(new PregnantAtArtStartCalculation());
+		String sqlQuery = "select s.patient_id from (" + ART_START_DATES + ") s\n" +
+				"join kenyaemr_etl.etl_patient_demographics p on p.patient_id = s.patient_id and p.gender = 'F'\n" +
+				"join kenyaemr_etl.etl_patient_hiv_followup f on f.patient_id = s.patient_id and date(f.visit_date) <= s.art_start_date\n" +
+				"  and f.pregnancy_status is not null\n" +
+				"group by s.patient_id\n" +
+				"having mid(max(concat(date(f.visit_date), f.pregnancy_status)), 11) = 1065;";
+		SqlCohortDefinition cd = new SqlCohortDefinition();
 		cd.setName("pregnant at start of ART");
+		cd.setQuery(sqlQuery);
+		cd.setDescription("Women whose last pregnancy status on or before their ART start date was pregnant");
 		return cd;
 	}
 
@@ -286,8 +345,16 @@ public class ArtCohortLibrary {
 	 * @return the cohort definition
 	 */
 	public CohortDefinition tbPatientAtArtStart() {
-		CalculationCohortDefinition cd = new CalculationCohortDefinition(new TbPatientAtArtStartCalculation());
+		String sqlQuery = "select s.patient_id from (" + ART_START_DATES + ") s\n" +
+				"join kenyaemr_etl.etl_tb_enrollment t on t.patient_id = s.patient_id and date(t.visit_date) <= s.art_start_date\n" +
+				"left outer join kenyaemr_etl.etl_patient_program_discontinuation d on d.patient_id = s.patient_id and d.program_name = 'TB'\n" +
+				"  and date(d.visit_date) >= date(t.visit_date) and date(d.visit_date) <= s.art_start_date\n" +
+				"where d.patient_id is null\n" +
+				"group by s.patient_id;";
+		SqlCohortDefinition cd = new SqlCohortDefinition();
 		cd.setName("TB patient at start of ART");
+		cd.setQuery(sqlQuery);
+		cd.setDescription("Patients with a TB enrollment which was active on their ART start date");
 		return cd;
 	}
 
@@ -296,9 +363,16 @@ public class ArtCohortLibrary {
 	 * @return the cohort definition
 	 */
 	public CohortDefinition whoStageAtArtStart(int stage) {
-		CalculationCohortDefinition cd = new CalculationCohortDefinition(new WhoStageAtArtStartCalculation());
+		// Adult stages are concepts 1204 to 1207 and paediatric stages are 1220 to 1223
+		String sqlQuery = "select s.patient_id from (" + ART_START_DATES + ") s\n" +
+				"join kenyaemr_etl.etl_patient_hiv_followup f on f.patient_id = s.patient_id and date(f.visit_date) <= s.art_start_date\n" +
+				"  and f.who_stage is not null\n" +
+				"group by s.patient_id\n" +
+				"having mid(max(concat(date(f.visit_date), f.who_stage)), 11) in (" + (1203 + stage) + ", " + (1219 + stage) + ");";
+		SqlCohortDefinition cd = new SqlCohortDefinition();
 		cd.setName("who stage " + stage + " at start of ART");
-		cd.setWithResult(stage);
+		cd.setQuery(sqlQuery);
+		cd.setDescription("Patients whose last WHO stage on or before their ART start date was " + stage);
 		return cd;
 	}
 
@@ -307,10 +381,29 @@ public class ArtCohortLibrary {
 	 * @return the cohort definition
 	 */
 	public CohortDefinition startedArt() {
-		DateCalculationCohortDefinition cd = new DateCalculationCohortDefinition(new InitialArtStartDateCalculation());
+		String sqlQuery = "select s.patient_id from (" + ART_START_DATES + ") s\n" +
+				"where s.art_start_date between date(:onOrAfter) and date(:onOrBefore);";
+		SqlCohortDefinition cd = new SqlCohortDefinition();
 		cd.setName("started ART");
+		cd.setQuery(sqlQuery);
 		cd.addParameter(new Parameter("onOrAfter", "After Date", Date.class));
 		cd.addParameter(new Parameter("onOrBefore", "Before Date", Date.class));
+		cd.setDescription("Patients whose ART start date is between dates");
+		return cd;
+	}
+
+	/**
+	 * Patients who started ART on or before ${onOrBefore}
+	 * @return the cohort definition
+	 */
+	public CohortDefinition startedArtOnOrBefore() {
+		String sqlQuery = "select s.patient_id from (" + ART_START_DATES + ") s\n" +
+				"where s.art_start_date <= date(:onOrBefore);";
+		SqlCohortDefinition cd = new SqlCohortDefinition();
+		cd.setName("started ART on or before date");
+		cd.setQuery(sqlQuery);
+		cd.addParameter(new Parameter("onOrBefore", "Before Date", Date.class));
+		cd.setDescription("Patients whose ART start date is on or before date");
 		return cd;
 	}
 
@@ -384,7 +477,7 @@ public class ArtCohortLibrary {
 		CompositionCohortDefinition cd = new CompositionCohortDefinition();
 		cd.setName("Started ART excluding transfer ins on date in this facility");
 		cd.addParameter(new Parameter("onOrBefore", "Before Date", Date.class));
-		cd.addSearch("startedArt", ReportUtils.map(startedArt(), "onOrBefore=${onOrBefore}"));
+		cd.addSearch("startedArt", ReportUtils.map(startedArtOnOrBefore(), "onOrBefore=${onOrBefore}"));
 		cd.addSearch("transferIns", ReportUtils.map(hivCohortLibrary.startedArtFromTransferringFacilityOnDate(), "onOrBefore=${onOrBefore}"));
 		cd.setCompositionString("startedArt AND NOT transferIns");
 		return  cd;
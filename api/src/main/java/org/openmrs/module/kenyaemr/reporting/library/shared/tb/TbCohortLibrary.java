@@ -15,11 +15,8 @@ import org.openmrs.module.reporting.cohort.definition.BaseObsCohortDefinition.Ti
 import org.openmrs.module.kenyacore.report.ReportUtils;
 import org.openmrs.module.kenyacore.report.cohort.definition.CalculationCohortDefinition;
 import org.openmrs.module.kenyaemr.Dictionary;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.ScreenedForTbInLastVisitCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.hiv.cqi.PatientLastVisitCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.tb.MissedLastTbAppointmentCalculation;
 import org.openmrs.module.kenyaemr.calculation.library.tb.TbInitialTreatmentCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.tb.TbTreatmentStartDateCalculation;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
 import org.openmrs.module.kenyaemr.metadata.TbMetadata;
 import org.openmrs.module.kenyaemr.reporting.library.moh731.Moh731CohortLibrary;
@@ -30,6 +27,7 @@ import org.openmrs.module.metadatadeploy.MetadataUtils;
 import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
 import org.openmrs.module.reporting.cohort.definition.CompositionCohortDefinition;
 import org.openmrs.module.reporting.cohort.definition.DateObsCohortDefinition;
+import org.openmrs.module.reporting.cohort.definition.SqlCohortDefinition;
 import org.openmrs.module.reporting.evaluation.parameter.Parameter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -81,19 +79,47 @@ public class TbCohortLibrary {
 	public CohortDefinition currentlyOnCareAndScreenedInTheLastVisit() {
 		CompositionCohortDefinition cd = new CompositionCohortDefinition();
 
-		CalculationCohortDefinition calculationCohortDefinition = new CalculationCohortDefinition(new ScreenedForTbInLastVisitCalculation());
-		calculationCohortDefinition.setName("Screened for Tb during the last visit ");
-		calculationCohortDefinition.addParameter(new Parameter("onDate", "On Date", Date.class));
-
-
 		cd.setName("Currently in care and screen for Tb during last visit");
 		cd.addParameter(new Parameter("onOrBefore", "Before Date", Date.class));
 		cd.addSearch("currentlyInCare", ReportUtils.map(moh731CohortLibrary.currentlyInCare(), "onDate=${onOrBefore}"));
-		cd.addSearch("screenedForTbDuringLastVisit", ReportUtils.map(calculationCohortDefinition, "onDate=${onOrBefore}"));
+		cd.addSearch("screenedForTbDuringLastVisit", ReportUtils.map(screenedForTbInPreviousVisit(), "onDate=${onOrBefore}"));
 		cd.setCompositionString("currentlyInCare AND screenedForTbDuringLastVisit");
 		return cd;
 	}
 
+	/**
+	 * Patients whose visit before their last visit, within the 3 months up to ${onDate}, recorded a TB screening outcome
+	 * @return the cohort definition
+	 */
+	public CohortDefinition screenedForTbInPreviousVisit() {
+		// Window dates are passed in rather than computed so that the query is plain SQL which also runs on H2
+		String sqlQuery = "select v.patient_id from (\n" +
+				"  select pv.patient_id, max(cast(pv.date_started as date)) as previous_visit_date\n" +
+				"  from visit pv\n" +
+				"  join (select patient_id, max(date_started) as last_visit_started from visit\n" +
+				"        where voided = 0 and cast(date_started as date) between cast(:startDate as date) and cast(:onDate as date)\n" +
+				"        group by patient_id) lv on lv.patient_id = pv.patient_id and pv.date_started < lv.last_visit_started\n" +
+				"  where pv.voided = 0 and cast(pv.date_started as date) >= cast(:startDate as date)\n" +
+				"  group by pv.patient_id\n" +
+				") v\n" +
+				"join kenyaemr_etl.etl_tb_screening s on s.patient_id = v.patient_id and cast(s.visit_date as date) = v.previous_visit_date\n" +
+				"where s.resulting_tb_status in (1660, 142177, 1662)\n" +
+				"group by v.patient_id";
+		SqlCohortDefinition sql = new SqlCohortDefinition();
+		sql.setName("Screened for Tb during the visit before the last one");
+		sql.setQuery(sqlQuery);
+		sql.addParameter(new Parameter("startDate", "Start Date", Date.class));
+		sql.addParameter(new Parameter("onDate", "On Date", Date.class));
+
+		CompositionCohortDefinition cd = new CompositionCohortDefinition();
+		cd.setName("Screened for Tb during the last visit");
+		cd.addParameter(new Parameter("onDate", "On Date", Date.class));
+		cd.addSearch("screenedInPreviousVisit", ReportUtils.map(sql, "startDate=${onDate-3m},onDate=${onDate}"));
+		cd.setCompositionString("screenedInPreviousVisit");
+		cd.setDescription("Screened for Tb during the visit before the last one");
+		return cd;
+	}
+
 	/**
 	 * Patients who were screened for tb and are not on any tb treatment
 	 * @return the cohort definition
@@ -134,15 +160,26 @@ public class TbCohortLibrary {
 	 * @return CohortDefinition
 	 */
 	public CohortDefinition screenedForTbUsingICF() {
-		CalculationCohortDefinition cd = new CalculationCohortDefinition(new PatientLastVisitCalculation());
+		String sqlQuery = "select v.patient_id from visit v\n" +
+				"join (select patient_id, max(date_started) as last_visit_started from visit\n" +
+				"      where voided = 0 and cast(date_started as date) between cast(:startDate as date) and cast(:onDate as date)\n" +
+				"      group by patient_id) lv on lv.patient_id = v.patient_id and v.date_started = lv.last_visit_started\n" +
+				"join encounter e on e.visit_id = v.visit_id and e.voided = 0\n" +
+				"join encounter_type et on et.encounter_type_id = e.encounter_type and et.uuid = '" + TbMetadata._EncounterType.TB_SCREENING + "'\n" +
+				"where v.voided = 0\n" +
+				"group by v.patient_id";
+		SqlCohortDefinition cd = new SqlCohortDefinition();
 		cd.setName("Patients who had tb screens in last visit");
+		cd.setQuery(sqlQuery);
+		cd.addParameter(new Parameter("startDate", "Start Date", Date.class));
 		cd.addParameter(new Parameter("onDate", "On Date", Date.class));
+		cd.setDescription("Patients whose last visit in the 6 months up to date has a TB screening encounter");
 
 		CompositionCohortDefinition comp = new CompositionCohortDefinition();
 		comp.setName("Screened for tb in last visit using ICF form and some observations saved");
 		comp.addParameter(new Parameter("onOrAfter", "After Date", Date.class));
 		comp.addParameter(new Parameter("onOrBefore", "Before Date", Date.class));
-		comp.addSearch("usingICF", ReportUtils.map(cd, "onDate=${onOrBefore}"));
+		comp.addSearch("usingICF", ReportUtils.map(cd, "startDate=${onOrBefore-6m},onDate=${onOrBefore}"));
 		comp.addSearch("obsSaved", ReportUtils.map(screenedForTb(), "onOrAfter=${onOrBefore-6m},onOrBefore=${onOrBefore}"));
 		comp.setCompositionString("usingICF AND obsSaved");
 
@@ -378,10 +415,17 @@ public class TbCohortLibrary {
 	 * @return cohort definition
 	 */
 	public CohortDefinition startedTbTreatmentResultsAtMonths(Integer months) {
-		CalculationCohortDefinition cd = new CalculationCohortDefinition(new TbTreatmentStartDateCalculation());
+		String sqlQuery = "select e.patient_id from kenyaemr_etl.etl_tb_enrollment e\n" +
+				"join kenyaemr_etl.etl_patient_demographics p on p.patient_id = e.patient_id\n" +
+				"where date(e.visit_date) <= date(:onDate)\n" +
+				"  and (p.dead = 0 or p.death_date is null or date(p.death_date) > date(:onDate))\n" +
+				"group by e.patient_id\n" +
+				"having timestampdiff(DAY, mid(max(concat(e.visit_date, e.date_treatment_started)), 11), date(:onDate)) >= :days;";
+		SqlCohortDefinition cd = new SqlCohortDefinition();
 		cd.setName("patients Tb results at"+ months + "months");
+		cd.setQuery(sqlQuery.replace(":days", String.valueOf(months * 30)));
 		cd.addParameter(new Parameter("onDate", "On Date", Date.class));
-		cd.addCalculationParameter("months", months);
+		cd.setDescription("Patients who started Tb treatment at least " + months + " months before date");
 		return cd;
 	}
 
@@ -0,0 +1,322 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.task;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Patient;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.kenyaemr.EmrActivator;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.model.PatientValidationIssue;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.validation.BindException;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Validates every patient record in the background. Patient ids are read in chunks, the issues found in each chunk
+ * are saved to kenyaemr_patient_validation_issue, and the session is cleared so that memory use doesn't grow with the
+ * number of patients. Each patient is validated in its own transaction so that a patient which can't be validated is
+ * recorded as an issue rather than failing the run. Only one run at a time is allowed and only the issues of the
+ * latest completed run are kept. A run which is cancelled or fails is discarded, leaving the previous run's issues.
+ */
+public class PatientValidationJob {
+
+	protected static final Log log = LogFactory.getLog(PatientValidationJob.class);
+
+	public static final int CHUNK_SIZE = 500;
+
+	private static final PatientValidationJob instance = new PatientValidationJob();
+
+	private volatile String runUuid;
+
+	private volatile boolean running = false;
+
+	private volatile boolean cancelled = false;
+
+	private volatile long total = 0;
+
+	private volatile long processed = 0;
+
+	private volatile long issueCount = 0;
+
+	private volatile Date dateStarted;
+
+	private volatile Date dateCompleted;
+
+	private volatile String error;
+
+	private volatile boolean lastRunLoaded = false;
+
+	private String previousRunUuid;
+
+	private long previousIssueCount;
+
+	protected PatientValidationJob() {
+	}
+
+	/**
+	 * Gets the singleton instance
+	 * @return the instance
+	 */
+	public static PatientValidationJob getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts a new validation run in a daemon thread
+	 * @return false if a run is already in progress
+	 */
+	public synchronized boolean start() {
+		if (running) {
+			return false;
+		}
+
+		final DaemonToken token = EmrActivator.getDaemonToken();
+		if (token == null) {
+			throw new APIException("Patient validation can't be run until KenyaEMR has started");
+		}
+
+		begin();
+
+		try {
+			Daemon.runInDaemonThread(new Runnable() {
+				@Override
+				public void run() {
+					runValidation();
+				}
+			}, token);
+		}
+		catch (RuntimeException ex) {
+			// The daemon never started so it won't reset the flag itself
+			running = false;
+			throw ex;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Resets the progress for a new run, remembering the previous run in case this one doesn't complete
+	 */
+	protected synchronized void begin() {
+		loadLastRun();
+		previousRunUuid = runUuid;
+		previousIssueCount = issueCount;
+
+		runUuid = UUID.randomUUID().toString();
+		running = true;
+		cancelled = false;
+		total = 0;
+		processed = 0;
+		issueCount = 0;
+		dateStarted = new Date();
+		dateCompleted = null;
+		error = null;
+	}
+
+	/**
+	 * Requests that the current run stops after its current chunk
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Runs the validation in the current thread. The caller must already have an authenticated session
+	 */
+	protected void runValidation() {
+		KenyaEmrService service = Context.getService(KenyaEmrService.class);
+		try {
+			total = service.getPatientCount();
+
+			Integer lastId = null;
+			while (!cancelled) {
+				List<Integer> patientIds = service.getPatientIds(lastId, CHUNK_SIZE);
+				if (patientIds.isEmpty()) {
+					break;
+				}
+
+				issueCount += validateChunk(patientIds);
+				processed += patientIds.size();
+				lastId = patientIds.get(patientIds.size() - 1);
+
+				Context.clearSession();
+			}
+
+			log.info("Patient validation " + (cancelled ? "cancelled" : "completed") + ": " + issueCount + " issues found in " + processed + " patients");
+
+			// Older runs are only replaced once this one has checked every patient
+			if (cancelled) {
+				discardRun(service);
+			}
+			else {
+				service.purgePatientValidationIssues(runUuid);
+			}
+		}
+		catch (Exception ex) {
+			log.error("Patient validation failed", ex);
+			error = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getName();
+			discardRun(service);
+		}
+		finally {
+			dateCompleted = new Date();
+			running = false;
+		}
+	}
+
+	/**
+	 * Deletes the issues saved by the current run and goes back to showing those of the previous run
+	 * @param service the service
+	 */
+	private void discardRun(KenyaEmrService service) {
+		try {
+			service.deletePatientValidationRun(runUuid);
+		}
+		catch (Exception ex) {
+			log.error("Unable to delete the issues of patient validation run " + runUuid, ex);
+		}
+		runUuid = previousRunUuid;
+		issueCount = previousIssueCount;
+	}
+
+	/**
+	 * Validates a chunk of patients and saves their issues
+	 * @param patientIds the patient ids
+	 * @return the number of issues found
+	 */
+	protected int validateChunk(List<Integer> patientIds) {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(Context.getRegisteredComponent("transactionManager", PlatformTransactionManager.class));
+		List<PatientValidationIssue> issues = new ArrayList<PatientValidationIssue>();
+
+		for (final Integer patientId : patientIds) {
+			Set<String> messages;
+			try {
+				messages = transactionTemplate.execute(new TransactionCallback<Set<String>>() {
+					@Override
+					public Set<String> doInTransaction(TransactionStatus status) {
+						Patient patient = Context.getPatientService().getPatient(patientId);
+						BindException errors = new BindException(patient, "");
+						Context.getAdministrationService().validate(patient, errors);
+						return uniqueErrorMessages(errors);
+					}
+				});
+			}
+			catch (Exception ex) {
+				log.warn("Unable to validate patient #" + patientId, ex);
+				messages = Collections.singleton("Unable to validate: " + (ex.getMessage() != null ? ex.getMessage() : ex.getClass().getName()));
+			}
+
+			if (!messages.isEmpty()) {
+				PatientValidationIssue issue = new PatientValidationIssue();
+				issue.setRunUuid(runUuid);
+				issue.setPatientId(patientId);
+				issue.setErrors(StringUtils.join(messages, "\n"));
+				issue.setDateCreated(new Date());
+				issues.add(issue);
+			}
+		}
+
+		Context.getService(KenyaEmrService.class).savePatientValidationIssues(issues);
+		return issues.size();
+	}
+
+	/**
+	 * Helper method to extract unique error messages from a bind exception and format them
+	 * @param errors the bind exception
+	 * @return the messages
+	 */
+	protected static Set<String> uniqueErrorMessages(BindException errors) {
+		Set<String> messages = new LinkedHashSet<String>();
+		for (Object objerr : errors.getAllErrors()) {
+			ObjectError error = (ObjectError) objerr;
+			String message = Context.getMessageSourceService().getMessage(error.getCode());
+
+			if (error instanceof FieldError) {
+				message = ((FieldError) error).getField() + ": " + message;
+			}
+
+			messages.add(message);
+		}
+
+		return messages;
+	}
+
+	public String getRunUuid() {
+		loadLastRun();
+		return runUuid;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public long getProcessed() {
+		return processed;
+	}
+
+	public long getIssueCount() {
+		loadLastRun();
+		return issueCount;
+	}
+
+	public Date getDateStarted() {
+		return dateStarted;
+	}
+
+	public Date getDateCompleted() {
+		return dateCompleted;
+	}
+
+	/**
+	 * Loads the latest run saved in the database if none has been started since startup, e.g. after a restart
+	 */
+	private synchronized void loadLastRun() {
+		if (lastRunLoaded || runUuid != null) {
+			return;
+		}
+
+		KenyaEmrService service = Context.getService(KenyaEmrService.class);
+		String lastRunUuid = service.getLatestPatientValidationRunUuid();
+		if (lastRunUuid != null && runUuid == null) {
+			issueCount = service.getPatientValidationIssueCount(lastRunUuid);
+			runUuid = lastRunUuid;
+		}
+		lastRunLoaded = true;
+	}
+
+	/**
+	 * Gets the error which stopped the last run
+	 * @return the error message or null
+	 */
+	public String getError() {
+		return error;
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.task;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyaemr.advice.EncounterEventDispatcher;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.model.EncounterEvent;
+import org.openmrs.scheduler.tasks.AbstractTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * A scheduled task that runs queued encounter events which were not handled by the worker pool, i.e. events that
+ * failed and still have retries left, events queued while the pool was full and events abandoned by a restart
+ */
+public class ProcessEncounterEventsTask extends AbstractTask {
+
+	private static final Logger log = LoggerFactory.getLogger(ProcessEncounterEventsTask.class);
+
+	private static final int BATCH_SIZE = 200;
+
+	/**
+	 * @see AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			if (log.isDebugEnabled()) {
+				log.debug("Starting Process Encounter Events Task...");
+			}
+
+			startExecuting();
+			try {
+				EncounterEventDispatcher dispatcher = EncounterEventDispatcher.getInstance();
+				List<EncounterEvent> events = Context.getService(KenyaEmrService.class).getQueuedEncounterEvents(EncounterEventDispatcher.MAX_ATTEMPTS, EncounterEventDispatcher.getStaleBefore(), BATCH_SIZE);
+
+				int failed = 0;
+				for (EncounterEvent event : events) {
+					if (!dispatcher.process(event.getId())) {
+						failed++;
+					}
+					Context.flushSession();
+					Context.clearSession();
+				}
+
+				if (events.size() > 0) {
+					log.info("Processed " + events.size() + " queued encounter events (" + failed + " not completed)");
+				}
+			} catch (Exception e) {
+				log.error("Error while processing queued encounter events:", e);
+			} finally {
+				stopExecuting();
+			}
+		}
+	}
+}
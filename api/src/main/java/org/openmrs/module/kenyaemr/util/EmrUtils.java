@@ -22,8 +22,6 @@ import org.openmrs.Encounter;
 import org.openmrs.EncounterType;
 import org.openmrs.Form;
 import org.openmrs.Obs;
-import org.openmrs.Order;
-import org.openmrs.OrderType;
 import org.openmrs.Patient;
 import org.openmrs.Person;
 import org.openmrs.PersonAttribute;
@@ -33,6 +31,7 @@ import org.openmrs.User;
 import org.openmrs.api.EncounterService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.kenyaemr.Dictionary;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
 import org.openmrs.util.PrivilegeConstants;
 import org.apache.commons.logging.Log;
@@ -48,6 +47,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Miscellaneous utility methods
@@ -217,31 +217,31 @@ public class EmrUtils {
 	}
 
 	/**
-	 *
-	 * @param patient
-	 * @param careSetting
-	 * @return
+	 * Gets the non-voided drug orders of a patient
+	 * @param patient the patient
+	 * @param careSetting the care setting, or null for orders in any care setting
+	 * @return the drug orders, most recently activated first
 	 */
 	public static List<DrugOrder> drugOrdersFromOrders(Patient patient, CareSetting careSetting) {
+		return drugOrdersFromOrders(patient, careSetting, false);
+	}
 
-		OrderType drugOrderType = Context.getOrderService().getOrderTypeByUuid(OrderType.DRUG_ORDER_TYPE_UUID);
-		List<Order> allDrugOrders = null;
-		if (careSetting == null) {
-			allDrugOrders = Context.getOrderService().getAllOrdersByPatient(patient);
-		} else {
-			allDrugOrders = Context.getOrderService().getOrders(patient, careSetting, drugOrderType, false);
+	/**
+	 * Gets the non-voided drug orders of a patient
+	 * @param patient the patient
+	 * @param careSetting the care setting, or null for orders in any care setting. Discontinuation orders are only
+	 *                    included when this is null
+	 * @param activeOnly whether to only include orders which are active now. Discontinuation orders are never active
+	 * @return the drug orders, most recently activated first
+	 */
+	public static List<DrugOrder> drugOrdersFromOrders(Patient patient, CareSetting careSetting, boolean activeOnly) {
+		if (patient.getPatientId() == null) {
+			return new ArrayList<DrugOrder>();
 		}
 
-		List<DrugOrder> drugOrdersOnly = new ArrayList<DrugOrder>();
-		for (Order o:allDrugOrders) {
-			DrugOrder order = null;
-			if (o.getOrderType().equals(drugOrderType)) {
-				order = (DrugOrder)o;
-				drugOrdersOnly.add(order);
-			}
-
-		}
-		return drugOrdersOnly;
+		Map<Integer, List<DrugOrder>> ordersByPatient = Context.getService(KenyaEmrService.class).getDrugOrdersByPatient(Collections.singleton(patient.getPatientId()), careSetting, activeOnly);
+		List<DrugOrder> orders = ordersByPatient.get(patient.getPatientId());
+		return orders != null ? orders : new ArrayList<DrugOrder>();
 	}
 
 	public static ObjectNode getDatasetMappingForReport(String reportName, String mappingString) throws IOException {
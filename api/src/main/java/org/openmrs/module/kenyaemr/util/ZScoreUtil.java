@@ -9,15 +9,15 @@
  */
 package org.openmrs.module.kenyaemr.util;
 
+import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ObjectNode;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
 
 public class ZScoreUtil {
 
@@ -28,6 +28,27 @@ public class ZScoreUtil {
     public static Integer ZSCORE_NOT_FOUND_DEFAULT_VALUE = -10; // arbitrarily picked number. can be refined to something meaningful
     public static Integer ZSCORE_INSUFFICIENT_INFORMATION_DEFAULT_VALUE = -20; // arbitrarily picked number. can be refined to something meaningful
 
+    private static final int MIN_LENGTH_TENTHS = 450; // 45 cm
+    private static final int MAX_LENGTH_TENTHS = 1100; // 110 cm
+
+    /**
+     * The SD columns which are compared against, in ascending order, and the z-score reported for each.
+     * SD3 and SD4 are not listed as a weight at or above SD2 has always been reported as 4
+     */
+    private static final String[] SD_KEYS = { "SD4neg", "SD3neg", "SD2neg", "SD1neg", "SD0", "SD1", "SD2" };
+    private static final int[] SD_ZSCORES = { -4, -3, -2, -1, 0, 1, 4 };
+
+    /**
+     * Lazily loaded tables. The holder classes are only initialised on first use, and the JVM guarantees that happens once
+     */
+    private static class BoysTable {
+        static final double[] THRESHOLDS = loadThresholds(WEIGHT_FOR_LENGTH_BOYS_FILE_OPTIMIZED);
+    }
+
+    private static class GirlsTable {
+        static final double[] THRESHOLDS = loadThresholds(WEIGHT_FOR_LENGTH_GIRLS_FILE_OPTIMIZED);
+    }
+
     /**
      * Reads a json file with weight for length values
      * The file is a json object with length (to 1 decimal point) as the object keys. This is to facilitate O(1) searching
@@ -46,6 +67,33 @@ public class ZScoreUtil {
         return null;
     }
 
+    /**
+     * Converts a weight for length file into a flat array of SD thresholds, one row of SD_KEYS.length values per
+     * tenth of a centimetre from 45 to 110 cm. Thresholds are truncated to two decimal points as they are compared.
+     * Lengths missing from the file have NaN thresholds, which never match any weight.
+     * @param fileName the file name
+     * @return the thresholds or null if the file can't be read
+     */
+    protected static double[] loadThresholds(String fileName) {
+        ObjectNode sdList = loadWeightForLengthZScoreFile(fileName);
+        if (sdList == null) {
+            return null;
+        }
+
+        int rows = MAX_LENGTH_TENTHS - MIN_LENGTH_TENTHS + 1;
+        double[] thresholds = new double[rows * SD_KEYS.length];
+
+        for (int row = 0; row < rows; row++) {
+            JsonNode sdForHeight = sdList.get(String.valueOf((MIN_LENGTH_TENTHS + row) / 10.0));
+            for (int sd = 0; sd < SD_KEYS.length; sd++) {
+                // we want to compare with up to one decimal point.
+                // We noted inconsistent results with more than one decimal point. This is also an alignment to the provided paper chart used at site
+                thresholds[row * SD_KEYS.length + sd] = sdForHeight != null ? Math.floor(sdForHeight.get(SD_KEYS[sd]).asDouble() * 100) / 100 : Double.NaN;
+            }
+        }
+        return thresholds;
+    }
+
     /**
      * Calculates weight for lenght z-score based on a client's weight, height, and sex
      * NOTE: This only works for children under 5 yrs
@@ -57,31 +105,7 @@ public class ZScoreUtil {
      * @return
      */
     public static Integer calculateZScore(Double height, Double weight, String sex) {
-        String sD4negKey =  "SD4neg";
-        String sD3negKey =  "SD3neg";
-        String sD2negKey =  "SD2neg";
-        String sD1negKey =  "SD1neg";
-        String sD0Key =  "SD0";
-        String sD1Key =  "SD1";
-        String sD2Key =  "SD2";
-        String sD3Key =  "SD3";
-        String sD4Key =  "SD4";
-
-        Map<Double,String> sdValues = new TreeMap<Double,String>(Collections.reverseOrder());
-
-        // map sdKeys to values. We can check if this is a better approach than if statements
-        Map<String, Integer> zScoreValues = new HashMap<String, Integer>();
-        zScoreValues.put(sD4negKey, -4);
-        zScoreValues.put(sD3negKey, -3);
-        zScoreValues.put(sD2negKey, -2);
-        zScoreValues.put(sD1negKey, -1);
-        zScoreValues.put(sD0Key, 0);
-        zScoreValues.put(sD1Key, 1);
-        zScoreValues.put(sD2Key, 2);
-        zScoreValues.put(sD2Key, 3);
-        zScoreValues.put(sD2Key, 4);
-
-        if (height == null || height == 0 || sex == null || sex == "") {
+        if (height == null || height == 0 || weight == null || sex == null || sex.isEmpty()) {
             return ZSCORE_INSUFFICIENT_INFORMATION_DEFAULT_VALUE;
         }
         int standardMinHeight = 45; // in cm
@@ -91,50 +115,56 @@ public class ZScoreUtil {
             return -4;
         }
 
-        ObjectNode sdList = null;
-        ObjectNode sdForHeight = null;
         // explicitly load SDs based on sex
+        double[] thresholds = null;
         if (sex.equals("M")) {
-            sdList = loadWeightForLengthZScoreFile(WEIGHT_FOR_LENGTH_BOYS_FILE_OPTIMIZED);
+            thresholds = BoysTable.THRESHOLDS;
         } else if (sex.equals("F")) {
-            sdList = loadWeightForLengthZScoreFile(WEIGHT_FOR_LENGTH_GIRLS_FILE_OPTIMIZED);
+            thresholds = GirlsTable.THRESHOLDS;
         }
 
-        if (sdList == null) {
+        if (thresholds == null) {
             return ZSCORE_NOT_FOUND_DEFAULT_VALUE;// return meaningful error code and description
         }
 
-        String lengthKey = String.valueOf(height);
-        sdForHeight = (ObjectNode) sdList.get(lengthKey);
-
-        if (sdForHeight != null) {
-            sdValues.put(sdForHeight.get(sD4negKey).asDouble(),sD4negKey);
-            sdValues.put(sdForHeight.get(sD3negKey).asDouble(),sD3negKey);
-            sdValues.put(sdForHeight.get(sD2negKey).asDouble(),sD2negKey);
-            sdValues.put(sdForHeight.get(sD1negKey).asDouble(),sD1negKey);
-            sdValues.put(sdForHeight.get(sD0Key).asDouble(),sD0Key);
-            sdValues.put(sdForHeight.get(sD1Key).asDouble(),sD1Key);
-            sdValues.put(sdForHeight.get(sD2Key).asDouble(),sD2Key);
-            sdValues.put(sdForHeight.get(sD3Key).asDouble(),sD3Key);
-            sdValues.put(sdForHeight.get(sD4Key).asDouble(),sD4Key);
+        // the tables only have lengths to one decimal point, anything more precise isn't found
+        int lengthTenths = (int) Math.round(height * 10);
+        if (lengthTenths / 10.0 != height) {
+            return ZSCORE_NOT_FOUND_DEFAULT_VALUE;
         }
 
-
-        double previousKey = 0;
-        for (Map.Entry<Double,String> entry : sdValues.entrySet()) {
-            previousKey = entry.getKey();
-            // we want to compare with up to one decimal point.
-            // We noted inconsistent results with more than one decimal point. This is also an alignment to the provided paper chart used at site
-            double weightToCompareWith = Math.floor(previousKey * 100) / 100;
-
-            if (weightToCompareWith <= weight) {
-                if (zScoreValues.containsKey(sdValues.get(previousKey))) {
-                    return zScoreValues.get(sdValues.get(previousKey));
-                }
+        // find the highest threshold which is <= the weight
+        int start = (lengthTenths - MIN_LENGTH_TENTHS) * SD_KEYS.length;
+        int low = 0;
+        int high = SD_KEYS.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[start + mid] <= weight) {
+                low = mid + 1;
             } else {
-                continue;
+                high = mid;
             }
         }
-        return ZSCORE_NOT_FOUND_DEFAULT_VALUE;
+
+        if (low == 0) {
+            return ZSCORE_NOT_FOUND_DEFAULT_VALUE;
+        }
+        return SD_ZSCORES[low - 1];
+    }
+
+    /**
+     * Calculates weight for length z-scores for a cohort of patients
+     * @param cohort the patient ids
+     * @param heights the heights in cm by patient id
+     * @param weights the weights in kg by patient id
+     * @param sexes the sexes by patient id
+     * @return the z-scores by patient id, using the same values as {@link #calculateZScore(Double, Double, String)}
+     */
+    public static Map<Integer, Integer> calculateZScores(Collection<Integer> cohort, Map<Integer, Double> heights, Map<Integer, Double> weights, Map<Integer, String> sexes) {
+        Map<Integer, Integer> zScores = new HashMap<Integer, Integer>();
+        for (Integer patientId : cohort) {
+            zScores.put(patientId, calculateZScore(heights.get(patientId), weights.get(patientId), sexes.get(patientId)));
+        }
+        return zScores;
     }
 }
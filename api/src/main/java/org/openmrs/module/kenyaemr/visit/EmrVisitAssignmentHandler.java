@@ -13,6 +13,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.openmrs.Encounter;
 import org.openmrs.Form;
 import org.openmrs.Location;
+import org.openmrs.Patient;
 import org.openmrs.Visit;
 import org.openmrs.VisitAttribute;
 import org.openmrs.VisitAttributeType;
@@ -30,8 +31,11 @@ import org.openmrs.module.metadatadeploy.MetadataUtils;
 import org.openmrs.util.OpenmrsUtil;
 
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Unlike the regular visit handlers, this one will be called even for existing encounters as we sometimes need to move
@@ -39,6 +43,11 @@ import java.util.Locale;
  */
 public class EmrVisitAssignmentHandler extends BaseEncounterVisitHandler implements ExistingEncounterVisitHandler {
 
+	/**
+	 * The ids of the auto-create visit types by UUID
+	 */
+	private static final Map<String, Integer> visitTypeIds = new ConcurrentHashMap<String, Integer>();
+
 	/**
 	 * @see org.openmrs.api.handler.ExistingVisitAssignmentHandler#getDisplayName(java.util.Locale)
 	 */
@@ -111,14 +120,11 @@ public class EmrVisitAssignmentHandler extends BaseEncounterVisitHandler impleme
 	protected boolean useExistingVisit(Encounter encounter) {
 		// If encounter has time, then we need an exact fit for an existing visit
 		if (EmrUtils.dateHasTime(encounter.getEncounterDatetime())) {
-			List<Visit> visits = Context.getVisitService().getVisits(null, Collections.singletonList(encounter.getPatient()), null, null, null,
-					encounter.getEncounterDatetime(), null, null, null, true, false);
+			List<Visit> visits = getVisitsAt(encounter.getPatient(), encounter.getEncounterDatetime());
 
-			for (Visit visit : visits) {
-				// Skip visits which ended before the encounter date
-				if (visit.getStopDatetime() != null && visit.getStopDatetime().before(encounter.getEncounterDatetime())) {
-					continue;
-				}
+			// Prefer the visit which started most recently
+			for (int v = visits.size() - 1; v >= 0; v--) {
+				Visit visit = visits.get(v);
 
 				if (checkLocations(visit, encounter)) {
 					setVisitOfEncounter(visit, encounter);
@@ -148,6 +154,22 @@ public class EmrVisitAssignmentHandler extends BaseEncounterVisitHandler impleme
 		return false;
 	}
 
+	/**
+	 * Gets the visits of a patient which were active at the given time. Only the overlapping visits are loaded, rather
+	 * than the patient's whole visit history
+	 * @param patient the patient
+	 * @param datetime the time
+	 * @return the visits, ordered by start date
+	 */
+	protected static List<Visit> getVisitsAt(Patient patient, Date datetime) {
+		if (patient.getPatientId() == null) {
+			return Collections.emptyList();
+		}
+
+		Map<Integer, List<Visit>> visits = Context.getService(KenyaEmrService.class).getVisitsByPatient(Collections.singleton(patient.getPatientId()), datetime, datetime, false);
+		return visits.containsKey(patient.getPatientId()) ? visits.get(patient.getPatientId()) : Collections.<Visit>emptyList();
+	}
+
 	/**
 	 * Uses a new visit for the given encounter
 	 * @param encounter the encounter
@@ -185,12 +207,35 @@ public class EmrVisitAssignmentHandler extends BaseEncounterVisitHandler impleme
 			FormDescriptor fd = formManager.getFormDescriptor(encounter.getForm());
 
 			if (fd != null && fd.getAutoCreateVisitTypeUuid() != null) {
-				return MetadataUtils.existing(VisitType.class, fd.getAutoCreateVisitTypeUuid());
+				return getVisitType(fd.getAutoCreateVisitTypeUuid());
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Gets a visit type by UUID. This happens on every save of an encounter from an auto-create form, so the ids of
+	 * visit types are remembered and they are then loaded by id, which the Hibernate session can answer without a query
+	 * @param uuid the visit type UUID
+	 * @return the visit type
+	 * @throws org.openmrs.module.metadatadeploy.MissingMetadataException if no such visit type exists
+	 */
+	protected static VisitType getVisitType(String uuid) {
+		Integer visitTypeId = visitTypeIds.get(uuid);
+		if (visitTypeId != null) {
+			VisitType visitType = Context.getVisitService().getVisitType(visitTypeId);
+
+			// The id could have changed if the visit type was purged and re-created
+			if (visitType != null && uuid.equals(visitType.getUuid())) {
+				return visitType;
+			}
+		}
+
+		VisitType visitType = MetadataUtils.existing(VisitType.class, uuid);
+		visitTypeIds.put(uuid, visitType.getVisitTypeId());
+		return visitType;
+	}
+
 	/**
 	 * Convenience method to check whether the location of a visit and an encounter are compatible
 	 * @param visit the visit
@@ -0,0 +1,114 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.advice;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.Relationship;
+import org.openmrs.RelationshipType;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyacore.test.TestUtils;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
+import org.openmrs.module.kenyaemr.metadata.MchMetadata;
+import org.openmrs.module.metadatadeploy.MetadataUtils;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link MCHMSDeliveryFormProcessor}
+ */
+public class MCHMSDeliveryFormProcessorTest extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private CommonMetadata commonMetadata;
+
+	@Autowired
+	private MchMetadata mchMetadata;
+
+	@Autowired
+	private KenyaEmrService kenyaEmrService;
+
+	private MCHMSDeliveryFormProcessor processor = new MCHMSDeliveryFormProcessor();
+
+	/**
+	 * Setup each test
+	 */
+	@Before
+	public void setup() throws Exception {
+		executeDataSet("dataset/test-concepts.xml");
+
+		commonMetadata.install();
+		mchMetadata.install();
+
+		kenyaEmrService.setDefaultLocation(Context.getLocationService().getLocation(1));
+		kenyaEmrService.setupMrnIdentifierSource(null);
+	}
+
+	/**
+	 * @see MCHMSDeliveryFormProcessor#process(org.openmrs.Encounter)
+	 */
+	@Test
+	public void process_shouldNotRegisterBabiesTwiceWhenRetried() throws Exception {
+		Patient mother = TestUtils.getPatient(7);
+		EncounterType consultation = MetadataUtils.existing(EncounterType.class, MchMetadata._EncounterType.MCHMS_CONSULTATION);
+		Form delivery = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_DELIVERY);
+
+		// Obs times have a time component which isn't kept by the babies' birth dates
+		Date deliveryTime = TestUtils.date(2024, 3, 1, 14, 30, 0);
+		Encounter encounter = TestUtils.saveEncounter(mother, consultation, delivery, deliveryTime,
+				babyObs(mother, "Baby Wanjiru", 1535, deliveryTime), babyObs(mother, "Baby Otieno", 1534, deliveryTime));
+
+		Assert.assertTrue(processor.accepts(encounter));
+		processor.process(encounter);
+		Assert.assertThat(getChildren(mother).size(), is(2));
+
+		// Retry the event with everything reloaded from the database
+		Context.flushSession();
+		Context.clearSession();
+
+		processor.process(Context.getEncounterService().getEncounter(encounter.getEncounterId()));
+		Assert.assertThat(getChildren(mother).size(), is(2));
+	}
+
+	/**
+	 * Creates a delivery outcome obs group for a baby
+	 */
+	private static Obs babyObs(Patient mother, String name, int sexConceptId, Date date) {
+		Concept group = Context.getConceptService().getConceptByUuid("162588AAAAAAAAAAAAAAAAAAAAAAAAAAAAAA");
+
+		Obs nameObs = new Obs(mother, Context.getConceptService().getConcept(1586), date, null);
+		nameObs.setValueText(name);
+		Obs sexObs = new Obs(mother, Context.getConceptService().getConcept(1587), date, null);
+		sexObs.setValueCoded(Context.getConceptService().getConcept(sexConceptId));
+
+		Obs outcome = new Obs(mother, group, date, null);
+		outcome.addGroupMember(nameObs);
+		outcome.addGroupMember(sexObs);
+		return outcome;
+	}
+
+	private static List<Relationship> getChildren(Patient mother) {
+		RelationshipType parentChild = Context.getPersonService().getRelationshipTypeByUuid("8d91a210-c2cc-11de-8d13-0010c6dffd0f");
+		return Context.getPersonService().getRelationships(Context.getPersonService().getPerson(mother.getPersonId()), null, parentChild);
+	}
+}
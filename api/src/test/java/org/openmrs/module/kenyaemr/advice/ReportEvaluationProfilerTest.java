@@ -0,0 +1,75 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.advice;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.module.reporting.cohort.EvaluatedCohort;
+import org.openmrs.module.reporting.cohort.definition.GenderCohortDefinition;
+import org.openmrs.module.reporting.cohort.definition.SqlCohortDefinition;
+import org.openmrs.module.reporting.data.person.definition.GenderDataDefinition;
+import org.openmrs.module.reporting.evaluation.parameter.Mapped;
+import org.openmrs.module.reporting.report.definition.ReportDefinition;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for {@link ReportEvaluationProfiler}
+ */
+public class ReportEvaluationProfilerTest {
+
+	@Test
+	public void getDefinition_shouldUnwrapMappedDefinitions() {
+		GenderCohortDefinition definition = new GenderCohortDefinition();
+
+		Assert.assertSame(definition, ReportEvaluationProfiler.getDefinition(definition));
+		Assert.assertSame(definition, ReportEvaluationProfiler.getDefinition(new Mapped<GenderCohortDefinition>(definition, null)));
+		Assert.assertThat(ReportEvaluationProfiler.getDefinition("not a definition"), nullValue());
+	}
+
+	@Test
+	public void getDefinitionType_shouldClassifyDefinitions() {
+		Assert.assertThat(ReportEvaluationProfiler.getDefinitionType(new ReportDefinition()), is("report"));
+		Assert.assertThat(ReportEvaluationProfiler.getDefinitionType(new GenderCohortDefinition()), is("cohort"));
+		Assert.assertThat(ReportEvaluationProfiler.getDefinitionType(new GenderDataDefinition()), is("personData"));
+	}
+
+	@Test
+	public void getSql_shouldReturnQueryOfSqlDefinitions() {
+		Assert.assertThat(ReportEvaluationProfiler.getSql(new SqlCohortDefinition("select 1")), is("select 1"));
+		Assert.assertThat(ReportEvaluationProfiler.getSql(new GenderCohortDefinition()), nullValue());
+	}
+
+	@Test
+	public void getRowCount_shouldCountCohortMembers() {
+		EvaluatedCohort cohort = new EvaluatedCohort(new Cohort(Arrays.asList(2, 6, 7)), null, null);
+
+		Assert.assertThat(ReportEvaluationProfiler.getRowCount(cohort), is(3));
+		Assert.assertThat(ReportEvaluationProfiler.getRowCount(null), nullValue());
+	}
+
+	@Test
+	public void isCacheHit_shouldOnlyDetectUnchangedCacheContainingResult() {
+		Object result = new Object();
+		Map<String, Object> cache = new HashMap<String, Object>();
+		cache.put("key", result);
+
+		Assert.assertTrue(ReportEvaluationProfiler.isCacheHit(cache, 1, result));
+		Assert.assertFalse(ReportEvaluationProfiler.isCacheHit(cache, 0, result)); // added by this evaluation
+		Assert.assertFalse(ReportEvaluationProfiler.isCacheHit(cache, 1, new Object()));
+		Assert.assertFalse(ReportEvaluationProfiler.isCacheHit(null, 0, result));
+	}
+}
@@ -12,24 +12,49 @@ package org.openmrs.module.kenyaemr.api.impl;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.CareSetting;
+import org.openmrs.Concept;
+import org.openmrs.DrugOrder;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
 import org.openmrs.Location;
 import org.openmrs.LocationAttributeType;
+import org.openmrs.Order;
+import org.openmrs.OrderType;
 import org.openmrs.Patient;
+import org.openmrs.PersonAttribute;
+import org.openmrs.PersonAttributeType;
 import org.openmrs.Visit;
 import org.openmrs.VisitType;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.kenyacore.test.TestUtils;
+import org.openmrs.module.kenyaemr.Dictionary;
 import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
 import org.openmrs.module.kenyaemr.metadata.FacilityMetadata;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
+import org.openmrs.module.kenyaemr.metadata.MchMetadata;
+import org.openmrs.module.kenyaemr.model.AppointmentHistoryEntry;
+import org.openmrs.module.kenyaemr.model.DataQueue;
+import org.openmrs.module.kenyaemr.model.DataQueueErrorMessage;
+import org.openmrs.module.kenyaemr.model.DataQueueSummary;
+import org.openmrs.module.kenyaemr.model.HivTestStatus;
+import org.openmrs.module.kenyaemr.util.HtsConstants;
 import org.openmrs.module.metadatadeploy.MetadataUtils;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 
 /**
  * Tests for {@link KenyaEmrServiceImpl}
@@ -45,6 +70,9 @@ public class KenyaEmrServiceImplTest extends BaseModuleContextSensitiveTest {
 	@Autowired
 	private HivMetadata hivMetadata;
 
+	@Autowired
+	private MchMetadata mchMetadata;
+
 	@Autowired
 	private KenyaEmrService service;
 
@@ -53,6 +81,11 @@ public class KenyaEmrServiceImplTest extends BaseModuleContextSensitiveTest {
 	 */
 	@Before
 	public void setup() throws Exception {
+		// The data queue tables belong to another module. Creating them commits the transaction, so is done first
+		Context.getAdministrationService().executeSQL("create table if not exists medic_error_data (id int primary key, discriminator varchar(50))", false);
+		Context.getAdministrationService().executeSQL("create table if not exists medic_queue_data (id int primary key)", false);
+		Context.getAdministrationService().executeSQL("create table if not exists medic_error_message (id int primary key, message varchar(255), date_created timestamp)", false);
+
 		executeDataSet("dataset/test-concepts.xml");
 
 		commonMetadata.install();
@@ -198,4 +231,269 @@ public class KenyaEmrServiceImplTest extends BaseModuleContextSensitiveTest {
 		Assert.assertEquals(1, visits.size());
 		Assert.assertEquals(visit2, visits.get(0));
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @see org.openmrs.module.kenyaemr.api.impl.KenyaEmrServiceImpl#getPatientsWithVisitsStarted(java.util.Date, java.util.Date)
+	 * @see org.openmrs.module.kenyaemr.api.impl.KenyaEmrServiceImpl#getVisitsByPatient(java.util.Collection, java.util.Date, java.util.Date, boolean)
+	 */
+	@Test
+	public void getPatientsWithVisitsStarted_shouldGetPatientsWithVisitsStartedInPeriod() {
+		Patient patient7 = Context.getPatientService().getPatient(7);
+		Patient patient8 = Context.getPatientService().getPatient(8);
+		VisitType outpatientType = MetadataUtils.existing(VisitType.class, CommonMetadata._VisitType.OUTPATIENT);
+
+		// Patient #7 has a visit on the day, patient #8 has one which started the day before and is ongoing
+		Visit visit7 = TestUtils.saveVisit(patient7, outpatientType, TestUtils.date(2012, 1, 1, 10, 0, 0), TestUtils.date(2012, 1, 1, 11, 0, 0));
+		Visit visit8 = TestUtils.saveVisit(patient8, outpatientType, TestUtils.date(2011, 12, 31, 10, 0, 0), null);
+
+		Date startOfDay = TestUtils.date(2012, 1, 1);
+		Date endOfDay = TestUtils.date(2012, 1, 1, 23, 59, 59);
+
+		Assert.assertThat(service.getPatientsWithVisitsStarted(startOfDay, endOfDay), contains(7));
+
+		Map<Integer, List<Visit>> visits = service.getVisitsByPatient(Arrays.asList(7, 8), startOfDay, endOfDay, false);
+		Assert.assertThat(visits.get(7), contains(visit7));
+		Assert.assertThat(visits.get(8), contains(visit8));
+
+		visits = service.getVisitsByPatient(Arrays.asList(7, 8), startOfDay, endOfDay, true);
+		Assert.assertThat(visits.get(7), contains(visit7));
+		Assert.assertFalse(visits.containsKey(8));
+	}
+
+	/**
+	 * @see org.openmrs.module.kenyaemr.api.impl.KenyaEmrServiceImpl#getPatientsScheduled(java.util.Date, java.util.Date)
+	 */
+	@Test
+	public void getPatientsScheduled_shouldGetPatientsWithReturnVisitDateInPeriod() {
+		Concept returnVisitDate = Dictionary.getConcept(Dictionary.RETURN_VISIT_DATE);
+		TestUtils.saveObs(TestUtils.getPatient(7), returnVisitDate, TestUtils.date(2012, 1, 1), TestUtils.date(2011, 12, 1));
+		TestUtils.saveObs(TestUtils.getPatient(8), returnVisitDate, TestUtils.date(2012, 1, 2), TestUtils.date(2011, 12, 1));
+
+		List<Integer> scheduled = service.getPatientsScheduled(TestUtils.date(2012, 1, 1), TestUtils.date(2012, 1, 1, 23, 59, 59));
+		Assert.assertThat(scheduled, contains(7));
+	}
+
+	/**
+	 * @see org.openmrs.module.kenyaemr.api.impl.KenyaEmrServiceImpl#updatePersonAttributeValues(org.openmrs.PersonAttributeType, java.util.Collection, String)
+	 */
+	@Test
+	public void updatePersonAttributeValues_shouldUpdateAttributesAlreadyLoaded() {
+		PersonAttributeType duplicateType = MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.DUPLICATE_NUPI_FACILITY_WITH_NATIONAL_REGISTRY);
+		Patient patient = TestUtils.getPatient(7);
+		patient.addAttribute(new PersonAttribute(duplicateType, "Facility A"));
+
+		Assert.assertThat(service.updatePersonAttributeValues(duplicateType, Arrays.asList(7), ""), is(1));
+		Assert.assertThat(TestUtils.getPatient(7).getAttribute(duplicateType).getValue(), is(""));
+	}
+
+	/**
+	 * @see org.openmrs.module.kenyaemr.api.impl.KenyaEmrServiceImpl#updatePersonAttributeValues(org.openmrs.PersonAttributeType, java.util.Collection, String)
+	 */
+	@Test
+	public void updatePersonAttributeValues_shouldAddMissingAttributesWithValues() {
+		PersonAttributeType duplicateType = MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.DUPLICATE_NUPI_FACILITY_WITH_NATIONAL_REGISTRY);
+		TestUtils.getPatient(7).addAttribute(new PersonAttribute(duplicateType, "Facility A"));
+
+		Assert.assertThat(service.updatePersonAttributeValues(duplicateType, Arrays.asList(6, 7), "Facility B"), is(2));
+		Assert.assertThat(TestUtils.getPatient(6).getAttribute(duplicateType).getValue(), is("Facility B"));
+		Assert.assertThat(TestUtils.getPatient(7).getAttribute(duplicateType).getValue(), is("Facility B"));
+
+		// Blank values aren't added, as with the patient wrappers
+		Assert.assertThat(service.updatePersonAttributeValues(duplicateType, Arrays.asList(6, 8), ""), is(1));
+		Assert.assertThat(TestUtils.getPatient(6).getAttribute(duplicateType).getValue(), is(""));
+		Assert.assertNull(TestUtils.getPatient(8).getAttribute(duplicateType));
+	}
+
+	/**
+	 * @see org.openmrs.module.kenyaemr.api.impl.KenyaEmrServiceImpl#sortPatientsByName(java.util.Collection)
+	 */
+	@Test
+	public void sortPatientsByName_shouldSortByFamilyNameWithUnnamedPatientsLast() {
+		// #7 is Chebaskwony, #6 is Doe, #8 is Oloo and #999 doesn't exist
+		Assert.assertThat(service.sortPatientsByName(Arrays.asList(999, 8, 6, 7)), contains(7, 6, 8, 999));
+	}
+
+	/**
+	 * @see org.openmrs.module.kenyaemr.api.impl.KenyaEmrServiceImpl#getAppointmentHistory(org.openmrs.Patient, org.openmrs.Form, int)
+	 */
+	@Test
+	public void getAppointmentHistory_shouldGetLatestAppointmentsAndWhetherTheyWereHonoured() {
+		Patient patient = TestUtils.getPatient(7);
+		EncounterType hivConsultation = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_CONSULTATION);
+		Form greenCard = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
+		Concept returnVisitDate = Dictionary.getConcept(Dictionary.RETURN_VISIT_DATE);
+
+		TestUtils.saveEncounter(patient, hivConsultation, greenCard, TestUtils.date(2012, 1, 1),
+				TestUtils.saveObs(patient, returnVisitDate, TestUtils.date(2012, 2, 1), TestUtils.date(2012, 1, 1)));
+		TestUtils.saveEncounter(patient, hivConsultation, greenCard, TestUtils.date(2012, 2, 1, 10, 30, 0),
+				TestUtils.saveObs(patient, returnVisitDate, TestUtils.date(2012, 3, 1), TestUtils.date(2012, 2, 1)));
+		TestUtils.saveEncounter(patient, hivConsultation, greenCard, TestUtils.date(2012, 3, 5),
+				TestUtils.saveObs(patient, returnVisitDate, TestUtils.date(2012, 4, 5), TestUtils.date(2012, 3, 5)));
+
+		List<AppointmentHistoryEntry> history = service.getAppointmentHistory(patient, greenCard, 3);
+
+		Assert.assertThat(history.size(), is(3));
+		Assert.assertThat(history.get(0).getAppointmentDate(), is(TestUtils.date(2012, 4, 5)));
+		Assert.assertThat(history.get(0).isHonoured(), is(false));
+		Assert.assertThat(history.get(0).getAppointmentPeriod(), is(31));
+		Assert.assertThat(history.get(1).isHonoured(), is(false)); // came back on 5th March
+		Assert.assertThat(history.get(2).isHonoured(), is(true)); // came back on 1st Feb
+
+		Assert.assertThat(service.getAppointmentHistory(patient, greenCard, 2).size(), is(2));
+	}
+
+	/**
+	 * @see KenyaEmrService#getDrugOrdersByPatient(java.util.Collection, org.openmrs.CareSetting, boolean)
+	 */
+	@Test
+	public void getDrugOrdersByPatient_shouldGetNonVoidedDrugOrdersByPatient() {
+		Map<Integer, List<DrugOrder>> allOrders = service.getDrugOrdersByPatient(Arrays.asList(2, 7), null, false);
+		Map<Integer, List<DrugOrder>> activeOrders = service.getDrugOrdersByPatient(Arrays.asList(2, 7), null, true);
+
+		for (Integer patientId : Arrays.asList(2, 7)) {
+			Set<Integer> expectedAll = new HashSet<Integer>();
+			Set<Integer> expectedActive = new HashSet<Integer>();
+			for (Order order : Context.getOrderService().getAllOrdersByPatient(TestUtils.getPatient(patientId))) {
+				if (order instanceof DrugOrder && !order.getVoided()) {
+					expectedAll.add(order.getOrderId());
+					if (order.isActive()) {
+						expectedActive.add(order.getOrderId());
+					}
+				}
+			}
+
+			Assert.assertThat(orderIds(allOrders.get(patientId)), is(expectedAll));
+			Assert.assertThat(orderIds(activeOrders.get(patientId)), is(expectedActive));
+		}
+	}
+
+	/**
+	 * @see KenyaEmrService#getDrugOrdersByPatient(java.util.Collection, org.openmrs.CareSetting, boolean)
+	 */
+	@Test
+	public void getDrugOrdersByPatient_shouldExcludeDiscontinuationOrdersForCareSetting() {
+		CareSetting outpatient = Context.getOrderService().getCareSettingByName("OUTPATIENT");
+		OrderType drugOrderType = Context.getOrderService().getOrderTypeByUuid(OrderType.DRUG_ORDER_TYPE_UUID);
+		Map<Integer, List<DrugOrder>> orders = service.getDrugOrdersByPatient(Arrays.asList(2, 7), outpatient, false);
+
+		for (Integer patientId : Arrays.asList(2, 7)) {
+			Set<Integer> expected = new HashSet<Integer>();
+			for (Order order : Context.getOrderService().getOrders(TestUtils.getPatient(patientId), outpatient, drugOrderType, false)) {
+				expected.add(order.getOrderId());
+			}
+
+			Assert.assertThat(orderIds(orders.get(patientId)), is(expected));
+			if (orders.containsKey(patientId)) {
+				for (DrugOrder order : orders.get(patientId)) {
+					Assert.assertThat(order.getAction(), not(Order.Action.DISCONTINUE));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @see org.openmrs.module.kenyaemr.api.impl.KenyaEmrServiceImpl#getHivTestStatuses(java.util.Collection)
+	 */
+	@Test
+	public void getHivTestStatuses_shouldGetLatestTestsAndLinkage() {
+		mchMetadata.install();
+
+		Patient patient7 = TestUtils.getPatient(7);
+		Patient patient8 = TestUtils.getPatient(8);
+		Concept finalTest = Context.getConceptService().getConcept(HtsConstants.HTS_FINAL_TEST_CONCEPT_ID);
+		Concept negative = Context.getConceptService().getConcept(HtsConstants.HTS_NEGATIVE_RESULT_CONCEPT_ID);
+		Concept positive = Context.getConceptService().getConcept(HtsConstants.HTS_POSITIVE_RESULT_CONCEPT_ID);
+		Concept discordantCouple = Dictionary.getConcept(Dictionary.DISCORDANT_COUPLE);
+		Concept yes = Dictionary.getConcept(Dictionary.YES);
+
+		// Patient #7 tested negative then positive in HTS, and has been linked
+		TestUtils.saveEncounter(patient7, HtsConstants.htsEncType, HtsConstants.htsInitialForm, TestUtils.date(2012, 1, 1),
+				TestUtils.saveObs(patient7, finalTest, negative, TestUtils.date(2012, 1, 1)));
+		TestUtils.saveEncounter(patient7, HtsConstants.htsEncType, HtsConstants.htsRetestForm, TestUtils.date(2012, 2, 1),
+				TestUtils.saveObs(patient7, finalTest, positive, TestUtils.date(2012, 2, 1)));
+		TestUtils.saveEncounter(patient7, HtsConstants.htsEncType, HtsConstants.htsLinkageForm, TestUtils.date(2012, 2, 2));
+
+		// Patient #8 was only tested at an ANC visit
+		EncounterType mchConsultation = MetadataUtils.existing(EncounterType.class, MchMetadata._EncounterType.MCHMS_CONSULTATION);
+		Form antenatalVisit = MetadataUtils.existing(Form.class, MchMetadata._Form.MCHMS_ANTENATAL_VISIT);
+		TestUtils.saveEncounter(patient8, mchConsultation, antenatalVisit, TestUtils.date(2012, 3, 1),
+				TestUtils.saveObs(patient8, finalTest, negative, TestUtils.date(2012, 3, 1)),
+				TestUtils.saveObs(patient8, discordantCouple, yes, TestUtils.date(2012, 3, 1)));
+
+		Map<Integer, HivTestStatus> statuses = service.getHivTestStatuses(Arrays.asList(6, 7, 8));
+
+		Assert.assertThat(statuses.containsKey(6), is(false));
+
+		HivTestStatus.Test test7 = statuses.get(7).getLastTest();
+		Assert.assertThat(test7.getSetting(), is(HivTestStatus.Setting.HTS));
+		Assert.assertThat(test7.getDate(), is(TestUtils.date(2012, 2, 1)));
+		Assert.assertThat(test7.isPositive(), is(true));
+		Assert.assertThat(statuses.get(7).getLastMchTest() == null, is(true));
+		Assert.assertThat(statuses.get(7).getLinkageDate(), is(TestUtils.date(2012, 2, 2)));
+
+		HivTestStatus.Test test8 = statuses.get(8).getLastTest();
+		Assert.assertThat(statuses.get(8).getLastHtsTest() == null, is(true));
+		Assert.assertThat(test8.getSetting(), is(HivTestStatus.Setting.ANC));
+		Assert.assertThat(test8.isNegative(), is(true));
+		Assert.assertThat(test8.isDiscordantCouple(), is(true));
+		Assert.assertThat(statuses.get(8).hasLinkage(), is(false));
+	}
+
+	/**
+	 * @see org.openmrs.module.kenyaemr.api.impl.KenyaEmrServiceImpl#getDataQueueSummary(org.openmrs.module.kenyaemr.model.DataQueue)
+	 */
+	@Test
+	public void getDataQueueSummary_shouldCountErrorsAndQueuedRecords() {
+		DataQueueSummary empty = service.getDataQueueSummary(DataQueue.MEDIC);
+		Assert.assertThat(empty.getTotalErrors(), is(0L));
+		Assert.assertThat(empty.getRegistrationErrors(), is(0L));
+		Assert.assertThat(empty.getQueueData(), is(0L));
+
+		Context.getAdministrationService().executeSQL("insert into medic_error_data (id, discriminator) values " +
+				"(1, 'json-registration'), (2, 'json-encounter'), (3, 'json-registration')", false);
+		Context.getAdministrationService().executeSQL("insert into medic_queue_data (id) values (1), (2), (3), (4)", false);
+
+		DataQueueSummary summary = service.getDataQueueSummary(DataQueue.MEDIC);
+		Assert.assertThat(summary.getTotalErrors(), is(3L));
+		Assert.assertThat(summary.getRegistrationErrors(), is(2L));
+		Assert.assertThat(summary.getQueueData(), is(4L));
+	}
+
+	/**
+	 * @see org.openmrs.module.kenyaemr.api.impl.KenyaEmrServiceImpl#getDataQueueErrorMessages(org.openmrs.module.kenyaemr.model.DataQueue, Integer, int)
+	 */
+	@Test
+	public void getDataQueueErrorMessages_shouldGetPagesOfMessagesNewestFirst() {
+		Context.getAdministrationService().executeSQL("insert into medic_error_message (id, message, date_created) values " +
+				"(1, 'Message 1', '2024-01-01 10:00:00'), (2, 'Message 2', '2024-01-02 10:00:00'), (3, 'Message 3', '2024-01-03 10:00:00'), " +
+				"(5, 'Message 5', '2024-01-05 10:00:00'), (6, null, '2024-01-06 10:00:00')", false);
+
+		List<DataQueueErrorMessage> first = service.getDataQueueErrorMessages(DataQueue.MEDIC, null, 2);
+		Assert.assertThat(messageIds(first), contains(6, 5));
+		Assert.assertNull(first.get(0).getMessage());
+		Assert.assertThat(first.get(1).getMessage(), is("Message 5"));
+		Assert.assertThat(first.get(1).getDateCreated(), is(TestUtils.date(2024, 1, 5, 10, 0, 0)));
+
+		Assert.assertThat(messageIds(service.getDataQueueErrorMessages(DataQueue.MEDIC, 5, 2)), contains(3, 2));
+		Assert.assertThat(messageIds(service.getDataQueueErrorMessages(DataQueue.MEDIC, 2, 2)), contains(1));
+		Assert.assertThat(service.getDataQueueErrorMessages(DataQueue.MEDIC, 1, 2).isEmpty(), is(true));
+	}
+
+	private static List<Integer> messageIds(List<DataQueueErrorMessage> messages) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (DataQueueErrorMessage message : messages) {
+			ids.add(message.getId());
+		}
+		return ids;
+	}
+
+	private static Set<Integer> orderIds(List<DrugOrder> orders) {
+		Set<Integer> ids = new HashSet<Integer>();
+		if (orders != null) {
+			for (DrugOrder order : orders) {
+				ids.add(order.getOrderId());
+			}
+		}
+		return ids;
+	}
+}
@@ -14,7 +14,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.Concept;
 import org.openmrs.EncounterType;
+import org.openmrs.Form;
 import org.openmrs.Obs;
+import org.openmrs.Patient;
 import org.openmrs.Program;
 import org.openmrs.api.context.Context;
 import org.openmrs.calculation.patient.PatientCalculationService;
@@ -29,6 +31,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 
 import static org.hamcrest.Matchers.notNullValue;
@@ -106,4 +109,102 @@ public class LostToFollowUpCalculationTest extends BaseModuleContextSensitiveTes
 		Assert.assertFalse((Boolean) resultMap.get(8).getValue()); // patient in HIV program and is a transfer out
 		Assert.assertFalse((Boolean) resultMap.get(999).getValue()); // patient not in HIV Program
 	}
+
+	/**
+	 * @see LostToFollowUpCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 * @verifies calculate true for patient with a HIV Greencard encounter and 31 days past since last TCA
+	 */
+	@Test
+	public void evaluate_shouldCalculateTrueForPatientsPastTheirLastGreenCardTca() throws Exception {
+		Program hivProgram = MetadataUtils.existing(Program.class, HivMetadata._Program.HIV);
+
+		// Enroll patients #6, #7, #8 in the HIV Program
+		TestUtils.enrollInProgram(TestUtils.getPatient(6), hivProgram, TestUtils.date(2011, 1, 1));
+		TestUtils.enrollInProgram(TestUtils.getPatient(7), hivProgram, TestUtils.date(2011, 1, 1));
+		TestUtils.enrollInProgram(TestUtils.getPatient(8), hivProgram, TestUtils.date(2011, 1, 1));
+
+		// Patient #6 last had a green card 200 days ago, with a TCA 170 days ago
+		saveGreenCard(TestUtils.getPatient(6), daysAgo(200), daysAgo(170));
+
+		// Patient #7 missed an old TCA but has since had a green card with a TCA in the future
+		saveGreenCard(TestUtils.getPatient(7), daysAgo(200), daysAgo(170));
+		saveGreenCard(TestUtils.getPatient(7), daysAgo(10), daysAgo(-20));
+
+		// Patient #8 has never had a green card
+
+		List<Integer> ptIds = Arrays.asList(6, 7, 8, 999);
+
+		CalculationResultMap resultMap = new LostToFollowUpCalculation().evaluate(ptIds, null, Context.getService(PatientCalculationService.class).createCalculationContext());
+		Assert.assertTrue((Boolean) resultMap.get(6).getValue());
+		Assert.assertFalse((Boolean) resultMap.get(7).getValue()); // only the last TCA counts
+		Assert.assertFalse((Boolean) resultMap.get(8).getValue());
+		Assert.assertFalse((Boolean) resultMap.get(999).getValue()); // patient doesn't exist
+	}
+
+	/**
+	 * @see LostToFollowUpCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 * @verifies calculate true for discontinued Hiv clients with reason Lost to followup
+	 */
+	@Test
+	public void evaluate_shouldCalculateTrueForPatientsDiscontinuedAsLostToFollowUp() throws Exception {
+		Concept lostToFollowUp = Dictionary.getConcept(Dictionary.LOST_TO_FOLLOWUP);
+		Concept transferredOut = Dictionary.getConcept(Dictionary.TRANSFERRED_OUT);
+
+		// Patient #6 was discontinued as lost to followup
+		saveHivEnrollment(TestUtils.getPatient(6), TestUtils.date(2011, 1, 1));
+		saveGreenCard(TestUtils.getPatient(6), TestUtils.date(2011, 2, 1), TestUtils.date(2011, 3, 1));
+		saveHivDiscontinuation(TestUtils.getPatient(6), TestUtils.date(2011, 6, 1), lostToFollowUp);
+
+		// Patient #7 was discontinued as a transfer out
+		saveHivEnrollment(TestUtils.getPatient(7), TestUtils.date(2011, 1, 1));
+		saveGreenCard(TestUtils.getPatient(7), TestUtils.date(2011, 2, 1), TestUtils.date(2011, 3, 1));
+		saveHivDiscontinuation(TestUtils.getPatient(7), TestUtils.date(2011, 6, 1), transferredOut);
+
+		// Patient #8 was discontinued as lost to followup but never had a followup visit
+		saveHivEnrollment(TestUtils.getPatient(8), TestUtils.date(2011, 1, 1));
+		saveHivDiscontinuation(TestUtils.getPatient(8), TestUtils.date(2011, 6, 1), lostToFollowUp);
+
+		// Patient #2 was discontinued as lost to followup but has since re-enrolled
+		saveHivEnrollment(TestUtils.getPatient(2), TestUtils.date(2011, 1, 1));
+		saveGreenCard(TestUtils.getPatient(2), TestUtils.date(2011, 2, 1), TestUtils.date(2011, 3, 1));
+		saveHivDiscontinuation(TestUtils.getPatient(2), TestUtils.date(2011, 6, 1), lostToFollowUp);
+		saveHivEnrollment(TestUtils.getPatient(2), TestUtils.date(2011, 7, 1));
+
+		List<Integer> ptIds = Arrays.asList(2, 6, 7, 8);
+
+		CalculationResultMap resultMap = new LostToFollowUpCalculation().evaluate(ptIds, null, Context.getService(PatientCalculationService.class).createCalculationContext());
+		Assert.assertFalse((Boolean) resultMap.get(2).getValue());
+		Assert.assertTrue((Boolean) resultMap.get(6).getValue());
+		Assert.assertFalse((Boolean) resultMap.get(7).getValue());
+		Assert.assertFalse((Boolean) resultMap.get(8).getValue());
+	}
+
+	private void saveGreenCard(Patient patient, Date date, Date tca) {
+		EncounterType hivConsultation = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_CONSULTATION);
+		Form greenCard = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
+		Concept returnVisitDate = Dictionary.getConcept(Dictionary.RETURN_VISIT_DATE);
+
+		TestUtils.saveEncounter(patient, hivConsultation, greenCard, date, TestUtils.saveObs(patient, returnVisitDate, tca, date));
+	}
+
+	private void saveHivEnrollment(Patient patient, Date date) {
+		EncounterType hivEnrollment = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_ENROLLMENT);
+		Form hivEnrollmentForm = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_ENROLLMENT);
+
+		TestUtils.saveEncounter(patient, hivEnrollment, hivEnrollmentForm, date);
+	}
+
+	private void saveHivDiscontinuation(Patient patient, Date date, Concept reason) {
+		EncounterType hivDiscontinuation = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_DISCONTINUATION);
+		Form hivDiscontinuationForm = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_DISCONTINUATION);
+		Concept reasonForDiscontinuation = Dictionary.getConcept(Dictionary.REASON_FOR_PROGRAM_DISCONTINUATION);
+
+		TestUtils.saveEncounter(patient, hivDiscontinuation, hivDiscontinuationForm, date, TestUtils.saveObs(patient, reasonForDiscontinuation, reason, date));
+	}
+
+	private static Date daysAgo(int days) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.add(Calendar.DATE, -days);
+		return calendar.getTime();
+	}
 }
@@ -0,0 +1,337 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.calculation.library.surveillance;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Encounter;
+import org.openmrs.Form;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.VisitType;
+import org.openmrs.api.context.Context;
+import org.openmrs.calculation.patient.PatientCalculationService;
+import org.openmrs.calculation.result.CalculationResultMap;
+import org.openmrs.module.kenyacore.calculation.AbstractPatientCalculation;
+import org.openmrs.module.kenyacore.test.TestUtils;
+import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
+import org.openmrs.module.kenyaemr.metadata.HivMetadata;
+import org.openmrs.module.metadatadeploy.MetadataUtils;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for the surveillance flag calculations. Each checks the case definition of a flag as it was when the
+ * calculations loaded every patient's encounters one at a time, so these cover the move to
+ * {@link SurveillanceScreeningData}. Patient #8 never has an active visit, so is never given a result.
+ */
+public class SurveillanceFlagCalculationsTest extends BaseModuleContextSensitiveTest {
+
+	private static final Integer COMPLAINTS = 5219;
+	private static final Integer EXAMINATION = 162737;
+	private static final Integer PATIENT_OUTCOME = 160433;
+	private static final Integer ADMITTED = 1654;
+
+	private static final Integer FEVER = 140238;
+	private static final Integer JOINT_PAIN = 116558;
+	private static final Integer COUGH = 143264;
+	private static final Integer VOMITING = 122983;
+	private static final Integer DIARRHEA = 142412;
+	private static final Integer BLOOD_IN_STOOL = 117671;
+	private static final Integer BLEEDING = 162628;
+	private static final Integer HEADACHE = 139084;
+	private static final Integer CHILLS = 871;
+	private static final Integer RASH = 512;
+	private static final Integer CORYZA = 106;
+	private static final Integer CONJUNCTIVITIS = 127777;
+	private static final Integer LIMBS_WEAKNESS = 157498;
+	private static final Integer JAUNDICE = 136443;
+	private static final Integer DIZZINESS = 141830;
+	private static final Integer MALAISE = 135367;
+
+	@Autowired
+	private CommonMetadata commonMetadata;
+
+	@Autowired
+	private HivMetadata hivMetadata;
+
+	private Date now;
+
+	private Form triage;
+
+	private Form clinicalEncounter;
+
+	private Form greenCard;
+
+	/**
+	 * Setup each test
+	 */
+	@Before
+	public void setup() throws Exception {
+		// Only the visits saved by each test should be active
+		Context.getAdministrationService().executeSQL("update visit set date_stopped = date_started where date_stopped is null", false);
+
+		executeDataSet("dataset/test-concepts.xml");
+
+		commonMetadata.install();
+		hivMetadata.install();
+
+		now = new Date();
+		triage = MetadataUtils.existing(Form.class, CommonMetadata._Form.TRIAGE);
+		clinicalEncounter = MetadataUtils.existing(Form.class, CommonMetadata._Form.CLINICAL_ENCOUNTER);
+		greenCard = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
+	}
+
+	/**
+	 * @see EligibleForChikungunyaCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void chikungunya_shouldRequireFeverAndJointPainForMoreThanTwoDaysWithATemperatureAbove38_5() throws Exception {
+		Patient eligible = screen(2, clinicalEncounter, 38.6, 3, complaints(FEVER, JOINT_PAIN));
+		screen(6, greenCard, 38.6, 2, complaints(FEVER, JOINT_PAIN));
+		screen(7, greenCard, 38.5, 3, complaints(FEVER, JOINT_PAIN));
+		screen(8, greenCard, 38.6, 3, complaints(FEVER, JOINT_PAIN));
+
+		assertEligible(new EligibleForChikungunyaCalculation(), eligible);
+	}
+
+	/**
+	 * @see EligibleForCholeraCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void cholera_shouldRequireVomitingAndDiarrheaInPatientsOlderThanTwo() throws Exception {
+		Patient eligible = screen(2, greenCard, null, null, complaints(VOMITING, DIARRHEA));
+		screen(6, clinicalEncounter, null, null, complaints(VOMITING, DIARRHEA));
+		screen(7, clinicalEncounter, null, null, complaints(DIARRHEA));
+		TestUtils.getPatient(6).setBirthdate(DateUtils.addYears(now, -1));
+		Context.flushSession();
+
+		assertEligible(new EligibleForCholeraCalculation(), eligible);
+	}
+
+	/**
+	 * @see EligibleForDysenteryCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void dysentery_shouldRequireBloodInStoolAndDiarrheaOnAGreenCardOrClinicalEncounter() throws Exception {
+		Patient eligible = screen(2, clinicalEncounter, null, null, complaints(BLOOD_IN_STOOL, DIARRHEA));
+		screen(6, triage, null, null, complaints(BLOOD_IN_STOOL, DIARRHEA));
+		screen(7, greenCard, null, null, complaints(BLOOD_IN_STOOL));
+
+		assertEligible(new EligibleForDysenteryCalculation(), eligible);
+	}
+
+	/**
+	 * @see EligibleForHaemorrhagicCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void haemorrhagic_shouldOnlyCheckTheLastEncounterOfEachForm() throws Exception {
+		Patient eligible = screen(2, greenCard, null, null, complaints(FEVER, BLEEDING));
+
+		// Patient #7's last clinical encounter no longer has bleeding tendencies
+		screen(7, clinicalEncounter, null, null, complaints(FEVER, BLEEDING));
+		saveScreening(TestUtils.getPatient(7), clinicalEncounter, now, complaints(FEVER).toArray(new Obs[0]));
+
+		// Patient #6 was screened yesterday
+		screen(6, greenCard, null, null, complaints(FEVER, BLEEDING));
+		createdYesterday(6);
+
+		assertEligible(new EligibleForHaemorrhagicCalculation(), eligible);
+	}
+
+	/**
+	 * @see EligibleForIliScreeningCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void ili_shouldRequireFeverAndCoughForUnderTenDaysInPatientsNotAdmitted() throws Exception {
+		Patient eligible = screen(2, triage, 38.0, 9, complaints(FEVER, COUGH));
+
+		List<Obs> admitted = complaints(FEVER, COUGH);
+		admitted.add(answer(PATIENT_OUTCOME, ADMITTED));
+		screen(6, clinicalEncounter, 38.0, 5, admitted);
+
+		screen(7, greenCard, 38.0, 10, complaints(FEVER, COUGH));
+
+		assertEligible(new EligibleForIliScreeningCalculation(), eligible);
+	}
+
+	/**
+	 * @see EligibleForMalariaCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void malaria_shouldRequireHeadacheChillsAndFeverForMoreThanADayWithATemperatureOfAtLeast37_5() throws Exception {
+		Patient eligible = screen(2, clinicalEncounter, 37.5, 2, complaints(HEADACHE, CHILLS, FEVER));
+		screen(6, greenCard, null, 2, complaints(HEADACHE, CHILLS, FEVER));
+		screen(7, greenCard, 37.4, 2, complaints(HEADACHE, CHILLS, FEVER));
+
+		assertEligible(new EligibleForMalariaCalculation(), eligible);
+	}
+
+	/**
+	 * @see EligibleForMeaslesCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void measles_shouldRequireAllFiveSymptomsForMoreThanTwoDays() throws Exception {
+		Patient eligible = screen(2, greenCard, null, 3, complaints(FEVER, RASH, CORYZA, COUGH, CONJUNCTIVITIS));
+		screen(6, clinicalEncounter, null, 2, complaints(FEVER, RASH, CORYZA, COUGH, CONJUNCTIVITIS));
+		screen(7, clinicalEncounter, null, 3, complaints(FEVER, RASH, CORYZA, COUGH));
+
+		assertEligible(new EligibleForMeaslesCalculation(), eligible);
+	}
+
+	/**
+	 * @see EligibleForPoliomyelitisCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void poliomyelitis_shouldRequireWeaknessOfLimbsAndOnlyGiveResultsForChildrenUnder15() throws Exception {
+		Patient eligible = screen(6, clinicalEncounter, null, null, complaints(LIMBS_WEAKNESS));
+		screen(7, greenCard, null, null, complaints(FEVER));
+		screen(2, greenCard, null, null, complaints(LIMBS_WEAKNESS));
+		TestUtils.getPatient(6).setBirthdate(DateUtils.addYears(now, -10));
+		TestUtils.getPatient(7).setBirthdate(DateUtils.addYears(now, -5));
+		Context.flushSession();
+
+		CalculationResultMap results = evaluate(new EligibleForPoliomyelitisCalculation());
+		Assert.assertTrue((Boolean) results.get(eligible.getPatientId()).getValue());
+		Assert.assertFalse((Boolean) results.get(7).getValue());
+		Assert.assertThat(results.get(2), nullValue()); // not a child
+		Assert.assertThat(results.get(8), nullValue());
+	}
+
+	/**
+	 * @see EligibleForRiftValleyFeverCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void riftValleyFever_shouldRequireJaundiceOnExaminationWithDizzinessFeverAndMalaise() throws Exception {
+		List<Obs> examined = complaints(DIZZINESS, FEVER, MALAISE);
+		examined.add(answer(EXAMINATION, JAUNDICE));
+		Patient eligible = screen(2, greenCard, 37.6, 3, examined);
+
+		// Patient #7's jaundice was recorded as a complaint
+		screen(7, clinicalEncounter, 37.6, 3, complaints(DIZZINESS, FEVER, MALAISE, JAUNDICE));
+
+		List<Obs> cooler = complaints(DIZZINESS, FEVER, MALAISE);
+		cooler.add(answer(EXAMINATION, JAUNDICE));
+		screen(6, clinicalEncounter, 37.5, 3, cooler);
+
+		assertEligible(new EligibleForRiftValleyFeverCalculation(), eligible);
+	}
+
+	/**
+	 * @see EligibleForSariScreeningCalculation#evaluate(java.util.Collection, java.util.Map, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void sari_shouldRequireFeverAndCoughForUnderTenDaysInAdmittedPatients() throws Exception {
+		List<Obs> admitted = complaints(FEVER, COUGH);
+		admitted.add(answer(PATIENT_OUTCOME, ADMITTED));
+		Patient eligible = screen(2, clinicalEncounter, 38.0, 5, admitted);
+
+		screen(7, clinicalEncounter, 38.0, 5, complaints(FEVER, COUGH));
+
+		List<Obs> cooler = complaints(FEVER, COUGH);
+		cooler.add(answer(PATIENT_OUTCOME, ADMITTED));
+		screen(6, clinicalEncounter, 37.9, 5, cooler);
+
+		assertEligible(new EligibleForSariScreeningCalculation(), eligible);
+	}
+
+	/**
+	 * Evaluates a flag for patients #2, #6, #7 and #8 with a single calculation context
+	 */
+	private CalculationResultMap evaluate(AbstractPatientCalculation calculation) {
+		return calculation.evaluate(Arrays.asList(2, 6, 7, 8), null, Context.getService(PatientCalculationService.class).createCalculationContext());
+	}
+
+	/**
+	 * Asserts that only the given patient is eligible, and that patient #8, who has no active visit, has no result
+	 */
+	private void assertEligible(AbstractPatientCalculation calculation, Patient eligible) {
+		CalculationResultMap results = evaluate(calculation);
+
+		for (Integer ptId : Arrays.asList(2, 6, 7)) {
+			Assert.assertEquals("Patient #" + ptId, ptId.equals(eligible.getPatientId()), results.get(ptId).getValue());
+		}
+		Assert.assertThat(results.get(8), nullValue());
+	}
+
+	/**
+	 * Gives a patient an active visit and saves a screening encounter with the given temperature and duration of
+	 * symptoms, either of which may be null
+	 */
+	private Patient screen(Integer patientId, Form form, Double temperature, Integer duration, List<Obs> obs) {
+		Patient patient = TestUtils.getPatient(patientId);
+
+		if (Context.getVisitService().getActiveVisitsByPatient(patient).isEmpty() && patientId != 8) {
+			VisitType outpatient = MetadataUtils.existing(VisitType.class, CommonMetadata._VisitType.OUTPATIENT);
+			TestUtils.saveVisit(patient, outpatient, DateUtils.addHours(now, -4), null);
+		}
+		if (temperature != null) {
+			TestUtils.saveObs(patient, Context.getConceptService().getConcept(SurveillanceScreeningData.TEMPERATURE), temperature, DateUtils.addHours(now, -2));
+		}
+
+		List<Obs> screening = new ArrayList<Obs>(obs);
+		if (duration != null) {
+			Obs durationObs = new Obs();
+			durationObs.setConcept(Context.getConceptService().getConcept(SurveillanceScreeningData.DURATION));
+			durationObs.setValueNumeric(duration.doubleValue());
+			durationObs.setObsDatetime(now);
+			screening.add(durationObs);
+		}
+
+		saveScreening(patient, form, DateUtils.addHours(now, -1), screening.toArray(new Obs[screening.size()]));
+		return patient;
+	}
+
+	/**
+	 * Saves a screening encounter with obs which haven't been saved yet
+	 */
+	private Encounter saveScreening(Patient patient, Form form, Date date, Obs... obs) {
+		for (Obs o : obs) {
+			o.setPerson(patient);
+		}
+		return TestUtils.saveEncounter(patient, form.getEncounterType(), form, date, obs);
+	}
+
+	/**
+	 * Moves the creation of a patient's screening obs to yesterday
+	 */
+	private void createdYesterday(Integer patientId) {
+		Context.flushSession();
+		String yesterday = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(DateUtils.addDays(now, -1));
+		Context.getAdministrationService().executeSQL("update obs set date_created = '" + yesterday + "' where person_id = " + patientId, false);
+		Context.clearSession();
+	}
+
+	private List<Obs> complaints(Integer... answers) {
+		List<Obs> obs = new ArrayList<Obs>();
+		for (Integer answer : answers) {
+			obs.add(answer(COMPLAINTS, answer));
+		}
+		return obs;
+	}
+
+	private Obs answer(Integer question, Integer answer) {
+		Obs obs = new Obs();
+		obs.setConcept(Context.getConceptService().getConcept(question));
+		obs.setValueCoded(Context.getConceptService().getConcept(answer));
+		obs.setObsDatetime(now);
+		return obs;
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.calculation.library.surveillance;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Encounter;
+import org.openmrs.Form;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.VisitType;
+import org.openmrs.api.context.Context;
+import org.openmrs.calculation.patient.PatientCalculationContext;
+import org.openmrs.calculation.patient.PatientCalculationService;
+import org.openmrs.module.kenyacore.test.TestUtils;
+import org.openmrs.module.kenyaemr.calculation.library.surveillance.SurveillanceScreeningData.ScreeningEncounter;
+import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
+import org.openmrs.module.kenyaemr.metadata.HivMetadata;
+import org.openmrs.module.metadatadeploy.MetadataUtils;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for {@link SurveillanceScreeningData}
+ */
+public class SurveillanceScreeningDataTest extends BaseModuleContextSensitiveTest {
+
+	private static final Integer SCREENING_QUESTION = 5219;
+
+	private static final Integer FEVER = 140238;
+
+	private static final Integer COUGH = 143264;
+
+	@Autowired
+	private CommonMetadata commonMetadata;
+
+	@Autowired
+	private HivMetadata hivMetadata;
+
+	private Date now;
+
+	/**
+	 * Setup each test
+	 */
+	@Before
+	public void setup() throws Exception {
+		// Only the visits saved by each test should be active
+		Context.getAdministrationService().executeSQL("update visit set date_stopped = date_started where date_stopped is null", false);
+
+		executeDataSet("dataset/test-concepts.xml");
+
+		commonMetadata.install();
+		hivMetadata.install();
+
+		now = new Date();
+	}
+
+	/**
+	 * @see SurveillanceScreeningData#get(java.util.Collection, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void get_shouldFetchTheLastScreeningEncountersOfPatientsWithAnActiveVisit() throws Exception {
+		Patient patient = TestUtils.getPatient(2);
+		Form clinicalEncounter = MetadataUtils.existing(Form.class, CommonMetadata._Form.CLINICAL_ENCOUNTER);
+		Form triage = MetadataUtils.existing(Form.class, CommonMetadata._Form.TRIAGE);
+		Form greenCard = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
+
+		saveActiveVisit(patient);
+		TestUtils.saveObs(patient, Context.getConceptService().getConcept(SurveillanceScreeningData.TEMPERATURE), 38.5, DateUtils.addHours(now, -2));
+
+		// Only the last clinical encounter counts, and its duration isn't taken from the other encounters
+		saveScreening(patient, clinicalEncounter, DateUtils.addHours(now, -3), duration(patient, 4), complaint(patient, FEVER), complaint(patient, COUGH));
+		saveScreening(patient, clinicalEncounter, DateUtils.addHours(now, -1), complaint(patient, FEVER));
+		saveScreening(patient, triage, DateUtils.addHours(now, -2), duration(patient, 3), complaint(patient, COUGH));
+
+		// Patient #7 has a screening but no active visit
+		saveScreening(TestUtils.getPatient(7), greenCard, DateUtils.addHours(now, -1), complaint(TestUtils.getPatient(7), FEVER));
+
+		SurveillanceScreeningData data = SurveillanceScreeningData.get(Arrays.asList(2, 7), calculationContext());
+
+		Assert.assertTrue(data.hasActiveVisit(2));
+		Assert.assertThat(data.getLastTemperature(2), is(38.5));
+
+		ScreeningEncounter lastClinical = data.getLastClinicalEncounter(2);
+		Assert.assertTrue(lastClinical.hasAnswers(SCREENING_QUESTION, FEVER));
+		Assert.assertFalse(lastClinical.hasAnswers(SCREENING_QUESTION, FEVER, COUGH));
+		Assert.assertThat(lastClinical.getDuration(), is(0.0));
+		Assert.assertTrue(lastClinical.isCreatedToday());
+
+		ScreeningEncounter lastTriage = data.getLastTriageEncounter(2);
+		Assert.assertTrue(lastTriage.hasAnswers(SCREENING_QUESTION, COUGH));
+		Assert.assertThat(lastTriage.getDuration(), is(3.0));
+		Assert.assertThat(data.getLastGreenCardEncounter(2), nullValue());
+
+		Assert.assertFalse(data.hasActiveVisit(7));
+		Assert.assertThat(data.getLastGreenCardEncounter(7), nullValue());
+	}
+
+	/**
+	 * @see SurveillanceScreeningData.ScreeningEncounter#isCreatedToday()
+	 */
+	@Test
+	public void isCreatedToday_shouldBeFalseForScreeningsRecordedOnAnEarlierDay() throws Exception {
+		Patient patient = TestUtils.getPatient(2);
+		Form greenCard = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
+
+		saveActiveVisit(patient);
+		Encounter encounter = saveScreening(patient, greenCard, DateUtils.addHours(now, -1), complaint(patient, FEVER));
+
+		Context.flushSession();
+		String yesterday = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(DateUtils.addDays(now, -1));
+		Context.getAdministrationService().executeSQL("update obs set date_created = '" + yesterday + "' where encounter_id = " + encounter.getEncounterId(), false);
+		Context.clearSession();
+
+		SurveillanceScreeningData data = SurveillanceScreeningData.get(Arrays.asList(2), calculationContext());
+
+		Assert.assertTrue(data.getLastGreenCardEncounter(2).hasAnswers(SCREENING_QUESTION, FEVER));
+		Assert.assertFalse(data.getLastGreenCardEncounter(2).isCreatedToday());
+	}
+
+	/**
+	 * @see SurveillanceScreeningData#get(java.util.Collection, org.openmrs.calculation.patient.PatientCalculationContext)
+	 */
+	@Test
+	public void get_shouldReuseTheDataCachedInTheCalculationContext() throws Exception {
+		PatientCalculationContext context = calculationContext();
+
+		SurveillanceScreeningData data = SurveillanceScreeningData.get(Arrays.asList(2, 6, 7), context);
+
+		Assert.assertSame(data, SurveillanceScreeningData.get(Arrays.asList(2, 6, 7), context));
+		Assert.assertSame(data, SurveillanceScreeningData.get(Arrays.asList(6), context));
+		Assert.assertNotSame(data, SurveillanceScreeningData.get(Arrays.asList(2, 8), context));
+		Assert.assertNotSame(data, SurveillanceScreeningData.get(Arrays.asList(2), calculationContext()));
+	}
+
+	private PatientCalculationContext calculationContext() {
+		return Context.getService(PatientCalculationService.class).createCalculationContext();
+	}
+
+	private void saveActiveVisit(Patient patient) {
+		VisitType outpatient = MetadataUtils.existing(VisitType.class, CommonMetadata._VisitType.OUTPATIENT);
+		TestUtils.saveVisit(patient, outpatient, DateUtils.addHours(now, -4), null);
+	}
+
+	private Encounter saveScreening(Patient patient, Form form, Date date, Obs... obs) {
+		return TestUtils.saveEncounter(patient, form.getEncounterType(), form, date, obs);
+	}
+
+	private Obs complaint(Patient patient, Integer answer) {
+		return TestUtils.saveObs(patient, Context.getConceptService().getConcept(SCREENING_QUESTION), Context.getConceptService().getConcept(answer), now);
+	}
+
+	private Obs duration(Patient patient, int days) {
+		return TestUtils.saveObs(patient, Context.getConceptService().getConcept(SurveillanceScreeningData.DURATION), days, now);
+	}
+}
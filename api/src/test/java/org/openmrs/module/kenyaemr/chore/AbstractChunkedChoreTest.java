@@ -0,0 +1,135 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.chore;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for {@link AbstractChunkedChore}. Chunks and checkpoints are committed in their own transactions so aren't
+ * rolled back after each test, which is why each test uses its own chore id
+ */
+public class AbstractChunkedChoreTest extends BaseModuleContextSensitiveTest {
+
+	/**
+	 * @see AbstractChunkedChore#perform(java.io.PrintWriter)
+	 */
+	@Test
+	public void perform_shouldCommitEachChunkOfIdsInAscendingOrder() throws Exception {
+		TestChore chore = new TestChore("test.committedChore", Arrays.asList(5, 3, 1, 4, 2, 3), null);
+		StringWriter output = new StringWriter();
+
+		chore.perform(new PrintWriter(output));
+
+		Assert.assertThat(chore.events, contains("before", "process [1, 2]", "commit [1, 2]", "process [3, 4]", "commit [3, 4]", "process [5]", "commit [5]", "after"));
+		Assert.assertThat(chore.getCheckpoint(), nullValue());
+		Assert.assertThat(output.toString(), containsString("processed 5 records in 3 chunks"));
+	}
+
+	/**
+	 * @see AbstractChunkedChore#perform(java.io.PrintWriter)
+	 */
+	@Test
+	public void perform_shouldResumeAfterTheLastCommittedChunk() throws Exception {
+		TestChore failing = new TestChore("test.resumedChore", Arrays.asList(1, 2, 3, 4, 5), 3);
+		try {
+			failing.perform(new PrintWriter(new StringWriter()));
+			Assert.fail("Chunk should have failed");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+
+		Assert.assertThat(failing.events, contains("before", "process [1, 2]", "commit [1, 2]", "process [3, 4]", "rollback [3, 4]"));
+		Assert.assertThat(failing.getCheckpoint(), is(2));
+
+		TestChore resumed = new TestChore("test.resumedChore", Arrays.asList(1, 2, 3, 4, 5), null);
+		StringWriter output = new StringWriter();
+		resumed.perform(new PrintWriter(output));
+
+		Assert.assertThat(resumed.events, contains("before", "process [3, 4]", "commit [3, 4]", "process [5]", "commit [5]", "after"));
+		Assert.assertThat(output.toString(), containsString("Resuming test.resumedChore after id 2"));
+	}
+
+	/**
+	 * Processes chunks of two ids, recording when each chunk is processed and when its transaction completes
+	 */
+	private static class TestChore extends AbstractChunkedChore {
+
+		private final String id;
+
+		private final List<Integer> ids;
+
+		private final Integer failOnId;
+
+		private final List<String> events = new ArrayList<String>();
+
+		TestChore(String id, List<Integer> ids, Integer failOnId) {
+			this.id = id;
+			this.ids = ids;
+			this.failOnId = failOnId;
+		}
+
+		@Override
+		public String getId() {
+			return id;
+		}
+
+		@Override
+		protected List<Integer> getIds() {
+			return ids;
+		}
+
+		@Override
+		protected int getChunkSize() {
+			return 2;
+		}
+
+		@Override
+		protected void beforeChunks(PrintWriter output) {
+			events.add("before");
+		}
+
+		@Override
+		protected void processChunk(final List<Integer> chunk, PrintWriter output) {
+			events.add("process " + chunk);
+
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					events.add((status == STATUS_COMMITTED ? "commit " : "rollback ") + chunk);
+				}
+			});
+
+			if (failOnId != null && chunk.contains(failOnId)) {
+				throw new IllegalStateException("Unable to process " + failOnId);
+			}
+		}
+
+		@Override
+		protected void afterChunks(PrintWriter output) {
+			events.add("after");
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.form;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Encounter;
+import org.openmrs.Form;
+import org.openmrs.Patient;
+import org.openmrs.Visit;
+import org.openmrs.VisitType;
+import org.openmrs.module.kenyacore.form.FormDescriptor;
+import org.openmrs.module.kenyacore.form.FormManager;
+import org.openmrs.module.kenyacore.test.TestUtils;
+import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
+import org.openmrs.module.kenyaemr.metadata.HivMetadata;
+import org.openmrs.module.kenyaemr.metadata.MchMetadata;
+import org.openmrs.module.kenyaemr.metadata.TbMetadata;
+import org.openmrs.module.metadatadeploy.MetadataUtils;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests for {@link FormAvailabilityEvaluator}
+ */
+public class FormAvailabilityEvaluatorTest extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private CommonMetadata commonMetadata;
+
+	@Autowired
+	private HivMetadata hivMetadata;
+
+	@Autowired
+	private TbMetadata tbMetadata;
+
+	@Autowired
+	private MchMetadata mchMetadata;
+
+	@Autowired
+	private FormManager formManager;
+
+	private FormAvailabilityEvaluator evaluator = FormAvailabilityEvaluator.getInstance();
+
+	/**
+	 * Setup each test
+	 */
+	@Before
+	public void setup() throws Exception {
+		executeDataSet("dataset/test-concepts.xml");
+
+		commonMetadata.install();
+		hivMetadata.install();
+		tbMetadata.install();
+		mchMetadata.install();
+		formManager.refresh();
+
+		// Results cached by other tests may belong to visits with the same ids
+		evaluator.invalidate(7);
+	}
+
+	/**
+	 * @see FormAvailabilityEvaluator#getUncompletedFormsForVisit(org.openmrs.module.appframework.domain.AppDescriptor, org.openmrs.Visit)
+	 */
+	@Test
+	public void getUncompletedFormsForVisit_shouldGetSameFormsAsFormManager() {
+		Patient patient = TestUtils.getPatient(7);
+		VisitType outpatient = MetadataUtils.existing(VisitType.class, CommonMetadata._VisitType.OUTPATIENT);
+		Form triage = MetadataUtils.existing(Form.class, CommonMetadata._Form.TRIAGE);
+		FormDescriptor triageDescriptor = formManager.getFormDescriptor(triage);
+
+		Visit visit = TestUtils.saveVisit(patient, outpatient, TestUtils.date(2012, 1, 1, 9, 0, 0), TestUtils.date(2012, 1, 1, 11, 0, 0));
+
+		List<FormDescriptor> available = evaluator.getUncompletedFormsForVisit(null, visit);
+		Assert.assertThat(new HashSet<FormDescriptor>(available), is(new HashSet<FormDescriptor>(formManager.getAllUncompletedFormsForVisit(null, visit))));
+		Assert.assertThat(available, hasItem(triageDescriptor));
+
+		// Complete triage in the visit
+		Encounter encounter = TestUtils.saveEncounter(patient, triage, TestUtils.date(2012, 1, 1, 10, 0, 0));
+		visit.addEncounter(encounter);
+
+		available = evaluator.getUncompletedFormsForVisit(null, visit);
+		Assert.assertThat(new HashSet<FormDescriptor>(available), is(new HashSet<FormDescriptor>(formManager.getAllUncompletedFormsForVisit(null, visit))));
+		Assert.assertThat(available, not(hasItem(triageDescriptor)));
+	}
+
+	/**
+	 * @see FormAvailabilityEvaluator#invalidateAfterCommit(Integer)
+	 */
+	@Test
+	public void invalidateAfterCommit_shouldKeepCachedResultsUntilCommit() {
+		Patient patient = TestUtils.getPatient(7);
+		VisitType outpatient = MetadataUtils.existing(VisitType.class, CommonMetadata._VisitType.OUTPATIENT);
+		Visit visit = TestUtils.saveVisit(patient, outpatient, TestUtils.date(2012, 1, 1, 9, 0, 0), TestUtils.date(2012, 1, 1, 11, 0, 0));
+
+		evaluator.getUncompletedFormsForVisit(null, visit);
+		Assert.assertThat(evaluator.hasCachedResults(visit), is(true));
+
+		// Tests run inside a transaction which is rolled back, so the results are never dropped
+		evaluator.invalidateAfterCommit(7);
+		Assert.assertThat(evaluator.hasCachedResults(visit), is(true));
+
+		evaluator.invalidate(7);
+		Assert.assertThat(evaluator.hasCachedResults(visit), is(false));
+	}
+}
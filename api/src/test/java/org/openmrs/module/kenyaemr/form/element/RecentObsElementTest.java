@@ -12,14 +12,17 @@ package org.openmrs.module.kenyaemr.form.element;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.Obs;
 import org.openmrs.module.htmlformentry.FormEntryContext;
 import org.openmrs.module.kenyacore.test.TestUtils;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 /**
  * Tests for {@link RecentObsElement}
@@ -98,4 +101,33 @@ public class RecentObsElementTest extends BaseModuleContextSensitiveTest {
 				is("<span>175 cells/mmL</span>")
 		);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @see RecentObsElement#fetchLatestObs(org.openmrs.Patient, java.util.Collection)
+	 */
+	@Test
+	public void fetchLatestObs_shouldFetchLatestObsForEachConcept() {
+		String cd4 = "a09ab2c5-878e-4905-b25d-5784167d0216";
+		String missing = "xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx";
+
+		Map<String, Obs> latestObs = RecentObsElement.fetchLatestObs(TestUtils.getPatient(7), Arrays.asList(cd4, missing));
+
+		Assert.assertThat(latestObs.get(cd4).getValueNumeric(), is(175.0));
+		Assert.assertThat(latestObs.containsKey(missing), is(false));
+
+		// Patient 6 has no CD4 obs
+		latestObs = RecentObsElement.fetchLatestObs(TestUtils.getPatient(6), Arrays.asList(cd4));
+
+		Assert.assertThat(latestObs.containsKey(cd4), is(true));
+		Assert.assertThat(latestObs.get(cd4), nullValue());
+
+		// Prefetched obs are used in place of a lookup
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("conceptId", cd4);
+		parameters.put("noneMessage", "None");
+
+		context.setupExistingData(TestUtils.getPatient(7));
+
+		Assert.assertThat(new RecentObsElement(context, parameters, latestObs).generateHtml(context), is("<span>None</span>"));
+	}
+}
@@ -9,11 +9,16 @@
  */
 package org.openmrs.module.kenyaemr.metadata;
 
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.module.kenyacore.test.TestUtils;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
 /**
  * Tests for {@link HivMetadata}
  */
@@ -41,4 +46,17 @@ public class HivMetadataTest extends BaseModuleContextSensitiveTest {
 		commonMetadata.install();
 		hivMetadata.install();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @see HivMetadata#calculateChecksum()
+	 */
+	@Test
+	public void calculateChecksum_shouldChangeWithKDoDProperty() {
+		TestUtils.saveGlobalProperty("kenyaemr.isKDoD", "false");
+		String checksum = hivMetadata.calculateChecksum();
+
+		TestUtils.saveGlobalProperty("kenyaemr.isKDoD", "true");
+
+		Assert.assertThat(hivMetadata.calculateChecksum(), is(not(checksum)));
+	}
+}
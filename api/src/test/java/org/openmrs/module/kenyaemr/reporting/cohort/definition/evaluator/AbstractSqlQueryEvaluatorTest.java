@@ -0,0 +1,116 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link AbstractSqlQueryEvaluator}
+ */
+public class AbstractSqlQueryEvaluatorTest {
+
+	@Test
+	public void getParameterNames_shouldFindNamedParametersInOrder() {
+		String query = "select patient_id from t where visit_date between date(:startDate) and date(:endDate) or visit_date = :startDate";
+
+		Assert.assertThat(AbstractSqlQueryEvaluator.getParameterNames(query), contains("startDate", "endDate"));
+	}
+
+	@Test
+	public void getParameterNames_shouldIgnoreStringLiteralsAndCasts() {
+		String query = "select patient_id from t where time(visit_date) > '10:30' and note <> \"see :other\""
+				+ " and date_format(visit_date, '%H:%i') <> 'it\\'s :quoted' and visit_date::date = :endDate";
+
+		Assert.assertThat(AbstractSqlQueryEvaluator.getParameterNames(query), contains("endDate"));
+		Assert.assertThat(AbstractSqlQueryEvaluator.getParameterNames("select 1;"), is(empty()));
+	}
+
+	@Test
+	public void stripTerminator_shouldRemoveTrailingSemicolonsAndWhitespace() {
+		Assert.assertThat(AbstractSqlQueryEvaluator.stripTerminator("select 1"), is("select 1"));
+		Assert.assertThat(AbstractSqlQueryEvaluator.stripTerminator("  select 1;\n"), is("select 1"));
+		Assert.assertThat(AbstractSqlQueryEvaluator.stripTerminator("select ';' ; ;\t"), is("select ';'"));
+	}
+
+	@Test
+	public void buildQuery_shouldWrapQueryAsDerivedTable() {
+		Assert.assertThat(AbstractSqlQueryEvaluator.buildQuery("select patient_id from t;", "patient_id", false, null),
+				is("select q.patient_id from (\nselect patient_id from t\n) q"));
+	}
+
+	@Test
+	public void buildQuery_shouldApplyRestrictionAndLimit() {
+		Assert.assertThat(AbstractSqlQueryEvaluator.buildQuery("select id from t", "id", true, 10),
+				is("select q.id from (\nselect id from t\n) q where q.id in (:restrictedIds) limit 10"));
+		Assert.assertThat(AbstractSqlQueryEvaluator.buildQuery("select id from t", "id", false, 5),
+				is("select q.id from (\nselect id from t\n) q limit 5"));
+	}
+
+	@Test
+	public void isRestrictedInDatabase_shouldOnlyBindSmallRestrictions() {
+		Assert.assertFalse(AbstractSqlQueryEvaluator.isRestrictedInDatabase(null));
+		Assert.assertTrue(AbstractSqlQueryEvaluator.isRestrictedInDatabase(ids(1, AbstractSqlQueryEvaluator.MAX_RESTRICTED_IDS)));
+		Assert.assertFalse(AbstractSqlQueryEvaluator.isRestrictedInDatabase(ids(1, AbstractSqlQueryEvaluator.MAX_RESTRICTED_IDS + 1)));
+	}
+
+	@Test
+	public void restrict_shouldIntersectAndKeepLowestIdsUpToLimit() {
+		Set<Integer> restrictTo = new HashSet<Integer>(Arrays.asList(2, 3, 5, 7, 11));
+
+		Assert.assertThat(AbstractSqlQueryEvaluator.restrict(Arrays.asList(11, 1, 2, 3, 4, 5), restrictTo, null), is((Set<Integer>) new HashSet<Integer>(Arrays.asList(2, 3, 5, 11))));
+		Assert.assertThat(AbstractSqlQueryEvaluator.restrict(Arrays.asList(11, 1, 2, 3, 4, 5), restrictTo, 2), is((Set<Integer>) new HashSet<Integer>(Arrays.asList(2, 3))));
+	}
+
+	@Test
+	public void andInBaseCohort_shouldOnlyFilterSmallBaseCohorts() {
+		AbstractSqlCohortDefinitionEvaluator evaluator = new AbstractSqlCohortDefinitionEvaluator() {
+			@Override
+			protected String getQuery(CohortDefinition cohortDefinition, EvaluationContext context) {
+				return "select fup.patient_id from fup where fup.visit_date <= :endDate" + andInBaseCohort("fup.patient_id", context);
+			}
+		};
+
+		EvaluationContext context = new EvaluationContext();
+		Assert.assertThat(evaluator.getQuery(null, context), is("select fup.patient_id from fup where fup.visit_date <= :endDate"));
+
+		context.setBaseCohort(new Cohort(ids(1, 10)));
+		Assert.assertThat(evaluator.getQuery(null, context), is("select fup.patient_id from fup where fup.visit_date <= :endDate and fup.patient_id in (:restrictedIds)"));
+		Assert.assertThat(AbstractSqlQueryEvaluator.getParameterNames(evaluator.getQuery(null, context)), contains("endDate", "restrictedIds"));
+
+		context.setBaseCohort(new Cohort(ids(1, AbstractSqlQueryEvaluator.MAX_RESTRICTED_IDS + 1)));
+		Assert.assertThat(evaluator.getQuery(null, context), is("select fup.patient_id from fup where fup.visit_date <= :endDate"));
+	}
+
+	/**
+	 * Creates a range of ids
+	 * @param from the first id
+	 * @param to the last id
+	 * @return the ids
+	 */
+	private static Set<Integer> ids(int from, int to) {
+		Set<Integer> ids = new HashSet<Integer>();
+		for (int id = from; id <= to; id++) {
+			ids.add(id);
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.reporting.cohort.definition.evaluator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyacore.test.ReportingTestUtils;
+import org.openmrs.module.kenyacore.test.TestUtils;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.ImmunizationCohortDefinition;
+import org.openmrs.module.kenyaemr.reporting.cohort.definition.ImmunizationCohortDefinition.Vaccine;
+import org.openmrs.module.reporting.cohort.EvaluatedCohort;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+import org.openmrs.module.reporting.evaluation.parameter.Parameter;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * Tests for {@link ImmunizationCohortDefinitionEvaluator}. The children in kenyaemr_etl.etl_hei_immunization don't
+ * need to exist as patients, so each vaccine is given to patient 1000 plus its ordinal
+ */
+public class ImmunizationCohortDefinitionEvaluatorTest extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private ImmunizationCohortDefinitionEvaluator evaluator;
+
+	private EvaluationContext context;
+
+	/**
+	 * Setup each test
+	 */
+	@Before
+	public void setup() throws Exception {
+		StringBuilder columns = new StringBuilder();
+		for (Vaccine vaccine : Vaccine.values()) {
+			columns.append(", ").append(vaccine.getColumn()).append(" date");
+		}
+
+		// Table creation commits the transaction, so is done before any rows are added
+		Context.getAdministrationService().executeSQL("create schema if not exists kenyaemr_etl", false);
+		Context.getAdministrationService().executeSQL("create table if not exists kenyaemr_etl.etl_hei_immunization (patient_id int not null" + columns + ")", false);
+
+		// Each child is given their vaccine in June 2024, and the next vaccine after it in July
+		Vaccine[] vaccines = Vaccine.values();
+		for (int v = 0; v < vaccines.length; v++) {
+			String next = vaccines[(v + 1) % vaccines.length].getColumn();
+			saveImmunization(1000 + v, vaccines[v].getColumn() + ", " + next, "'2024-06-15', '2024-07-01'");
+		}
+
+		context = new EvaluationContext();
+		context.addParameterValue("startDate", TestUtils.date(2024, 6, 1));
+		context.addParameterValue("endDate", TestUtils.date(2024, 6, 30));
+	}
+
+	/**
+	 * @see ImmunizationCohortDefinitionEvaluator#evaluate(org.openmrs.module.reporting.cohort.definition.CohortDefinition, EvaluationContext)
+	 */
+	@Test
+	public void evaluate_shouldMapEachVaccineToItsColumn() throws Exception {
+		for (Vaccine vaccine : Vaccine.values()) {
+			ReportingTestUtils.assertCohortEquals(Collections.singletonList(1000 + vaccine.ordinal()), evaluate(vaccine, context));
+		}
+	}
+
+	/**
+	 * @see ImmunizationCohortDefinitionEvaluator#evaluate(org.openmrs.module.reporting.cohort.definition.CohortDefinition, EvaluationContext)
+	 */
+	@Test
+	public void evaluate_shouldAnswerEveryVaccineOfAPeriodFromOneQuery() throws Exception {
+		ReportingTestUtils.assertCohortEquals(Arrays.asList(1000), evaluate(Vaccine.BCG, context));
+
+		// Rows saved after the first evaluation aren't seen by the other vaccines for the same period
+		saveImmunization(2000, Vaccine.OPV_1.getColumn(), "'2024-06-20'");
+		ReportingTestUtils.assertCohortEquals(Arrays.asList(1000 + Vaccine.OPV_1.ordinal()), evaluate(Vaccine.OPV_1, context));
+
+		EvaluationContext newContext = new EvaluationContext();
+		newContext.setParameterValues(context.getParameterValues());
+		ReportingTestUtils.assertCohortEquals(Arrays.asList(1000 + Vaccine.OPV_1.ordinal(), 2000), evaluate(Vaccine.OPV_1, newContext));
+
+		// Another period is fetched again, even in the same context
+		context.addParameterValue("endDate", TestUtils.date(2024, 7, 31));
+		ReportingTestUtils.assertCohortEquals(Arrays.asList(1000 + Vaccine.OPV_BIRTH.ordinal(), 1000 + Vaccine.OPV_1.ordinal(), 2000), evaluate(Vaccine.OPV_1, context));
+	}
+
+	/**
+	 * @see ImmunizationCohortDefinitionEvaluator#evaluate(org.openmrs.module.reporting.cohort.definition.CohortDefinition, EvaluationContext)
+	 */
+	@Test
+	public void evaluate_shouldRestrictCachedResultsToTheBaseCohort() throws Exception {
+		saveImmunization(2000, Vaccine.BCG.getColumn(), "'2024-06-20'");
+		ReportingTestUtils.assertCohortEquals(Arrays.asList(1000, 2000), evaluate(Vaccine.BCG, context));
+
+		EvaluationContext restricted = context.shallowCopy();
+		restricted.setBaseCohort(new Cohort(Arrays.asList(2000, 3000)));
+		ReportingTestUtils.assertCohortEquals(Arrays.asList(2000), evaluate(Vaccine.BCG, restricted));
+		ReportingTestUtils.assertCohortEquals(Collections.<Integer>emptyList(), evaluate(Vaccine.OPV_BIRTH, restricted));
+	}
+
+	/**
+	 * Evaluates a vaccine with the evaluator itself, as the cohort definition service has its own caching
+	 */
+	private EvaluatedCohort evaluate(Vaccine vaccine, EvaluationContext context) throws Exception {
+		ImmunizationCohortDefinition definition = new ImmunizationCohortDefinition(vaccine);
+		definition.addParameter(new Parameter("startDate", "Start Date", Date.class));
+		definition.addParameter(new Parameter("endDate", "End Date", Date.class));
+		return evaluator.evaluate(definition, context);
+	}
+
+	private void saveImmunization(int patientId, String columns, String values) {
+		Context.getAdministrationService().executeSQL("insert into kenyaemr_etl.etl_hei_immunization (patient_id, " + columns + ") values (" + patientId + ", " + values + ")", false);
+	}
+}
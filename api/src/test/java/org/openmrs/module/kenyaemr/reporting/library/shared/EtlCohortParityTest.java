@@ -0,0 +1,340 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.reporting.library.shared;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.EncounterType;
+import org.openmrs.Patient;
+import org.openmrs.VisitType;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyacore.report.ReportUtils;
+import org.openmrs.module.kenyacore.report.cohort.definition.CalculationCohortDefinition;
+import org.openmrs.module.kenyacore.test.ReportingTestUtils;
+import org.openmrs.module.kenyacore.test.TestUtils;
+import org.openmrs.module.kenyaemr.Dictionary;
+import org.openmrs.module.kenyaemr.calculation.library.hiv.ScreenedForTbInLastVisitCalculation;
+import org.openmrs.module.kenyaemr.calculation.library.hiv.cqi.PatientLastVisitCalculation;
+import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
+import org.openmrs.module.kenyaemr.metadata.TbMetadata;
+import org.openmrs.module.kenyaemr.reporting.library.shared.hiv.HivCohortLibrary;
+import org.openmrs.module.kenyaemr.reporting.library.shared.hiv.art.ArtCohortLibrary;
+import org.openmrs.module.kenyaemr.reporting.library.shared.tb.TbCohortLibrary;
+import org.openmrs.module.metadatadeploy.MetadataUtils;
+import org.openmrs.module.reporting.cohort.definition.CohortDefinition;
+import org.openmrs.module.reporting.cohort.definition.CompositionCohortDefinition;
+import org.openmrs.module.reporting.cohort.definition.service.CohortDefinitionService;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+import org.openmrs.module.reporting.evaluation.parameter.Parameter;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Checks the SQL cohorts which replaced calculations. Cohorts which only read core tables, or plain SQL from
+ * kenyaemr_etl, are compared with the calculations they replaced on H2. The other kenyaemr_etl backed cohorts are
+ * checked against the rows in dataset/etl-cohort-fixture.sql, whose expected members follow the rules of the
+ * calculations. Their queries are MySQL SQL, which H2 can't run, so those tests only run against an empty MySQL
+ * database using the etl-mysql profile (see api/pom.xml).
+ */
+public class EtlCohortParityTest extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private CommonMetadata commonMetadata;
+
+	@Autowired
+	private TbMetadata tbMetadata;
+
+	@Autowired
+	private ArtCohortLibrary artCohortLibrary;
+
+	@Autowired
+	private HivCohortLibrary hivCohortLibrary;
+
+	@Autowired
+	private TbCohortLibrary tbCohortLibrary;
+
+	private EvaluationContext context;
+
+	@Before
+	public void setup() throws Exception {
+		List<String> tables = new ArrayList<String>();
+		List<String> rows = new ArrayList<String>();
+		for (String statement : loadFixture()) {
+			(statement.startsWith("insert") ? rows : tables).add(statement);
+		}
+
+		// Table creation commits the transaction, so is done before any rows are added
+		for (String statement : tables) {
+			Context.getAdministrationService().executeSQL(statement, false);
+		}
+		List<List<Object>> existing = Context.getAdministrationService().executeSQL("select count(*) from kenyaemr_etl.etl_drug_event", true);
+		Assume.assumeTrue(((Number) existing.get(0).get(0)).intValue() == 0);
+
+		for (String statement : rows) {
+			Context.getAdministrationService().executeSQL(statement, false);
+		}
+
+		executeDataSet("dataset/test-concepts.xml");
+
+		commonMetadata.install();
+		tbMetadata.install();
+
+		context = new EvaluationContext();
+		context.addParameterValue("onDate", TestUtils.date(2024, 6, 30));
+	}
+
+	/**
+	 * @see TbCohortLibrary#screenedForTbInPreviousVisit()
+	 */
+	@Test
+	public void screenedForTbInPreviousVisit_shouldMatchScreenedForTbInLastVisitCalculation() throws Exception {
+		saveScreeningVisits();
+
+		CalculationCohortDefinition calculation = new CalculationCohortDefinition(new ScreenedForTbInLastVisitCalculation());
+		calculation.addParameter(new Parameter("onDate", "On Date", Date.class));
+
+		assertSameMembers(calculation, tbCohortLibrary.screenedForTbInPreviousVisit(), 2);
+	}
+
+	/**
+	 * @see TbCohortLibrary#screenedForTbUsingICF()
+	 */
+	@Test
+	public void screenedForTbUsingICF_shouldMatchPatientLastVisitCalculation() throws Exception {
+		saveScreeningVisits();
+		context.addParameterValue("onOrAfter", TestUtils.date(2024, 6, 1));
+		context.addParameterValue("onOrBefore", TestUtils.date(2024, 6, 30));
+
+		// The definition as it was when the last visit was checked by a calculation
+		CalculationCohortDefinition lastVisit = new CalculationCohortDefinition(new PatientLastVisitCalculation());
+		lastVisit.addParameter(new Parameter("onDate", "On Date", Date.class));
+
+		CompositionCohortDefinition calculation = new CompositionCohortDefinition();
+		calculation.addParameter(new Parameter("onOrAfter", "After Date", Date.class));
+		calculation.addParameter(new Parameter("onOrBefore", "Before Date", Date.class));
+		calculation.addSearch("usingICF", ReportUtils.map(lastVisit, "onDate=${onOrBefore}"));
+		calculation.addSearch("obsSaved", ReportUtils.map(tbCohortLibrary.screenedForTb(), "onOrAfter=${onOrBefore-6m},onOrBefore=${onOrBefore}"));
+		calculation.setCompositionString("usingICF AND obsSaved");
+
+		assertSameMembers(calculation, tbCohortLibrary.screenedForTbUsingICF(), 6, 7);
+	}
+
+	/**
+	 * @see ArtCohortLibrary#onArt()
+	 */
+	@Test
+	public void onArt_shouldIncludePatientsWithAnActiveRegimen() throws Exception {
+		assumeMySql();
+		assertMembers(artCohortLibrary.onArt(), 101, 102, 103, 104, 105, 109);
+	}
+
+	/**
+	 * @see ArtCohortLibrary#missedAppointments()
+	 */
+	@Test
+	public void missedAppointments_shouldIncludePatientsUpTo30DaysPastAppointment() throws Exception {
+		assumeMySql();
+
+		// Not #103 who is 60 days late, nor #102 whose appointment was yesterday but who was last seen this month
+		assertMembers(artCohortLibrary.missedAppointments(), 108);
+	}
+
+	/**
+	 * @see HivCohortLibrary#lostToFollowUp()
+	 */
+	@Test
+	public void lostToFollowUp_shouldIncludePatientsPastAppointmentOrDiscontinuedAsLost() throws Exception {
+		assumeMySql();
+		assertMembers(hivCohortLibrary.lostToFollowUp(), 103, 104);
+	}
+
+	/**
+	 * @see ArtCohortLibrary#onSecondLine()
+	 */
+	@Test
+	public void onSecondLine_shouldExcludePatientsLostToFollowUp() throws Exception {
+		assumeMySql();
+		assertMembers(artCohortLibrary.onSecondLine(), 102);
+	}
+
+	/**
+	 * @see ArtCohortLibrary#startedArt()
+	 */
+	@Test
+	public void startedArt_shouldUseEarliestOfFirstRegimenAndTransferInStartDate() throws Exception {
+		assumeMySql();
+		context.addParameterValue("onOrAfter", TestUtils.date(2023, 1, 1));
+		context.addParameterValue("onOrBefore", TestUtils.date(2023, 12, 31));
+		assertMembers(artCohortLibrary.startedArt(), 101, 106);
+
+		context.addParameterValue("onOrBefore", TestUtils.date(2021, 12, 31));
+		assertMembers(artCohortLibrary.startedArtOnOrBefore(), 104, 105, 110);
+	}
+
+	/**
+	 * @see ArtCohortLibrary#whoStageAtArtStart(int)
+	 */
+	@Test
+	public void whoStageAtArtStart_shouldUseLastStageOnOrBeforeArtStart() throws Exception {
+		assumeMySql();
+		assertMembers(artCohortLibrary.whoStageAtArtStart(3), 101);
+		assertMembers(artCohortLibrary.whoStageAtArtStart(2), 102);
+	}
+
+	/**
+	 * @see ArtCohortLibrary#pregnantAtArtStart()
+	 */
+	@Test
+	public void pregnantAtArtStart_shouldUseLastPregnancyStatusOnOrBeforeArtStart() throws Exception {
+		assumeMySql();
+		assertMembers(artCohortLibrary.pregnantAtArtStart(), 101);
+	}
+
+	/**
+	 * @see ArtCohortLibrary#tbPatientAtArtStart()
+	 */
+	@Test
+	public void tbPatientAtArtStart_shouldExcludePatientsDiscontinuedBeforeArtStart() throws Exception {
+		assumeMySql();
+		assertMembers(artCohortLibrary.tbPatientAtArtStart(), 105);
+	}
+
+	/**
+	 * @see ArtCohortLibrary#netCohortMonthsBetweenDatesGivenMonths(Integer)
+	 */
+	@Test
+	public void netCohortMonthsBetweenDatesGivenMonths_shouldExcludeLaterTransferIns() throws Exception {
+		assumeMySql();
+		context.addParameterValue("startDate", TestUtils.date(2020, 1, 1));
+		context.addParameterValue("endDate", TestUtils.date(2020, 12, 31));
+		assertMembers(artCohortLibrary.netCohortMonthsBetweenDatesGivenMonths(12), 110);
+	}
+
+	/**
+	 * @see TbCohortLibrary#startedTbTreatmentResultsAtMonths(Integer)
+	 */
+	@Test
+	public void startedTbTreatmentResultsAtMonths_shouldIncludePatientsTreatedForMonths() throws Exception {
+		assumeMySql();
+		assertMembers(tbCohortLibrary.startedTbTreatmentResultsAtMonths(6), 105, 106);
+	}
+
+	/**
+	 * Saves visits to check the TB screening cohorts on 2024-06-30 with, along with the kenyaemr_etl screening rows for
+	 * their screening encounters
+	 */
+	private void saveScreeningVisits() throws Exception {
+		VisitType outpatient = MetadataUtils.existing(VisitType.class, CommonMetadata._VisitType.OUTPATIENT);
+		Concept noSignsOrSymptoms = Dictionary.getConcept(Dictionary.NO_SIGNS_OR_SYMPTOMS_OF_DISEASE);
+		Concept diseaseSuspected = Dictionary.getConcept(Dictionary.DISEASE_SUSPECTED);
+
+		// #2 was screened at the visit before their last one
+		TestUtils.saveVisit(TestUtils.getPatient(2), outpatient, TestUtils.date(2024, 5, 10, 8, 0, 0), TestUtils.date(2024, 5, 10, 10, 0, 0),
+				saveScreening(2, TestUtils.date(2024, 5, 10, 9, 0, 0), noSignsOrSymptoms));
+		TestUtils.saveVisit(TestUtils.getPatient(2), outpatient, TestUtils.date(2024, 6, 15, 8, 0, 0), TestUtils.date(2024, 6, 15, 10, 0, 0));
+
+		// #6 was only screened at their last visit
+		TestUtils.saveVisit(TestUtils.getPatient(6), outpatient, TestUtils.date(2024, 5, 20, 8, 0, 0), TestUtils.date(2024, 5, 20, 10, 0, 0));
+		TestUtils.saveVisit(TestUtils.getPatient(6), outpatient, TestUtils.date(2024, 6, 20, 8, 0, 0), TestUtils.date(2024, 6, 20, 10, 0, 0),
+				saveScreening(6, TestUtils.date(2024, 6, 20, 9, 0, 0), diseaseSuspected));
+
+		// #7 has only had one visit, at which they were screened
+		TestUtils.saveVisit(TestUtils.getPatient(7), outpatient, TestUtils.date(2024, 6, 1, 8, 0, 0), TestUtils.date(2024, 6, 1, 10, 0, 0),
+				saveScreening(7, TestUtils.date(2024, 6, 1, 9, 0, 0), diseaseSuspected));
+
+		// #8 was screened at the visit before their last one, but that was over 3 months ago
+		TestUtils.saveVisit(TestUtils.getPatient(8), outpatient, TestUtils.date(2023, 12, 1, 8, 0, 0), TestUtils.date(2023, 12, 1, 10, 0, 0),
+				saveScreening(8, TestUtils.date(2023, 12, 1, 9, 0, 0), noSignsOrSymptoms));
+		TestUtils.saveVisit(TestUtils.getPatient(8), outpatient, TestUtils.date(2024, 6, 10, 8, 0, 0), TestUtils.date(2024, 6, 10, 10, 0, 0));
+	}
+
+	/**
+	 * Saves a TB screening encounter with its kenyaemr_etl screening row
+	 * @param patientId the patient id
+	 * @param date the encounter date
+	 * @param result the TB disease status
+	 * @return the encounter
+	 */
+	private Encounter saveScreening(int patientId, Date date, Concept result) {
+		Patient patient = TestUtils.getPatient(patientId);
+		EncounterType tbScreening = MetadataUtils.existing(EncounterType.class, TbMetadata._EncounterType.TB_SCREENING);
+		Concept tbDiseaseStatus = Dictionary.getConcept(Dictionary.TUBERCULOSIS_DISEASE_STATUS);
+
+		Context.getAdministrationService().executeSQL("insert into kenyaemr_etl.etl_tb_screening (patient_id, visit_date, resulting_tb_status) values ("
+				+ patientId + ", '" + new SimpleDateFormat("yyyy-MM-dd").format(date) + "', " + result.getConceptId() + ")", false);
+
+		return TestUtils.saveEncounter(patient, tbScreening, date, TestUtils.saveObs(patient, tbDiseaseStatus, result, date));
+	}
+
+	/**
+	 * Skips tests of cohorts whose queries only run on MySQL
+	 */
+	private void assumeMySql() {
+		Assume.assumeFalse(useInMemoryDatabase());
+	}
+
+	/**
+	 * Evaluates the definition a cohort replaced and the cohort, and checks they both have the expected members
+	 * @param replaced the definition which was replaced
+	 * @param definition the definition
+	 * @param expected the expected member ids
+	 */
+	protected void assertSameMembers(CohortDefinition replaced, CohortDefinition definition, Integer... expected) throws Exception {
+		assertMembers(replaced, expected);
+		assertMembers(definition, expected);
+	}
+
+	/**
+	 * Evaluates a definition and checks its members
+	 * @param definition the definition
+	 * @param expected the expected member ids
+	 */
+	protected void assertMembers(CohortDefinition definition, Integer... expected) throws Exception {
+		ReportingTestUtils.assertCohortEquals(Arrays.asList(expected), Context.getService(CohortDefinitionService.class).evaluate(definition, context));
+	}
+
+	/**
+	 * Loads the fixture statements, without comments
+	 * @return the statements
+	 */
+	private List<String> loadFixture() throws Exception {
+		InputStream stream = getClass().getClassLoader().getResourceAsStream("dataset/etl-cohort-fixture.sql");
+		StringBuilder sql = new StringBuilder();
+		try {
+			for (String line : IOUtils.readLines(stream, "UTF-8")) {
+				if (!line.trim().startsWith("--")) {
+					sql.append(line).append("\n");
+				}
+			}
+		}
+		finally {
+			IOUtils.closeQuietly(stream);
+		}
+
+		List<String> statements = new ArrayList<String>();
+		for (String statement : sql.toString().split(";")) {
+			if (statement.trim().length() > 0) {
+				statements.add(statement.trim());
+			}
+		}
+		return statements;
+	}
+}
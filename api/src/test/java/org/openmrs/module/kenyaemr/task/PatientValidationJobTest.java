@@ -0,0 +1,110 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.task;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyacore.test.TestUtils;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.model.PatientValidationIssue;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link PatientValidationJob}
+ */
+public class PatientValidationJobTest extends BaseModuleContextSensitiveTest {
+
+	private static final String PREVIOUS_RUN_UUID = "5c3bbb5a-1b2f-4f7e-9a63-8a4c8d0f6d11";
+
+	@Autowired
+	private KenyaEmrService kenyaEmrService;
+
+	/**
+	 * Setup each test
+	 */
+	@Before
+	public void setup() throws Exception {
+		// The table is created by liquibase rather than hibernate. Creating it commits the transaction, so is done first
+		Context.getAdministrationService().executeSQL("create table if not exists kenyaemr_patient_validation_issue (" +
+				"id int auto_increment primary key, run_uuid varchar(38) not null, patient_id int not null, " +
+				"errors varchar(1000), date_created timestamp not null)", false);
+
+		kenyaEmrService.savePatientValidationIssues(Collections.singletonList(
+				issue(PREVIOUS_RUN_UUID, 2, TestUtils.date(2024, 1, 1))));
+	}
+
+	/**
+	 * @see PatientValidationJob#runValidation()
+	 */
+	@Test
+	public void runValidation_shouldKeepPreviousRunIfCancelled() throws Exception {
+		final String[] cancelledRunUuid = new String[1];
+		PatientValidationJob job = new PatientValidationJob() {
+			@Override
+			protected int validateChunk(List<Integer> patientIds) {
+				cancelledRunUuid[0] = getRunUuid();
+				kenyaEmrService.savePatientValidationIssues(Collections.singletonList(issue(getRunUuid(), patientIds.get(0), new Date())));
+				cancel();
+				return 1;
+			}
+		};
+
+		job.begin();
+		job.runValidation();
+
+		Assert.assertFalse(job.isRunning());
+		Assert.assertThat(job.getRunUuid(), is(PREVIOUS_RUN_UUID));
+		Assert.assertThat(job.getIssueCount(), is(1L));
+		Assert.assertThat(kenyaEmrService.getLatestPatientValidationRunUuid(), is(PREVIOUS_RUN_UUID));
+		Assert.assertThat(kenyaEmrService.getPatientValidationIssueCount(PREVIOUS_RUN_UUID), is(1L));
+		Assert.assertThat(kenyaEmrService.getPatientValidationIssueCount(cancelledRunUuid[0]), is(0L));
+	}
+
+	/**
+	 * @see PatientValidationJob#runValidation()
+	 */
+	@Test
+	public void runValidation_shouldPurgePreviousRunOnceCompleted() throws Exception {
+		PatientValidationJob job = new PatientValidationJob() {
+			@Override
+			protected int validateChunk(List<Integer> patientIds) {
+				kenyaEmrService.savePatientValidationIssues(Collections.singletonList(issue(getRunUuid(), patientIds.get(0), new Date())));
+				return 1;
+			}
+		};
+
+		job.begin();
+		job.runValidation();
+
+		Assert.assertFalse(job.isRunning());
+		Assert.assertThat(job.getProcessed(), is(kenyaEmrService.getPatientCount()));
+		Assert.assertThat(kenyaEmrService.getLatestPatientValidationRunUuid(), is(job.getRunUuid()));
+		Assert.assertThat(kenyaEmrService.getPatientValidationIssueCount(job.getRunUuid()), is(job.getIssueCount()));
+		Assert.assertThat(kenyaEmrService.getPatientValidationIssueCount(PREVIOUS_RUN_UUID), is(0L));
+	}
+
+	private static PatientValidationIssue issue(String runUuid, Integer patientId, Date dateCreated) {
+		PatientValidationIssue issue = new PatientValidationIssue();
+		issue.setRunUuid(runUuid);
+		issue.setPatientId(patientId);
+		issue.setErrors("gender: error.null");
+		issue.setDateCreated(dateCreated);
+		return issue;
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.util;
+
+import org.codehaus.jackson.node.ObjectNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tests for {@link ZScoreUtil}
+ */
+public class ZScoreUtilTest {
+
+	/**
+	 * @see ZScoreUtil#calculateZScore(Double, Double, String)
+	 */
+	@Test
+	public void calculateZScore_shouldReturnInsufficientInformationIfValuesAreMissing() {
+		Assert.assertEquals(ZScoreUtil.ZSCORE_INSUFFICIENT_INFORMATION_DEFAULT_VALUE, ZScoreUtil.calculateZScore(null, 10.0, "M"));
+		Assert.assertEquals(ZScoreUtil.ZSCORE_INSUFFICIENT_INFORMATION_DEFAULT_VALUE, ZScoreUtil.calculateZScore(0.0, 10.0, "M"));
+		Assert.assertEquals(ZScoreUtil.ZSCORE_INSUFFICIENT_INFORMATION_DEFAULT_VALUE, ZScoreUtil.calculateZScore(80.0, null, "M"));
+		Assert.assertEquals(ZScoreUtil.ZSCORE_INSUFFICIENT_INFORMATION_DEFAULT_VALUE, ZScoreUtil.calculateZScore(80.0, 10.0, null));
+		Assert.assertEquals(ZScoreUtil.ZSCORE_INSUFFICIENT_INFORMATION_DEFAULT_VALUE, ZScoreUtil.calculateZScore(80.0, 10.0, ""));
+	}
+
+	/**
+	 * @see ZScoreUtil#calculateZScore(Double, Double, String)
+	 */
+	@Test
+	public void calculateZScore_shouldHandleHeightsOutsideOfTables() {
+		Assert.assertEquals(Integer.valueOf(-4), ZScoreUtil.calculateZScore(44.9, 10.0, "M"));
+		Assert.assertEquals(Integer.valueOf(-4), ZScoreUtil.calculateZScore(110.1, 10.0, "F"));
+		Assert.assertEquals(ZScoreUtil.ZSCORE_NOT_FOUND_DEFAULT_VALUE, ZScoreUtil.calculateZScore(80.25, 10.0, "M"));
+		Assert.assertEquals(ZScoreUtil.ZSCORE_NOT_FOUND_DEFAULT_VALUE, ZScoreUtil.calculateZScore(80.0, 10.0, "X"));
+	}
+
+	/**
+	 * @see ZScoreUtil#calculateZScore(Double, Double, String)
+	 */
+	@Test
+	public void calculateZScore_shouldClassifyWeightAgainstTable() {
+		// boys at 45 cm: SD4neg 1.71, SD1 2.68, SD2 2.951
+		Assert.assertEquals(ZScoreUtil.ZSCORE_NOT_FOUND_DEFAULT_VALUE, ZScoreUtil.calculateZScore(45.0, 1.70, "M"));
+		Assert.assertEquals(Integer.valueOf(-4), ZScoreUtil.calculateZScore(45.0, 1.71, "M"));
+		Assert.assertEquals(Integer.valueOf(1), ZScoreUtil.calculateZScore(45.0, 2.7, "M"));
+		Assert.assertEquals(Integer.valueOf(4), ZScoreUtil.calculateZScore(45.0, 2.95, "M"));
+		Assert.assertEquals(Integer.valueOf(4), ZScoreUtil.calculateZScore(45.0, 10.0, "M"));
+	}
+
+	/**
+	 * Compares every length in the tables, over a range of weights, against the original implementation
+	 * @see ZScoreUtil#calculateZScore(Double, Double, String)
+	 */
+	@Test
+	public void calculateZScore_shouldMatchPreviousImplementation() {
+		for (String sex : Arrays.asList("M", "F")) {
+			ObjectNode sdList = ZScoreUtil.loadWeightForLengthZScoreFile("M".equals(sex) ? ZScoreUtil.WEIGHT_FOR_LENGTH_BOYS_FILE_OPTIMIZED : ZScoreUtil.WEIGHT_FOR_LENGTH_GIRLS_FILE_OPTIMIZED);
+
+			for (int lengthTenths = 445; lengthTenths <= 1105; lengthTenths++) {
+				double height = lengthTenths / 10.0;
+
+				for (int weightHundredths = 100; weightHundredths <= 3000; weightHundredths++) {
+					double weight = weightHundredths / 100.0;
+
+					Integer expected = legacyCalculateZScore(sdList, height, weight, sex);
+					Assert.assertEquals("height " + height + ", weight " + weight + ", sex " + sex, expected, ZScoreUtil.calculateZScore(height, weight, sex));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @see ZScoreUtil#calculateZScores(java.util.Collection, java.util.Map, java.util.Map, java.util.Map)
+	 */
+	@Test
+	public void calculateZScores_shouldCalculateForEachPatient() {
+		Map<Integer, Double> heights = new HashMap<Integer, Double>();
+		heights.put(1, 45.0);
+		heights.put(2, 45.0);
+		Map<Integer, Double> weights = new HashMap<Integer, Double>();
+		weights.put(1, 2.7);
+		weights.put(2, 1.71);
+		Map<Integer, String> sexes = new HashMap<Integer, String>();
+		sexes.put(1, "M");
+		sexes.put(2, "M");
+
+		Map<Integer, Integer> zScores = ZScoreUtil.calculateZScores(Arrays.asList(1, 2, 3), heights, weights, sexes);
+
+		Assert.assertEquals(3, zScores.size());
+		Assert.assertEquals(Integer.valueOf(1), zScores.get(1));
+		Assert.assertEquals(Integer.valueOf(-4), zScores.get(2));
+		Assert.assertEquals(ZScoreUtil.ZSCORE_INSUFFICIENT_INFORMATION_DEFAULT_VALUE, zScores.get(3));
+	}
+
+	/**
+	 * The implementation of calculateZScore before the tables were cached, for comparison
+	 */
+	private static Integer legacyCalculateZScore(ObjectNode sdList, Double height, Double weight, String sex) {
+		String[] sdKeys = { "SD4neg", "SD3neg", "SD2neg", "SD1neg", "SD0", "SD1", "SD2", "SD3", "SD4" };
+
+		Map<String, Integer> zScoreValues = new HashMap<String, Integer>();
+		zScoreValues.put("SD4neg", -4);
+		zScoreValues.put("SD3neg", -3);
+		zScoreValues.put("SD2neg", -2);
+		zScoreValues.put("SD1neg", -1);
+		zScoreValues.put("SD0", 0);
+		zScoreValues.put("SD1", 1);
+		zScoreValues.put("SD2", 4);
+
+		if (height < 45 || height > 110) {
+			return -4;
+		}
+
+		ObjectNode sdForHeight = (ObjectNode) sdList.get(String.valueOf(height));
+		Map<Double, String> sdValues = new TreeMap<Double, String>(Collections.reverseOrder());
+		if (sdForHeight != null) {
+			for (String sdKey : sdKeys) {
+				sdValues.put(sdForHeight.get(sdKey).asDouble(), sdKey);
+			}
+		}
+
+		for (Map.Entry<Double, String> entry : sdValues.entrySet()) {
+			double weightToCompareWith = Math.floor(entry.getKey() * 100) / 100;
+			if (weightToCompareWith <= weight && zScoreValues.containsKey(entry.getValue())) {
+				return zScoreValues.get(entry.getValue());
+			}
+		}
+		return ZScoreUtil.ZSCORE_NOT_FOUND_DEFAULT_VALUE;
+	}
+}
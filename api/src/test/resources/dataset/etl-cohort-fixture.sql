@@ -0,0 +1,121 @@
+-- kenyaemr_etl rows for EtlCohortParityTest. Only the columns read by the ETL backed library cohorts are created.
+-- The expected members of each cohort on 2024-06-30 are listed in the test. The statements run on both MySQL and H2.
+
+create schema if not exists kenyaemr_etl;
+
+create table if not exists kenyaemr_etl.etl_patient_demographics (
+  patient_id int not null,
+  gender varchar(10),
+  dead int default 0,
+  death_date date
+);
+
+create table if not exists kenyaemr_etl.etl_hiv_enrollment (
+  patient_id int not null,
+  visit_date date,
+  date_started_art_at_transferring_facility date,
+  transfer_in_date date
+);
+
+create table if not exists kenyaemr_etl.etl_patient_hiv_followup (
+  patient_id int not null,
+  visit_date date,
+  next_appointment_date date,
+  who_stage int,
+  pregnancy_status int
+);
+
+create table if not exists kenyaemr_etl.etl_drug_event (
+  patient_id int not null,
+  program varchar(50),
+  date_started date,
+  date_discontinued date,
+  regimen_line varchar(50),
+  voided int default 0
+);
+
+create table if not exists kenyaemr_etl.etl_patient_program_discontinuation (
+  patient_id int not null,
+  visit_date date,
+  program_name varchar(50),
+  discontinuation_reason int,
+  effective_discontinuation_date date
+);
+
+create table if not exists kenyaemr_etl.etl_tb_enrollment (
+  patient_id int not null,
+  visit_date date,
+  date_treatment_started date
+);
+
+-- Rows for this are added by the test to match the screening obs it saves
+create table if not exists kenyaemr_etl.etl_tb_screening (
+  patient_id int not null,
+  visit_date date,
+  resulting_tb_status int
+);
+
+insert into kenyaemr_etl.etl_patient_demographics (patient_id, gender, dead, death_date) values
+  (101, 'F', 0, null),
+  (102, 'M', 0, null),
+  (103, 'M', 0, null),
+  (104, 'F', 0, null),
+  (105, 'M', 0, null),
+  (106, 'F', 0, null),
+  (107, 'M', 1, '2024-03-01'),
+  (108, 'F', 0, null),
+  (109, 'M', 0, null),
+  (110, 'M', 0, null),
+  (111, 'F', 0, null);
+
+-- 105 transferred in, having started ART elsewhere. 109 re-enrolled after being discontinued as lost to follow up.
+insert into kenyaemr_etl.etl_hiv_enrollment (patient_id, visit_date, date_started_art_at_transferring_facility, transfer_in_date) values
+  (101, '2023-01-05', null, null),
+  (102, '2022-02-01', null, null),
+  (103, '2022-01-01', null, null),
+  (104, '2021-01-01', null, null),
+  (105, '2024-02-01', '2020-05-01', '2024-02-01'),
+  (106, '2023-02-01', null, null),
+  (107, '2023-06-01', null, null),
+  (108, '2023-01-01', null, null),
+  (109, '2022-01-01', null, null),
+  (109, '2023-08-01', null, null);
+
+-- 103 is 60 days past their last appointment and 108 is 20 days past theirs. 107 is past theirs but has died.
+insert into kenyaemr_etl.etl_patient_hiv_followup (patient_id, visit_date, next_appointment_date, who_stage, pregnancy_status) values
+  (101, '2023-01-05', '2023-02-05', 1206, 1065),
+  (101, '2024-06-15', '2024-07-15', null, null),
+  (102, '2022-02-15', '2022-03-15', 1205, null),
+  (102, '2023-01-01', '2023-02-01', 1206, null),
+  (102, '2024-06-01', '2024-06-29', null, null),
+  (103, '2024-04-01', '2024-05-01', null, null),
+  (104, '2024-05-20', '2024-06-20', null, null),
+  (105, '2024-06-01', '2024-08-01', null, null),
+  (106, '2023-02-20', '2023-03-20', null, 1066),
+  (107, '2024-01-01', '2024-02-01', null, null),
+  (108, '2024-05-10', '2024-06-10', null, null),
+  (109, '2024-06-20', '2024-07-20', null, null);
+
+insert into kenyaemr_etl.etl_drug_event (patient_id, program, date_started, date_discontinued, regimen_line, voided) values
+  (101, 'HIV', '2023-01-10', null, 'Adult first line', 0),
+  (102, 'HIV', '2022-03-01', '2023-05-01', 'Adult first line', 0),
+  (102, 'HIV', '2023-05-01', null, 'Adult second line', 0),
+  (103, 'HIV', '2022-06-01', null, 'Adult second line', 0),
+  (104, 'HIV', '2021-02-01', null, 'Adult second line', 0),
+  (105, 'HIV', '2024-02-01', null, 'Adult first line', 0),
+  (106, 'HIV', '2023-03-01', '2024-01-01', 'Adult first line', 0),
+  (109, 'HIV', '2022-01-15', null, 'Adult first line', 0),
+  (110, 'HIV', '2020-06-01', '2021-01-01', 'Adult first line', 0);
+
+-- 104 was discontinued as lost to follow up (5240) after their last followup, and 106 transferred out (159492)
+insert into kenyaemr_etl.etl_patient_program_discontinuation (patient_id, visit_date, program_name, discontinuation_reason, effective_discontinuation_date) values
+  (104, '2024-06-25', 'HIV', 5240, null),
+  (106, '2022-07-01', 'TB', 1267, null),
+  (106, '2024-03-01', 'HIV', 159492, '2024-03-01'),
+  (109, '2023-06-01', 'HIV', 5240, null);
+
+-- 105 was on TB treatment when they started ART, but 106 completed it before
+insert into kenyaemr_etl.etl_tb_enrollment (patient_id, visit_date, date_treatment_started) values
+  (105, '2020-04-01', '2020-04-01'),
+  (106, '2022-01-01', '2022-01-05'),
+  (111, '2024-05-01', '2024-05-02');
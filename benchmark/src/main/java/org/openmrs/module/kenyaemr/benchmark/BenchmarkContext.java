@@ -0,0 +1,142 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.benchmark;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
+import org.openmrs.module.kenyaemr.metadata.HivMetadata;
+import org.openmrs.module.kenyaemr.metadata.IPTMetadata;
+import org.openmrs.module.kenyaemr.metadata.MchMetadata;
+import org.openmrs.module.kenyaemr.metadata.TbMetadata;
+import org.openmrs.module.kenyaemr.regimen.RegimenManager;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.TestContextManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Bootstraps the standard module test context outside of JUnit, so that benchmarks run against the same in-memory
+ * database, Spring configuration and metadata as the unit tests. Unlike a unit test, work is committed so that
+ * generated data is visible to every benchmark invocation in the forked JVM.
+ */
+public class BenchmarkContext extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private CommonMetadata commonMetadata;
+
+	@Autowired
+	private HivMetadata hivMetadata;
+
+	@Autowired
+	private TbMetadata tbMetadata;
+
+	@Autowired
+	private IPTMetadata iptMetadata;
+
+	@Autowired
+	private MchMetadata mchMetadata;
+
+	@Autowired
+	private RegimenManager regimenManager;
+
+	@Autowired
+	@Qualifier("transactionManager")
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * Loads the application context, the standard test data and the KenyaEMR metadata
+	 * @throws Exception if the context can't be started
+	 */
+	public void start() throws Exception {
+		new TestContextManager(getClass()).prepareTestInstance(this);
+
+		transactionTemplate = new TransactionTemplate(transactionManager);
+
+		doInTransaction(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				baseSetupWithStandardDataAndAuthentication();
+
+				executeDataSet("dataset/test-concepts.xml");
+				executeDataSet("dataset/test-drugs.xml");
+				executeDataSet("dataset/benchmark-concepts.xml");
+
+				commonMetadata.install();
+				hivMetadata.install();
+				tbMetadata.install();
+				iptMetadata.install();
+				mchMetadata.install();
+
+				regimenManager.refresh();
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Opens and authenticates a session for the current thread if it doesn't already have one. JMH may run
+	 * iterations on a different thread to the one which started the context.
+	 */
+	public void ensureAuthenticated() {
+		if (!Context.isSessionOpen()) {
+			Context.openSession();
+		}
+		if (!Context.isAuthenticated()) {
+			authenticate();
+		}
+	}
+
+	/**
+	 * Closes the session of the current thread
+	 */
+	public void stop() {
+		if (Context.isSessionOpen()) {
+			Context.closeSession();
+		}
+	}
+
+	/**
+	 * Runs the given work in its own transaction
+	 * @param work the work
+	 * @return the result of the work
+	 */
+	public <T> T doInTransaction(final Callable<T> work) {
+		return transactionTemplate.execute(new TransactionCallback<T>() {
+			@Override
+			public T doInTransaction(TransactionStatus status) {
+				try {
+					return work.call();
+				}
+				catch (RuntimeException ex) {
+					throw ex;
+				}
+				catch (Exception ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Gets the regimen manager
+	 * @return the regimen manager
+	 */
+	public RegimenManager getRegimenManager() {
+		return regimenManager;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.benchmark;
+
+import org.apache.commons.lang.StringUtils;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks and writes the results as JSON so that runs can be compared offline, e.g. with
+ * http://jmh.morethan.net. Any standard JMH command line options may be passed as arguments. The following
+ * system properties are also supported:
+ * <ul>
+ *     <li>benchmark.cohortSizes - comma separated cohort sizes to run, e.g. 100,1000,10000</li>
+ *     <li>benchmark.result - the result file, defaults to jmh-result.json</li>
+ *     <li>benchmark.jvmArgs - extra arguments for the forked JVMs, e.g. -Xmx4g</li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(new CommandLineOptions(args));
+
+		String cohortSizes = System.getProperty("benchmark.cohortSizes");
+		if (StringUtils.isNotBlank(cohortSizes)) {
+			builder.param("cohortSize", StringUtils.split(cohortSizes, ','));
+		}
+
+		String jvmArgs = System.getProperty("benchmark.jvmArgs");
+		if (StringUtils.isNotBlank(jvmArgs)) {
+			builder.jvmArgsAppend(StringUtils.split(jvmArgs));
+		}
+
+		File result = new File(System.getProperty("benchmark.result", "jmh-result.json"));
+		if (result.getParentFile() != null) {
+			result.getParentFile().mkdirs();
+		}
+
+		builder.resultFormat(ResultFormatType.JSON).result(result.getAbsolutePath());
+
+		new Runner(builder.build()).run();
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.api.context.Context;
+import org.openmrs.calculation.patient.PatientCalculationService;
+import org.openmrs.calculation.result.CalculationResultMap;
+import org.openmrs.module.kenyaemr.calculation.library.hiv.GreenCardVelocityCalculation;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for patient calculations
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CalculationBenchmark {
+
+	/**
+	 * The green card velocity calculation over the whole cohort
+	 */
+	@Benchmark
+	public CalculationResultMap greenCardVelocityCohort(final CohortState state) {
+		return state.execute(new Callable<CalculationResultMap>() {
+			@Override
+			public CalculationResultMap call() {
+				return new GreenCardVelocityCalculation().evaluate(state.getPatientIds(), null, Context.getService(PatientCalculationService.class).createCalculationContext());
+			}
+		});
+	}
+
+	/**
+	 * The green card velocity calculation for a single patient, as evaluated when the green card form is loaded
+	 */
+	@Benchmark
+	public CalculationResultMap greenCardVelocitySinglePatient(final CohortState state) {
+		return state.execute(new Callable<CalculationResultMap>() {
+			@Override
+			public CalculationResultMap call() {
+				Integer patientId = state.getPatientIds().get(state.getPatientIds().size() / 2);
+				return new GreenCardVelocityCalculation().evaluate(Collections.singleton(patientId), null, Context.getService(PatientCalculationService.class).createCalculationContext());
+			}
+		});
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Benchmark state holding the started context and a generated cohort. JMH runs each combination of parameters in
+ * its own fork, so every cohort size gets a fresh in-memory database.
+ */
+@State(Scope.Benchmark)
+public class CohortState {
+
+	/**
+	 * The number of patients to generate
+	 */
+	@Param({ "100" })
+	public int cohortSize;
+
+	/**
+	 * The number of green card visits per patient
+	 */
+	@Param({ "6" })
+	public int visitsPerPatient;
+
+	private BenchmarkContext context;
+
+	private List<Integer> patientIds;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		context = new BenchmarkContext();
+		context.start();
+
+		patientIds = new SyntheticCohortGenerator(context, visitsPerPatient).generate(cohortSize);
+	}
+
+	@Setup(Level.Iteration)
+	public void authenticate() {
+		context.ensureAuthenticated();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.stop();
+	}
+
+	/**
+	 * Runs the given work in a transaction, as a page request or report evaluation would be
+	 * @param work the work
+	 * @return the result of the work
+	 */
+	public <T> T execute(Callable<T> work) {
+		return context.doInTransaction(work);
+	}
+
+	public BenchmarkContext getContext() {
+		return context;
+	}
+
+	public List<Integer> getPatientIds() {
+		return patientIds;
+	}
+}
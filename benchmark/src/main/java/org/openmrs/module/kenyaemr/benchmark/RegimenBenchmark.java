@@ -0,0 +1,125 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openmrs.DrugOrder;
+import org.openmrs.OrderFrequency;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyaemr.regimen.RegimenDefinition;
+import org.openmrs.module.kenyaemr.regimen.RegimenOrder;
+import org.openmrs.module.kenyaemr.util.EncounterBasedRegimenUtils;
+import org.openmrs.ui.framework.SimpleObject;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for regimen matching and the encounter based regimen utilities
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RegimenBenchmark {
+
+	/**
+	 * A regimen which matches the regimen2 definition in test-regimens.xml exactly
+	 */
+	@State(Scope.Benchmark)
+	public static class RegimenState {
+
+		RegimenOrder regimen;
+
+		@Setup(Level.Trial)
+		public void setup(final CohortState cohort) {
+			regimen = cohort.execute(new Callable<RegimenOrder>() {
+				@Override
+				public RegimenOrder call() {
+					OrderFrequency od = new OrderFrequency();
+					od.setConcept(Context.getConceptService().getConcept(160862));
+					OrderFrequency bd = new OrderFrequency();
+					bd.setConcept(Context.getConceptService().getConcept(160858));
+
+					DrugOrder lamivudine = new DrugOrder();
+					lamivudine.setConcept(Context.getConceptService().getConcept(78643));
+					lamivudine.setDose(150d);
+					lamivudine.setDoseUnits(Context.getConceptService().getConcept(50));
+					lamivudine.setFrequency(bd);
+
+					DrugOrder stavudine = new DrugOrder();
+					stavudine.setConcept(Context.getConceptService().getConcept(84309));
+					stavudine.setDose(30d);
+					stavudine.setDoseUnits(Context.getConceptService().getConcept(50));
+					stavudine.setFrequency(od);
+
+					return new RegimenOrder(new HashSet<DrugOrder>(Arrays.asList(lamivudine, stavudine)));
+				}
+			});
+		}
+	}
+
+	@Benchmark
+	public List<RegimenDefinition> findDefinitionsExact(CohortState cohort, RegimenState state) {
+		return cohort.getContext().getRegimenManager().findDefinitions("category1", state.regimen, true);
+	}
+
+	@Benchmark
+	public List<RegimenDefinition> findDefinitionsNonExact(CohortState cohort, RegimenState state) {
+		return cohort.getContext().getRegimenManager().findDefinitions("category1", state.regimen, false);
+	}
+
+	/**
+	 * Finds the last ARV regimen encounter of every patient in the cohort, as a regimen column in a line list does
+	 */
+	@Benchmark
+	public void lastArvEncounterForCohort(final CohortState cohort, final Blackhole blackhole) {
+		cohort.execute(new Callable<Void>() {
+			@Override
+			public Void call() {
+				for (Integer patientId : cohort.getPatientIds()) {
+					Patient patient = Context.getPatientService().getPatient(patientId);
+					blackhole.consume(EncounterBasedRegimenUtils.getLastEncounterForCategory(patient, "ARV"));
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Builds the ARV regimen history of a single patient, as the regimen history fragment does
+	 */
+	@Benchmark
+	public List<SimpleObject> arvRegimenHistory(final CohortState cohort) {
+		return cohort.execute(new Callable<List<SimpleObject>>() {
+			@Override
+			public List<SimpleObject> call() {
+				Patient patient = Context.getPatientService().getPatient(cohort.getPatientIds().get(0));
+				return EncounterBasedRegimenUtils.getRegimenHistoryFromObservations(patient, "ARV");
+			}
+		});
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Cohort;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyacore.report.data.patient.definition.CalculationDataDefinition;
+import org.openmrs.module.kenyaemr.Dictionary;
+import org.openmrs.module.kenyaemr.calculation.library.hiv.LastReturnVisitDateCalculation;
+import org.openmrs.module.kenyaemr.reporting.builder.hiv.DashBoardCohorts;
+import org.openmrs.module.reporting.cohort.EvaluatedCohort;
+import org.openmrs.module.reporting.common.TimeQualifier;
+import org.openmrs.module.reporting.data.patient.EvaluatedPatientData;
+import org.openmrs.module.reporting.data.patient.service.PatientDataService;
+import org.openmrs.module.reporting.data.person.EvaluatedPersonData;
+import org.openmrs.module.reporting.data.person.definition.AgeDataDefinition;
+import org.openmrs.module.reporting.data.person.definition.ObsForPersonDataDefinition;
+import org.openmrs.module.reporting.data.person.definition.PersonDataDefinition;
+import org.openmrs.module.reporting.data.person.service.PersonDataService;
+import org.openmrs.module.reporting.evaluation.EvaluationContext;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for report data evaluators and the home page dashboard cohorts. Most KenyaEMR specific evaluators query
+ * the ETL tables which don't exist in the in-memory database, so the person data evaluators used by the report
+ * builders and the calculation data evaluator are measured instead. A new evaluation context is used for each
+ * invocation so that cached results aren't measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportingBenchmark {
+
+	@Benchmark
+	public EvaluatedCohort dashboardAllPatients(CohortState state) {
+		return state.execute(new Callable<EvaluatedCohort>() {
+			@Override
+			public EvaluatedCohort call() {
+				return DashBoardCohorts.allPatients(new EvaluationContext());
+			}
+		});
+	}
+
+	@Benchmark
+	public EvaluatedCohort dashboardFemales(CohortState state) {
+		return state.execute(new Callable<EvaluatedCohort>() {
+			@Override
+			public EvaluatedCohort call() {
+				return DashBoardCohorts.females(new EvaluationContext());
+			}
+		});
+	}
+
+	@Benchmark
+	public EvaluatedCohort dashboardEnrolledInHiv(CohortState state) {
+		return state.execute(new Callable<EvaluatedCohort>() {
+			@Override
+			public EvaluatedCohort call() {
+				return DashBoardCohorts.enrolledInHiv(new EvaluationContext());
+			}
+		});
+	}
+
+	@Benchmark
+	public EvaluatedPersonData lastReturnVisitDateObs(CohortState state) {
+		return evaluatePersonData(state, new ObsForPersonDataDefinition("Return visit date", TimeQualifier.LAST, Dictionary.getConcept(Dictionary.RETURN_VISIT_DATE), null, null));
+	}
+
+	@Benchmark
+	public EvaluatedPersonData lastViralLoadObs(CohortState state) {
+		return evaluatePersonData(state, new ObsForPersonDataDefinition("Viral load", TimeQualifier.LAST, Dictionary.getConcept(Dictionary.HIV_VIRAL_LOAD), null, null));
+	}
+
+	@Benchmark
+	public EvaluatedPersonData age(CohortState state) {
+		return evaluatePersonData(state, new AgeDataDefinition());
+	}
+
+	@Benchmark
+	public EvaluatedPatientData lastReturnVisitDateCalculation(final CohortState state) {
+		return state.execute(new Callable<EvaluatedPatientData>() {
+			@Override
+			public EvaluatedPatientData call() throws Exception {
+				CalculationDataDefinition definition = new CalculationDataDefinition("Return visit date", new LastReturnVisitDateCalculation());
+				return Context.getService(PatientDataService.class).evaluate(definition, cohortContext(state));
+			}
+		});
+	}
+
+	private static EvaluatedPersonData evaluatePersonData(final CohortState state, final PersonDataDefinition definition) {
+		return state.execute(new Callable<EvaluatedPersonData>() {
+			@Override
+			public EvaluatedPersonData call() throws Exception {
+				return Context.getService(PersonDataService.class).evaluate(definition, cohortContext(state));
+			}
+		});
+	}
+
+	private static EvaluationContext cohortContext(CohortState state) {
+		EvaluationContext context = new EvaluationContext();
+		context.setBaseCohort(new Cohort(state.getPatientIds()));
+		return context;
+	}
+}
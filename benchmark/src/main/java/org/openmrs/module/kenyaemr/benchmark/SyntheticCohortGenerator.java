@@ -0,0 +1,177 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.benchmark;
+
+import org.openmrs.Concept;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.PersonName;
+import org.openmrs.Program;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyacore.test.TestUtils;
+import org.openmrs.module.kenyaemr.Dictionary;
+import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
+import org.openmrs.module.kenyaemr.metadata.HivMetadata;
+import org.openmrs.module.metadatadeploy.MetadataUtils;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * Generates a synthetic HIV cohort: patients enrolled in the HIV program with an enrollment encounter, a series of
+ * green card visits and ARV regimen encounters. A fixed seed is used so that runs with the same parameters produce
+ * the same data.
+ */
+public class SyntheticCohortGenerator {
+
+	private static final int BATCH_SIZE = 100;
+
+	private static final long SEED = 20261019L;
+
+	private static final String ARV_TREATMENT_PLAN_EVENT = "1255AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA";
+
+	private static final String START_DRUGS = "1256AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA";
+
+	private final BenchmarkContext context;
+
+	private final int visitsPerPatient;
+
+	private final Random random = new Random(SEED);
+
+	/**
+	 * Creates a generator
+	 * @param context the benchmark context
+	 * @param visitsPerPatient the number of green card visits to create for each patient
+	 */
+	public SyntheticCohortGenerator(BenchmarkContext context, int visitsPerPatient) {
+		this.context = context;
+		this.visitsPerPatient = visitsPerPatient;
+	}
+
+	/**
+	 * Generates the cohort in batches, each in its own transaction
+	 * @param size the number of patients
+	 * @return the ids of the generated patients
+	 */
+	public List<Integer> generate(int size) {
+		List<Integer> patientIds = new ArrayList<Integer>(size);
+
+		for (int offset = 0; offset < size; offset += BATCH_SIZE) {
+			final int start = offset;
+			final int end = Math.min(offset + BATCH_SIZE, size);
+
+			patientIds.addAll(context.doInTransaction(new Callable<List<Integer>>() {
+				@Override
+				public List<Integer> call() {
+					List<Integer> batch = new ArrayList<Integer>();
+					for (int index = start; index < end; index++) {
+						batch.add(createPatient(index).getPatientId());
+					}
+
+					Context.flushSession();
+					Context.clearSession();
+					return batch;
+				}
+			}));
+		}
+
+		return patientIds;
+	}
+
+	/**
+	 * Creates a single enrolled patient with their encounters
+	 * @param index the index of the patient in the cohort
+	 * @return the patient
+	 */
+	protected Patient createPatient(int index) {
+		Program hivProgram = MetadataUtils.existing(Program.class, HivMetadata._Program.HIV);
+		EncounterType hivEnrollment = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_ENROLLMENT);
+		Form hivEnrollmentForm = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_ENROLLMENT);
+		EncounterType hivConsultation = MetadataUtils.existing(EncounterType.class, HivMetadata._EncounterType.HIV_CONSULTATION);
+		Form greenCard = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
+		EncounterType regimenEditor = MetadataUtils.existing(EncounterType.class, CommonMetadata._EncounterType.DRUG_REGIMEN_EDITOR);
+		Form regimenEditorForm = MetadataUtils.existing(Form.class, CommonMetadata._Form.DRUG_REGIMEN_EDITOR);
+
+		Concept returnVisitDate = Dictionary.getConcept(Dictionary.RETURN_VISIT_DATE);
+		Concept viralLoad = Dictionary.getConcept(Dictionary.HIV_VIRAL_LOAD);
+		Concept arvPlan = Context.getConceptService().getConceptByUuid(ARV_TREATMENT_PLAN_EVENT);
+		Concept startDrugs = Context.getConceptService().getConceptByUuid(START_DRUGS);
+
+		Patient patient = savePatient(index);
+
+		// Enroll sometime in the last five years, leaving room for the visits
+		Date enrollmentDate = daysAgo(visitsPerPatient * 30 + random.nextInt(5 * 365));
+		TestUtils.enrollInProgram(patient, hivProgram, enrollmentDate);
+		TestUtils.saveEncounter(patient, hivEnrollment, hivEnrollmentForm, enrollmentDate);
+
+		Obs arvStart = TestUtils.saveObs(patient, arvPlan, startDrugs, enrollmentDate);
+		TestUtils.saveEncounter(patient, regimenEditor, regimenEditorForm, enrollmentDate, arvStart);
+
+		for (int visit = 1; visit <= visitsPerPatient; visit++) {
+			Date visitDate = addDays(enrollmentDate, visit * 30);
+
+			List<Obs> obs = new ArrayList<Obs>();
+			obs.add(TestUtils.saveObs(patient, returnVisitDate, addDays(visitDate, 30), visitDate));
+			if (visit % 3 == 0) {
+				obs.add(TestUtils.saveObs(patient, viralLoad, (double) random.nextInt(100000), visitDate));
+			}
+			TestUtils.saveEncounter(patient, hivConsultation, greenCard, visitDate, obs.toArray(new Obs[obs.size()]));
+
+			// Regimen switch half way through follow up
+			if (visit == visitsPerPatient / 2) {
+				Obs arvSwitch = TestUtils.saveObs(patient, arvPlan, startDrugs, visitDate);
+				TestUtils.saveEncounter(patient, regimenEditor, regimenEditorForm, visitDate, arvSwitch);
+			}
+		}
+
+		return patient;
+	}
+
+	/**
+	 * Saves a patient with a random gender and age
+	 * @param index the index of the patient in the cohort
+	 * @return the saved patient
+	 */
+	protected Patient savePatient(int index) {
+		PatientIdentifierType identifierType = Context.getPatientService().getPatientIdentifierType(2);
+		Location location = Context.getLocationService().getLocation(1);
+
+		Patient patient = new Patient();
+		patient.setGender(random.nextBoolean() ? "M" : "F");
+		patient.setBirthdate(daysAgo(365 + random.nextInt(70 * 365)));
+		patient.addName(new PersonName("Benchmark", null, "Patient" + index));
+
+		PatientIdentifier identifier = new PatientIdentifier("BM-" + index, identifierType, location);
+		identifier.setPreferred(true);
+		patient.addIdentifier(identifier);
+
+		return Context.getPatientService().savePatient(patient);
+	}
+
+	private static Date daysAgo(int days) {
+		return addDays(new Date(), -days);
+	}
+
+	private static Date addDays(Date date, int days) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(date);
+		calendar.add(Calendar.DATE, days);
+		return calendar.getTime();
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+import org.openmrs.Visit;
+import org.openmrs.VisitType;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
+import org.openmrs.module.kenyaemr.visit.EmrVisitAssignmentHandler;
+import org.openmrs.module.metadatadeploy.MetadataUtils;
+import org.openmrs.util.OpenmrsUtil;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for assigning encounters of a patient with a long visit history to visits, which happens on every
+ * encounter save
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VisitAssignmentBenchmark {
+
+	/**
+	 * A patient with one visit per day, the last of which is today
+	 */
+	@State(Scope.Benchmark)
+	public static class VisitHistoryState {
+
+		/**
+		 * The number of visits in the patient's history
+		 */
+		@Param({ "500" })
+		public int visitCount;
+
+		Integer patientId;
+
+		@Setup(Level.Trial)
+		public void setup(final CohortState cohort) {
+			patientId = cohort.getPatientIds().get(0);
+
+			cohort.execute(new Callable<Void>() {
+				@Override
+				public Void call() {
+					Patient patient = Context.getPatientService().getPatient(patientId);
+					VisitType outpatient = MetadataUtils.existing(VisitType.class, CommonMetadata._VisitType.OUTPATIENT);
+
+					for (int v = visitCount - 1; v >= 0; v--) {
+						Date day = OpenmrsUtil.firstSecondOfDay(daysAgo(v));
+
+						Visit visit = new Visit(patient, outpatient, addHours(day, 8));
+						visit.setStopDatetime(addHours(day, 17));
+						Context.getVisitService().saveVisit(visit);
+					}
+					return null;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Assigns an encounter with a time, which needs a visit active at that time
+	 */
+	@Benchmark
+	public Visit assignTimedEncounter(CohortState cohort, VisitHistoryState state) {
+		return assign(cohort, state, addHours(OpenmrsUtil.firstSecondOfDay(new Date()), 10));
+	}
+
+	/**
+	 * Assigns an encounter without a time, which can use any visit that day
+	 */
+	@Benchmark
+	public Visit assignUntimedEncounter(CohortState cohort, VisitHistoryState state) {
+		return assign(cohort, state, OpenmrsUtil.firstSecondOfDay(new Date()));
+	}
+
+	/**
+	 * Assigns a new unsaved encounter to a visit, and detaches it again so that it isn't saved with the visit
+	 */
+	private static Visit assign(CohortState cohort, final VisitHistoryState state, final Date encounterDatetime) {
+		return cohort.execute(new Callable<Visit>() {
+			@Override
+			public Visit call() {
+				Encounter encounter = new Encounter();
+				encounter.setPatient(Context.getPatientService().getPatient(state.patientId));
+				encounter.setLocation(Context.getLocationService().getLocation(1));
+				encounter.setEncounterDatetime(encounterDatetime);
+
+				new EmrVisitAssignmentHandler().beforeCreateEncounter(encounter);
+
+				Visit visit = encounter.getVisit();
+				if (visit != null) {
+					visit.getEncounters().remove(encounter);
+				}
+				return visit;
+			}
+		});
+	}
+
+	private static Date daysAgo(int days) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.add(Calendar.DATE, -days);
+		return calendar.getTime();
+	}
+
+	private static Date addHours(Date date, int hours) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(date);
+		calendar.add(Calendar.HOUR_OF_DAY, hours);
+		return calendar.getTime();
+	}
+}
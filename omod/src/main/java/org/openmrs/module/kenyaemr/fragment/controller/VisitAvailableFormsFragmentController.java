@@ -15,7 +15,7 @@ import org.openmrs.Form;
 import org.openmrs.Visit;
 import org.openmrs.module.appframework.domain.AppDescriptor;
 import org.openmrs.module.kenyacore.form.FormDescriptor;
-import org.openmrs.module.kenyacore.form.FormManager;
+import org.openmrs.module.kenyaemr.form.FormAvailabilityEvaluator;
 import org.openmrs.module.kenyaui.KenyaUiUtils;
 import org.openmrs.ui.framework.SimpleObject;
 import org.openmrs.ui.framework.UiUtils;
@@ -38,14 +38,13 @@ public class VisitAvailableFormsFragmentController {
 						   @FragmentParam("visit") Visit visit,
 						   UiUtils ui,
 						   PageRequest request,
-						   @SpringBean FormManager formManager,
 						   @SpringBean KenyaUiUtils kenyaUi) {
 
 		AppDescriptor currentApp = kenyaUi.getCurrentApp(request);
 
 		List<SimpleObject> availableForms = new ArrayList<SimpleObject>();
 
-		for (FormDescriptor descriptor : formManager.getAllUncompletedFormsForVisit(currentApp, visit)) {
+		for (FormDescriptor descriptor : FormAvailabilityEvaluator.getInstance().getUncompletedFormsForVisit(currentApp, visit)) {
 			//Display only active forms
 			if(!descriptor.getTarget().isRetired()) {
 				availableForms.add(ui.simplifyObject(descriptor.getTarget()));
@@ -15,25 +15,27 @@ import org.openmrs.Patient;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.groovy.GroovyUtil;
 import org.openmrs.module.kenyaemr.EmrConstants;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.model.PatientValidationIssue;
+import org.openmrs.module.kenyaemr.task.PatientValidationJob;
+import org.openmrs.module.kenyaui.KenyaUiUtils;
 import org.openmrs.module.kenyaui.annotation.AppAction;
 import org.openmrs.module.reporting.evaluation.EvaluationProfiler;
 import org.openmrs.ui.framework.SimpleObject;
 import org.openmrs.ui.framework.UiUtils;
-import org.springframework.validation.BindException;
-import org.springframework.validation.FieldError;
-import org.springframework.validation.ObjectError;
+import org.openmrs.ui.framework.annotation.SpringBean;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Utility actions for developers
  */
 public class DeveloperUtilsFragmentController {
 
+	private static final int DEFAULT_ISSUES_PAGE_SIZE = 50;
+
 	/**
 	 * Executes a groovy script
 	 * @param script the script
@@ -69,46 +71,71 @@ public class DeveloperUtilsFragmentController {
 	}
 
 	/**
-	 * Validate patient records
+	 * Starts validating patient records in the background
+	 * @return the status of the validation run
 	 */
 	@AppAction(EmrConstants.APP_DEVELOPER)
-	public List<SimpleObject> validatePatients(UiUtils ui) {
-		List<SimpleObject> problems = new ArrayList<SimpleObject>();
+	public SimpleObject startPatientValidation(@SpringBean KenyaUiUtils kenyaUi) {
+		PatientValidationJob.getInstance().start();
+		return getPatientValidationStatus(kenyaUi);
+	}
 
-		for (Patient patient : Context.getPatientService().getAllPatients()) {
-			BindException errors = new BindException(patient, "");
-			Context.getAdministrationService().validate(patient, errors);
-
-			if (errors.hasErrors()) {
-				SimpleObject problem = new SimpleObject();
-				problem.put("patient", ui.simplifyObject(patient));
-				problem.put("errors", uniqueErrorMessages(errors));
-				problem.put("cause", errors.getCause());
-				problems.add(problem);
-			}
-		}
+	/**
+	 * Stops the current patient validation run after its current chunk
+	 */
+	@AppAction(EmrConstants.APP_DEVELOPER)
+	public void cancelPatientValidation() {
+		PatientValidationJob.getInstance().cancel();
+	}
 
-		return problems;
+	/**
+	 * Gets the progress of the latest patient validation run
+	 * @return the status as a simple object {runUuid, running, total, processed, issueCount, started, completed, error}
+	 */
+	@AppAction(EmrConstants.APP_DEVELOPER)
+	public SimpleObject getPatientValidationStatus(@SpringBean KenyaUiUtils kenyaUi) {
+		PatientValidationJob job = PatientValidationJob.getInstance();
+		SimpleObject status = new SimpleObject();
+		status.put("runUuid", job.getRunUuid());
+		status.put("running", job.isRunning());
+		status.put("total", job.getTotal());
+		status.put("processed", job.getProcessed());
+		status.put("issueCount", job.getIssueCount());
+		status.put("started", job.getDateStarted() != null ? kenyaUi.formatDateTime(job.getDateStarted()) : null);
+		status.put("completed", job.getDateCompleted() != null ? kenyaUi.formatDateTime(job.getDateCompleted()) : null);
+		status.put("error", job.getError());
+		return status;
 	}
 
 	/**
-	 * Helper method to extract unique error messages from a bind exception and format them
-	 * @param errors the bind exception
-	 * @return the messages
+	 * Gets a page of the issues found by the latest patient validation run
+	 * @param startIndex the index of the first issue
+	 * @param length the maximum number of issues
+	 * @return the issues as simple objects {patient, errors}
 	 */
-	protected Set<String> uniqueErrorMessages(BindException errors) {
-		Set<String> messages = new LinkedHashSet<String>();
-		for (Object objerr : errors.getAllErrors()) {
-			ObjectError error = (ObjectError) objerr;
-			String message = Context.getMessageSourceService().getMessage(error.getCode());
+	@AppAction(EmrConstants.APP_DEVELOPER)
+	public List<SimpleObject> getPatientValidationIssues(@RequestParam(value = "startIndex", required = false) Integer startIndex,
+														 @RequestParam(value = "length", required = false) Integer length,
+														 UiUtils ui) {
+		List<SimpleObject> problems = new ArrayList<SimpleObject>();
 
-			if (error instanceof FieldError) {
-				message = ((FieldError) error).getField() + ": " + message;
-			}
+		String runUuid = PatientValidationJob.getInstance().getRunUuid();
+		if (runUuid == null) {
+			return problems;
+		}
+
+		List<PatientValidationIssue> issues = Context.getService(KenyaEmrService.class).getPatientValidationIssues(runUuid,
+				startIndex != null ? startIndex : 0, length != null ? length : DEFAULT_ISSUES_PAGE_SIZE);
 
-			messages.add(message);
+		for (PatientValidationIssue issue : issues) {
+			Patient patient = Context.getPatientService().getPatient(issue.getPatientId());
+
+			SimpleObject problem = new SimpleObject();
+			problem.put("patient", ui.simplifyObject(patient));
+			problem.put("errors", issue.getErrors() != null ? issue.getErrors().split("\n") : new String[0]);
+			problems.add(problem);
 		}
 
-		return messages;
+		return problems;
 	}
-}
\ No newline at end of file
+}
@@ -9,24 +9,18 @@
  */
 package org.openmrs.module.kenyaemr.fragment.controller.hivTesting;
 
-import org.hibernate.Transaction;
-import org.hibernate.jdbc.Work;
-import org.openmrs.Patient;
 import org.openmrs.api.context.Context;
-import org.openmrs.api.db.hibernate.DbSessionFactory;
 import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.model.DataQueue;
+import org.openmrs.module.kenyaemr.model.DataQueueErrorMessage;
+import org.openmrs.module.kenyaemr.model.DataQueueSummary;
+import org.openmrs.module.kenyaui.KenyaUiUtils;
 import org.openmrs.ui.framework.SimpleObject;
 import org.openmrs.ui.framework.UiUtils;
-import org.openmrs.ui.framework.annotation.FragmentParam;
+import org.openmrs.ui.framework.annotation.SpringBean;
 import org.openmrs.ui.framework.fragment.FragmentModel;
-import org.openmrs.util.PrivilegeConstants;
+import org.springframework.web.bind.annotation.RequestParam;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -35,175 +29,39 @@ import java.util.List;
  */
 public class MedicQueueFragmentController {
 
-	public void controller(FragmentModel model) {
+	private static final int ERROR_MESSAGES_PAGE_SIZE = 5;
 
-		Context.addProxyPrivilege(PrivilegeConstants.SQL_LEVEL_ACCESS);
-		DbSessionFactory sf = Context.getRegisteredComponents(DbSessionFactory.class).get(0);
-
-		String regStr = "select count(*) from medic_error_data where discriminator='json-registration';";
-		String allErrors = "select count(*) from medic_error_data;";
-		String queueData = "select count(*) from medic_queue_data;";
-		Long totalErrors = (Long) Context.getAdministrationService().executeSQL(allErrors, true).get(0).get(0);
-		Long registrationErrors = (Long) Context.getAdministrationService().executeSQL(regStr, true).get(0).get(0);
-		Long queueDataTotal = (Long) Context.getAdministrationService().executeSQL(queueData, true).get(0).get(0);
-
-		final String sqlSelectQuery = "SELECT id,message,date_created FROM medic_error_message order by date_created desc limit 5;";
-		final List<SimpleObject> ret = new ArrayList<SimpleObject>();
-		Transaction tx = null;
-		try {
-
-			tx = sf.getHibernateSessionFactory().getCurrentSession().beginTransaction();
-			final Transaction finalTx = tx;
-			sf.getCurrentSession().doWork(new Work() {
-
-				@Override
-				public void execute(Connection connection) throws SQLException {
-					PreparedStatement statement = connection.prepareStatement(sqlSelectQuery);
-					try {
-
-						ResultSet resultSet = statement.executeQuery();
-						if (resultSet != null) {
-							ResultSetMetaData metaData = resultSet.getMetaData();
-
-							while (resultSet.next()) {
-								Object[] row = new Object[metaData.getColumnCount()];
-								for (int i = 1; i <= metaData.getColumnCount(); i++) {
-									row[i - 1] = resultSet.getObject(i);
-								}
-								ret.add(SimpleObject.create(
-										"id", row[0] != null ? row[0].toString() : "",
-										"message", row[1] != null ? row[1].toString() : "",
-										"date_created", row[2] != null ? row[2].toString() : ""
-								));
-							}
-						}
-						finalTx.commit();
-					}
-					finally {
-						try {
-							if (statement != null) {
-								statement.close();
-							}
-						}
-						catch (Exception e) {}
-					}
-				}
-			});
-		}
-		catch (Exception e) {
-			throw new IllegalArgumentException("Unable to execute query", e);
-		}
-
-		model.put("logs", ret);
-		model.put("totalErrors", totalErrors.intValue());
-		model.put("registrationErrors", registrationErrors.intValue());
-		model.put("queueData", queueDataTotal.intValue());
-		Context.removeProxyPrivilege(PrivilegeConstants.SQL_LEVEL_ACCESS);
+	public void controller(FragmentModel model, @SpringBean KenyaUiUtils kenyaUi) {
+		KenyaEmrService kenyaEmrService = Context.getService(KenyaEmrService.class);
+		DataQueueSummary summary = kenyaEmrService.getDataQueueSummary(DataQueue.MEDIC);
 
+		model.put("logs", errorMessages(null, kenyaUi));
+		model.put("totalErrors", (int) summary.getTotalErrors());
+		model.put("registrationErrors", (int) summary.getRegistrationErrors());
+		model.put("queueData", (int) summary.getQueueData());
+		model.put("pageSize", ERROR_MESSAGES_PAGE_SIZE);
 	}
 
-	public List<SimpleObject> errorMessages(UiUtils ui) {
-
-		DbSessionFactory sf = Context.getRegisteredComponents(DbSessionFactory.class).get(0);
-
-		final String sqlSelectQuery = "SELECT id,message,date_created FROM medic_error_message order by date_created desc limit 5;";
-		final List<SimpleObject> ret = new ArrayList<SimpleObject>();
-		Transaction tx = null;
-		try {
-
-			tx = sf.getHibernateSessionFactory().getCurrentSession().beginTransaction();
-			final Transaction finalTx = tx;
-			sf.getCurrentSession().doWork(new Work() {
-
-				@Override
-				public void execute(Connection connection) throws SQLException {
-					PreparedStatement statement = connection.prepareStatement(sqlSelectQuery);
-					try {
-
-						ResultSet resultSet = statement.executeQuery();
-						if (resultSet != null) {
-							ResultSetMetaData metaData = resultSet.getMetaData();
-
-							while (resultSet.next()) {
-								Object[] row = new Object[metaData.getColumnCount()];
-								for (int i = 1; i <= metaData.getColumnCount(); i++) {
-									row[i - 1] = resultSet.getObject(i);
-								}
-								ret.add(SimpleObject.create(
-										"id", row[0] != null ? row[0].toString() : "",
-										"message", row[1] != null ? row[1].toString() : "",
-										"date_created", row[2] != null ? row[2].toString() : ""
-								));
-							}
-						}
-						finalTx.commit();
-					}
-					finally {
-						try {
-							if (statement != null) {
-								statement.close();
-							}
-						}
-						catch (Exception e) {}
-					}
-				}
-			});
-		}
-		catch (Exception e) {
-			throw new IllegalArgumentException("Unable to execute query", e);
+	/**
+	 * Gets a page of error messages, newest first
+	 * @param beforeId the id of the last message of the previous page, or null for the first page
+	 */
+	public List<SimpleObject> errorMessages(@RequestParam(value = "beforeId", required = false) Integer beforeId,
+											@SpringBean KenyaUiUtils kenyaUi) {
+		List<DataQueueErrorMessage> messages = Context.getService(KenyaEmrService.class).getDataQueueErrorMessages(DataQueue.MEDIC, beforeId, ERROR_MESSAGES_PAGE_SIZE);
+
+		List<SimpleObject> ret = new ArrayList<SimpleObject>();
+		for (DataQueueErrorMessage message : messages) {
+			ret.add(SimpleObject.create(
+					"id", message.getId().toString(),
+					"message", message.getMessage() != null ? message.getMessage() : "",
+					"date_created", message.getDateCreated() != null ? kenyaUi.formatDateTime(message.getDateCreated()) : ""
+			));
 		}
 		return ret;
 	}
-	public List<SimpleObject> refreshTables(UiUtils ui) {
-
-		DbSessionFactory sf = Context.getRegisteredComponents(DbSessionFactory.class).get(0);
-
-		final String sqlSelectQuery = "SELECT id,message,date_created FROM medic_error_message order by date_created desc limit 5;";
-		final List<SimpleObject> ret = new ArrayList<SimpleObject>();
-		Transaction tx = null;
-		try {
 
-			tx = sf.getHibernateSessionFactory().getCurrentSession().beginTransaction();
-			final Transaction finalTx = tx;
-			sf.getCurrentSession().doWork(new Work() {
-
-				@Override
-				public void execute(Connection connection) throws SQLException {
-					PreparedStatement statement = connection.prepareStatement(sqlSelectQuery);
-					try {
-
-						ResultSet resultSet = statement.executeQuery();
-						if (resultSet != null) {
-							ResultSetMetaData metaData = resultSet.getMetaData();
-
-							while (resultSet.next()) {
-								Object[] row = new Object[metaData.getColumnCount()];
-								for (int i = 1; i <= metaData.getColumnCount(); i++) {
-									row[i - 1] = resultSet.getObject(i);
-								}
-								ret.add(SimpleObject.create(
-										"id", row[0] != null ? row[0].toString() : "",
-										"message", row[1] != null ? row[1].toString() : "",
-										"date_created", row[2] != null ? row[2].toString() : ""
-								));
-							}
-						}
-						finalTx.commit();
-					}
-					finally {
-						try {
-							if (statement != null) {
-								statement.close();
-							}
-						}
-						catch (Exception e) {}
-					}
-				}
-			});
-		}
-		catch (Exception e) {
-			throw new IllegalArgumentException("Unable to execute query", e);
-		}
-		return ret;
+	public List<SimpleObject> refreshTables(@SpringBean KenyaUiUtils kenyaUi) {
+		return errorMessages(null, kenyaUi);
 	}
 }
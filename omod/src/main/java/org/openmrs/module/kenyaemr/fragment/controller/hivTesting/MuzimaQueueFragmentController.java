@@ -9,14 +9,11 @@
  */
 package org.openmrs.module.kenyaemr.fragment.controller.hivTesting;
 
-import org.openmrs.Patient;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.kenyaemr.api.KenyaEmrService;
-import org.openmrs.ui.framework.annotation.FragmentParam;
+import org.openmrs.module.kenyaemr.model.DataQueue;
+import org.openmrs.module.kenyaemr.model.DataQueueSummary;
 import org.openmrs.ui.framework.fragment.FragmentModel;
-import org.openmrs.util.PrivilegeConstants;
-
-import java.text.SimpleDateFormat;
 
 /**
  * mUzima error queue fragment
@@ -24,22 +21,11 @@ import java.text.SimpleDateFormat;
 public class MuzimaQueueFragmentController {
 
 	public void controller(FragmentModel model) {
+		DataQueueSummary summary = Context.getService(KenyaEmrService.class).getDataQueueSummary(DataQueue.MUZIMA);
 
-		Context.addProxyPrivilege(PrivilegeConstants.SQL_LEVEL_ACCESS);
-
-		String regStr = "select count(*) from muzima_error_data where discriminator='json-registration';";
-		String allErrors = "select count(*) from muzima_error_data;";
-		String queueData = "select count(*) from muzima_queue_data;";
-		Long totalErrors = (Long) Context.getAdministrationService().executeSQL(allErrors, true).get(0).get(0);
-		Long registrationErrors = (Long) Context.getAdministrationService().executeSQL(regStr, true).get(0).get(0);
-		Long queueDataTotal = (Long) Context.getAdministrationService().executeSQL(queueData, true).get(0).get(0);
-
-
-		model.put("totalErrors", totalErrors.intValue());
-		model.put("registrationErrors", registrationErrors.intValue());
-		model.put("queueData", queueDataTotal.intValue());
-		Context.removeProxyPrivilege(PrivilegeConstants.SQL_LEVEL_ACCESS);
-
+		model.put("totalErrors", (int) summary.getTotalErrors());
+		model.put("registrationErrors", (int) summary.getRegistrationErrors());
+		model.put("queueData", (int) summary.getQueueData());
 	}
 
-}
\ No newline at end of file
+}
@@ -26,6 +26,7 @@ import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import javax.net.ssl.HostnameVerifier;
@@ -63,12 +64,16 @@ import java.util.Base64;
 import java.util.HashSet;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ObjectNode;
 
 public class NupiDataExchangeFragmentController  {
 
+	protected static final Log log = LogFactory.getLog(NupiDataExchangeFragmentController.class);
+
 	//OAuth variables
 	private static final Pattern pat = Pattern.compile(".*\"access_token\"\\s*:\\s*\"([^\"]+)\".*");
 	
@@ -116,12 +121,12 @@ public class NupiDataExchangeFragmentController  {
         try {
             sc = SSLContext.getInstance("SSL");
         } catch (NoSuchAlgorithmException e) {
-            System.out.println(e.getMessage());
+            log.error(e.getMessage(), e);
         }
         try {
             sc.init(null, trustAllCerts, new java.security.SecureRandom());
         } catch (KeyManagementException e) {
-            System.out.println(e.getMessage());
+            log.error(e.getMessage(), e);
         }
         HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
  
@@ -264,7 +269,7 @@ public class NupiDataExchangeFragmentController  {
 		String strPostUrl = globalPostUrl.getPropertyValue();
 	     //https://afyakenyaapi.health.go.ke/partners/registry/{clientNumber}/update
 		String putUrl = strPostUrl + "/" + clientNupi + "/update";
-		System.out.println("Using NUPI UPDATE URL: " + putUrl);
+		log.info("Using NUPI UPDATE URL: " + putUrl);
 
 		URL url = new URL(putUrl);
 
@@ -352,7 +357,7 @@ public class NupiDataExchangeFragmentController  {
 		String success = "";
 		try {
 			String getUrl = strGetUrl + "/validation-results/kmfl/" + facilityMfl;
-			System.out.println("Using NUPI GET URL: " + getUrl);
+			log.info("Using NUPI GET URL: " + getUrl);
 			URL url = new URL(getUrl);
 
 			HttpsURLConnection con = (HttpsURLConnection) url.openConnection();
@@ -380,7 +385,7 @@ public class NupiDataExchangeFragmentController  {
 				success = processIPRSVerificationErrorsResponse(stringResponse);
 
 			}else{
-				System.out.println("Http connection response code ==> "+ responseCode);
+				log.info("Http connection response code ==> "+ responseCode);
 			}
 
 			} catch (Exception ex) {
@@ -428,7 +433,7 @@ public class NupiDataExchangeFragmentController  {
 
 			}
 		}catch (Exception e) {
-			e.printStackTrace();
+			log.error(e.getMessage(), e);
 		}
   return success;
 	}
@@ -473,7 +478,7 @@ public class NupiDataExchangeFragmentController  {
 		
 		if (strDWHbackEndURL == null || strTokenUrl == null || strScope == null || strClientSecret == null
 		        || strClientId == null || strAuthURL == null) {
-			System.err.println("Get NDWH NUPI data: Please set DWH OAuth credentials");
+			log.error("Get NDWH NUPI data: Please set DWH OAuth credentials");
 			return (false);
 		}
 		return (true);
@@ -517,12 +522,12 @@ public class NupiDataExchangeFragmentController  {
 			if (matcher.matches() && matcher.groupCount() > 0) {
 				returnValue = matcher.group(1);
 			} else {
-				System.err.println("IIT ML - Error : Token pattern mismatch");
+				log.error("IIT ML - Error : Token pattern mismatch");
 			}
 			
 		}
 		catch (Exception e) {
-			System.err.println("IIT ML - Error : " + e.getMessage());
+			log.error("IIT ML - Error : " + e.getMessage());
 		}
 		finally {
 			if (reader != null) {
@@ -547,7 +552,7 @@ public class NupiDataExchangeFragmentController  {
 		HttpsURLConnection connection = null;
 		try {
 			URL url = new URL(strDWHbackEndURL + "?code=FND&name=DuplicateReport&pageNumber=1&pageSize=1&siteCode=" + strFacilityCode);
-			System.out.println("NDWH NUPI Duplicates - Getting available data count using URL: " + url);
+			log.info("NDWH NUPI Duplicates - Getting available data count using URL: " + url);
 			connection = (HttpsURLConnection) url.openConnection();
 			connection.setRequestProperty("Authorization", "Bearer " + bearerToken);
 			connection.setDoOutput(true);
@@ -564,15 +569,15 @@ public class NupiDataExchangeFragmentController  {
 			ObjectNode jsonNode = (ObjectNode) mapper.readTree(response);
 			if (jsonNode != null) {
 				long pageCount = jsonNode.get("pageCount").getLongValue();
-				System.out.println("NDWH NUPI Duplicates - Got available data count as: " + pageCount);
+				log.info("NDWH NUPI Duplicates - Got available data count as: " + pageCount);
 				return (pageCount);
 			} else {
-				System.out.println("NDWH NUPI Duplicates - No available data");
+				log.info("NDWH NUPI Duplicates - No available data");
 				return (0);
 			}
 		}
 		catch (Exception e) {
-			System.err.println("NDWH NUPI Duplicates - Error getting total remote records: " + e.getMessage());
+			log.error("NDWH NUPI Duplicates - Error getting total remote records: " + e.getMessage());
 		}
 		finally {
 			if (reader != null) {
@@ -605,23 +610,23 @@ public class NupiDataExchangeFragmentController  {
 			if (credentials != null) {
 				//get total record count
 				long totalRemote = getAvailableRecordsOnRemoteSide(credentials);
-				System.out.println("NDWH NUPI Duplicates - Total Remote Records: " + totalRemote);
+				log.info("NDWH NUPI Duplicates - Total Remote Records: " + totalRemote);
 				
 				if (totalRemote > 0) {
 					//We now pull and save
 					pullAndSaveNUPIDuplicates(credentials, totalRemote);
 				} else {
-					System.err.println("NDWH NUPI Duplicates - No records on remote side");
+					log.error("NDWH NUPI Duplicates - No records on remote side");
 					// setStatusOfPullDataTask(false);
 					success = false;
 				}
 			} else {
-				System.err.println("NDWH NUPI Duplicates - Failed to get the OAuth token");
+				log.error("NDWH NUPI Duplicates - Failed to get the OAuth token");
 				// setStatusOfPullDataTask(false);
 				success = false;
 			}
 		} else {
-			System.err.println("NDWH NUPI Duplicates - Failed to get the OAuth Vars");
+			log.error("NDWH NUPI Duplicates - Failed to get the OAuth Vars");
 			// setStatusOfPullDataTask(false);
 			success = false;
 		}
@@ -664,7 +669,7 @@ public class NupiDataExchangeFragmentController  {
 			try {
 
 				String fullURL = strDWHbackEndURL + "?code=FND&name=DuplicateReport&pageNumber=" + currentPage + "&pageSize=" + recordsPerPull + "&siteCode=" + strFacilityCode;
-				System.out.println("NDWH NUPI Duplicates - Pulling data using: " + fullURL);
+				log.info("NDWH NUPI Duplicates - Pulling data using: " + fullURL);
 				URL url = new URL(fullURL);
 				connection = (HttpsURLConnection) url.openConnection();
 				connection.setRequestProperty("Authorization", "Bearer " + bearerToken);
@@ -713,12 +718,12 @@ public class NupiDataExchangeFragmentController  {
 							}
 							catch (Exception ex) {
 								//Failed to save record
-								System.err.println("NDWH NUPI Duplicates - Error saving attributes: " + ex.getMessage());
+								log.error("NDWH NUPI Duplicates - Error saving attributes: " + ex.getMessage());
 								// ex.printStackTrace();
 							}
 						}
 					} else {
-						System.err.println("NDWH NUPI Duplicates - JSON Data extraction problem. Exiting");
+						log.error("NDWH NUPI Duplicates - JSON Data extraction problem. Exiting");
 						if (reader != null) {
 							try {
 								reader.close();
@@ -736,7 +741,7 @@ public class NupiDataExchangeFragmentController  {
 				}
 			}
 			catch (Exception e) {
-				System.err.println("NDWH NUPI Duplicates - Error getting NUPI duplicates: " + e.getMessage());
+				log.error("NDWH NUPI Duplicates - Error getting NUPI duplicates: " + e.getMessage());
 				// e.printStackTrace();
 			}
 			finally {
@@ -769,33 +774,23 @@ public class NupiDataExchangeFragmentController  {
 		// Sync local to remote status. i.e ensure that if a patient is cleared on the remote side, they are also cleared here
 		// Ensure that we got all remote records
 		if(foundPatients == totalRemote) {
-			System.out.println("NDWH NUPI Duplicates - Syncing NUPI Duplicates Status with remote");
-			PersonAttributeType duplicateStatusPA = Context.getPersonService().getPersonAttributeTypeByUuid(CommonMetadata._PersonAttributeType.DUPLICATE_NUPI_STATUS_WITH_NATIONAL_REGISTRY);
-			List<Patient> allPatients = Context.getPatientService().getAllPatients();
-
-			// Get list of local patients with duplicates
-			for (Patient patient : allPatients) {
-				if (patient.getAttribute(duplicateStatusPA) != null) {
-					// Has a duplicate?
-					if (patient.getAttribute(duplicateStatusPA).getValue().trim().equalsIgnoreCase("true")) {
-						//Check if exists in remote
-						Integer patientId = patient.getId();
-						if(!remotePatients.contains(patientId)) {
-							//Patient does not exist on the remote side. We can clear the patient.
-							PatientWrapper wrapper = new PatientWrapper(patient);
-							wrapper.setNUPIDuplicateStatus(getAttributeSubstring("false"));
-							wrapper.setNUPIDuplicateFacility("");
-							wrapper.setNUPIDuplicateSites("");
-							wrapper.setNUPITotalDuplicateSites("");
-
-							patientService.savePatient(patient);
-							System.out.println("NDWH NUPI Duplicates - Updating Sync Patient ID: " + patientId);
-						}
-					}
-				}
+			log.info("NDWH NUPI Duplicates - Syncing NUPI Duplicates Status with remote");
+			KenyaEmrService kenyaEmrService = Context.getService(KenyaEmrService.class);
+			PersonAttributeType duplicateStatusPA = MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.DUPLICATE_NUPI_STATUS_WITH_NATIONAL_REGISTRY);
+
+			// Local patients with duplicates which no longer exist on the remote side can be cleared
+			List<Integer> resolvedPatients = kenyaEmrService.getPatientsByAttributeValues(duplicateStatusPA, Collections.singleton("true"), null, null);
+			resolvedPatients.removeAll(remotePatients);
+
+			if (!resolvedPatients.isEmpty()) {
+				kenyaEmrService.updatePersonAttributeValues(MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.DUPLICATE_NUPI_FACILITY_WITH_NATIONAL_REGISTRY), resolvedPatients, "");
+				kenyaEmrService.updatePersonAttributeValues(MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.DUPLICATE_NUPI_SITES_WITH_NATIONAL_REGISTRY), resolvedPatients, "");
+				kenyaEmrService.updatePersonAttributeValues(MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.DUPLICATE_NUPI_TOTALSITES_WITH_NATIONAL_REGISTRY), resolvedPatients, "");
+				kenyaEmrService.updatePersonAttributeValues(duplicateStatusPA, resolvedPatients, getAttributeSubstring("false"));
+				log.info("NDWH NUPI Duplicates - Cleared " + resolvedPatients.size() + " patients resolved on the remote side");
 			}
 		} else {
-			System.err.println("NDWH NUPI Duplicates - Error: We didnt manage to pull all remote records. We cannot sync local with remote");
+			log.error("NDWH NUPI Duplicates - Error: We didnt manage to pull all remote records. We cannot sync local with remote");
 		}
 
 		return (true);
@@ -848,7 +843,7 @@ public class NupiDataExchangeFragmentController  {
 				}
 
 		}catch (Exception e) {
-			e.printStackTrace();
+			log.error(e.getMessage(), e);
 		}
 		return nupiNumber;
 	}
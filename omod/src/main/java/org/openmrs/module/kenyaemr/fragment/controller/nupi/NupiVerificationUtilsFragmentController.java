@@ -0,0 +1,267 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.fragment.controller.nupi;
+
+import org.openmrs.Location;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.PersonAttribute;
+import org.openmrs.PersonAttributeType;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyaemr.EmrConstants;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
+import org.openmrs.module.kenyaemr.metadata.HivMetadata;
+import org.openmrs.module.kenyaui.KenyaUiUtils;
+import org.openmrs.module.kenyaui.annotation.AppAction;
+import org.openmrs.module.metadatadeploy.MetadataUtils;
+import org.openmrs.ui.framework.SimpleObject;
+import org.openmrs.ui.framework.annotation.SpringBean;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pages through the patient lists of the NUPI verification and duplicates pages
+ */
+public class NupiVerificationUtilsFragmentController {
+
+    /**
+     * Gets a page of the patients whose verification is pending
+     * @param startIndex the index of the first patient to return (optional)
+     * @param length the maximum number of patients to return (optional)
+     * @param kenyaUi the KenyaUI utils
+     * @return the simplified patients
+     */
+    @AppAction(EmrConstants.APP_NUPI_VERIFICATION)
+    public List<SimpleObject> getPendingVerification(@RequestParam(value = "startIndex", required = false) Integer startIndex,
+                                                     @RequestParam(value = "length", required = false) Integer length,
+                                                     @SpringBean KenyaUiUtils kenyaUi) {
+        PersonAttributeType verificationMessagePA = MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.VERIFICATION_MESSAGE_WITH_NATIONAL_REGISTRY);
+        return simplifyVerificationPatients(getPatients(CommonMetadata._PersonAttributeType.VERIFICATION_STATUS_WITH_NATIONAL_REGISTRY, "Pending", startIndex, length), verificationMessagePA, kenyaUi);
+    }
+
+    /**
+     * Gets a page of the patients who have a NUPI but failed the IPRS check
+     * @param startIndex the index of the first patient to return (optional)
+     * @param length the maximum number of patients to return (optional)
+     * @param kenyaUi the KenyaUI utils
+     * @return the simplified patients
+     */
+    @AppAction(EmrConstants.APP_NUPI_VERIFICATION)
+    public List<SimpleObject> getVerificationErrors(@RequestParam(value = "startIndex", required = false) Integer startIndex,
+                                                    @RequestParam(value = "length", required = false) Integer length,
+                                                    @SpringBean KenyaUiUtils kenyaUi) {
+        PersonAttributeType errorDescriptionPA = MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.VERIFICATION_DESCRIPTION_FOR_IPRS_ERROR);
+        return simplifyVerificationPatients(getPatients(CommonMetadata._PersonAttributeType.VERIFICATION_STATUS_WITH_NATIONAL_REGISTRY, "Failed IPRS Check", startIndex, length), errorDescriptionPA, kenyaUi);
+    }
+
+    /**
+     * Gets a page of the patients flagged as NUPI duplicates by NDWH
+     * @param startIndex the index of the first patient to return (optional)
+     * @param length the maximum number of patients to return (optional)
+     * @param kenyaUi the KenyaUI utils
+     * @return the simplified patients
+     */
+    @AppAction(EmrConstants.APP_NUPI_VERIFICATION)
+    public List<SimpleObject> getDuplicates(@RequestParam(value = "startIndex", required = false) Integer startIndex,
+                                            @RequestParam(value = "length", required = false) Integer length,
+                                            @SpringBean KenyaUiUtils kenyaUi) {
+        PersonAttributeType duplicateFacilityPA = MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.DUPLICATE_NUPI_FACILITY_WITH_NATIONAL_REGISTRY);
+        PersonAttributeType duplicateSitesPA = MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.DUPLICATE_NUPI_SITES_WITH_NATIONAL_REGISTRY);
+        PersonAttributeType duplicateTotalSitesPA = MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.DUPLICATE_NUPI_TOTALSITES_WITH_NATIONAL_REGISTRY);
+
+        PatientIdentifierType nupiIdentifierType = MetadataUtils.existing(PatientIdentifierType.class, CommonMetadata._PatientIdentifierType.NATIONAL_UNIQUE_PATIENT_IDENTIFIER);
+        PatientIdentifierType upiIdentifierType = MetadataUtils.existing(PatientIdentifierType.class, HivMetadata._PatientIdentifierType.UNIQUE_PATIENT_NUMBER);
+
+        List<SimpleObject> duplicates = new ArrayList<SimpleObject>();
+        for (Patient patient : getPatients(CommonMetadata._PersonAttributeType.DUPLICATE_NUPI_STATUS_WITH_NATIONAL_REGISTRY, "true", startIndex, length)) {
+            PatientIdentifier nupi = patient.getPatientIdentifier(nupiIdentifierType);
+            PatientIdentifier ccc = patient.getPatientIdentifier(upiIdentifierType);
+            String otherFacilities = getAttributeValue(patient, duplicateSitesPA);
+
+            duplicates.add(SimpleObject.create(
+                    "id", patient.getId(),
+                    "uuid", patient.getUuid(),
+                    "givenName", patient.getGivenName(),
+                    "middleName", patient.getMiddleName() != null ? patient.getMiddleName() : "",
+                    "familyName", patient.getFamilyName(),
+                    "fullName", getFullName(patient),
+                    "identifiers", getIdentifiers(patient),
+                    "birthdate", kenyaUi.formatDate(patient.getBirthdate()),
+                    "gender", patient.getGender(),
+                    "nupi", nupi != null ? nupi.getIdentifier() : "",
+                    "ccc", ccc != null ? ccc.getIdentifier() : "",
+                    "facility", getAttributeValue(patient, duplicateFacilityPA),
+                    "otherFacilities", otherFacilities,
+                    "facilityNames", otherFacilities.equals("-") ? "-" : getFacilityNames(otherFacilities),
+                    "totalFacilities", getAttributeValue(patient, duplicateTotalSitesPA),
+                    "error", "-"));
+        }
+        return duplicates;
+    }
+
+    /**
+     * Loads a page of the patients with the given attribute value
+     * @param attributeTypeUuid the attribute type uuid
+     * @param value the value
+     * @param startIndex the index of the first patient
+     * @param length the maximum number of patients
+     * @return the patients
+     */
+    private List<Patient> getPatients(String attributeTypeUuid, String value, Integer startIndex, Integer length) {
+        PersonAttributeType attributeType = MetadataUtils.existing(PersonAttributeType.class, attributeTypeUuid);
+        List<Integer> patientIds = Context.getService(KenyaEmrService.class).getPatientsByAttributeValues(attributeType, Collections.singleton(value), startIndex, length);
+
+        List<Patient> patients = new ArrayList<Patient>();
+        for (Integer patientId : patientIds) {
+            patients.add(Context.getPatientService().getPatient(patientId));
+        }
+        return patients;
+    }
+
+    /**
+     * Simplifies patients for the verification lists
+     * @param patients the patients
+     * @param errorPA the attribute holding the error to show
+     * @param kenyaUi the KenyaUI utils
+     * @return the simplified patients
+     */
+    private List<SimpleObject> simplifyVerificationPatients(List<Patient> patients, PersonAttributeType errorPA, KenyaUiUtils kenyaUi) {
+        List<SimpleObject> simplified = new ArrayList<SimpleObject>();
+        for (Patient patient : patients) {
+            PersonAttribute error = patient.getAttribute(errorPA);
+            simplified.add(SimpleObject.create(
+                    "id", patient.getId(),
+                    "uuid", patient.getUuid(),
+                    "givenName", patient.getGivenName(),
+                    "middleName", patient.getMiddleName() != null ? patient.getMiddleName() : "",
+                    "familyName", patient.getFamilyName(),
+                    "birthdate", kenyaUi.formatDate(patient.getBirthdate()),
+                    "gender", patient.getGender(),
+                    "error", error != null ? error.getValue().trim() : ""));
+        }
+        return simplified;
+    }
+
+    /**
+     * Returns the trimmed value of a patient's attribute
+     * @param patient the patient
+     * @param attributeType the attribute type
+     * @return the value or "-" if the patient doesn't have the attribute
+     */
+    private String getAttributeValue(Patient patient, PersonAttributeType attributeType) {
+        PersonAttribute attribute = patient.getAttribute(attributeType);
+        return attribute != null ? attribute.getValue().trim() : "-";
+    }
+
+    /**
+     * Returns the facility names given a list of MFL codes
+     * @param facilities the MFL codes separated by commas
+     * @return
+     */
+    private String getFacilityNames(String facilities) {
+        String ret = "";
+        if (facilities != null && !facilities.isEmpty()) {
+            String[] ids = facilities.split(",");
+            StringBuilder result = new StringBuilder();
+
+            for (String id : ids) {
+                try {
+                    id = id.trim();
+                    Location facility = Context.getService(KenyaEmrService.class).getLocationByMflCode(id);
+                    String fname = facility.getName();
+
+                    if (fname != null) {
+                        result.append(id + ": " + fname).append(",\n<br />"); // Add the fname, a comma and a newline
+                    }
+                } catch(Exception e) {}
+            }
+
+            // Remove the trailing comma and newline if there are entries
+            if (result.length() > 0) {
+                try {
+                    result.setLength(result.length() - 8);
+                } catch(Exception e){}
+            }
+
+            ret = result.toString();
+        }
+        return(ret);
+    }
+
+    /**
+     * Returns the full name of the patient given a patient
+     * @param patient
+     * @return
+     */
+    private String getFullName(Patient patient) {
+        String ret = "";
+        ret += patient.getGivenName() != null ? patient.getGivenName() + " " : "";
+        ret += patient.getMiddleName() != null ? patient.getMiddleName() + " " : "";
+        ret += patient.getFamilyName() != null ? patient.getFamilyName() : "";
+        ret = ret.trim();
+        return(ret);
+    }
+
+    /**
+     * Returns all the identifiers of the patient given a patient (national id, passport, birth certificate)
+     * @param patient
+     * @return
+     */
+    private String getIdentifiers(Patient patient) {
+        String ret = "";
+        StringBuilder result = new StringBuilder();
+        PatientIdentifierType nationalID = MetadataUtils.existing(PatientIdentifierType.class, CommonMetadata._PatientIdentifierType.NATIONAL_ID);
+        PatientIdentifierType passPortNo = MetadataUtils.existing(PatientIdentifierType.class, CommonMetadata._PatientIdentifierType.PASSPORT_NUMBER);
+        PatientIdentifierType birthCertNo = MetadataUtils.existing(PatientIdentifierType.class, CommonMetadata._PatientIdentifierType.BIRTH_CERTIFICATE_NUMBER);
+
+        // National ID
+        PatientIdentifier natID = patient.getPatientIdentifier(nationalID);
+        if(natID != null) {
+            String natIdentifier = natID.getIdentifier();
+            if(natIdentifier != null) {
+                result.append("National ID: " + natIdentifier).append(",\n<br />");
+            }
+        }
+
+        // Passport
+        PatientIdentifier passport = patient.getPatientIdentifier(passPortNo);
+        if(passport != null) {
+            String passIdentifier = passport.getIdentifier();
+            if(passIdentifier != null) {
+                result.append("Passport No.: " + passIdentifier).append(",\n<br />");
+            }
+        }
+
+        // Birth Certificate
+        PatientIdentifier birthCert = patient.getPatientIdentifier(birthCertNo);
+        if(birthCert != null) {
+            String birthIdentifier = birthCert.getIdentifier();
+            if(birthIdentifier != null) {
+                result.append("Birth Cert.: " + birthIdentifier).append(",\n<br />");
+            }
+        }
+
+        // Remove the trailing comma and newline if there are entries
+        if (result.length() > 0) {
+            try {
+                result.setLength(result.length() - 8);
+            } catch(Exception e){}
+        }
+
+        ret = result.toString();
+
+        return(ret);
+    }
+}
@@ -33,9 +33,8 @@ import org.openmrs.module.kenyacore.calculation.Calculations;
 import org.openmrs.api.OrderService;
 import org.openmrs.module.kenyaemr.Dictionary;
 import org.openmrs.module.kenyaemr.EmrConstants;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.calculation.EmrCalculationUtils;
-import org.openmrs.module.kenyaemr.calculation.library.ScheduledVisitOnDayCalculation;
-import org.openmrs.module.kenyaemr.calculation.library.VisitsOnDayCalculation;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
 import org.openmrs.module.kenyaemr.regimen.RegimenChange;
 import org.openmrs.module.kenyaemr.regimen.RegimenChangeHistory;
@@ -52,7 +51,6 @@ import org.openmrs.ui.framework.SimpleObject;
 import org.openmrs.ui.framework.UiUtils;
 import org.openmrs.ui.framework.annotation.SpringBean;
 import org.openmrs.ui.framework.session.Session;
-import org.openmrs.util.PersonByNameComparator;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.text.DateFormat;
@@ -93,14 +91,17 @@ public class PatientUtilsFragmentController {
 				"EligibleForPoliomyelitisCalculation",
 				"EligibleForRiftValleyFeverCalculation"
 		); // flags that don't require specific role
-		// Gather all flag calculations that evaluate to true
+		// Gather all flag calculations that evaluate to true. They share a context so that data fetched by one flag,
+		// e.g. the surveillance screening data, is reused by the others
+		PatientCalculationService calculationService = Context.getService(PatientCalculationService.class);
+		PatientCalculationContext calculationContext = calculationService.createCalculationContext();
 		for (PatientFlagCalculation calc : calculationManager.getFlagCalculations()) {
 			if (openFlags.isEmpty() || !openFlags.contains(calc.getClass().getSimpleName())) {
 				// TODO: check if logged in user has the globally required role/privilege
 				continue;
 			}
 			try {
-				CalculationResult result = Context.getService(PatientCalculationService.class).evaluate(patientId, calc);
+				CalculationResult result = calculationService.evaluate(patientId, calc, calculationContext);
 				if (result != null && (Boolean) result.getValue()) {
 					flags.add(SimpleObject.create("message", calc.getFlagMessage()));
 				}
@@ -116,68 +117,93 @@ public class PatientUtilsFragmentController {
 	/**
 	 * Gets scheduled patients
 	 * @param date the date
+	 * @param startIndex the index of the first patient to return (optional)
+	 * @param length the maximum number of patients to return (optional)
 	 * @param ui the UI utils
-	 * @return the simplified patients
+	 * @return the total number of patients and the simplified patients of the page
 	 */
 	@SharedAction
-	public List<SimpleObject> getScheduled(@RequestParam("date") Date date, UiUtils ui) {
-		// Run the calculations to get patients with scheduled visits
-		PatientCalculationService cs = Context.getService(PatientCalculationService.class);
-		// Set<Integer> allPatients = Context.getPatientSetService().getAllPatients().getMemberIds();
-		Set<Integer> allPatients = Context.getService(ReportingCompatibilityService.class).getAllPatients().getMemberIds();
-
-		Map<String, Object> params = new HashMap<String, Object>();
-		params.put("date", date);
-		PatientCalculationContext calcContext = cs.createCalculationContext();
-
-		Set<Integer> scheduled = CalculationUtils.patientsThatPass(cs.evaluate(allPatients, new ScheduledVisitOnDayCalculation(), params, calcContext));
-		CalculationResultMap actual = cs.evaluate(scheduled, new VisitsOnDayCalculation(), params, calcContext);
+	public SimpleObject getScheduled(@RequestParam("date") Date date,
+									 @RequestParam(value = "startIndex", required = false) Integer startIndex,
+									 @RequestParam(value = "length", required = false) Integer length,
+									 UiUtils ui) {
+		Date startOfDay = DateUtil.getStartOfDay(date);
+		Date endOfDay = DateUtil.getEndOfDay(date);
 
-		// Sort patients and convert to simple objects
-		List<Patient> scheduledPatients =Context.getService(ReportingCompatibilityService.class).getPatients(scheduled);
-		Collections.sort(scheduledPatients, new PersonByNameComparator());
+		List<Integer> scheduled = Context.getService(KenyaEmrService.class).getPatientsScheduled(startOfDay, endOfDay);
 
-		List<SimpleObject> simplified = new ArrayList<SimpleObject>();
-		for (Patient p : scheduledPatients) {
-			SimpleObject so = ui.simplifyObject(p);
+		// Include any visits which were active during the day
+		return simplifyPatientsWithVisits(scheduled, startOfDay, endOfDay, false, startIndex, length, ui);
+	}
 
-			ListResult visitsResult = (ListResult) actual.get(p.getPatientId());
-			List<Visit> visits = CalculationUtils.extractResultValues(visitsResult);
-			so.put("visits", ui.simplifyCollection(visits));
+	/**
+	 * Gets the patients seen on a day, i.e. who had a visit which started that day
+	 * @param date the date
+	 * @param startIndex the index of the first patient to return (optional)
+	 * @param length the maximum number of patients to return (optional)
+	 * @param ui the UI utils
+	 * @return the total number of patients and the simplified patients of the page
+	 */
+	@SharedAction
+	public SimpleObject getSeenPatients(@RequestParam("date") Date date,
+										@RequestParam(value = "startIndex", required = false) Integer startIndex,
+										@RequestParam(value = "length", required = false) Integer length,
+										UiUtils ui) {
+		Date startOfDay = DateUtil.getStartOfDay(date);
+		Date endOfDay = DateUtil.getEndOfDay(date);
 
-			simplified.add(so);
-		}
+		List<Integer> seen = Context.getService(KenyaEmrService.class).getPatientsWithVisitsStarted(startOfDay, endOfDay);
 
-		return simplified;
+		return simplifyPatientsWithVisits(seen, startOfDay, endOfDay, true, startIndex, length, ui);
 	}
 
-	@SharedAction
-	public List<SimpleObject> getSeenPatients(@RequestParam("date") Date date, UiUtils ui) {
+	/**
+	 * Sorts patients by name and simplifies a page of them, along with their visits in the given period. Only the
+	 * patients of the page are loaded
+	 * @param patientIds the patient ids
+	 * @param fromDate the start of the period
+	 * @param toDate the end of the period
+	 * @param visitsStartedInPeriod whether to only include visits which started in the period
+	 * @param startIndex the index of the first patient to return (optional)
+	 * @param length the maximum number of patients to return (optional)
+	 * @param ui the UI utils
+	 * @return the total number of patients and the simplified patients of the page
+	 */
+	private SimpleObject simplifyPatientsWithVisits(List<Integer> patientIds, Date fromDate, Date toDate, boolean visitsStartedInPeriod, Integer startIndex, Integer length, UiUtils ui) {
+		List<SimpleObject> simplified = new ArrayList<SimpleObject>();
+		if (patientIds.isEmpty()) {
+			return SimpleObject.create("total", 0, "patients", simplified);
+		}
 
-		Date startOfDay = DateUtil.getStartOfDay(date);
-		Date endOfDay = DateUtil.getEndOfDay(date);
-		List<Patient> allPatients = Context.getPatientService().getAllPatients();
-		List<Patient> requiredPatients = new ArrayList<Patient>();
-		List<SimpleObject> simplifiedObj = new ArrayList<SimpleObject>();
+		KenyaEmrService kenyaEmrService = Context.getService(KenyaEmrService.class);
+		List<Integer> sortedIds = kenyaEmrService.sortPatientsByName(patientIds);
 
-		// look for visits that started before endOfDay and ended after startOfDay
-		List<Visit> visits = Context.getVisitService().getVisits(null, allPatients, null, null, startOfDay, endOfDay, null, null, null, true, true);
+		int from = startIndex != null ? Math.min(Math.max(startIndex, 0), sortedIds.size()) : 0;
+		int to = length != null ? Math.min(from + Math.max(length, 0), sortedIds.size()) : sortedIds.size();
+		List<Integer> pageIds = sortedIds.subList(from, to);
 
-		if(visits.size() > 0){
-			for (Visit visit : visits) {
-				requiredPatients.add(visit.getPatient());
+		Map<Integer, Patient> patients = new HashMap<Integer, Patient>();
+		if (!pageIds.isEmpty()) {
+			for (Patient p : Context.getService(ReportingCompatibilityService.class).getPatients(pageIds)) {
+				patients.put(p.getPatientId(), p);
 			}
 		}
-		for(Patient p:requiredPatients) {
+		Map<Integer, List<Visit>> visitsByPatient = kenyaEmrService.getVisitsByPatient(pageIds, fromDate, toDate, visitsStartedInPeriod);
+
+		for (Integer patientId : pageIds) {
+			Patient p = patients.get(patientId);
+			if (p == null) {
+				continue;
+			}
 			SimpleObject so = ui.simplifyObject(p);
-			List<Visit> patientVisit = Context.getVisitService().getVisits(null, Arrays.asList(p), null, null, startOfDay, endOfDay, null, null, null, true, true);
-			so.put("visits", ui.simplifyCollection(patientVisit));
-			simplifiedObj.add(so);
 
-		}
+			List<Visit> visits = visitsByPatient.get(patientId);
+			so.put("visits", ui.simplifyCollection(visits != null ? visits : Collections.<Visit>emptyList()));
 
+			simplified.add(so);
+		}
 
-		return simplifiedObj;
+		return SimpleObject.create("total", sortedIds.size(), "patients", simplified);
 	}
 
 	/**
@@ -10,13 +10,31 @@
 package org.openmrs.module.kenyaemr.fragment.controller.report;
 
 import org.apache.commons.collections.map.HashedMap;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.module.kenyacore.CoreUtils;
+import org.openmrs.module.kenyacore.report.ReportDescriptor;
+import org.openmrs.module.kenyacore.report.ReportManager;
+import org.openmrs.module.kenyaui.KenyaUiUtils;
+import org.openmrs.module.kenyaui.annotation.SharedAction;
+import org.openmrs.module.reporting.dataset.DataSetColumn;
 import org.openmrs.module.reporting.dataset.DataSetRow;
 import org.openmrs.module.reporting.dataset.SimpleDataSet;
 import org.openmrs.module.reporting.report.ReportData;
+import org.openmrs.module.reporting.report.ReportRequest;
 import org.openmrs.module.reporting.report.definition.ReportDefinition;
+import org.openmrs.module.reporting.report.service.ReportService;
+import org.openmrs.ui.framework.SimpleObject;
 import org.openmrs.ui.framework.annotation.FragmentParam;
+import org.openmrs.ui.framework.annotation.SpringBean;
+import org.openmrs.ui.framework.fragment.FragmentActionRequest;
 import org.openmrs.ui.framework.fragment.FragmentModel;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -24,15 +42,99 @@ import java.util.Map;
  */
 public class PatientListReportDataFragmentController {
 
-	public void controller(@FragmentParam("reportData") ReportData reportData, FragmentModel model) {
+	private static final int DEFAULT_PAGE_SIZE = 50;
 
-		// We assume that this kind of report produces a single SimpleDataSet
-		SimpleDataSet dataSet = (SimpleDataSet) reportData.getDataSets().entrySet().iterator().next().getValue();
+	private static final int MAX_CACHED_DATA_SETS = 5;
+
+	/**
+	 * Data sets of the most recently viewed report requests by request uuid, so that paging, sorting and filtering
+	 * don't deserialize the saved report data on every call. Least recently used entries are evicted first
+	 */
+	private static final Map<String, SimpleDataSet> dataSetCache = Collections.synchronizedMap(new LinkedHashMap<String, SimpleDataSet>(MAX_CACHED_DATA_SETS + 1, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SimpleDataSet> eldest) {
+			return size() > MAX_CACHED_DATA_SETS;
+		}
+	});
+
+	public void controller(@FragmentParam("reportRequest") ReportRequest reportRequest,
+						   @FragmentParam("reportData") ReportData reportData,
+						   FragmentModel model) {
 
+		SimpleDataSet dataSet = getDataSet(reportData);
+		dataSetCache.put(reportRequest.getUuid(), dataSet);
+
+		// Rows are fetched a page at a time by getRows, so only the columns are needed to render the table
+		model.addAttribute("reportRequest", reportRequest);
 		model.addAttribute("definition", reportData.getDefinition());
-		model.addAttribute("dataSet", dataSet);
+		model.addAttribute("columns", getDisplayColumns(dataSet));
 		model.addAttribute("summary", createSummary(dataSet));
 		model.addAttribute("isCohortReport", isCohortAnalysisReport(reportData.getDefinition()));
+		model.addAttribute("pageSize", DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Gets a page of the rows of a patient list report
+	 * @param reportRequest the report request
+	 * @param startIndex the index of the first row, after filtering and sorting
+	 * @param length the maximum number of rows
+	 * @param sortColumn the label of the column to sort by, or null to keep the evaluated order
+	 * @param sortAscending whether to sort in ascending order (default true)
+	 * @param filterColumn the label of the column to filter on, or null to filter on any column
+	 * @param filter the text which matching rows contain, ignoring case
+	 * @return the total number of rows, the number matching the filter and the rows of the page
+	 */
+	@SharedAction
+	public SimpleObject getRows(@RequestParam("request") ReportRequest reportRequest,
+								@RequestParam(value = "startIndex", required = false) Integer startIndex,
+								@RequestParam(value = "length", required = false) Integer length,
+								@RequestParam(value = "sortColumn", required = false) String sortColumn,
+								@RequestParam(value = "sortAscending", required = false) Boolean sortAscending,
+								@RequestParam(value = "filterColumn", required = false) String filterColumn,
+								@RequestParam(value = "filter", required = false) String filter,
+								@SpringBean KenyaUiUtils kenyaUi,
+								@SpringBean FragmentActionRequest actionRequest,
+								@SpringBean ReportManager reportManager,
+								@SpringBean ReportService reportService) {
+
+		ReportDefinition definition = reportRequest.getReportDefinition().getParameterizable();
+		ReportDescriptor report = reportManager.getReportDescriptor(definition);
+
+		CoreUtils.checkAccess(report, kenyaUi.getCurrentApp(actionRequest));
+
+		SimpleDataSet dataSet = dataSetCache.get(reportRequest.getUuid());
+		if (dataSet == null) {
+			dataSet = getDataSet(reportService.loadReportData(reportRequest));
+			dataSetCache.put(reportRequest.getUuid(), dataSet);
+		}
+		List<DataSetColumn> columns = getDisplayColumns(dataSet);
+
+		List<DataSetRow> rows = filterRows(dataSet.getRows(), columns, filterColumn, filter);
+		if (StringUtils.isNotEmpty(sortColumn)) {
+			Collections.sort(rows, new ColumnComparator(sortColumn, sortAscending == null || sortAscending));
+		}
+
+		int from = Math.min(startIndex != null ? Math.max(startIndex, 0) : 0, rows.size());
+		int to = Math.min(from + (length != null && length > 0 ? length : DEFAULT_PAGE_SIZE), rows.size());
+
+		List<SimpleObject> page = new ArrayList<SimpleObject>();
+		for (DataSetRow row : rows.subList(from, to)) {
+			String gender = (String) row.getColumnValue("Sex");
+
+			List<String> values = new ArrayList<String>();
+			for (DataSetColumn column : columns) {
+				values.add(formatValue(row.getColumnValue(column)));
+			}
+
+			page.add(SimpleObject.create(
+					"id", row.getColumnValue("id"),
+					"name", formatValue(row.getColumnValue("Name")),
+					"gender", gender != null ? gender.toLowerCase() : "",
+					"values", values
+			));
+		}
+
+		return SimpleObject.create("total", dataSet.getRows().size(), "filtered", rows.size(), "rows", page);
 	}
 
 	/**
@@ -60,6 +162,105 @@ public class PatientListReportDataFragmentController {
 		return summary;
 	}
 
+	/**
+	 * Gets the single data set produced by a patient list report
+	 * @param reportData the report data
+	 * @return the data set
+	 */
+	protected SimpleDataSet getDataSet(ReportData reportData) {
+		// We assume that this kind of report produces a single SimpleDataSet
+		return (SimpleDataSet) reportData.getDataSets().entrySet().iterator().next().getValue();
+	}
+
+	/**
+	 * Gets the columns displayed as table columns, i.e. all except the patient id and name
+	 * @param dataSet the data set
+	 * @return the columns
+	 */
+	protected List<DataSetColumn> getDisplayColumns(SimpleDataSet dataSet) {
+		List<DataSetColumn> columns = new ArrayList<DataSetColumn>();
+		for (DataSetColumn column : dataSet.getMetaData().getColumns()) {
+			if (!"id".equals(column.getLabel()) && !"Name".equals(column.getLabel())) {
+				columns.add(column);
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Filters rows to those where the given column, or any displayed column, contains the filter text
+	 * @param rows the rows
+	 * @param columns the displayed columns
+	 * @param filterColumn the column label or null for any column
+	 * @param filter the filter text
+	 * @return the matching rows
+	 */
+	protected List<DataSetRow> filterRows(List<DataSetRow> rows, List<DataSetColumn> columns, String filterColumn, String filter) {
+		if (StringUtils.isBlank(filter)) {
+			return new ArrayList<DataSetRow>(rows);
+		}
+
+		String text = filter.trim().toLowerCase();
+		List<String> labels = new ArrayList<String>();
+		if (StringUtils.isNotEmpty(filterColumn)) {
+			labels.add(filterColumn);
+		} else {
+			labels.add("Name");
+			for (DataSetColumn column : columns) {
+				labels.add(column.getLabel());
+			}
+		}
+
+		List<DataSetRow> matches = new ArrayList<DataSetRow>();
+		for (DataSetRow row : rows) {
+			for (String label : labels) {
+				Object value = row.getColumnValue(label);
+				if (value != null && String.valueOf(value).toLowerCase().contains(text)) {
+					matches.add(row);
+					break;
+				}
+			}
+		}
+		return matches;
+	}
+
+	protected static String formatValue(Object value) {
+		return value != null ? String.valueOf(value) : "-";
+	}
+
+	/**
+	 * Orders rows by the value of a column. Values of the same type are compared naturally, e.g. dates and numbers,
+	 * others by their text. Empty values always go last.
+	 */
+	protected static class ColumnComparator implements Comparator<DataSetRow> {
+
+		private final String column;
+		private final boolean ascending;
+
+		public ColumnComparator(String column, boolean ascending) {
+			this.column = column;
+			this.ascending = ascending;
+		}
+
+		@Override
+		public int compare(DataSetRow row1, DataSetRow row2) {
+			Object value1 = row1.getColumnValue(column);
+			Object value2 = row2.getColumnValue(column);
+
+			if (value1 == null || value2 == null) {
+				return value1 == value2 ? 0 : (value1 == null ? 1 : -1);
+			}
+
+			int result;
+			if (value1 instanceof Comparable && value1.getClass().equals(value2.getClass())) {
+				result = ((Comparable) value1).compareTo(value2);
+			} else {
+				result = String.valueOf(value1).compareToIgnoreCase(String.valueOf(value2));
+			}
+			return ascending ? result : -result;
+		}
+	}
+
 	boolean isCohortAnalysisReport(ReportDefinition reportDefinition){
 		boolean isCohortReport = false;
 		if(reportDefinition.getName().contains("cohort")){
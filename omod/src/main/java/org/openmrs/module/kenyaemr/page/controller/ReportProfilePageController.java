@@ -0,0 +1,122 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.kenyaemr.page.controller;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.kenyacore.CoreUtils;
+import org.openmrs.module.kenyacore.report.ReportDescriptor;
+import org.openmrs.module.kenyacore.report.ReportManager;
+import org.openmrs.module.kenyaemr.EmrConstants;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
+import org.openmrs.module.kenyaemr.model.ReportProfileEntry;
+import org.openmrs.module.kenyaui.KenyaUiUtils;
+import org.openmrs.module.kenyaui.annotation.SharedPage;
+import org.openmrs.module.reporting.report.definition.ReportDefinition;
+import org.openmrs.module.reporting.report.definition.service.ReportDefinitionService;
+import org.openmrs.ui.framework.SimpleObject;
+import org.openmrs.ui.framework.annotation.SpringBean;
+import org.openmrs.ui.framework.page.PageModel;
+import org.openmrs.ui.framework.page.PageRequest;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Report evaluation profile page. Lists the profiled runs of a report and ranks the definitions of the selected run
+ * by the time spent evaluating them, excluding time spent in nested definitions
+ */
+@SharedPage
+public class ReportProfilePageController {
+
+	private static final int MAX_RUNS = 20;
+
+	private static final int MAX_DEFINITIONS = 100;
+
+	public void get(@RequestParam("reportUuid") String reportUuid,
+					@RequestParam(required = false, value = "run") String runUuid,
+					@RequestParam("returnUrl") String returnUrl,
+					PageRequest pageRequest,
+					PageModel model,
+					@SpringBean ReportManager reportManager,
+					@SpringBean KenyaUiUtils kenyaUi,
+					@SpringBean ReportDefinitionService definitionService) {
+
+		ReportDefinition definition = definitionService.getDefinitionByUuid(reportUuid);
+		ReportDescriptor report = reportManager.getReportDescriptor(definition);
+
+		CoreUtils.checkAccess(report, kenyaUi.getCurrentApp(pageRequest));
+
+		KenyaEmrService service = Context.getService(KenyaEmrService.class);
+		List<ReportProfileEntry> runs = service.getReportProfileRuns(reportUuid, MAX_RUNS);
+
+		if (runUuid == null && !runs.isEmpty()) {
+			runUuid = runs.get(0).getRunUuid();
+		}
+
+		List<SimpleObject> ranking = runUuid != null ? rankDefinitions(service.getReportProfileEntries(runUuid)) : new ArrayList<SimpleObject>();
+
+		String enabled = Context.getAdministrationService().getGlobalProperty(EmrConstants.GP_REPORT_PROFILER_ENABLED);
+
+		model.addAttribute("definition", definition);
+		model.addAttribute("runs", runs);
+		model.addAttribute("selectedRun", runUuid);
+		model.addAttribute("ranking", ranking);
+		model.addAttribute("profilerEnabled", "true".equalsIgnoreCase(enabled));
+		model.addAttribute("returnUrl", returnUrl);
+	}
+
+	/**
+	 * Groups the entries of a run by definition and ranks them by total self time. The same definition is often
+	 * evaluated many times in one report, e.g. once per indicator dimension.
+	 * @param entries the entries of the run
+	 * @return the slowest definitions
+	 */
+	protected List<SimpleObject> rankDefinitions(List<ReportProfileEntry> entries) {
+		Map<String, SimpleObject> byDefinition = new LinkedHashMap<String, SimpleObject>();
+
+		for (ReportProfileEntry entry : entries) {
+			if (entry.getDepth() == 0) {
+				continue;
+			}
+
+			String key = entry.getDefinitionUuid() != null ? entry.getDefinitionUuid() : entry.getDefinitionClass() + ":" + entry.getDefinitionName();
+			SimpleObject row = byDefinition.get(key);
+			if (row == null) {
+				row = SimpleObject.create("name", StringEscapeUtils.escapeHtml(entry.getDefinitionName()), "type", entry.getDefinitionType(),
+						"className", entry.getDefinitionClass(), "sql", StringEscapeUtils.escapeHtml(entry.getSqlText()),
+						"evaluations", 0, "cacheHits", 0, "selfMs", 0L, "elapsedMs", 0L, "rows", entry.getRowCount());
+				byDefinition.put(key, row);
+			}
+
+			row.put("evaluations", (Integer) row.get("evaluations") + 1);
+			row.put("selfMs", (Long) row.get("selfMs") + entry.getSelfMs());
+			row.put("elapsedMs", (Long) row.get("elapsedMs") + entry.getElapsedMs());
+			if (Boolean.TRUE.equals(entry.getCacheHit())) {
+				row.put("cacheHits", (Integer) row.get("cacheHits") + 1);
+			}
+		}
+
+		List<SimpleObject> ranking = new ArrayList<SimpleObject>(byDefinition.values());
+		Collections.sort(ranking, new Comparator<SimpleObject>() {
+			@Override
+			public int compare(SimpleObject o1, SimpleObject o2) {
+				return ((Long) o2.get("selfMs")).compareTo((Long) o1.get("selfMs"));
+			}
+		});
+
+		return ranking.size() > MAX_DEFINITIONS ? ranking.subList(0, MAX_DEFINITIONS) : ranking;
+	}
+}
@@ -9,96 +9,58 @@
  */
 package org.openmrs.module.kenyaemr.page.controller.nupi;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
-import org.openmrs.Patient;
-import org.openmrs.PatientProgram;
 import org.openmrs.PersonAttributeType;
 import org.openmrs.Program;
-import org.openmrs.api.ProgramWorkflowService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.kenyaemr.EmrConstants;
+import org.openmrs.module.kenyaemr.api.KenyaEmrService;
 import org.openmrs.module.kenyaemr.metadata.CommonMetadata;
 import org.openmrs.module.kenyaemr.metadata.HivMetadata;
-import org.openmrs.module.kenyaui.KenyaUiUtils;
 import org.openmrs.module.kenyaui.annotation.AppPage;
 import org.openmrs.module.metadatadeploy.MetadataUtils;
-import org.openmrs.ui.framework.SimpleObject;
-import org.openmrs.ui.framework.UiUtils;
-import org.openmrs.ui.framework.annotation.SpringBean;
 import org.openmrs.ui.framework.page.PageModel;
 
 @AppPage(EmrConstants.APP_NUPI_VERIFICATION)
 public class NupiVerificationHomePageController {
 
-    public void get(@SpringBean KenyaUiUtils kenyaUi, UiUtils ui, PageModel model) {
+    /**
+     * Statuses of patients who have attempted verification and have received a NUPI
+     */
+    private static final List<String> VERIFIED_STATUSES = Arrays.asList("yes", "verified", "verified elsewhere");
 
-
-        List<SimpleObject> pendingVerification = new ArrayList<SimpleObject>();
-        List<SimpleObject> verifiedWithErrors = new ArrayList<SimpleObject>();
-        Integer verifiedCount = 0;
-        Integer verifiedOnART = 0;
-        String errorDescription = "";
-        PersonAttributeType verificationStatusPA = Context.getPersonService().getPersonAttributeTypeByUuid(CommonMetadata._PersonAttributeType.VERIFICATION_STATUS_WITH_NATIONAL_REGISTRY);
-        PersonAttributeType verificationMessagePA = Context.getPersonService().getPersonAttributeTypeByUuid(CommonMetadata._PersonAttributeType.VERIFICATION_MESSAGE_WITH_NATIONAL_REGISTRY);
-        PersonAttributeType verificationErrorDescriptionPA = Context.getPersonService().getPersonAttributeTypeByUuid(CommonMetadata._PersonAttributeType.VERIFICATION_DESCRIPTION_FOR_IPRS_ERROR);
-        List<Patient> allPatients = Context.getPatientService().getAllPatients();
+    public void get(PageModel model) {
+        KenyaEmrService kenyaEmrService = Context.getService(KenyaEmrService.class);
+        PersonAttributeType verificationStatusPA = MetadataUtils.existing(PersonAttributeType.class, CommonMetadata._PersonAttributeType.VERIFICATION_STATUS_WITH_NATIONAL_REGISTRY);
         Program hivProgram = MetadataUtils.existing(Program.class, HivMetadata._Program.HIV);
 
-        for (Patient patient : allPatients) {
-            if (patient.getAttribute(verificationStatusPA) != null) {
-                String networkError = "";
-                if (patient.getAttribute(verificationMessagePA) != null) {
-                    networkError = patient.getAttribute(verificationMessagePA).getValue().trim();
-                }
-                // Has attempted verification
-                if (patient.getAttribute(verificationStatusPA).getValue().trim().equalsIgnoreCase("Pending")) {
-                    // Has attempted verification but has not received NUPI
-                    SimpleObject patientPendingObject = SimpleObject.create("id", patient.getId(), "uuid", patient.getUuid(), "givenName", patient
-                            .getGivenName(), "middleName", patient.getMiddleName() != null ? patient.getMiddleName() : "", "familyName", patient.getFamilyName(), "birthdate", kenyaUi.formatDate(patient.getBirthdate()), "gender", patient.getGender(), "error", networkError != null ? networkError : "-");
-                    pendingVerification.add(patientPendingObject);
-                }
-                // Has attempted verification and has received NUPI
-                if (patient.getAttribute(verificationStatusPA).getValue().trim().equalsIgnoreCase("Yes") || patient.getAttribute(verificationStatusPA).getValue().trim().equalsIgnoreCase("Verified") || patient.getAttribute(verificationStatusPA).getValue().trim().equalsIgnoreCase("Verified elsewhere")) {
-                    verifiedCount++;
-                }
-                // Has successful verification and has received NUPI and in HIV program
-                ProgramWorkflowService pwfservice = Context.getProgramWorkflowService();
-                List<PatientProgram> programs = pwfservice.getPatientPrograms(patient, hivProgram, null, null, null, null, true);
-                if (programs.size() > 0) {
-                    if (patient.getAttribute(verificationStatusPA).getValue().trim().equalsIgnoreCase("Yes") || patient.getAttribute(verificationStatusPA).getValue().trim().equalsIgnoreCase("Verified") || patient.getAttribute(verificationStatusPA).getValue().trim().equalsIgnoreCase("Verified elsewhere")) {
-                        verifiedOnART++;
-                    }
-                }
-                // Has successfully verified but IPR has returned errors on verification   : Already has a NUPI but IPRS returned errors
-                if (patient.getAttribute(verificationStatusPA).getValue().trim().equalsIgnoreCase("Failed IPRS Check")) {
-                     // Check error description
-                    if(patient.getAttribute(verificationErrorDescriptionPA) != null) {
-                        errorDescription = patient.getAttribute(verificationErrorDescriptionPA).getValue().trim();
-                    }
-                    SimpleObject errorVerificationObject = SimpleObject.create(
-                            "id", patient.getId(),
-                            "uuid", patient.getUuid(),
-                            "givenName", patient.getGivenName(),
-                            "middleName", patient.getMiddleName() != null ? patient.getMiddleName() : "",
-                            "familyName", patient.getFamilyName(),
-                            "birthdate", kenyaUi.formatDate(patient.getBirthdate()),
-                            "gender", patient.getGender(),
-                            "error", errorDescription != null ? errorDescription : "-" );
-                    verifiedWithErrors.add(errorVerificationObject);
-                }
-            }
+        // The lists themselves are paged in by the nupiVerificationUtils fragment
+        Map<String, Integer> countsByStatus = kenyaEmrService.getPatientCountsByAttributeValue(verificationStatusPA, null);
+        Map<String, Integer> countsByStatusInHivProgram = kenyaEmrService.getPatientCountsByAttributeValue(verificationStatusPA, hivProgram);
+
+        // Has attempted verification but has not received NUPI
+        int pendingCount = getCount(countsByStatus, "pending");
+        int verifiedCount = 0;
+        int verifiedOnART = 0;
+        for (String status : VERIFIED_STATUSES) {
+            verifiedCount += getCount(countsByStatus, status);
+            verifiedOnART += getCount(countsByStatusInHivProgram, status);
         }
-        model.put("patientPendingList", ui.toJson(pendingVerification));
-        model.put("patientPendingListSize", pendingVerification.size());
+        // Has successfully verified but IPRS has returned errors on verification: Already has a NUPI but IPRS returned errors
+        int verificationErrorCount = getCount(countsByStatus, "failed iprs check");
+
+        model.put("patientPendingListSize", pendingCount);
         model.put("patientVerifiedListSize", verifiedCount);
         model.put("patientVerifiedOnARTListSize", verifiedOnART);
-        model.put("totalAttemptedVerification", pendingVerification.size() + verifiedCount);
-        model.put("patientVerifiedWithErrorsList", ui.toJson(verifiedWithErrors));
-        model.put("numberOfVerificationErrorSize", verifiedWithErrors.size());
+        model.put("totalAttemptedVerification", pendingCount + verifiedCount);
+        model.put("numberOfVerificationErrorSize", verificationErrorCount);
     }
 
+    private int getCount(Map<String, Integer> counts, String status) {
+        Integer count = counts.get(status);
+        return count != null ? count : 0;
+    }
 }
-
-
@@ -71,6 +71,7 @@ import org.openmrs.module.kenyaemr.util.EncounterBasedRegimenUtils;
 import org.openmrs.module.kenyaemr.wrapper.PatientWrapper;
 import org.openmrs.module.kenyaemr.wrapper.Enrollment;
 import org.openmrs.module.kenyaemr.metadata.IPTMetadata;
+import org.openmrs.module.kenyaemr.model.AppointmentHistoryEntry;
 import org.openmrs.module.kenyacore.CoreContext;
 import org.openmrs.module.kenyacore.calculation.CalculationManager;
 import org.openmrs.module.kenyacore.calculation.PatientFlagCalculation;
@@ -283,10 +284,12 @@ public class KenyaemrCoreRestController extends BaseRestController {
         }
         calculationManager.refresh();
         ArrayNode flags = JsonNodeFactory.instance.arrayNode();
+        PatientCalculationService calculationService = Context.getService(PatientCalculationService.class);
+        PatientCalculationContext calculationContext = calculationService.createCalculationContext();
         for (PatientFlagCalculation calc : calculationManager.getFlagCalculations()) {
 
             try {
-                CalculationResult result = Context.getService(PatientCalculationService.class).evaluate(patient.getId(), calc);
+                CalculationResult result = calculationService.evaluate(patient.getId(), calc, calculationContext);
                 if (result != null && (Boolean) result.getValue()) {
                     flags.add(calc.getFlagMessage());
                 }
@@ -375,6 +378,46 @@ public class KenyaemrCoreRestController extends BaseRestController {
 
     }
 
+    /**
+     * Returns the latest HIV green card appointments of a patient and whether they were honoured
+     * @param patientUuid the patient uuid
+     * @param limit the maximum number of appointments (defaults to 3)
+     * @return the appointments, most recent first
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/appointmentHistory")
+    @ResponseBody
+    public Object getAppointmentHistory(@RequestParam("patientUuid") String patientUuid, @RequestParam(value = "limit", required = false) Integer limit) {
+        if (StringUtils.isBlank(patientUuid)) {
+            return new ResponseEntity<Object>("You must specify patientUuid in the request!",
+                    new HttpHeaders(), HttpStatus.BAD_REQUEST);
+        }
+
+        Patient patient = Context.getPatientService().getPatientByUuid(patientUuid);
+
+        if (patient == null) {
+            return new ResponseEntity<Object>("The provided patient was not found in the system!",
+                    new HttpHeaders(), HttpStatus.NOT_FOUND);
+        }
+
+        Form hivGreenCardForm = MetadataUtils.existing(Form.class, HivMetadata._Form.HIV_GREEN_CARD);
+        List<AppointmentHistoryEntry> appointments = Context.getService(KenyaEmrService.class).getAppointmentHistory(patient, hivGreenCardForm, limit != null ? limit : 3);
+
+        ArrayNode appointmentsNode = JsonNodeFactory.instance.arrayNode();
+        for (AppointmentHistoryEntry appointment : appointments) {
+            ObjectNode node = JsonNodeFactory.instance.objectNode();
+            node.put("encounterUuid", appointment.getEncounter().getUuid());
+            node.put("visitDate", formatDate(appointment.getEncounter().getEncounterDatetime()));
+            node.put("appointmentDate", appointment.getAppointmentDate() != null ? formatDate(appointment.getAppointmentDate()) : "");
+            node.put("appointmentPeriod", appointment.getAppointmentDate() != null ? appointment.getAppointmentPeriod() : 0);
+            node.put("honoured", appointment.isHonoured());
+            appointmentsNode.add(node);
+        }
+
+        ObjectNode appointmentsObj = JsonNodeFactory.instance.objectNode();
+        appointmentsObj.put("results", appointmentsNode);
+        return appointmentsObj.toString();
+    }
+
     /**
      * Fetches default facility
      *
@@ -43,24 +43,85 @@ kenyaemrApp.controller('ReportProfiling', ['$scope', '$http', function($scope, $
 /**
  * Controller for patient validation
  */
-kenyaemrApp.controller('PatientValidation', ['$scope', '$http', function($scope, $http) {
+kenyaemrApp.controller('PatientValidation', ['$scope', '$http', '$timeout', function($scope, $http, $timeout) {
 
+	var POLL_INTERVAL = 2000;
+	var PAGE_SIZE = 50;
+
+	$scope.status = {};
 	$scope.results = [];
-	$scope.loading = false;
+	$scope.startIndex = 0;
+	$scope.pageSize = PAGE_SIZE;
 
 	/**
-	 * Runs the validation
+	 * Initializes the controller, showing any run in progress or the results of the last run
+	 */
+	$scope.init = function() {
+		$scope.refresh();
+	};
+
+	/**
+	 * Starts a validation run in the background
 	 */
 	$scope.run = function() {
 		$scope.results = [];
-		$scope.loading = true;
-		$http.get(ui.fragmentActionLink('kenyaemr', 'developer/developerUtils', 'validatePatients', {})).
+		$scope.startIndex = 0;
+		$http.get(ui.fragmentActionLink('kenyaemr', 'developer/developerUtils', 'startPatientValidation')).
+			success(function(data) {
+				$scope.status = data;
+				$scope.poll();
+			});
+	};
+
+	/**
+	 * Cancels the current validation run
+	 */
+	$scope.cancel = function() {
+		$http.get(ui.fragmentActionLink('kenyaemr', 'developer/developerUtils', 'cancelPatientValidation'));
+	};
+
+	/**
+	 * Fetches the status of the current run, and its results once it has finished
+	 */
+	$scope.refresh = function() {
+		$http.get(ui.fragmentActionLink('kenyaemr', 'developer/developerUtils', 'getPatientValidationStatus')).
+			success(function(data) {
+				$scope.status = data;
+				if (data.running) {
+					$scope.poll();
+				} else {
+					$scope.loadPage($scope.startIndex);
+				}
+			});
+	};
+
+	/**
+	 * Schedules the next status check
+	 */
+	$scope.poll = function() {
+		$timeout($scope.refresh, POLL_INTERVAL);
+	};
+
+	/**
+	 * Loads a page of the issues found by the last run
+	 * @param startIndex the index of the first issue
+	 */
+	$scope.loadPage = function(startIndex) {
+		$http.get(ui.fragmentActionLink('kenyaemr', 'developer/developerUtils', 'getPatientValidationIssues', { startIndex: startIndex, length: PAGE_SIZE })).
 			success(function(data) {
 				$scope.results = data;
-				$scope.loading = false;
+				$scope.startIndex = startIndex;
 			});
 	};
 
+	$scope.hasPreviousPage = function() {
+		return $scope.startIndex > 0;
+	};
+
+	$scope.hasNextPage = function() {
+		return $scope.startIndex + PAGE_SIZE < $scope.status.issueCount;
+	};
+
 }]);
 
 /**
@@ -222,8 +222,13 @@ kenyaemrApp.controller('SimilarPatients', ['$scope', '$http', function($scope, $
  */
 kenyaemrApp.controller('DailySchedule', ['$scope', '$http', function($scope, $http) {
 
+    var PAGE_SIZE = 50;
+
     $scope.date = null;
     $scope.scheduled = [];
+    $scope.total = 0;
+    $scope.startIndex = 0;
+    $scope.pageSize = PAGE_SIZE;
 
     /**
      * Initializes the controller
@@ -244,12 +249,30 @@ kenyaemrApp.controller('DailySchedule', ['$scope', '$http', function($scope, $ht
      * Refreshes the schedule
      */
     $scope.fetch = function() {
-        $http.get(ui.fragmentActionLink('kenyaemr', 'patient/patientUtils', 'getScheduled', { appId: $scope.appId, date: $scope.date })).
+        $scope.loadPage(0);
+    };
+
+    /**
+     * Loads a page of the scheduled patients
+     * @param startIndex the index of the first patient
+     */
+    $scope.loadPage = function(startIndex) {
+        $http.get(ui.fragmentActionLink('kenyaemr', 'patient/patientUtils', 'getScheduled', { appId: $scope.appId, date: $scope.date, startIndex: startIndex, length: PAGE_SIZE })).
         success(function(data) {
-            $scope.scheduled = data;
+            $scope.scheduled = data.patients;
+            $scope.total = data.total;
+            $scope.startIndex = startIndex;
         });
     };
 
+    $scope.hasPreviousPage = function() {
+        return $scope.startIndex > 0;
+    };
+
+    $scope.hasNextPage = function() {
+        return $scope.startIndex + PAGE_SIZE < $scope.total;
+    };
+
     /**
      * Result click event handler
      * @param patient the clicked patient
@@ -264,8 +287,13 @@ kenyaemrApp.controller('DailySchedule', ['$scope', '$http', function($scope, $ht
  */
 kenyaemrApp.controller('DailySeen', ['$scope', '$http', function($scope, $http) {
 
+    var PAGE_SIZE = 50;
+
     $scope.date = null;
     $scope.seen = [];
+    $scope.total = 0;
+    $scope.startIndex = 0;
+    $scope.pageSize = PAGE_SIZE;
 
     /**
      * Initializes the controller
@@ -286,12 +314,30 @@ kenyaemrApp.controller('DailySeen', ['$scope', '$http', function($scope, $http)
      * Refreshes the seen patients
      */
     $scope.fetch = function() {
-        $http.get(ui.fragmentActionLink('kenyaemr', 'patient/patientUtils', 'getSeenPatients', { appId: $scope.appId, date: $scope.date })).
+        $scope.loadPage(0);
+    };
+
+    /**
+     * Loads a page of the seen patients
+     * @param startIndex the index of the first patient
+     */
+    $scope.loadPage = function(startIndex) {
+        $http.get(ui.fragmentActionLink('kenyaemr', 'patient/patientUtils', 'getSeenPatients', { appId: $scope.appId, date: $scope.date, startIndex: startIndex, length: PAGE_SIZE })).
         success(function(data) {
-            $scope.seen = data;
+            $scope.seen = data.patients;
+            $scope.total = data.total;
+            $scope.startIndex = startIndex;
         });
     };
 
+    $scope.hasPreviousPage = function() {
+        return $scope.startIndex > 0;
+    };
+
+    $scope.hasNextPage = function() {
+        return $scope.startIndex + PAGE_SIZE < $scope.total;
+    };
+
     /**
      * Result click event handler
      * @param patient the clicked patient